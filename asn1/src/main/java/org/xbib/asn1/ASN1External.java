@@ -152,14 +152,44 @@ public final class ASN1External extends ASN1Any {
         }
     }
 
+    public ASN1ObjectIdentifier getDirectReference() {
+        return sDirectReference;
+    }
+
+    public void setDirectReference(ASN1ObjectIdentifier directReference) {
+        this.sDirectReference = directReference;
+    }
+
     public ASN1OctetString getcOctetAligned() {
         return cOctetAligned;
     }
 
+    /**
+     * Set the octet-aligned encoding, replacing any other encoding.
+     *
+     * @param octetAligned the octets
+     */
+    public void setcOctetAligned(ASN1OctetString octetAligned) {
+        this.cSingleASN1Type = null;
+        this.cArbitrary = null;
+        this.cOctetAligned = octetAligned;
+    }
+
     public ASN1Any getSingleASN1Type() {
         return cSingleASN1Type;
     }
 
+    /**
+     * Set the single ASN.1 type encoding, replacing any other encoding.
+     *
+     * @param singleASN1Type the ASN.1 value
+     */
+    public void setSingleASN1Type(ASN1Any singleASN1Type) {
+        this.cOctetAligned = null;
+        this.cArbitrary = null;
+        this.cSingleASN1Type = singleASN1Type;
+    }
+
     /**
      * Returns a BER encoding of the EXTERNAL.
      *
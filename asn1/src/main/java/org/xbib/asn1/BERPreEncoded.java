@@ -0,0 +1,99 @@
+package org.xbib.asn1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class represents a BER encoded ASN.1 object whose octets have
+ * already been computed. It can be spliced into a constructed encoding
+ * in place of the encoding of the original object, so that repeatedly
+ * sent objects, e.g. cached queries, are encoded only once.
+ * Output is a single array write instead of an octet-by-octet traversal.
+ *
+ * @see org.xbib.asn1.BEREncoding
+ */
+public final class BERPreEncoded extends BEREncoding {
+
+    private static final char[] hex = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
+            'a', 'b', 'c', 'd', 'e', 'f'};
+
+    /**
+     * The complete encoding: identifier, length and contents octets.
+     */
+    private final byte[] encoding;
+
+    /**
+     * Constructor for an encoding from its contents octets.
+     *
+     * @param asn1Class     The tag type.
+     * @param isConstructed True if constructed, or false if primitive.
+     * @param tag           The tag number.
+     * @param contents      The contents octets.
+     * @throws ASN1Exception If tag or tag type is invalid
+     * @see org.xbib.asn1.BEREncoding#UNIVERSAL_TAG
+     * @see org.xbib.asn1.BEREncoding#APPLICATION_TAG
+     * @see org.xbib.asn1.BEREncoding#CONTEXT_SPECIFIC_TAG
+     * @see org.xbib.asn1.BEREncoding#PRIVATE_TAG
+     */
+    public BERPreEncoded(int asn1Class, boolean isConstructed, int tag, byte[] contents)
+            throws ASN1Exception {
+        init(asn1Class, isConstructed, tag, contents.length);
+        encoding = new byte[iTotalLength];
+        int offset = iGetHead(0, encoding);
+        System.arraycopy(contents, 0, encoding, offset, contents.length);
+    }
+
+    private BERPreEncoded(BEREncoding ber) {
+        iTagType = ber.iTagType;
+        iTag = ber.iTag;
+        iTotalLength = ber.iTotalLength;
+        encoding = ber.encodingGet();
+    }
+
+    /**
+     * Computes the octets of an encoding once.
+     *
+     * @param ber the encoding
+     * @return a pre-encoded copy of the encoding
+     */
+    public static BERPreEncoded of(BEREncoding ber) {
+        return ber instanceof BERPreEncoded ? (BERPreEncoded) ber : new BERPreEncoded(ber);
+    }
+
+    /**
+     * This method outputs the encoded octets to the destination OutputStream.
+     * Note: the output is not flushed, so you <strong>must</strong>  explicitly
+     * flush the output stream after calling this method to ensure that
+     * the data has been written out.
+     *
+     * @param dest - OutputStream to write encoding to.
+     */
+    @Override
+    public void output(OutputStream dest) throws IOException {
+        dest.write(encoding);
+    }
+
+    /**
+     * Returns a new String object representing the octets of this encoding.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("[PRE-ENCODED ");
+        str.append(String.valueOf(iTag)).append("] '");
+        for (byte octet : encoding) {
+            str.append(hex[(octet >> 4) & 0x0f]);
+            str.append(hex[octet & 0x0f]);
+        }
+        str.append("'H");
+        return str.toString();
+    }
+
+    /**
+     * This protected method is used to implement the "get_encoding" method.
+     */
+    @Override
+    protected int iEncodingGet(int offset, byte[] data) {
+        System.arraycopy(encoding, 0, data, offset, encoding.length);
+        return offset + encoding.length;
+    }
+}
@@ -0,0 +1,67 @@
+package org.xbib.io.iso23950.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.v3.PDU;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of Init, Search and Present request PDUs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BERCodecBenchmark {
+
+    @Param({"init", "search", "present"})
+    public String type;
+
+    private PDU pdu;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws ASN1Exception {
+        switch (type) {
+            case "init":
+                pdu = Fixtures.init();
+                break;
+            case "search":
+                pdu = Fixtures.search();
+                break;
+            default:
+                pdu = Fixtures.present();
+                break;
+        }
+        bytes = pdu.berEncode().encodingGet();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException, ASN1Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        pdu.berEncode().output(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public BEREncoding input() throws IOException {
+        return BEREncoding.input(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public PDU decode() throws IOException, ASN1Exception {
+        return new PDU(BEREncoding.input(new ByteArrayInputStream(bytes)), true);
+    }
+}
@@ -0,0 +1,139 @@
+package org.xbib.io.iso23950.benchmarks;
+
+import org.xbib.asn1.ASN1BitString;
+import org.xbib.asn1.ASN1Boolean;
+import org.xbib.asn1.ASN1External;
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.ASN1ObjectIdentifier;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.v3.DatabaseName;
+import org.xbib.io.iso23950.v3.ElementSetNames;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.NamePlusRecordRecord;
+import org.xbib.io.iso23950.v3.Options;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentRequestRecordComposition;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.PresentStatus;
+import org.xbib.io.iso23950.v3.ProtocolVersion;
+import org.xbib.io.iso23950.v3.Query;
+import org.xbib.io.iso23950.v3.Records;
+import org.xbib.io.iso23950.v3.ResultSetId;
+import org.xbib.io.iso23950.v3.SearchRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Representative PDUs, built like the client operations build them.
+ */
+final class Fixtures {
+
+    static final int[] USMARC = {1, 2, 840, 10003, 5, 10};
+
+    static final String PQF = "@attr 1=4 @and @attr 4=1 \"linux kernel development\" @attr 1=1003 torvalds";
+
+    private Fixtures() {
+    }
+
+    static PDU init() {
+        InitializeRequest init = new InitializeRequest();
+        init.s_protocolVersion = new ProtocolVersion();
+        init.s_protocolVersion.value = new ASN1BitString(new boolean[]{true, true, true});
+        boolean[] options = new boolean[15];
+        options[0] = true;
+        options[1] = true;
+        options[2] = true;
+        options[7] = true;
+        options[14] = true;
+        init.s_options = new Options();
+        init.s_options.value = new ASN1BitString(options);
+        init.s_preferredMessageSize = new ASN1Integer(1024 * 1024);
+        init.s_exceptionalRecordSize = new ASN1Integer(2 * 1024 * 1024);
+        init.s_implementationId = internationalString("1");
+        init.s_implementationName = internationalString("Java ZClient");
+        init.s_implementationVersion = internationalString("1.00");
+        PDU pdu = new PDU();
+        pdu.c_initRequest = init;
+        return pdu;
+    }
+
+    static PDU search() {
+        SearchRequest search = new SearchRequest();
+        search.s_query = new Query();
+        search.s_query.c_type_1 = new PQFCompiler().compile(PQF);
+        search.s_smallSetUpperBound = new ASN1Integer(0);
+        search.s_largeSetLowerBound = new ASN1Integer(1);
+        search.s_mediumSetPresentNumber = new ASN1Integer(0);
+        search.s_replaceIndicator = new ASN1Boolean(true);
+        search.s_resultSetName = internationalString("default");
+        DatabaseName db = new DatabaseName();
+        db.value = internationalString("Default");
+        search.s_databaseNames = new DatabaseName[]{db};
+        PDU pdu = new PDU();
+        pdu.c_searchRequest = search;
+        return pdu;
+    }
+
+    static PDU present() {
+        PresentRequest pr = new PresentRequest();
+        pr.s_resultSetId = new ResultSetId();
+        pr.s_resultSetId.value = internationalString("default");
+        pr.s_resultSetStartPoint = new ASN1Integer(1);
+        pr.s_numberOfRecordsRequested = new ASN1Integer(10);
+        pr.s_recordComposition = new PresentRequestRecordComposition();
+        pr.s_recordComposition.c_simple = new ElementSetNames();
+        pr.s_recordComposition.c_simple.cGenericElementSetName = internationalString("F");
+        pr.s_preferredRecordSyntax = new ASN1ObjectIdentifier(USMARC);
+        PDU pdu = new PDU();
+        pdu.c_presentRequest = pr;
+        return pdu;
+    }
+
+    static PDU presentResponse(int n) {
+        PresentResponse response = new PresentResponse();
+        response.s_numberOfRecordsReturned = new ASN1Integer(n);
+        response.s_nextResultSetPosition = new ASN1Integer(n + 1);
+        response.s_presentStatus = new PresentStatus();
+        response.s_presentStatus.value = new ASN1Integer(PresentStatus.E_success);
+        response.s_records = new Records();
+        response.s_records.c_responseRecords = new NamePlusRecord[n];
+        for (int i = 0; i < n; i++) {
+            NamePlusRecord nr = new NamePlusRecord();
+            nr.s_record = new NamePlusRecordRecord();
+            nr.s_record.c_retrievalRecord = external(USMARC, record(i));
+            response.s_records.c_responseRecords[i] = nr;
+        }
+        PDU pdu = new PDU();
+        pdu.c_presentResponse = response;
+        return pdu;
+    }
+
+    /**
+     * A MARC-sized record of about 1.5 KB.
+     */
+    static byte[] record(int i) {
+        char[] filler = new char[1500];
+        Arrays.fill(filler, 'x');
+        String s = String.format("%05d", i) + new String(filler) + "\u001d";
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    static ASN1External external(int[] oid, byte[] bytes) {
+        ASN1External external = new ASN1External();
+        external.setDirectReference(new ASN1ObjectIdentifier(oid));
+        external.setcOctetAligned(new ASN1OctetString(bytes));
+        return external;
+    }
+
+    private static InternationalString internationalString(String value) {
+        InternationalString s = new InternationalString();
+        s.value = new ASN1GeneralString(value);
+        return s;
+    }
+}
@@ -0,0 +1,53 @@
+package org.xbib.io.iso23950.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.asn1.ASN1External;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PDU;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of present responses, and extracting the records like the present operation does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PresentResponseBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int records;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws ASN1Exception {
+        bytes = Fixtures.presentResponse(records).berEncode().encodingGet();
+    }
+
+    @Benchmark
+    public PDU decode() throws IOException, ASN1Exception {
+        return new PDU(BEREncoding.input(new ByteArrayInputStream(bytes)), true);
+    }
+
+    @Benchmark
+    public void decodeRecords(Blackhole blackhole) throws IOException, ASN1Exception {
+        PDU pdu = new PDU(BEREncoding.input(new ByteArrayInputStream(bytes)), true);
+        for (NamePlusRecord nr : pdu.c_presentResponse.s_records.c_responseRecords) {
+            ASN1External external = new ASN1External(nr.s_record.c_retrievalRecord.berEncode(), true);
+            blackhole.consume(external.getcOctetAligned().getBytes());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.xbib.io.iso23950.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xbib.cql.CQLParser;
+import org.xbib.io.iso23950.cql.CQLRPNGenerator;
+import org.xbib.io.iso23950.cql.ContextSetRegistry;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.pqf.PQFParser;
+import org.xbib.io.iso23950.pqf.PQFRPNGenerator;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translation of PQF and CQL queries to RPN, including the legacy PQF parser for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QueryTranslationBenchmark {
+
+    private static final String SIMPLE_PQF = "@attr 1=4 @attr 4=1 \"linux kernel development\"";
+
+    private static final String CQL = "dc.title = \"linux kernel\" and dc.creator = torvalds";
+
+    private final PQFCompiler compiler = new PQFCompiler();
+
+    private ContextSetRegistry contexts;
+
+    @Setup
+    public void setup() {
+        contexts = new ContextSetRegistry();
+        Map<String, String> dc = new HashMap<>();
+        dc.put("title", "4");
+        dc.put("creator", "1003");
+        contexts.register("dc", dc);
+    }
+
+    @Benchmark
+    public RPNQuery pqfCompiler() {
+        return compiler.compile(SIMPLE_PQF);
+    }
+
+    @Benchmark
+    public RPNQuery pqfCompilerBoolean() {
+        return compiler.compile(Fixtures.PQF);
+    }
+
+    /**
+     * The lexer, parser and generator used before the compiler, for simple queries only.
+     */
+    @Benchmark
+    public RPNQuery pqfParser() {
+        PQFRPNGenerator generator = new PQFRPNGenerator();
+        PQFParser parser = new PQFParser(new StringReader(SIMPLE_PQF));
+        parser.parse();
+        parser.getResult().accept(generator);
+        return generator.getResult();
+    }
+
+    @Benchmark
+    public RPNQuery cql() {
+        CQLRPNGenerator generator = new CQLRPNGenerator(contexts);
+        CQLParser parser = new CQLParser(CQL);
+        parser.parse();
+        parser.getCQLQuery().accept(generator);
+        return generator.getQueryResult();
+    }
+}
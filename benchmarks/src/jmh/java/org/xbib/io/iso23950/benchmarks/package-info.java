@@ -0,0 +1,4 @@
+/**
+ * JMH benchmarks for the BER codec, query translation and PDU round trips.
+ */
+package org.xbib.io.iso23950.benchmarks;
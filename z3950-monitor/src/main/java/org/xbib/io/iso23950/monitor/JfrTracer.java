@@ -0,0 +1,63 @@
+package org.xbib.io.iso23950.monitor;
+
+import org.xbib.io.iso23950.trace.PDUTrace;
+import org.xbib.io.iso23950.trace.PDUTracer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A tracer committing Flight Recorder events for every PDU sent and received.
+ *
+ * Events are only built when a recording has them enabled, so the tracer can be installed
+ * permanently. A received event starts when the last PDU was sent on the same thread,
+ * so the duration of a response event is the round trip of its request.
+ */
+public class JfrTracer implements PDUTracer {
+
+    private final ThreadLocal<PDUReceivedEvent> pending = new ThreadLocal<>();
+
+    @Override
+    public void sent(PDUTrace trace) {
+        PDUReceivedEvent receivedEvent = new PDUReceivedEvent();
+        if (receivedEvent.isEnabled()) {
+            receivedEvent.begin();
+            pending.set(receivedEvent);
+        }
+        PDUSentEvent event = new PDUSentEvent();
+        if (event.isEnabled()) {
+            event.target = trace.getTarget();
+            event.pduType = trace.getType();
+            event.referenceId = referenceId(trace);
+            event.bytes = trace.getBytes();
+            event.encodeNanos = trace.getCodecNanos();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void received(PDUTrace trace) {
+        PDUReceivedEvent event = pending.get();
+        if (event != null) {
+            pending.remove();
+        } else {
+            event = new PDUReceivedEvent();
+            if (!event.isEnabled()) {
+                return;
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.target = trace.getTarget();
+            event.pduType = trace.getType();
+            event.referenceId = referenceId(trace);
+            event.bytes = trace.getBytes();
+            event.decodeNanos = trace.getCodecNanos();
+            event.commit();
+        }
+    }
+
+    private static String referenceId(PDUTrace trace) {
+        byte[] referenceId = trace.getReferenceId();
+        return referenceId != null ? new String(referenceId, StandardCharsets.ISO_8859_1) : null;
+    }
+}
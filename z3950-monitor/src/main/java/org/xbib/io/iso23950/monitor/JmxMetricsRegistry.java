@@ -0,0 +1,73 @@
+package org.xbib.io.iso23950.monitor;
+
+import org.xbib.io.iso23950.metrics.DefaultMetricsRegistry;
+import org.xbib.io.iso23950.metrics.Operation;
+import org.xbib.io.iso23950.metrics.OperationMetrics;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A metrics registry registering an MXBean for each target and operation, named
+ * {@code org.xbib.io.iso23950:type=ZClient,target="host:port",operation=search}.
+ */
+public class JmxMetricsRegistry extends DefaultMetricsRegistry implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(JmxMetricsRegistry.class.getName());
+
+    private static final String DOMAIN = "org.xbib.io.iso23950";
+
+    private final MBeanServer server;
+
+    private final Queue<ObjectName> names = new ConcurrentLinkedQueue<>();
+
+    public JmxMetricsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxMetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    public static ObjectName objectName(String target, Operation operation) throws JMException {
+        return new ObjectName(DOMAIN + ":type=ZClient,target=" + ObjectName.quote(target) +
+                ",operation=" + operation.name().toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    protected OperationMetrics create(String target, Operation operation) {
+        OperationMetrics metrics = super.create(target, operation);
+        try {
+            ObjectName name = objectName(target, operation);
+            server.registerMBean(new OperationMetricsView(metrics), name);
+            names.add(name);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "can not register metrics of " + target + " " + operation, e);
+        }
+        return metrics;
+    }
+
+    /**
+     * Unregister all MXBeans of this registry.
+     */
+    @Override
+    public void close() {
+        ObjectName name;
+        while ((name = names.poll()) != null) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                logger.log(Level.FINE, e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.xbib.io.iso23950.monitor;
+
+/**
+ * The JMX view of the metrics of one operation type at one target. Latencies are in nanoseconds.
+ */
+public interface OperationMetricsMXBean {
+
+    String getTarget();
+
+    String getOperation();
+
+    long getCount();
+
+    long getErrors();
+
+    long getTimeouts();
+
+    long getDiagnostics();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    long getRecords();
+
+    double getRecordsPerSecond();
+
+    double getTotalMean();
+
+    long getTotal50thPercentile();
+
+    long getTotal99thPercentile();
+
+    long getTotalMax();
+
+    double getEncodeMean();
+
+    long getEncode99thPercentile();
+
+    double getWaitMean();
+
+    long getWait50thPercentile();
+
+    long getWait99thPercentile();
+
+    double getDecodeMean();
+
+    long getDecode99thPercentile();
+}
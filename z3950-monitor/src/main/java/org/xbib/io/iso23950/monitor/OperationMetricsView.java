@@ -0,0 +1,120 @@
+package org.xbib.io.iso23950.monitor;
+
+import org.xbib.io.iso23950.metrics.OperationMetrics;
+
+/**
+ * Exposes operation metrics as an MXBean.
+ */
+class OperationMetricsView implements OperationMetricsMXBean {
+
+    private final OperationMetrics metrics;
+
+    OperationMetricsView(OperationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getTarget() {
+        return metrics.getTarget();
+    }
+
+    @Override
+    public String getOperation() {
+        return metrics.getOperation().name();
+    }
+
+    @Override
+    public long getCount() {
+        return metrics.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return metrics.getErrors();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return metrics.getTimeouts();
+    }
+
+    @Override
+    public long getDiagnostics() {
+        return metrics.getDiagnostics();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return metrics.getBytesSent();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return metrics.getBytesReceived();
+    }
+
+    @Override
+    public long getRecords() {
+        return metrics.getRecords();
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        return metrics.getRecordsPerSecond();
+    }
+
+    @Override
+    public double getTotalMean() {
+        return metrics.getTotal().getMean();
+    }
+
+    @Override
+    public long getTotal50thPercentile() {
+        return metrics.getTotal().getValueAtPercentile(50.0d);
+    }
+
+    @Override
+    public long getTotal99thPercentile() {
+        return metrics.getTotal().getValueAtPercentile(99.0d);
+    }
+
+    @Override
+    public long getTotalMax() {
+        return metrics.getTotal().getMax();
+    }
+
+    @Override
+    public double getEncodeMean() {
+        return metrics.getEncode().getMean();
+    }
+
+    @Override
+    public long getEncode99thPercentile() {
+        return metrics.getEncode().getValueAtPercentile(99.0d);
+    }
+
+    @Override
+    public double getWaitMean() {
+        return metrics.getWait().getMean();
+    }
+
+    @Override
+    public long getWait50thPercentile() {
+        return metrics.getWait().getValueAtPercentile(50.0d);
+    }
+
+    @Override
+    public long getWait99thPercentile() {
+        return metrics.getWait().getValueAtPercentile(99.0d);
+    }
+
+    @Override
+    public double getDecodeMean() {
+        return metrics.getDecode().getMean();
+    }
+
+    @Override
+    public long getDecode99thPercentile() {
+        return metrics.getDecode().getValueAtPercentile(99.0d);
+    }
+}
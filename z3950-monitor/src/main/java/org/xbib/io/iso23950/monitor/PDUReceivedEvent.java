@@ -0,0 +1,38 @@
+package org.xbib.io.iso23950.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a PDU received by a client. The duration is the time since the
+ * last PDU was sent on the same thread, which is the round trip for requests answered by a response.
+ */
+@Name("org.xbib.io.iso23950.PDUReceived")
+@Label("Z39.50 PDU Received")
+@Category("Z39.50")
+@Description("A PDU received from a Z39.50 target")
+@StackTrace(false)
+class PDUReceivedEvent extends jdk.jfr.Event {
+
+    @Label("Target")
+    String target;
+
+    @Label("PDU Type")
+    String pduType;
+
+    @Label("Reference Id")
+    String referenceId;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Decode Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long decodeNanos;
+}
@@ -0,0 +1,37 @@
+package org.xbib.io.iso23950.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a PDU sent by a client.
+ */
+@Name("org.xbib.io.iso23950.PDUSent")
+@Label("Z39.50 PDU Sent")
+@Category("Z39.50")
+@Description("A PDU sent to a Z39.50 target")
+@StackTrace(false)
+class PDUSentEvent extends jdk.jfr.Event {
+
+    @Label("Target")
+    String target;
+
+    @Label("PDU Type")
+    String pduType;
+
+    @Label("Reference Id")
+    String referenceId;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Encode Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long encodeNanos;
+}
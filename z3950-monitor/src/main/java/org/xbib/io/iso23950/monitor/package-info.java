@@ -0,0 +1,4 @@
+/**
+ * JMX monitoring of Z39.50 client metrics, and Flight Recorder events for Z39.50 PDUs.
+ */
+package org.xbib.io.iso23950.monitor;
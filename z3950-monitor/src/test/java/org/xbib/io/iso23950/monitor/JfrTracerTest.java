@@ -0,0 +1,62 @@
+package org.xbib.io.iso23950.monitor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.io.iso23950.trace.PDUTrace;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.ReferenceId;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ *
+ */
+public class JfrTracerTest {
+
+    @Test
+    public void testEvents() throws Exception {
+        JfrTracer tracer = new JfrTracer();
+        Path path = Files.createTempFile("z3950", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.xbib.io.iso23950.PDUSent");
+            recording.enable("org.xbib.io.iso23950.PDUReceived");
+            recording.start();
+            PDU request = new PDU();
+            request.c_searchRequest = new SearchRequest();
+            request.c_searchRequest.s_referenceId = new ReferenceId();
+            request.c_searchRequest.s_referenceId.value = new ASN1OctetString("42");
+            tracer.sent(new PDUTrace("localhost:210", PDUTrace.SENT, request, 100L, 2000L, System.nanoTime()));
+            PDU response = new PDU();
+            response.c_searchResponse = new SearchResponse();
+            tracer.received(new PDUTrace("localhost:210", PDUTrace.RECEIVED, response, 50L, 1000L, System.nanoTime()));
+            recording.stop();
+            recording.dump(path);
+        }
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+            Assert.assertEquals(2, events.size());
+            for (RecordedEvent event : events) {
+                Assert.assertEquals("localhost:210", event.getString("target"));
+                if (event.getEventType().getName().equals("org.xbib.io.iso23950.PDUSent")) {
+                    Assert.assertEquals("searchRequest", event.getString("pduType"));
+                    Assert.assertEquals("42", event.getString("referenceId"));
+                    Assert.assertEquals(100L, event.getLong("bytes"));
+                } else {
+                    Assert.assertEquals("searchResponse", event.getString("pduType"));
+                    Assert.assertEquals(1000L, event.getLong("decodeNanos"));
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
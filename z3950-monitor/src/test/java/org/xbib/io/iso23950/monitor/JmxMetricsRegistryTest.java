@@ -0,0 +1,50 @@
+package org.xbib.io.iso23950.monitor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.health.HealthRegistry;
+import org.xbib.io.iso23950.metrics.Operation;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *
+ */
+public class JmxMetricsRegistryTest {
+
+    @Test
+    public void testRegistry() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = JmxMetricsRegistry.objectName("localhost:210", Operation.SEARCH);
+        try (JmxMetricsRegistry registry = new JmxMetricsRegistry(server)) {
+            registry.get("localhost:210", Operation.SEARCH).record(1000L, 50000L, 2000L, 100L, 200L, 0, true);
+            Assert.assertTrue(server.isRegistered(name));
+            Assert.assertEquals(1L, server.getAttribute(name, "Count"));
+            Assert.assertEquals(1L, server.getAttribute(name, "Diagnostics"));
+            Assert.assertEquals(200L, server.getAttribute(name, "BytesReceived"));
+            Assert.assertEquals("SEARCH", server.getAttribute(name, "Operation"));
+        }
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testHealthRegistry() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = JmxMetricsRegistry.objectName("localhost:211", Operation.SEARCH);
+        try (JmxMetricsRegistry registry = new JmxMetricsRegistry(server)) {
+            HealthRegistry health = HealthRegistry.builder()
+                    .setDelegate(registry)
+                    .setCircuitBreaker(1, 1L, TimeUnit.HOURS)
+                    .build();
+            health.get("localhost:211", Operation.SEARCH).record(1000L, 50000L, 2000L, 100L, 200L, 0, true);
+            // the measurements are exported, and the diagnostic opens the circuit
+            Assert.assertEquals(1L, server.getAttribute(name, "Count"));
+            Assert.assertEquals(1L, server.getAttribute(name, "Diagnostics"));
+            Assert.assertFalse(health.allowRequest("localhost:211"));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.xbib.io.iso23950.server;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Z39.50 association between an origin and the server.
+ */
+public final class Association {
+
+    private final long id;
+
+    private final SocketAddress remoteAddress;
+
+    private final Map<String, Object> attributes;
+
+    private volatile int preferredMessageSize;
+
+    private volatile String user;
+
+    private volatile boolean initialized;
+
+    Association(long id, SocketAddress remoteAddress, int preferredMessageSize) {
+        this.id = id;
+        this.remoteAddress = remoteAddress;
+        this.preferredMessageSize = preferredMessageSize;
+        this.attributes = new ConcurrentHashMap<>();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * The backend state of this association, e.g. result sets by name.
+     *
+     * @return the attributes
+     */
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * The preferred message size, the smaller of the server's maximum and the origin's preferred
+     * message size after init.
+     *
+     * @return the preferred message size
+     */
+    public int getPreferredMessageSize() {
+        return preferredMessageSize;
+    }
+
+    void setPreferredMessageSize(int preferredMessageSize) {
+        this.preferredMessageSize = preferredMessageSize;
+    }
+
+    /**
+     * The user given in the init request.
+     *
+     * @return the user, or null
+     */
+    public String getUser() {
+        return user;
+    }
+
+    void setUser(String user) {
+        this.user = user;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    void setInitialized(boolean initialized) {
+        this.initialized = initialized;
+    }
+
+    @Override
+    public String toString() {
+        return "[association " + id + " " + remoteAddress + "]";
+    }
+}
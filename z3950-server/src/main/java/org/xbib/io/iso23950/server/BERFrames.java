@@ -0,0 +1,92 @@
+package org.xbib.io.iso23950.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the boundaries of BER encoded PDUs in a byte stream, without decoding them.
+ */
+final class BERFrames {
+
+    private BERFrames() {
+    }
+
+    /**
+     * The length of the BER element at the position of the buffer.
+     *
+     * @param buffer the buffer, from position to limit
+     * @param maxLength the maximum length of an element
+     * @return the length of the element, or -1 if the buffer does not hold the complete element yet
+     * @throws IOException if the element is malformed or longer than the maximum
+     */
+    static int length(ByteBuffer buffer, int maxLength) throws IOException {
+        long length = length(buffer, buffer.position(), buffer.limit(), maxLength, 0);
+        return (int) length;
+    }
+
+    private static long length(ByteBuffer buffer, int start, int limit, int maxLength, int depth) throws IOException {
+        if (depth > 64) {
+            throw new IOException("BER nesting too deep");
+        }
+        int p = start;
+        if (p >= limit) {
+            return -1;
+        }
+        boolean constructed = (buffer.get(p) & 0x20) != 0;
+        if ((buffer.get(p++) & 0x1f) == 0x1f) {
+            // high tag number form
+            do {
+                if (p >= limit) {
+                    return -1;
+                }
+            } while ((buffer.get(p++) & 0x80) != 0);
+        }
+        if (p >= limit) {
+            return -1;
+        }
+        int first = buffer.get(p++) & 0xff;
+        if (first == 0x80) {
+            if (!constructed) {
+                throw new IOException("indefinite length for primitive BER element");
+            }
+            // contents up to the end-of-contents octets
+            while (true) {
+                if (p + 2 > limit) {
+                    return -1;
+                }
+                if (buffer.get(p) == 0 && buffer.get(p + 1) == 0) {
+                    return p + 2 - start;
+                }
+                long n = length(buffer, p, limit, maxLength, depth + 1);
+                if (n < 0) {
+                    return -1;
+                }
+                p += n;
+                if (p - start > maxLength) {
+                    throw new IOException("BER element longer than " + maxLength);
+                }
+            }
+        }
+        long contents;
+        if (first < 0x80) {
+            contents = first;
+        } else {
+            int octets = first & 0x7f;
+            if (octets > 4) {
+                throw new IOException("BER length of " + octets + " octets not supported");
+            }
+            if (p + octets > limit) {
+                return -1;
+            }
+            contents = 0;
+            for (int i = 0; i < octets; i++) {
+                contents = (contents << 8) | (buffer.get(p++) & 0xff);
+            }
+        }
+        long length = p - start + contents;
+        if (length > maxLength) {
+            throw new IOException("BER element longer than " + maxLength);
+        }
+        return p + contents <= limit ? length : -1;
+    }
+}
@@ -0,0 +1,85 @@
+package org.xbib.io.iso23950.server;
+
+import org.xbib.io.iso23950.v3.DeleteResultSetRequest;
+import org.xbib.io.iso23950.v3.DeleteResultSetResponse;
+import org.xbib.io.iso23950.v3.DeleteSetStatus;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InitializeResponse;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.ScanRequest;
+import org.xbib.io.iso23950.v3.ScanResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+
+/**
+ * The backend of a Z39.50 server, answering the requests of associations.
+ *
+ * A backend may be called from several worker threads at once, but requests of one
+ * association are always handled one after the other. Result sets and other state
+ * of an association can be kept in its attributes. A backend may throw
+ * {@link org.xbib.io.iso23950.Diagnostics} to answer a search or present request
+ * with a BIB-1 diagnostic. Any other exception closes the association.
+ * {@link Responses} helps to build the responses.
+ */
+public interface Backend {
+
+    /**
+     * Answer an init request. By default, every association is accepted.
+     *
+     * @param association the association
+     * @param request the init request
+     * @return the init response
+     * @throws IOException if the request can not be answered
+     */
+    default InitializeResponse init(Association association, InitializeRequest request) throws IOException {
+        return Responses.init(request, true, association.getPreferredMessageSize());
+    }
+
+    SearchResponse search(Association association, SearchRequest request) throws IOException;
+
+    PresentResponse present(Association association, PresentRequest request) throws IOException;
+
+    /**
+     * Answer a scan request. By default, scan is not supported.
+     *
+     * @param association the association
+     * @param request the scan request
+     * @return the scan response
+     * @throws IOException if the request can not be answered
+     */
+    default ScanResponse scan(Association association, ScanRequest request) throws IOException {
+        return Responses.scanFailure(Responses.UNSUPPORTED_SERVICE, "scan");
+    }
+
+    /**
+     * Answer a delete result set request. By default, the named result sets are removed
+     * from the association attributes.
+     *
+     * @param association the association
+     * @param request the delete result set request
+     * @return the delete result set response
+     * @throws IOException if the request can not be answered
+     */
+    default DeleteResultSetResponse deleteResultSet(Association association, DeleteResultSetRequest request)
+            throws IOException {
+        if (request.sResultSetList == null) {
+            association.getAttributes().clear();
+        } else {
+            for (int i = 0; i < request.sResultSetList.length; i++) {
+                association.getAttributes().remove(request.sResultSetList[i].value.value.get());
+            }
+        }
+        return Responses.deleteResultSet(DeleteSetStatus.E_SUCCESS);
+    }
+
+    /**
+     * Called when an association is closed, by close request or by connection loss.
+     *
+     * @param association the association
+     */
+    default void close(Association association) {
+    }
+}
@@ -0,0 +1,127 @@
+package org.xbib.io.iso23950.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The connection of an association. Reading and writing happen on the selector thread,
+ * the requests are handled one after the other on a worker thread.
+ */
+final class Connection {
+
+    private final SocketChannel channel;
+
+    private final SelectionKey key;
+
+    private final Association association;
+
+    private final Queue<byte[]> requests;
+
+    private final Queue<ByteBuffer> writes;
+
+    private final AtomicBoolean processing;
+
+    private ByteBuffer in;
+
+    private volatile boolean closing;
+
+    Connection(SocketChannel channel, SelectionKey key, Association association) {
+        this.channel = channel;
+        this.key = key;
+        this.association = association;
+        this.requests = new ConcurrentLinkedQueue<>();
+        this.writes = new ConcurrentLinkedQueue<>();
+        this.processing = new AtomicBoolean();
+        this.in = ByteBuffer.allocate(8192);
+    }
+
+    Association getAssociation() {
+        return association;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    Queue<byte[]> getRequests() {
+        return requests;
+    }
+
+    AtomicBoolean getProcessing() {
+        return processing;
+    }
+
+    /**
+     * Read from the channel and split complete PDUs off the input.
+     *
+     * @param maxLength the maximum PDU length
+     * @return true if at least one PDU was queued
+     * @throws IOException if the connection is closed by the origin or the input is malformed
+     */
+    boolean read(int maxLength) throws IOException {
+        if (!in.hasRemaining()) {
+            ByteBuffer buffer = ByteBuffer.allocate(in.capacity() * 2);
+            in.flip();
+            buffer.put(in);
+            in = buffer;
+        }
+        if (channel.read(in) < 0) {
+            throw new IOException("connection closed by origin");
+        }
+        in.flip();
+        boolean queued = false;
+        int length;
+        while (in.hasRemaining() && (length = BERFrames.length(in, maxLength)) > 0) {
+            byte[] b = new byte[length];
+            in.get(b);
+            requests.add(b);
+            queued = true;
+        }
+        in.compact();
+        return queued;
+    }
+
+    void enqueue(byte[] bytes) {
+        writes.add(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Write queued responses.
+     *
+     * @return true if all queued responses have been written
+     * @throws IOException if writing fails
+     */
+    boolean write() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = writes.peek()) != null) {
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return false;
+            }
+            writes.poll();
+        }
+        return true;
+    }
+
+    boolean isClosing() {
+        return closing;
+    }
+
+    void setClosing() {
+        this.closing = true;
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
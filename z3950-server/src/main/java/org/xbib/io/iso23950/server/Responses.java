@@ -0,0 +1,282 @@
+package org.xbib.io.iso23950.server;
+
+import org.xbib.asn1.ASN1BitString;
+import org.xbib.asn1.ASN1Boolean;
+import org.xbib.asn1.ASN1External;
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.ASN1ObjectIdentifier;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.io.iso23950.v3.Close;
+import org.xbib.io.iso23950.v3.CloseReason;
+import org.xbib.io.iso23950.v3.DatabaseName;
+import org.xbib.io.iso23950.v3.DefaultDiagFormat;
+import org.xbib.io.iso23950.v3.DefaultDiagFormatAddinfo;
+import org.xbib.io.iso23950.v3.DeleteResultSetResponse;
+import org.xbib.io.iso23950.v3.DeleteSetStatus;
+import org.xbib.io.iso23950.v3.DiagRec;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InitializeResponse;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.ListEntries;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.NamePlusRecordRecord;
+import org.xbib.io.iso23950.v3.Options;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.PresentStatus;
+import org.xbib.io.iso23950.v3.ProtocolVersion;
+import org.xbib.io.iso23950.v3.Records;
+import org.xbib.io.iso23950.v3.ScanResponse;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+/**
+ * Builders for the responses of a Z39.50 server.
+ */
+public final class Responses {
+
+    /**
+     * BIB-1 diagnostic: permanent system error.
+     */
+    public static final int PERMANENT_SYSTEM_ERROR = 1;
+
+    /**
+     * BIB-1 diagnostic: temporary system error.
+     */
+    public static final int TEMPORARY_SYSTEM_ERROR = 2;
+
+    /**
+     * BIB-1 diagnostic: unsupported service.
+     */
+    public static final int UNSUPPORTED_SERVICE = 3;
+
+    /**
+     * BIB-1 diagnostic: present request out-of-range.
+     */
+    public static final int PRESENT_OUT_OF_RANGE = 13;
+
+    /**
+     * BIB-1 diagnostic: result set no longer exists, unilaterally deleted by target.
+     */
+    public static final int RESULT_SET_DELETED = 27;
+
+    /**
+     * BIB-1 diagnostic: specified result set does not exist.
+     */
+    public static final int RESULT_SET_DOES_NOT_EXIST = 30;
+
+    /**
+     * BIB-1 diagnostic: database unavailable.
+     */
+    public static final int DATABASE_UNAVAILABLE = 109;
+
+    /**
+     * BIB-1 diagnostic: unsupported use attribute.
+     */
+    public static final int UNSUPPORTED_USE_ATTRIBUTE = 114;
+
+    /**
+     * BIB-1 diagnostic: record syntax not supported.
+     */
+    public static final int RECORD_SYNTAX_UNSUPPORTED = 239;
+
+    private static final int[] BIB1_DIAGNOSTICS = {1, 2, 840, 10003, 4, 1};
+
+    /**
+     * Options supported by default: search, present, delete result set, scan, named result sets.
+     */
+    private static final int[] SUPPORTED_OPTIONS = {0, 1, 2, 7, 14};
+
+    private Responses() {
+    }
+
+    /**
+     * Build an init response which agrees to the protocol versions and the supported options
+     * of the request.
+     *
+     * @param request the init request
+     * @param accept true if the association is accepted
+     * @param preferredMessageSize the preferred message size of the server
+     * @return the init response
+     */
+    public static InitializeResponse init(InitializeRequest request, boolean accept, int preferredMessageSize) {
+        InitializeResponse response = new InitializeResponse();
+        response.s_referenceId = request.s_referenceId;
+        response.s_protocolVersion = new ProtocolVersion();
+        response.s_protocolVersion.value = request.s_protocolVersion.value;
+        boolean[] requested = request.s_options.value.get();
+        boolean[] options = new boolean[requested.length];
+        for (int option : SUPPORTED_OPTIONS) {
+            if (option < options.length) {
+                options[option] = requested[option];
+            }
+        }
+        response.s_options = new Options();
+        response.s_options.value = new ASN1BitString(options);
+        int size = Math.min(preferredMessageSize, request.s_preferredMessageSize.get());
+        response.s_preferredMessageSize = new ASN1Integer(size);
+        response.s_exceptionalRecordSize = new ASN1Integer(Math.max(size, request.s_exceptionalRecordSize.get()));
+        response.s_result = new ASN1Boolean(accept);
+        response.s_implementationId = internationalString("xbib");
+        response.s_implementationName = internationalString("xbib Z39.50 server");
+        response.s_implementationVersion = internationalString("1.0");
+        return response;
+    }
+
+    /**
+     * Build a successful search response without piggy-backed records.
+     *
+     * @param count the number of hits
+     * @return the search response
+     */
+    public static SearchResponse search(int count) {
+        SearchResponse response = new SearchResponse();
+        response.s_resultCount = new ASN1Integer(count);
+        response.s_numberOfRecordsReturned = new ASN1Integer(0);
+        response.s_nextResultSetPosition = new ASN1Integer(count > 0 ? 1 : 0);
+        response.s_searchStatus = new ASN1Boolean(true);
+        return response;
+    }
+
+    /**
+     * Build a failed search response.
+     *
+     * @param condition the BIB-1 diagnostic condition
+     * @param addinfo the additional information, or null
+     * @return the search response
+     */
+    public static SearchResponse searchFailure(int condition, String addinfo) {
+        SearchResponse response = new SearchResponse();
+        response.s_resultCount = new ASN1Integer(0);
+        response.s_numberOfRecordsReturned = new ASN1Integer(0);
+        response.s_nextResultSetPosition = new ASN1Integer(0);
+        response.s_searchStatus = new ASN1Boolean(false);
+        response.s_resultSetStatus = new ASN1Integer(3); // none
+        response.s_records = new Records();
+        response.s_records.c_nonSurrogateDiagnostic = diagnostic(condition, addinfo);
+        return response;
+    }
+
+    /**
+     * Build a successful present response.
+     *
+     * @param start the position of the first record in the result set
+     * @param records the records
+     * @return the present response
+     */
+    public static PresentResponse present(int start, NamePlusRecord[] records) {
+        PresentResponse response = new PresentResponse();
+        response.s_numberOfRecordsReturned = new ASN1Integer(records.length);
+        response.s_nextResultSetPosition = new ASN1Integer(start + records.length);
+        response.s_presentStatus = new PresentStatus();
+        response.s_presentStatus.value = new ASN1Integer(PresentStatus.E_success);
+        response.s_records = new Records();
+        response.s_records.c_responseRecords = records;
+        return response;
+    }
+
+    /**
+     * Build a failed present response.
+     *
+     * @param condition the BIB-1 diagnostic condition
+     * @param addinfo the additional information, or null
+     * @return the present response
+     */
+    public static PresentResponse presentFailure(int condition, String addinfo) {
+        PresentResponse response = new PresentResponse();
+        response.s_numberOfRecordsReturned = new ASN1Integer(0);
+        response.s_nextResultSetPosition = new ASN1Integer(0);
+        response.s_presentStatus = new PresentStatus();
+        response.s_presentStatus.value = new ASN1Integer(PresentStatus.E_failure);
+        response.s_records = new Records();
+        response.s_records.c_nonSurrogateDiagnostic = diagnostic(condition, addinfo);
+        return response;
+    }
+
+    /**
+     * Build a failed scan response.
+     *
+     * @param condition the BIB-1 diagnostic condition
+     * @param addinfo the additional information, or null
+     * @return the scan response
+     */
+    public static ScanResponse scanFailure(int condition, String addinfo) {
+        ScanResponse response = new ScanResponse();
+        response.s_scanStatus = new ASN1Integer(ScanResponse.E_failure);
+        response.s_numberOfEntriesReturned = new ASN1Integer(0);
+        response.s_entries = new ListEntries();
+        DiagRec diagRec = new DiagRec();
+        diagRec.cDefaultFormat = diagnostic(condition, addinfo);
+        response.s_entries.s_nonsurrogateDiagnostics = new DiagRec[]{diagRec};
+        return response;
+    }
+
+    /**
+     * Build a delete result set response.
+     *
+     * @param status the delete status, see {@link DeleteSetStatus}
+     * @return the delete result set response
+     */
+    public static DeleteResultSetResponse deleteResultSet(int status) {
+        DeleteResultSetResponse response = new DeleteResultSetResponse();
+        response.sDeleteOperationStatus = new DeleteSetStatus();
+        response.sDeleteOperationStatus.value = new ASN1Integer(status);
+        return response;
+    }
+
+    /**
+     * Build a close PDU.
+     *
+     * @param reason the close reason
+     * @return the close PDU
+     */
+    public static Close close(int reason) {
+        Close close = new Close();
+        close.sCloseReason = new CloseReason();
+        close.sCloseReason.value = new ASN1Integer(reason);
+        return close;
+    }
+
+    /**
+     * Build a response record with octet-aligned content.
+     *
+     * @param database the database name, or null
+     * @param recordSyntax the record syntax OID
+     * @param content the record content
+     * @return the response record
+     */
+    public static NamePlusRecord record(String database, int[] recordSyntax, byte[] content) {
+        NamePlusRecord record = new NamePlusRecord();
+        if (database != null) {
+            record.s_name = new DatabaseName();
+            record.s_name.value = internationalString(database);
+        }
+        ASN1External external = new ASN1External();
+        external.setDirectReference(new ASN1ObjectIdentifier(recordSyntax));
+        external.setcOctetAligned(new ASN1OctetString(content));
+        record.s_record = new NamePlusRecordRecord();
+        record.s_record.c_retrievalRecord = external;
+        return record;
+    }
+
+    /**
+     * Build a BIB-1 diagnostic.
+     *
+     * @param condition the diagnostic condition
+     * @param addinfo the additional information, or null
+     * @return the diagnostic
+     */
+    public static DefaultDiagFormat diagnostic(int condition, String addinfo) {
+        DefaultDiagFormat diag = new DefaultDiagFormat();
+        diag.sDiagnosticSetId = new ASN1ObjectIdentifier(BIB1_DIAGNOSTICS);
+        diag.sCondition = new ASN1Integer(condition);
+        diag.sAddinfo = new DefaultDiagFormatAddinfo();
+        diag.sAddinfo.cV3Addinfo = internationalString(addinfo != null ? addinfo : "");
+        return diag;
+    }
+
+    static InternationalString internationalString(String value) {
+        InternationalString s = new InternationalString();
+        s.value = new ASN1GeneralString(value);
+        return s;
+    }
+}
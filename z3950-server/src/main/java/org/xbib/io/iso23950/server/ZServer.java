@@ -0,0 +1,467 @@
+package org.xbib.io.iso23950.server;
+
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.Diagnostics;
+import org.xbib.io.iso23950.v3.IdAuthentication;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InitializeResponse;
+import org.xbib.io.iso23950.v3.PDU;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A Z39.50 server.
+ *
+ * One selector thread accepts associations, reads requests and writes responses.
+ * Complete request PDUs are decoded and handed to the {@link Backend} on a pool of
+ * worker threads. Requests of one association are handled one after the other,
+ * in the order they arrived, as concurrent operations are not supported.
+ */
+public class ZServer implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ZServer.class.getName());
+
+    private final String host;
+
+    private final int port;
+
+    private final Backend backend;
+
+    private final ExecutorService executor;
+
+    private final boolean shutdownExecutor;
+
+    private final int preferredMessageSize;
+
+    private final int maxMessageSize;
+
+    private final AtomicLong associationIds;
+
+    private final Queue<Connection> pending;
+
+    private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread thread;
+
+    private volatile boolean running;
+
+    private ZServer(String host, int port, Backend backend, ExecutorService executor, boolean shutdownExecutor,
+                    int preferredMessageSize, int maxMessageSize) {
+        this.host = host;
+        this.port = port;
+        this.backend = backend;
+        this.executor = executor;
+        this.shutdownExecutor = shutdownExecutor;
+        this.preferredMessageSize = preferredMessageSize;
+        this.maxMessageSize = maxMessageSize;
+        this.associationIds = new AtomicLong();
+        this.pending = new ConcurrentLinkedQueue<>();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Bind the server socket and start the selector thread.
+     *
+     * @return this server
+     * @throws IOException if the server socket can not be bound
+     */
+    public synchronized ZServer start() throws IOException {
+        if (running) {
+            return this;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(host != null ? new InetSocketAddress(host, port) : new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "z3950-server-" + getPort());
+        thread.setDaemon(true);
+        thread.start();
+        logger.log(Level.INFO, "started on " + serverChannel.socket().getLocalSocketAddress());
+        return this;
+    }
+
+    /**
+     * The port the server listens to, e.g. when an ephemeral port was requested.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : port;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (shutdownExecutor) {
+            executor.shutdown();
+        }
+        logger.log(Level.INFO, "stopped");
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = pending.poll()) != null) {
+                    if (connection.getKey().isValid()) {
+                        connection.getKey().interestOps(connection.getKey().interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable() && connection.read(maxMessageSize)) {
+                                dispatch(connection);
+                            }
+                            if (key.isValid() && key.isWritable() && connection.write()) {
+                                if (connection.isClosing()) {
+                                    close(connection);
+                                } else {
+                                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                                }
+                            }
+                        } catch (IOException e) {
+                            logger.log(Level.FINE, connection.getAssociation() + ": " + e.getMessage());
+                            close(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    close((Connection) key.attachment());
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Association association = new Association(associationIds.incrementAndGet(),
+                channel.socket().getRemoteSocketAddress(), preferredMessageSize);
+        key.attach(new Connection(channel, key, association));
+        logger.log(Level.FINE, "accepted " + association);
+    }
+
+    private void close(Connection connection) {
+        connection.close();
+        if (connection.getProcessing().compareAndSet(false, true)) {
+            // no worker is busy with this association
+            closeAssociation(connection);
+        } else {
+            connection.setClosing();
+        }
+    }
+
+    private void closeAssociation(Connection connection) {
+        connection.getRequests().clear();
+        try {
+            backend.close(connection.getAssociation());
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+        logger.log(Level.FINE, "closed " + connection.getAssociation());
+    }
+
+    private void dispatch(Connection connection) {
+        if (connection.getProcessing().compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> process(connection));
+            } catch (RejectedExecutionException e) {
+                connection.getProcessing().set(false);
+                logger.log(Level.WARNING, "rejected request of " + connection.getAssociation());
+                close(connection);
+            }
+        }
+    }
+
+    /**
+     * Handle the queued requests of a connection, on a worker thread.
+     */
+    private void process(Connection connection) {
+        while (true) {
+            byte[] request;
+            while ((request = connection.getRequests().poll()) != null) {
+                if (!connection.getKey().isValid()) {
+                    closeAssociation(connection);
+                    return;
+                }
+                PDU response;
+                try {
+                    PDU pdu = new PDU(BEREncoding.input(new ByteArrayInputStream(request)), true);
+                    response = handle(connection, pdu);
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, connection.getAssociation() + ": " + e.getMessage(), e);
+                    response = new PDU();
+                    response.c_close = Responses.close(2); // system problem
+                    connection.setClosing();
+                }
+                respond(connection, response);
+                if (connection.isClosing()) {
+                    connection.getRequests().clear();
+                }
+            }
+            connection.getProcessing().set(false);
+            if (!connection.getKey().isValid()) {
+                // the connection was lost while the requests were handled
+                if (connection.getProcessing().compareAndSet(false, true)) {
+                    closeAssociation(connection);
+                }
+                return;
+            }
+            if (connection.getRequests().isEmpty() || !connection.getProcessing().compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private PDU handle(Connection connection, PDU pdu) throws IOException {
+        Association association = connection.getAssociation();
+        PDU response = new PDU();
+        if (pdu.c_initRequest != null) {
+            InitializeRequest request = pdu.c_initRequest;
+            association.setPreferredMessageSize(Math.min(preferredMessageSize,
+                    request.s_preferredMessageSize.get()));
+            association.setUser(user(request.s_idAuthentication));
+            InitializeResponse initResponse = backend.init(association, request);
+            association.setInitialized(initResponse.s_result.get());
+            initResponse.s_referenceId = request.s_referenceId;
+            response.c_initResponse = initResponse;
+        } else if (pdu.c_close != null) {
+            response.c_close = Responses.close(0); // finished
+            response.c_close.sReferenceId = pdu.c_close.sReferenceId;
+            connection.setClosing();
+        } else if (!association.isInitialized()) {
+            response.c_close = Responses.close(6); // protocol error
+            connection.setClosing();
+        } else if (pdu.c_searchRequest != null) {
+            try {
+                response.c_searchResponse = backend.search(association, pdu.c_searchRequest);
+            } catch (Diagnostics e) {
+                response.c_searchResponse = Responses.searchFailure(e.getDiagCode(), e.getDetails());
+            }
+            response.c_searchResponse.s_referenceId = pdu.c_searchRequest.s_referenceId;
+        } else if (pdu.c_presentRequest != null) {
+            try {
+                response.c_presentResponse = backend.present(association, pdu.c_presentRequest);
+            } catch (Diagnostics e) {
+                response.c_presentResponse = Responses.presentFailure(e.getDiagCode(), e.getDetails());
+            }
+            response.c_presentResponse.s_referenceId = pdu.c_presentRequest.s_referenceId;
+        } else if (pdu.c_scanRequest != null) {
+            try {
+                response.c_scanResponse = backend.scan(association, pdu.c_scanRequest);
+            } catch (Diagnostics e) {
+                response.c_scanResponse = Responses.scanFailure(e.getDiagCode(), e.getDetails());
+            }
+            response.c_scanResponse.s_referenceId = pdu.c_scanRequest.s_referenceId;
+        } else if (pdu.c_deleteResultSetRequest != null) {
+            response.c_deleteResultSetResponse = backend.deleteResultSet(association, pdu.c_deleteResultSetRequest);
+            response.c_deleteResultSetResponse.sReferenceId = pdu.c_deleteResultSetRequest.referenceId;
+        } else {
+            logger.log(Level.WARNING, association + ": unsupported request " + pdu);
+            response.c_close = Responses.close(6); // protocol error
+            connection.setClosing();
+        }
+        return response;
+    }
+
+    private void respond(Connection connection, PDU response) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            response.berEncode().output(out);
+            connection.enqueue(out.toByteArray());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, connection.getAssociation() + ": " + e.getMessage(), e);
+            connection.setClosing();
+        }
+        // the selector thread writes the response, or closes the connection if nothing is left to write
+        pending.add(connection);
+        selector.wakeup();
+    }
+
+    private static String user(IdAuthentication idAuthentication) {
+        if (idAuthentication == null) {
+            return null;
+        }
+        if (idAuthentication.c_idPass != null && idAuthentication.c_idPass.s_userId != null) {
+            return idAuthentication.c_idPass.s_userId.value.get();
+        }
+        if (idAuthentication.c_open != null) {
+            String open = idAuthentication.c_open.get();
+            int pos = open.indexOf('/');
+            return pos < 0 ? open : open.substring(0, pos);
+        }
+        return null;
+    }
+
+    /**
+     * Builder for a Z39.50 server.
+     */
+    public static class Builder {
+
+        private String host;
+
+        private int port = 210;
+
+        private Backend backend;
+
+        private ExecutorService executor;
+
+        private int workerThreads = Runtime.getRuntime().availableProcessors();
+
+        private int preferredMessageSize = 1024 * 1024;
+
+        private int maxMessageSize = 16 * 1024 * 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the address to bind to. By default, the server binds to all addresses.
+         *
+         * @param host the host name or address
+         * @return this builder
+         */
+        public Builder setHost(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Set the port, 210 by default, or 0 for an ephemeral port.
+         *
+         * @param port the port
+         * @return this builder
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder setBackend(Backend backend) {
+            this.backend = backend;
+            return this;
+        }
+
+        /**
+         * Set the number of worker threads of the pool created by the server.
+         *
+         * @param workerThreads the number of worker threads
+         * @return this builder
+         */
+        public Builder setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        /**
+         * Use the given worker pool instead of creating one. The pool is not shut down by the server.
+         *
+         * @param executor the worker pool
+         * @return this builder
+         */
+        public Builder setExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder setPreferredMessageSize(int preferredMessageSize) {
+            this.preferredMessageSize = preferredMessageSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum size of a request PDU. Associations sending larger PDUs are closed.
+         *
+         * @param maxMessageSize the maximum size in bytes
+         * @return this builder
+         */
+        public Builder setMaxMessageSize(int maxMessageSize) {
+            this.maxMessageSize = maxMessageSize;
+            return this;
+        }
+
+        public ZServer build() {
+            if (backend == null) {
+                throw new IllegalArgumentException("no backend");
+            }
+            ExecutorService pool = executor;
+            if (pool == null) {
+                AtomicInteger n = new AtomicInteger();
+                pool = Executors.newFixedThreadPool(workerThreads, r -> {
+                    Thread t = new Thread(r, "z3950-server-worker-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            return new ZServer(host, port, backend, pool, executor == null,
+                    preferredMessageSize, maxMessageSize);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.xbib.io.iso23950.server.memory;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * The sorted terms of one index and their posting lists.
+ */
+final class Dictionary {
+
+    private final String[] terms;
+
+    private final int[][] postings;
+
+    private final int size;
+
+    Dictionary(String[] terms, int[][] postings, int size) {
+        this.terms = terms;
+        this.postings = postings;
+        this.size = size;
+    }
+
+    int getTermCount() {
+        return terms.length;
+    }
+
+    int[] exact(String term) {
+        int pos = Arrays.binarySearch(terms, term);
+        return pos >= 0 ? postings[pos] : Postings.EMPTY;
+    }
+
+    int[] prefix(String prefix) {
+        int from = lowerBound(prefix);
+        int to = from;
+        while (to < terms.length && terms[to].startsWith(prefix)) {
+            to++;
+        }
+        return union(from, to);
+    }
+
+    /**
+     * The records with terms in a range, where a null bound is open.
+     */
+    int[] range(String from, boolean fromInclusive, String to, boolean toInclusive) {
+        int start = 0;
+        if (from != null) {
+            start = lowerBound(from);
+            if (!fromInclusive && start < terms.length && terms[start].equals(from)) {
+                start++;
+            }
+        }
+        int end = terms.length;
+        if (to != null) {
+            end = lowerBound(to);
+            if (toInclusive && end < terms.length && terms[end].equals(to)) {
+                end++;
+            }
+        }
+        return union(start, Math.max(start, end));
+    }
+
+    int[] matching(Predicate<String> predicate) {
+        Postings.Union union = new Postings.Union(size);
+        for (int i = 0; i < terms.length; i++) {
+            if (predicate.test(terms[i])) {
+                union.add(postings[i]);
+            }
+        }
+        return union.toArray();
+    }
+
+    private int[] union(int from, int to) {
+        Postings.Union union = new Postings.Union(size);
+        for (int i = from; i < to; i++) {
+            union.add(postings[i]);
+        }
+        return union.toArray();
+    }
+
+    private int lowerBound(String term) {
+        int pos = Arrays.binarySearch(terms, term);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
@@ -0,0 +1,469 @@
+package org.xbib.io.iso23950.server.memory;
+
+import org.xbib.io.iso23950.Diagnostics;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.AttributesPlusTerm;
+import org.xbib.io.iso23950.v3.Operand;
+import org.xbib.io.iso23950.v3.Operator;
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A memory-resident inverted index over MARC records.
+ *
+ * Fields of the records are indexed by BIB-1 use attribute, as words and as phrases.
+ * Posting lists are sorted arrays of record numbers, and the records are kept in
+ * one byte array. The index is immutable once built and can be searched by many
+ * threads at once.
+ */
+public final class InvertedIndex {
+
+    /**
+     * BIB-1 use attribute "any", which covers all subfields of all data fields.
+     */
+    public static final int ANY = 1016;
+
+    private final RecordStore records;
+
+    private final Charset charset;
+
+    private final Map<Integer, Dictionary> words;
+
+    private final Map<Integer, Dictionary> phrases;
+
+    private final int[] all;
+
+    private InvertedIndex(RecordStore records, Charset charset,
+                          Map<Integer, Dictionary> words, Map<Integer, Dictionary> phrases) {
+        this.records = records;
+        this.charset = charset;
+        this.words = words;
+        this.phrases = phrases;
+        this.all = new int[records.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The number of records.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * The ISO 2709 encoded record.
+     *
+     * @param n the record number, starting with 0
+     * @return a copy of the record
+     */
+    public byte[] getRecord(int n) {
+        return records.get(n);
+    }
+
+    public boolean supports(int use) {
+        return words.containsKey(use);
+    }
+
+    /**
+     * Evaluate an RPN structure.
+     *
+     * @param rpn the RPN structure
+     * @param resultSets the result sets by name, for result set operands
+     * @return the sorted record numbers
+     * @throws Diagnostics if the query can not be evaluated
+     */
+    public int[] search(RPNStructure rpn, Function<String, int[]> resultSets) throws Diagnostics {
+        // post-order without recursion, long operator chains are common
+        Deque<RPNStructure> nodes = new ArrayDeque<>();
+        Deque<Boolean> expanded = new ArrayDeque<>();
+        Deque<int[]> results = new ArrayDeque<>();
+        nodes.push(rpn);
+        expanded.push(false);
+        while (!nodes.isEmpty()) {
+            RPNStructure node = nodes.pop();
+            boolean done = expanded.pop();
+            if (node.c_op != null) {
+                results.push(operand(node.c_op, resultSets));
+            } else if (!done) {
+                nodes.push(node);
+                expanded.push(true);
+                nodes.push(node.c_rpnRpnOp.s_rpn2);
+                expanded.push(false);
+                nodes.push(node.c_rpnRpnOp.s_rpn1);
+                expanded.push(false);
+            } else {
+                int[] r2 = results.pop();
+                int[] r1 = results.pop();
+                Operator op = node.c_rpnRpnOp.s_op;
+                if (op.c_and != null) {
+                    results.push(Postings.and(r1, r2));
+                } else if (op.c_or != null) {
+                    results.push(Postings.or(r1, r2));
+                } else if (op.c_and_not != null) {
+                    results.push(Postings.andNot(r1, r2));
+                } else {
+                    throw new Diagnostics(129, "Proximity not supported", null);
+                }
+            }
+        }
+        return results.pop();
+    }
+
+    private int[] operand(Operand operand, Function<String, int[]> resultSets) throws Diagnostics {
+        if (operand.c_resultSet != null) {
+            String name = operand.c_resultSet.value.value.get();
+            int[] result = resultSets.apply(name);
+            if (result == null) {
+                throw new Diagnostics(30, "Specified result set does not exist", name);
+            }
+            return result;
+        }
+        if (operand.c_attrTerm == null) {
+            throw new Diagnostics(108, "Malformed query", "unsupported operand");
+        }
+        AttributesPlusTerm apt = operand.c_attrTerm;
+        int use = ANY;
+        int relation = 3;
+        int structure = 0;
+        int truncation = 100;
+        if (apt.sAttributes != null && apt.sAttributes.value != null) {
+            for (AttributeElement ae : apt.sAttributes.value) {
+                int type = ae.sAttributeType.get();
+                if (ae.attributeValue.cNumeric == null) {
+                    throw new Diagnostics(type == 1 ? 114 : 113, "Unsupported attribute", "complex value");
+                }
+                int value = ae.attributeValue.cNumeric.get();
+                switch (type) {
+                    case 1:
+                        use = value;
+                        break;
+                    case 2:
+                        relation = value;
+                        break;
+                    case 4:
+                        structure = value;
+                        break;
+                    case 5:
+                        truncation = value;
+                        break;
+                    case 3:
+                    case 6:
+                        // position and completeness are not checked
+                        break;
+                    default:
+                        throw new Diagnostics(113, "Unsupported attribute type", Integer.toString(type));
+                }
+            }
+        }
+        if (apt.sTerm.c_general == null) {
+            throw new Diagnostics(229, "Unsupported term type", null);
+        }
+        String term = new String(apt.sTerm.c_general.getBytes(), charset);
+        if (!words.containsKey(use)) {
+            throw new Diagnostics(114, "Unsupported use attribute", Integer.toString(use));
+        }
+        if (relation != 3 && relation != 102 && (relation < 1 || relation > 6)) {
+            throw new Diagnostics(117, "Unsupported relation attribute", Integer.toString(relation));
+        }
+        if (truncation != 100 && (truncation < 1 || truncation > 3)) {
+            throw new Diagnostics(120, "Unsupported truncation attribute", Integer.toString(truncation));
+        }
+        switch (structure) {
+            case 1:
+            case 3:
+            case 108:
+                // phrase, key, string
+                return lookup(phrases.get(use), normalizePhrase(term), relation, truncation);
+            case 0:
+            case 2:
+            case 4:
+            case 5:
+            case 6:
+            case 105:
+            case 106:
+            case 109:
+                break;
+            default:
+                throw new Diagnostics(118, "Unsupported structure attribute", Integer.toString(structure));
+        }
+        List<String> tokens = tokenize(term);
+        if (tokens.isEmpty()) {
+            return Postings.EMPTY;
+        }
+        Dictionary dictionary = words.get(use);
+        int[] result = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            int t = 100;
+            if (truncation == 3 || (truncation == 1 && i == tokens.size() - 1) || (truncation == 2 && i == 0)) {
+                t = truncation;
+            }
+            int[] postings = lookup(dictionary, tokens.get(i), relation, t);
+            result = result == null ? postings : Postings.and(result, postings);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private int[] lookup(Dictionary dictionary, String term, int relation, int truncation) {
+        switch (relation) {
+            case 1:
+                return dictionary.range(null, false, term, false);
+            case 2:
+                return dictionary.range(null, false, term, true);
+            case 4:
+                return dictionary.range(term, true, null, false);
+            case 5:
+                return dictionary.range(term, false, null, false);
+            case 6:
+                return Postings.andNot(all, dictionary.exact(term));
+            default:
+                break;
+        }
+        switch (truncation) {
+            case 1:
+                return dictionary.prefix(term);
+            case 2:
+                return dictionary.matching(s -> s.endsWith(term));
+            case 3:
+                return dictionary.matching(s -> s.contains(term));
+            default:
+                return dictionary.exact(term);
+        }
+    }
+
+    static List<String> tokenize(String value) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            boolean letterOrDigit = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                tokens.add(value.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    static String normalizePhrase(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (String token : tokenize(value)) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(token);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builder for an inverted index.
+     *
+     * By default, the index has these BIB-1 use attributes: title (4), personal and corporate
+     * name (1003), ISBN (7), ISSN (8), subject (21), local number (12), date of publication (31),
+     * publisher (1018) and any (1016).
+     */
+    public static class Builder {
+
+        private final Map<String, List<int[]>> fieldUses;
+
+        private final Map<Integer, Map<String, IntList>> words;
+
+        private final Map<Integer, Map<String, IntList>> phrases;
+
+        private final RecordStore records;
+
+        private Charset charset;
+
+        private Builder() {
+            this.fieldUses = new HashMap<>();
+            this.words = new HashMap<>();
+            this.phrases = new HashMap<>();
+            this.records = new RecordStore();
+            this.charset = StandardCharsets.UTF_8;
+            setIndex(4, "245ab", "246a", "130a", "240a", "440a", "490a");
+            setIndex(1003, "100a", "110a", "111a", "700a", "710a", "711a");
+            setIndex(7, "020a");
+            setIndex(8, "022a");
+            setIndex(21, "600a", "610a", "650a", "651a");
+            setIndex(12, "001");
+            setIndex(31, "260c", "264c");
+            setIndex(1018, "260b", "264b");
+            words.put(ANY, new HashMap<>());
+            phrases.put(ANY, new HashMap<>());
+        }
+
+        /**
+         * Set the fields of a use attribute, replacing earlier fields of that use attribute.
+         * A field is a tag, followed by the subfield codes to index. Without subfield codes,
+         * all subfields, or the whole control field, are indexed.
+         *
+         * @param use the BIB-1 use attribute
+         * @param fields the fields, e.g. {@code 245ab}
+         * @return this builder
+         */
+        public Builder setIndex(int use, String... fields) {
+            if (records.size() > 0) {
+                throw new IllegalStateException("indexes must be set before records are added");
+            }
+            for (List<int[]> uses : fieldUses.values()) {
+                uses.removeIf(u -> u[0] == use);
+            }
+            for (String field : fields) {
+                if (field.length() < 3) {
+                    throw new IllegalArgumentException("invalid field " + field);
+                }
+                String tag = field.substring(0, 3);
+                int[] spec = new int[field.length() - 2];
+                spec[0] = use;
+                for (int i = 3; i < field.length(); i++) {
+                    spec[i - 2] = field.charAt(i);
+                }
+                fieldUses.computeIfAbsent(tag, k -> new ArrayList<>()).add(spec);
+            }
+            words.put(use, new HashMap<>());
+            phrases.put(use, new HashMap<>());
+            return this;
+        }
+
+        /**
+         * Set the character set of the records and of search terms, UTF-8 by default.
+         *
+         * @param charset the character set
+         * @return this builder
+         */
+        public Builder setCharset(Charset charset) {
+            this.charset = charset;
+            return this;
+        }
+
+        /**
+         * Add a record.
+         *
+         * @param record the ISO 2709 encoded record
+         * @return this builder
+         * @throws IOException if the record is malformed
+         */
+        public Builder addRecord(byte[] record) throws IOException {
+            int n = records.size();
+            Iso2709.read(record, charset, (tag, code, value) -> {
+                List<int[]> uses = fieldUses.get(tag);
+                if (uses != null) {
+                    for (int[] spec : uses) {
+                        if (spec.length == 1 || contains(spec, code)) {
+                            index(spec[0], n, value);
+                        }
+                    }
+                }
+                if (code != 0) {
+                    index(ANY, n, value);
+                }
+            });
+            records.add(record);
+            return this;
+        }
+
+        /**
+         * Add the records of a stream of ISO 2709 encoded records.
+         *
+         * @param in the stream
+         * @return this builder
+         * @throws IOException if the stream can not be read or a record is malformed
+         */
+        public Builder addRecords(InputStream in) throws IOException {
+            byte[] record;
+            while ((record = Iso2709.next(in)) != null) {
+                addRecord(record);
+            }
+            return this;
+        }
+
+        public InvertedIndex build() {
+            records.trim();
+            int size = records.size();
+            return new InvertedIndex(records, charset, freeze(words, size), freeze(phrases, size));
+        }
+
+        private void index(int use, int n, String value) {
+            Map<String, IntList> wordPostings = words.get(use);
+            for (String token : tokenize(value)) {
+                wordPostings.computeIfAbsent(token, k -> new IntList()).add(n);
+            }
+            String phrase = normalizePhrase(value);
+            if (!phrase.isEmpty()) {
+                phrases.get(use).computeIfAbsent(phrase, k -> new IntList()).add(n);
+            }
+        }
+
+        private static boolean contains(int[] spec, char code) {
+            for (int i = 1; i < spec.length; i++) {
+                if (spec[i] == code) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Map<Integer, Dictionary> freeze(Map<Integer, Map<String, IntList>> indexes, int size) {
+            Map<Integer, Dictionary> dictionaries = new HashMap<>();
+            for (Map.Entry<Integer, Map<String, IntList>> entry : indexes.entrySet()) {
+                String[] terms = entry.getValue().keySet().toArray(new String[0]);
+                Arrays.sort(terms);
+                int[][] postings = new int[terms.length][];
+                for (int i = 0; i < terms.length; i++) {
+                    postings[i] = entry.getValue().get(terms[i]).toArray();
+                }
+                dictionaries.put(entry.getKey(), new Dictionary(terms, postings, size));
+            }
+            return dictionaries;
+        }
+    }
+
+    /**
+     * A growable posting list. Records are added in ascending order, so duplicates are adjacent.
+     */
+    private static final class IntList {
+
+        private int[] values = new int[4];
+
+        private int size;
+
+        void add(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.xbib.io.iso23950.server.memory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A minimal reader for MARC records in ISO 2709 format.
+ */
+final class Iso2709 {
+
+    static final byte SUBFIELD_DELIMITER = 0x1f;
+
+    static final byte FIELD_TERMINATOR = 0x1e;
+
+    static final byte RECORD_TERMINATOR = 0x1d;
+
+    private Iso2709() {
+    }
+
+    /**
+     * Receives the fields of a record.
+     */
+    interface FieldVisitor {
+
+        /**
+         * A control field, or a subfield of a data field.
+         *
+         * @param tag the field tag
+         * @param code the subfield code, or 0 for a control field
+         * @param value the value
+         */
+        void field(String tag, char code, String value);
+    }
+
+    /**
+     * Read the next record from a stream.
+     *
+     * @param in the stream
+     * @return the record, or null at the end of the stream
+     * @throws IOException if the record is malformed
+     */
+    static byte[] next(InputStream in) throws IOException {
+        byte[] leader = new byte[24];
+        int n = readFully(in, leader, 0, 5);
+        if (n == 0) {
+            return null;
+        }
+        int length = number(leader, 0, 5);
+        if (n < 5 || length < 26) {
+            throw new IOException("bad ISO 2709 record length");
+        }
+        byte[] record = Arrays.copyOf(leader, length);
+        if (readFully(in, record, 5, length - 5) < length - 5) {
+            throw new IOException("truncated ISO 2709 record");
+        }
+        return record;
+    }
+
+    /**
+     * Visit the fields of a record.
+     *
+     * @param record the record
+     * @param charset the character set of the record
+     * @param visitor the visitor
+     * @throws IOException if the record is malformed
+     */
+    static void read(byte[] record, Charset charset, FieldVisitor visitor) throws IOException {
+        if (record.length < 24) {
+            throw new IOException("bad ISO 2709 record length");
+        }
+        int base = number(record, 12, 5);
+        if (base > record.length) {
+            throw new IOException("bad ISO 2709 base address");
+        }
+        for (int p = 24; p + 12 <= base && record[p] != FIELD_TERMINATOR; p += 12) {
+            String tag = new String(record, p, 3, StandardCharsets.US_ASCII);
+            int length = number(record, p + 3, 4);
+            int start = base + number(record, p + 7, 5);
+            int end = Math.min(start + length, record.length);
+            if (end > start && record[end - 1] == FIELD_TERMINATOR) {
+                end--;
+            }
+            if (tag.startsWith("00")) {
+                visitor.field(tag, (char) 0, new String(record, start, end - start, charset));
+                continue;
+            }
+            // skip the indicators
+            int i = start + 2;
+            while (i < end) {
+                if (record[i] != SUBFIELD_DELIMITER || i + 1 >= end) {
+                    i++;
+                    continue;
+                }
+                char code = (char) record[i + 1];
+                int from = i + 2;
+                int to = from;
+                while (to < end && record[to] != SUBFIELD_DELIMITER) {
+                    to++;
+                }
+                visitor.field(tag, code, new String(record, from, to - from, charset));
+                i = to;
+            }
+        }
+    }
+
+    private static int number(byte[] b, int offset, int length) throws IOException {
+        int n = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (b[i] < '0' || b[i] > '9') {
+                throw new IOException("bad ISO 2709 number");
+            }
+            n = n * 10 + (b[i] - '0');
+        }
+        return n;
+    }
+
+    private static int readFully(InputStream in, byte[] b, int offset, int length) throws IOException {
+        int n = 0;
+        while (n < length) {
+            int r = in.read(b, offset + n, length - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,96 @@
+package org.xbib.io.iso23950.server.memory;
+
+import org.xbib.io.iso23950.Diagnostics;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.util.Arrays;
+
+/**
+ * A backend serving MARC records from an {@link InvertedIndex}.
+ *
+ * Result sets are kept as arrays of record numbers in the association attributes,
+ * under the result set name. Records are returned in USMARC record syntax.
+ */
+public class MemoryBackend implements Backend {
+
+    private static final int[] USMARC = {1, 2, 840, 10003, 5, 10};
+
+    private final InvertedIndex index;
+
+    private final String databaseName;
+
+    public MemoryBackend(InvertedIndex index) {
+        this(index, null);
+    }
+
+    /**
+     * Create a backend for one database.
+     *
+     * @param index the index
+     * @param databaseName the database name, or null to accept any database name
+     */
+    public MemoryBackend(InvertedIndex index, String databaseName) {
+        this.index = index;
+        this.databaseName = databaseName;
+    }
+
+    public InvertedIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public SearchResponse search(Association association, SearchRequest request) throws Diagnostics {
+        if (databaseName != null && request.s_databaseNames != null) {
+            for (int i = 0; i < request.s_databaseNames.length; i++) {
+                String name = request.s_databaseNames[i].value.value.get();
+                if (!databaseName.equalsIgnoreCase(name)) {
+                    throw new Diagnostics(Responses.DATABASE_UNAVAILABLE, "Database unavailable", name);
+                }
+            }
+        }
+        RPNQuery query = request.s_query.c_type_1 != null ? request.s_query.c_type_1 : request.s_query.c_type_101;
+        if (query == null) {
+            throw new Diagnostics(107, "Query type not supported", null);
+        }
+        int[] result = index.search(query.s_rpn, name -> {
+            Object value = association.getAttributes().get(name);
+            return value instanceof int[] ? (int[]) value : null;
+        });
+        association.getAttributes().put(request.s_resultSetName.value.get(), result);
+        return Responses.search(result.length);
+    }
+
+    @Override
+    public PresentResponse present(Association association, PresentRequest request) throws Diagnostics {
+        String name = request.s_resultSetId.value.value.get();
+        Object value = association.getAttributes().get(name);
+        if (!(value instanceof int[])) {
+            throw new Diagnostics(Responses.RESULT_SET_DOES_NOT_EXIST, "Specified result set does not exist", name);
+        }
+        if (request.s_preferredRecordSyntax != null
+                && !Arrays.equals(USMARC, request.s_preferredRecordSyntax.get())) {
+            throw new Diagnostics(Responses.RECORD_SYNTAX_UNSUPPORTED, "Record syntax not supported",
+                    request.s_preferredRecordSyntax.toString());
+        }
+        int[] result = (int[]) value;
+        int start = request.s_resultSetStartPoint.get();
+        int n = request.s_numberOfRecordsRequested.get();
+        if (start < 1 || n < 0 || start - 1 + n > result.length) {
+            throw new Diagnostics(Responses.PRESENT_OUT_OF_RANGE, "Present request out of range", null);
+        }
+        NamePlusRecord[] records = new NamePlusRecord[n];
+        String database = databaseName != null ? databaseName : "default";
+        for (int i = 0; i < n; i++) {
+            records[i] = Responses.record(database, USMARC, index.getRecord(result[start - 1 + i]));
+        }
+        return Responses.present(start, records);
+    }
+}
@@ -0,0 +1,154 @@
+package org.xbib.io.iso23950.server.memory;
+
+import java.util.Arrays;
+
+/**
+ * Operations on posting lists, which are sorted arrays of distinct record numbers.
+ */
+final class Postings {
+
+    static final int[] EMPTY = new int[0];
+
+    private Postings() {
+    }
+
+    static int[] and(int[] a, int[] b) {
+        if (a.length > b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        int[] result = new int[a.length];
+        int n = 0;
+        if (a.length * 32 < b.length) {
+            // gallop through the long list
+            int from = 0;
+            for (int v : a) {
+                int pos = Arrays.binarySearch(b, from, b.length, v);
+                if (pos >= 0) {
+                    result[n++] = v;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+                if (from >= b.length) {
+                    break;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    static int[] or(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[n++] = a[i++];
+        }
+        while (j < b.length) {
+            result[n++] = b[j++];
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    static int[] andNot(int[] a, int[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length) {
+            if (j >= b.length || a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Union of many posting lists through a bitmap over all records.
+     */
+    static final class Union {
+
+        private final long[] bits;
+
+        private int lists;
+
+        private int[] single;
+
+        Union(int size) {
+            this.bits = new long[(size + 63) >>> 6];
+        }
+
+        void add(int[] postings) {
+            if (lists++ == 0) {
+                single = postings;
+            }
+            for (int v : postings) {
+                bits[v >>> 6] |= 1L << v;
+            }
+        }
+
+        int[] toArray() {
+            if (lists == 0) {
+                return EMPTY;
+            }
+            if (lists == 1) {
+                return single;
+            }
+            int n = 0;
+            for (long word : bits) {
+                n += Long.bitCount(word);
+            }
+            int[] result = new int[n];
+            int k = 0;
+            for (int i = 0; i < bits.length; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    result[k++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return result;
+        }
+    }
+}
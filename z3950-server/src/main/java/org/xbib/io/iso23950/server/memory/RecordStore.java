@@ -0,0 +1,46 @@
+package org.xbib.io.iso23950.server.memory;
+
+import java.util.Arrays;
+
+/**
+ * Records kept back to back in one byte array.
+ */
+final class RecordStore {
+
+    private byte[] data;
+
+    private int[] offsets;
+
+    private int size;
+
+    RecordStore() {
+        this.data = new byte[64 * 1024];
+        this.offsets = new int[1025];
+    }
+
+    int add(byte[] record) {
+        int end = offsets[size] + record.length;
+        if (end > data.length) {
+            data = Arrays.copyOf(data, Math.max(end, data.length * 2));
+        }
+        System.arraycopy(record, 0, data, offsets[size], record.length);
+        if (size + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[++size] = end;
+        return size - 1;
+    }
+
+    byte[] get(int n) {
+        return Arrays.copyOfRange(data, offsets[n], offsets[n + 1]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void trim() {
+        data = Arrays.copyOf(data, offsets[size]);
+        offsets = Arrays.copyOf(offsets, size + 1);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * A memory-resident inverted index backend for MARC records.
+ */
+package org.xbib.io.iso23950.server.memory;
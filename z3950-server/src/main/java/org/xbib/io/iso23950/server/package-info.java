@@ -0,0 +1,4 @@
+/**
+ * A Z39.50 target (server) framework with a pluggable backend.
+ */
+package org.xbib.io.iso23950.server;
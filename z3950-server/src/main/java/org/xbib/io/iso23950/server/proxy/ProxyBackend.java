@@ -0,0 +1,446 @@
+package org.xbib.io.iso23950.server.proxy;
+
+import org.xbib.asn1.ASN1Boolean;
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.cache.SearchKey;
+import org.xbib.io.iso23950.cache.SingleFlight;
+import org.xbib.io.iso23950.pool.ZClientPool;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.PresentStatus;
+import org.xbib.io.iso23950.v3.ResultSetId;
+import org.xbib.io.iso23950.v3.ScanRequest;
+import org.xbib.io.iso23950.v3.ScanResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A backend forwarding searches, presents and scans to an upstream target.
+ *
+ * Any number of inbound associations share the associations of a {@link ZClientPool}.
+ * Identical searches, by database names and query, share one upstream result set
+ * for a time-to-live, and concurrent identical searches are executed only once.
+ * Presented records are cached by upstream result set, record syntax, element set name
+ * and position, so repeated presents of the same records do not reach the target.
+ * Records are forwarded as they are, without decoding.
+ */
+public class ProxyBackend implements Backend {
+
+    private static final Logger logger = Logger.getLogger(ProxyBackend.class.getName());
+
+    private final ZClientPool pool;
+
+    private final long searchTtlNanos;
+
+    private final RecordCache recordCache;
+
+    private final ConcurrentMap<SearchKey, UpstreamResultSet> searches = new ConcurrentHashMap<>();
+
+    private final SingleFlight<SearchKey, Outcome> singleFlight = new SingleFlight<>();
+
+    private final AtomicLong resultSetCounter = new AtomicLong();
+
+    private final AtomicLong upstreamSearches = new AtomicLong();
+
+    private final AtomicLong upstreamPresents = new AtomicLong();
+
+    private ProxyBackend(ZClientPool pool, long searchTtlNanos, RecordCache recordCache) {
+        this.pool = pool;
+        this.searchTtlNanos = searchTtlNanos;
+        this.recordCache = recordCache;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public SearchResponse search(Association association, SearchRequest request) throws IOException {
+        SearchKey key = new SearchKey(null, 0, databaseNames(request), request.s_query.berEncode().encodingGet(), null);
+        UpstreamResultSet resultSet = lookup(key);
+        if (resultSet == null) {
+            Outcome outcome;
+            try {
+                outcome = singleFlight.execute(key, () -> {
+                    UpstreamResultSet rs = lookup(key);
+                    return rs != null ? new Outcome(rs, null) : searchUpstream(key, request);
+                });
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "upstream search failed: " + e.getMessage(), e);
+                return Responses.searchFailure(Responses.TEMPORARY_SYSTEM_ERROR, e.getMessage());
+            }
+            if (outcome.failure != null) {
+                return copy(outcome.failure);
+            }
+            resultSet = outcome.resultSet;
+        }
+        association.getAttributes().put(request.s_resultSetName.value.get(), resultSet);
+        return Responses.search(resultSet.getCount());
+    }
+
+    @Override
+    public PresentResponse present(Association association, PresentRequest request) throws IOException {
+        String name = request.s_resultSetId.value.value.get();
+        Object value = association.getAttributes().get(name);
+        if (!(value instanceof UpstreamResultSet)) {
+            return Responses.presentFailure(Responses.RESULT_SET_DOES_NOT_EXIST, name);
+        }
+        UpstreamResultSet resultSet = (UpstreamResultSet) value;
+        int start = request.s_resultSetStartPoint.get();
+        int n = request.s_numberOfRecordsRequested.get();
+        if (start < 1 || n < 0 || start - 1 + n > resultSet.getCount()) {
+            return Responses.presentFailure(Responses.PRESENT_OUT_OF_RANGE, null);
+        }
+        String format = format(request);
+        NamePlusRecord[] records = new NamePlusRecord[n];
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < n; i++) {
+            records[i] = format != null ? recordCache.get(resultSet, format, start + i) : null;
+            if (records[i] == null) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        PresentResponse response = null;
+        if (first >= 0) {
+            int position = start + first;
+            int remaining = last - first + 1;
+            try {
+                while (remaining > 0) {
+                    response = presentUpstream(resultSet, request, position, remaining);
+                    NamePlusRecord[] returned = response.s_records != null ?
+                            response.s_records.c_responseRecords : null;
+                    if (returned == null || returned.length == 0) {
+                        break;
+                    }
+                    for (int i = 0; i < returned.length && i < remaining; i++) {
+                        records[position - start + i] = returned[i];
+                        if (format != null && returned[i].s_record.c_retrievalRecord != null) {
+                            recordCache.put(resultSet, format, position + i, returned[i]);
+                        }
+                    }
+                    position += returned.length;
+                    remaining -= returned.length;
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "upstream present failed: " + e.getMessage(), e);
+                return Responses.presentFailure(Responses.TEMPORARY_SYSTEM_ERROR, e.getMessage());
+            }
+        }
+        int k = 0;
+        while (k < n && records[k] != null) {
+            k++;
+        }
+        if (k == n) {
+            return Responses.present(start, records);
+        }
+        if (k == 0) {
+            return copy(response);
+        }
+        PresentResponse partial = Responses.present(start, Arrays.copyOf(records, k));
+        partial.s_presentStatus.value = response.s_presentStatus.value;
+        return partial;
+    }
+
+    @Override
+    public ScanResponse scan(Association association, ScanRequest request) throws IOException {
+        ScanRequest upstream = new ScanRequest();
+        upstream.s_databaseNames = request.s_databaseNames;
+        upstream.s_attributeSet = request.s_attributeSet;
+        upstream.s_termListAndStartPoint = request.s_termListAndStartPoint;
+        upstream.s_stepSize = request.s_stepSize;
+        upstream.s_numberOfTermsRequested = request.s_numberOfTermsRequested;
+        upstream.s_preferredPositionInResponse = request.s_preferredPositionInResponse;
+        PDU pdu = new PDU();
+        pdu.c_scanRequest = upstream;
+        ZClient client = pool.borrow();
+        boolean reusable = false;
+        try {
+            PDU response = exchange(client, pdu);
+            if (response.c_scanResponse == null) {
+                throw new IOException(client.getHost() + ": unexpected response to scan request");
+            }
+            reusable = true;
+            return response.c_scanResponse;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "upstream scan failed: " + e.getMessage(), e);
+            return Responses.scanFailure(Responses.TEMPORARY_SYSTEM_ERROR, e.getMessage());
+        } finally {
+            pool.release(client, reusable);
+        }
+    }
+
+    public ZClientPool getPool() {
+        return pool;
+    }
+
+    public long getUpstreamSearches() {
+        return upstreamSearches.get();
+    }
+
+    public long getUpstreamPresents() {
+        return upstreamPresents.get();
+    }
+
+    public int getCachedRecords() {
+        return recordCache.size();
+    }
+
+    private UpstreamResultSet lookup(SearchKey key) {
+        UpstreamResultSet resultSet = searches.get(key);
+        if (resultSet != null && resultSet.isExpired(System.nanoTime())) {
+            searches.remove(key, resultSet);
+            return null;
+        }
+        return resultSet;
+    }
+
+    private Outcome searchUpstream(SearchKey key, SearchRequest request) throws IOException {
+        SearchRequest upstream = new SearchRequest();
+        upstream.s_smallSetUpperBound = new ASN1Integer(0);
+        upstream.s_largeSetLowerBound = new ASN1Integer(1);
+        upstream.s_mediumSetPresentNumber = new ASN1Integer(0);
+        upstream.s_replaceIndicator = new ASN1Boolean(true);
+        upstream.s_resultSetName = new InternationalString();
+        upstream.s_resultSetName.value = new ASN1GeneralString("proxy-" + resultSetCounter.incrementAndGet());
+        upstream.s_databaseNames = request.s_databaseNames;
+        upstream.s_query = request.s_query;
+        upstream.s_additionalSearchInfo = request.s_additionalSearchInfo;
+        ZClient client = pool.borrow();
+        boolean reusable = false;
+        try {
+            SearchResponse response = search(client, upstream);
+            reusable = true;
+            if (response.s_searchStatus == null || !response.s_searchStatus.get()) {
+                return new Outcome(null, response);
+            }
+            UpstreamResultSet resultSet = new UpstreamResultSet(upstream, response.s_resultCount.get(),
+                    System.nanoTime() + searchTtlNanos, client);
+            searches.put(key, resultSet);
+            return new Outcome(resultSet, null);
+        } finally {
+            pool.release(client, reusable);
+        }
+    }
+
+    private PresentResponse presentUpstream(UpstreamResultSet resultSet, PresentRequest request,
+                                            int position, int count) throws IOException {
+        PresentRequest upstream = new PresentRequest();
+        upstream.s_resultSetId = new ResultSetId();
+        upstream.s_resultSetId.value = resultSet.getRequest().s_resultSetName;
+        upstream.s_resultSetStartPoint = new ASN1Integer(position);
+        upstream.s_numberOfRecordsRequested = new ASN1Integer(count);
+        upstream.s_recordComposition = request.s_recordComposition;
+        upstream.s_preferredRecordSyntax = request.s_preferredRecordSyntax;
+        upstream.s_maxRecordSize = request.s_maxRecordSize;
+        ZClient client = pool.borrow(resultSet.getHolder());
+        boolean reusable = false;
+        try {
+            if (client != resultSet.getHolder()) {
+                searchAgain(client, resultSet);
+            }
+            PresentResponse response = present(client, upstream);
+            if (isResultSetLost(response)) {
+                searchAgain(client, resultSet);
+                response = present(client, upstream);
+            }
+            reusable = true;
+            return response;
+        } finally {
+            pool.release(client, reusable);
+        }
+    }
+
+    /**
+     * Repeat the search of an upstream result set on an association that does not hold it.
+     */
+    private void searchAgain(ZClient client, UpstreamResultSet resultSet) throws IOException {
+        SearchResponse response = search(client, resultSet.getRequest());
+        if (response.s_searchStatus == null || !response.s_searchStatus.get()) {
+            throw new IOException(client.getHost() + ": repeated search of " + resultSet.getName() + " failed");
+        }
+        if (response.s_resultCount.get() != resultSet.getCount()) {
+            logger.log(Level.WARNING, "result count of " + resultSet.getName() + " changed from " +
+                    resultSet.getCount() + " to " + response.s_resultCount.get());
+        }
+        resultSet.setHolder(client);
+    }
+
+    private SearchResponse search(ZClient client, SearchRequest request) throws IOException {
+        PDU pdu = new PDU();
+        pdu.c_searchRequest = request;
+        upstreamSearches.incrementAndGet();
+        PDU response = exchange(client, pdu);
+        if (response.c_searchResponse == null) {
+            throw new IOException(client.getHost() + ": unexpected response to search request");
+        }
+        return response.c_searchResponse;
+    }
+
+    private PresentResponse present(ZClient client, PresentRequest request) throws IOException {
+        PDU pdu = new PDU();
+        pdu.c_presentRequest = request;
+        upstreamPresents.incrementAndGet();
+        PDU response = exchange(client, pdu);
+        if (response.c_presentResponse == null) {
+            throw new IOException(client.getHost() + ": unexpected response to present request");
+        }
+        return response.c_presentResponse;
+    }
+
+    private static PDU exchange(ZClient client, PDU pdu) throws IOException {
+        client.writePDU(pdu);
+        return client.readPDU();
+    }
+
+    private static boolean isResultSetLost(PresentResponse response) {
+        if (response.s_records == null || response.s_records.c_nonSurrogateDiagnostic == null) {
+            return false;
+        }
+        int condition = response.s_records.c_nonSurrogateDiagnostic.sCondition.get();
+        return condition == Responses.RESULT_SET_DELETED || condition == Responses.RESULT_SET_DOES_NOT_EXIST;
+    }
+
+    private static List<String> databaseNames(SearchRequest request) {
+        List<String> names = new ArrayList<>();
+        if (request.s_databaseNames != null) {
+            for (int i = 0; i < request.s_databaseNames.length; i++) {
+                names.add(request.s_databaseNames[i].value.value.get());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The cache qualifier of the records requested by a present request, or null if the records
+     * are not cacheable because of database specific or complex record composition.
+     */
+    private static String format(PresentRequest request) {
+        String syntax = request.s_preferredRecordSyntax != null ? request.s_preferredRecordSyntax.toString() : "";
+        if (request.s_recordComposition == null) {
+            return syntax + "|";
+        }
+        if (request.s_recordComposition.c_simple != null &&
+                request.s_recordComposition.c_simple.cGenericElementSetName != null) {
+            return syntax + "|" + request.s_recordComposition.c_simple.cGenericElementSetName.value.get();
+        }
+        return null;
+    }
+
+    private static SearchResponse copy(SearchResponse response) {
+        SearchResponse copy = new SearchResponse();
+        copy.s_resultCount = response.s_resultCount;
+        copy.s_numberOfRecordsReturned = response.s_numberOfRecordsReturned;
+        copy.s_nextResultSetPosition = response.s_nextResultSetPosition;
+        copy.s_searchStatus = response.s_searchStatus;
+        copy.s_resultSetStatus = response.s_resultSetStatus;
+        copy.s_presentStatus = response.s_presentStatus;
+        copy.s_records = response.s_records;
+        return copy;
+    }
+
+    private static PresentResponse copy(PresentResponse response) {
+        PresentResponse copy = new PresentResponse();
+        copy.s_numberOfRecordsReturned = response.s_numberOfRecordsReturned;
+        copy.s_nextResultSetPosition = response.s_nextResultSetPosition;
+        copy.s_presentStatus = response.s_presentStatus;
+        if (copy.s_presentStatus == null) {
+            copy.s_presentStatus = new PresentStatus();
+            copy.s_presentStatus.value = new ASN1Integer(PresentStatus.E_failure);
+        }
+        copy.s_records = response.s_records;
+        return copy;
+    }
+
+    /**
+     * The outcome of an upstream search, shared by all concurrent identical searches.
+     */
+    private static class Outcome {
+
+        private final UpstreamResultSet resultSet;
+
+        private final SearchResponse failure;
+
+        Outcome(UpstreamResultSet resultSet, SearchResponse failure) {
+            this.resultSet = resultSet;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Builder for a proxy backend.
+     */
+    public static class Builder {
+
+        private ZClientPool pool;
+
+        private long searchTtlNanos = TimeUnit.MINUTES.toNanos(5);
+
+        private long recordTtlNanos = TimeUnit.MINUTES.toNanos(10);
+
+        private int recordCacheSize = 10000;
+
+        private Builder() {
+        }
+
+        public Builder setPool(ZClientPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Set how long identical searches share an upstream result set, 5 minutes by default.
+         *
+         * @param ttl the time to live
+         * @param unit the time unit
+         * @return this builder
+         */
+        public Builder setSearchTtl(long ttl, TimeUnit unit) {
+            this.searchTtlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * Set the size and time to live of the record cache, 10000 records for 10 minutes by default.
+         *
+         * @param maxSize the maximum number of records, or 0 to disable the record cache
+         * @param ttl the time to live
+         * @param unit the time unit
+         * @return this builder
+         */
+        public Builder setRecordCache(int maxSize, long ttl, TimeUnit unit) {
+            this.recordCacheSize = maxSize;
+            this.recordTtlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        public ProxyBackend build() {
+            if (pool == null) {
+                throw new IllegalStateException("no pool");
+            }
+            return new ProxyBackend(pool, searchTtlNanos, new RecordCache(recordTtlNanos, recordCacheSize));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.xbib.io.iso23950.server.proxy;
+
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A time-to-live cache for presented records, keyed by upstream result set,
+ * record syntax, element set name and position.
+ */
+final class RecordCache {
+
+    private final long ttlNanos;
+
+    private final int maxSize;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    RecordCache(long ttlNanos, int maxSize) {
+        this.ttlNanos = ttlNanos;
+        this.maxSize = maxSize;
+    }
+
+    NamePlusRecord get(UpstreamResultSet resultSet, String format, int position) {
+        Key key = new Key(resultSet, format, position);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.record;
+    }
+
+    void put(UpstreamResultSet resultSet, String format, int position, NamePlusRecord record) {
+        if (maxSize <= 0) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(new Key(resultSet, format, position), new Entry(record, System.nanoTime() + ttlNanos));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        entries.values().removeIf(e -> e.isExpired(now));
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static final class Key {
+
+        private final UpstreamResultSet resultSet;
+
+        private final String format;
+
+        private final int position;
+
+        Key(UpstreamResultSet resultSet, String format, int position) {
+            this.resultSet = resultSet;
+            this.format = format;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return resultSet == other.resultSet && position == other.position && format.equals(other.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(resultSet) * 31 + format.hashCode()) * 31 + position;
+        }
+    }
+
+    private static class Entry {
+
+        private final NamePlusRecord record;
+
+        private final long expires;
+
+        Entry(NamePlusRecord record, long expires) {
+            this.record = record;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return now - expires >= 0;
+        }
+    }
+}
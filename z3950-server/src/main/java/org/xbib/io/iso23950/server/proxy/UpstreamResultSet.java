@@ -0,0 +1,52 @@
+package org.xbib.io.iso23950.server.proxy;
+
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.v3.SearchRequest;
+
+/**
+ * A result set on the upstream target, shared by all inbound result sets of the same search.
+ *
+ * The result set lives on the association that searched it last. If a present has to use
+ * another association, the search is repeated there under the same name.
+ */
+final class UpstreamResultSet {
+
+    private final SearchRequest request;
+
+    private final int count;
+
+    private final long expires;
+
+    private volatile ZClient holder;
+
+    UpstreamResultSet(SearchRequest request, int count, long expires, ZClient holder) {
+        this.request = request;
+        this.count = count;
+        this.expires = expires;
+        this.holder = holder;
+    }
+
+    SearchRequest getRequest() {
+        return request;
+    }
+
+    String getName() {
+        return request.s_resultSetName.value.get();
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean isExpired(long now) {
+        return now - expires >= 0;
+    }
+
+    ZClient getHolder() {
+        return holder;
+    }
+
+    void setHolder(ZClient holder) {
+        this.holder = holder;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * A caching Z39.50 proxy sharing a bounded pool of upstream associations.
+ */
+package org.xbib.io.iso23950.server.proxy;
@@ -0,0 +1,267 @@
+package org.xbib.io.iso23950.server.replay;
+
+import org.xbib.io.iso23950.capture.PDUCapture;
+import org.xbib.io.iso23950.capture.PDUCaptureReader;
+import org.xbib.io.iso23950.capture.PDUFrame;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.DeleteResultSetRequest;
+import org.xbib.io.iso23950.v3.DeleteResultSetResponse;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InitializeResponse;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.ScanRequest;
+import org.xbib.io.iso23950.v3.ScanResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A backend answering requests with the responses of a PDU capture.
+ *
+ * Requests and responses of each captured association are paired in order. A request
+ * is answered with the response to the identical captured request, or else with the
+ * response to any captured request of the same kind. Captured responses are used in
+ * turn. The response time of the target can be replayed, scaled by a speed factor.
+ */
+public class ReplayBackend implements Backend {
+
+    private static final Logger logger = Logger.getLogger(ReplayBackend.class.getName());
+
+    private final Map<ByteBuffer, Exchanges> identical;
+
+    private final Map<String, Exchanges> byKind;
+
+    private final double speed;
+
+    private final AtomicLong misses;
+
+    private int size;
+
+    /**
+     * Create a replay backend.
+     *
+     * @param reader the capture, read to the end but not closed
+     * @param speed the speed of the replay, 1 for the captured response times, 2 for twice as fast,
+     *              and 0 for no delays
+     * @throws IOException if the capture can not be read
+     */
+    public ReplayBackend(PDUCaptureReader reader, double speed) throws IOException {
+        this.identical = new HashMap<>();
+        this.byKind = new HashMap<>();
+        this.speed = speed;
+        this.misses = new AtomicLong();
+        Map<Integer, PDUFrame> pending = new HashMap<>();
+        PDUFrame frame;
+        while ((frame = reader.read()) != null) {
+            if (frame.getDirection() == PDUCapture.OUTGOING) {
+                pending.put(frame.getStream(), frame);
+            } else {
+                PDUFrame request = pending.remove(frame.getStream());
+                if (request != null) {
+                    String kind = kind(request.decode());
+                    if (kind != null) {
+                        Exchange exchange = new Exchange(frame, frame.getNanos() - request.getNanos());
+                        identical.computeIfAbsent(ByteBuffer.wrap(request.getBytes()), k -> new Exchanges()).add(exchange);
+                        byKind.computeIfAbsent(kind, k -> new Exchanges()).add(exchange);
+                        size++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Serve a capture on a local port.
+     *
+     * @param args the capture file, the port (default 210) and the speed (default 1)
+     * @throws Exception if the capture can not be read or the port can not be bound
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: ReplayBackend <capture> [port] [speed]");
+            System.exit(1);
+        }
+        ReplayBackend backend;
+        try (PDUCaptureReader reader = PDUCaptureReader.open(Paths.get(args[0]))) {
+            backend = new ReplayBackend(reader, args.length > 2 ? Double.parseDouble(args[2]) : 1.0d);
+        }
+        logger.log(Level.INFO, "replaying " + backend.size() + " captured exchanges");
+        ZServer server = ZServer.builder()
+                .setHost("localhost")
+                .setPort(args.length > 1 ? Integer.parseInt(args[1]) : 210)
+                .setBackend(backend)
+                .build()
+                .start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }));
+        Thread.currentThread().join();
+    }
+
+    /**
+     * The number of captured request and response pairs.
+     *
+     * @return the number of exchanges
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of requests without a captured response of the same kind.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public InitializeResponse init(Association association, InitializeRequest request) throws IOException {
+        PDU pdu = new PDU();
+        pdu.c_initRequest = request;
+        PDU response = replay(pdu);
+        if (response == null || response.c_initResponse == null) {
+            return Backend.super.init(association, request);
+        }
+        return response.c_initResponse;
+    }
+
+    @Override
+    public SearchResponse search(Association association, SearchRequest request) throws IOException {
+        PDU pdu = new PDU();
+        pdu.c_searchRequest = request;
+        PDU response = replay(pdu);
+        if (response == null || response.c_searchResponse == null) {
+            return Responses.searchFailure(Responses.PERMANENT_SYSTEM_ERROR, "no captured search response");
+        }
+        return response.c_searchResponse;
+    }
+
+    @Override
+    public PresentResponse present(Association association, PresentRequest request) throws IOException {
+        PDU pdu = new PDU();
+        pdu.c_presentRequest = request;
+        PDU response = replay(pdu);
+        if (response == null || response.c_presentResponse == null) {
+            return Responses.presentFailure(Responses.PERMANENT_SYSTEM_ERROR, "no captured present response");
+        }
+        return response.c_presentResponse;
+    }
+
+    @Override
+    public ScanResponse scan(Association association, ScanRequest request) throws IOException {
+        PDU pdu = new PDU();
+        pdu.c_scanRequest = request;
+        PDU response = replay(pdu);
+        if (response == null || response.c_scanResponse == null) {
+            return Responses.scanFailure(Responses.PERMANENT_SYSTEM_ERROR, "no captured scan response");
+        }
+        return response.c_scanResponse;
+    }
+
+    @Override
+    public DeleteResultSetResponse deleteResultSet(Association association, DeleteResultSetRequest request)
+            throws IOException {
+        PDU pdu = new PDU();
+        pdu.c_deleteResultSetRequest = request;
+        PDU response = replay(pdu);
+        if (response == null || response.c_deleteResultSetResponse == null) {
+            return Backend.super.deleteResultSet(association, request);
+        }
+        return response.c_deleteResultSetResponse;
+    }
+
+    private PDU replay(PDU request) throws IOException {
+        Exchanges exchanges = identical.get(ByteBuffer.wrap(request.berEncode().encodingGet()));
+        if (exchanges == null) {
+            exchanges = byKind.get(kind(request));
+        }
+        if (exchanges == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        Exchange exchange = exchanges.next();
+        if (speed > 0.0d) {
+            try {
+                TimeUnit.NANOSECONDS.sleep((long) (exchange.nanos / speed));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        // decode each time, responses are modified by the server
+        return exchange.response.decode();
+    }
+
+    private static String kind(PDU pdu) {
+        if (pdu.c_initRequest != null) {
+            return "init";
+        }
+        if (pdu.c_searchRequest != null) {
+            return "search";
+        }
+        if (pdu.c_presentRequest != null) {
+            return "present";
+        }
+        if (pdu.c_scanRequest != null) {
+            return "scan";
+        }
+        if (pdu.c_deleteResultSetRequest != null) {
+            return "deleteResultSet";
+        }
+        return null;
+    }
+
+    private static class Exchange {
+
+        private final PDUFrame response;
+
+        private final long nanos;
+
+        Exchange(PDUFrame response, long nanos) {
+            this.response = response;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * The captured exchanges for one request, used in turn.
+     */
+    private static class Exchanges {
+
+        private final List<Exchange> list = new ArrayList<>();
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        void add(Exchange exchange) {
+            list.add(exchange);
+        }
+
+        Exchange next() {
+            return list.get(Math.floorMod(next.getAndIncrement(), list.size()));
+        }
+    }
+}
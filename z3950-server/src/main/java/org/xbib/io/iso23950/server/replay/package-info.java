@@ -0,0 +1,4 @@
+/**
+ * A Z39.50 target replaying captured responses.
+ */
+package org.xbib.io.iso23950.server.replay;
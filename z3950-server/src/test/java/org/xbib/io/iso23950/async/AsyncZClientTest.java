@@ -0,0 +1,170 @@
+package org.xbib.io.iso23950.async;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InitializeResponse;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class AsyncZClientTest {
+
+    private final AtomicInteger associations = new AtomicInteger();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final Backend backend = new Backend() {
+        @Override
+        public InitializeResponse init(Association association, InitializeRequest request) throws IOException {
+            associations.incrementAndGet();
+            return Responses.init(request, true, association.getPreferredMessageSize());
+        }
+
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) {
+            // the term is the number of hits
+            int count = Integer.parseInt(request.s_query.c_type_1.s_rpn.c_op.c_attrTerm.sTerm.c_general.get());
+            if (count == 0) {
+                // a search in flight until released
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            association.getAttributes().put("count", count);
+            return Responses.search(count);
+        }
+
+        @Override
+        public PresentResponse present(Association association, PresentRequest request) {
+            int start = request.s_resultSetStartPoint.get();
+            NamePlusRecord[] records = new NamePlusRecord[request.s_numberOfRecordsRequested.get()];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                        (association.getAttributes().get("count") + "/" + (start + i)).getBytes(StandardCharsets.UTF_8));
+            }
+            return Responses.present(start, records);
+        }
+    };
+
+    @Test
+    public void testConcurrentOperations() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start()) {
+            AsyncZClient client = AsyncZClient.builder().setAssociations(2)
+                    .setFactory(() -> TestClients.connect(server.getPort()))
+                    .build();
+            List<Thread> threads = new ArrayList<>();
+            List<String> failures = Collections.synchronizedList(new ArrayList<>());
+            for (int t = 0; t < 8; t++) {
+                int hits = t + 1;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        List<Record> records = Collections.synchronizedList(new ArrayList<>());
+                        try {
+                            int count = client.executePQF(Integer.toString(hits), 1, 10, records::add).get();
+                            if (count != hits || records.size() != hits ||
+                                    !records.get(hits - 1).toString(StandardCharsets.UTF_8).equals(hits + "/" + hits)) {
+                                failures.add(hits + ": " + count + " " + records.size());
+                            }
+                        } catch (InterruptedException | ExecutionException e) {
+                            failures.add(hits + ": " + e);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertEquals(Collections.emptyList(), failures);
+            Assert.assertTrue(associations.get() <= 2);
+            Assert.assertEquals(0, client.getPending());
+            client.close();
+            CompletableFuture<Integer> future = client.executePQF("1", 1, 1, null);
+            try {
+                future.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    @Test
+    public void testOperationInFlightIsPending() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend)
+                .setWorkerThreads(2).build().start()) {
+            AsyncZClient client = AsyncZClient.builder().setAssociations(2)
+                    .setFactory(() -> TestClients.connect(server.getPort()))
+                    .build();
+            try {
+                CompletableFuture<Integer> blocked = client.executePQF("0", 1, 1, null);
+                Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+                Assert.assertEquals(1, client.getPending());
+                // the next operation goes to the other association, not behind the blocked one
+                Assert.assertEquals(Integer.valueOf(3), client.executePQF("3", 1, 3, null).get(5, TimeUnit.SECONDS));
+                Assert.assertFalse(blocked.isDone());
+                release.countDown();
+                Assert.assertEquals(Integer.valueOf(0), blocked.get(5, TimeUnit.SECONDS));
+                Assert.assertEquals(0, client.getPending());
+            } finally {
+                release.countDown();
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testOperationError() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start()) {
+            AsyncZClient client = AsyncZClient.builder().setAssociations(1)
+                    .setFactory(() -> TestClients.connect(server.getPort()))
+                    .build();
+            try {
+                CompletableFuture<Integer> failed = client.submit(c -> {
+                    throw new AssertionError("test");
+                });
+                try {
+                    failed.get(5, TimeUnit.SECONDS);
+                    Assert.fail();
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof AssertionError);
+                }
+                // the loop survives the error, with a new association
+                Assert.assertEquals(Integer.valueOf(3), client.executePQF("3", 1, 3, null).get(5, TimeUnit.SECONDS));
+                Assert.assertEquals(0, client.getPending());
+                Assert.assertEquals(2, associations.get());
+            } finally {
+                client.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.xbib.io.iso23950.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Diagnostics;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.server.memory.InvertedIndex;
+import org.xbib.io.iso23950.server.memory.MemoryBackend;
+import org.xbib.io.iso23950.server.memory.TestRecords;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *
+ */
+public class BatchLookupTest {
+
+    private static final Pattern ISBN = Pattern.compile("isbn\\d+");
+
+    /**
+     * A memory backend counting searches.
+     */
+    private static class CountingBackend extends MemoryBackend {
+
+        private final AtomicInteger searches = new AtomicInteger();
+
+        CountingBackend(InvertedIndex index) {
+            super(index, "books");
+        }
+
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) throws Diagnostics {
+            searches.incrementAndGet();
+            return super.search(association, request);
+        }
+    }
+
+    /**
+     * Records isbn1 to isbn6, and five editions sharing isbn7.
+     */
+    private static InvertedIndex createIndex() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            records.add(TestRecords.marc(Integer.toString(i), "020", "aisbn" + i, "245", "aBook " + i));
+        }
+        for (int i = 1; i <= 5; i++) {
+            records.add(TestRecords.marc("7-" + i, "020", "aisbn7", "245", "aEdition " + i));
+        }
+        return TestRecords.index(records.toArray(new byte[0][]));
+    }
+
+    private static List<String> extract(Record record) {
+        List<String> isbns = new ArrayList<>();
+        Matcher matcher = ISBN.matcher(record.toString(StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            isbns.add(matcher.group());
+        }
+        return isbns;
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        CountingBackend backend = new CountingBackend(createIndex());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            BatchLookup lookup = BatchLookup.builder()
+                    .setClient(client)
+                    .setBatchSize(3)
+                    .setPresentSize(2)
+                    .setExtractor(BatchLookupTest::extract)
+                    .build();
+            Map<String, Integer> matches = new LinkedHashMap<>();
+            Set<String> unmatched = lookup.lookup(Arrays.asList(" isbn1", "isbn2", "isbn3", "isbn4", "isbn99",
+                    "isbn1"), (identifier, record) -> matches.merge(identifier, 1, Integer::sum));
+            Assert.assertEquals(Collections.singleton("isbn99"), unmatched);
+            // duplicates are searched once
+            Assert.assertEquals(Arrays.asList(" isbn1", "isbn2", "isbn3", "isbn4"),
+                    new ArrayList<>(matches.keySet()));
+            Assert.assertEquals(2, backend.searches.get());
+        }
+    }
+
+    @Test
+    public void testSplitBatchWithTooManyRecords() throws Exception {
+        CountingBackend backend = new CountingBackend(createIndex());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            BatchLookup lookup = BatchLookup.builder()
+                    .setClient(client)
+                    .setBatchSize(4)
+                    .setMaxRecordsPerBatch(4)
+                    .setExtractor(BatchLookupTest::extract)
+                    .build();
+            List<String> matched = new ArrayList<>();
+            // 8 records for the batch: split into isbn5, isbn6 with 2 and isbn7, isbn1 with 6 records,
+            // and the latter into isbn7 with 5 and isbn1 with 1 record
+            Set<String> unmatched = lookup.lookup(Arrays.asList("isbn5", "isbn6", "isbn7", "isbn1"),
+                    (identifier, record) -> matched.add(identifier));
+            Assert.assertEquals(Collections.emptySet(), unmatched);
+            Assert.assertEquals(Arrays.asList("isbn5", "isbn6", "isbn7", "isbn7", "isbn7", "isbn7", "isbn1"),
+                    matched);
+            Assert.assertEquals(5, backend.searches.get());
+        }
+    }
+
+    @Test
+    public void testUndetermined() throws Exception {
+        CountingBackend backend = new CountingBackend(createIndex());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            // the first records of isbn7 do not yield it, so it is not known whether it matches
+            BatchLookup lookup = BatchLookup.builder()
+                    .setClient(client)
+                    .setMaxRecordsPerBatch(3)
+                    .setExtractor(record -> record.toString(StandardCharsets.UTF_8).contains("Edition") ?
+                            Collections.emptyList() : extract(record))
+                    .build();
+            Map<String, Integer> undetermined = new LinkedHashMap<>();
+            Set<String> unmatched = lookup.lookup(Arrays.asList("isbn7", "isbn99"), new BatchListener() {
+                @Override
+                public void onMatch(String identifier, Record record) {
+                    Assert.fail();
+                }
+
+                @Override
+                public void onUndetermined(String identifier, int count) {
+                    undetermined.put(identifier, count);
+                }
+            });
+            Assert.assertEquals(Collections.singleton("isbn99"), unmatched);
+            Assert.assertEquals(Collections.singletonMap("isbn7", 5), undetermined);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.xbib.io.iso23950.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.server.memory.InvertedIndex;
+import org.xbib.io.iso23950.server.memory.MemoryBackend;
+import org.xbib.io.iso23950.server.memory.TestRecords;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prepared queries compiled by the client's PQF and CQL compilers must encode like the
+ * queries compiled directly with the terms in place of the slots.
+ */
+public class PreparedQueryClientTest {
+
+    private static InvertedIndex createIndex() throws IOException {
+        return TestRecords.index(TestRecords.marc("1", "245", "aLinux kernel", "100", "aTorvalds"),
+                TestRecords.marc("2", "245", "aOperating systems", "100", "aTanenbaum"),
+                TestRecords.marc("3", "245", "aMinix", "100", "aTanenbaum"));
+    }
+
+    private static void assertEncodesLike(RPNQuery expected, RPNQuery actual) throws Exception {
+        Assert.assertArrayEquals(expected.berEncode().encodingGet(), actual.berEncode().encodingGet());
+    }
+
+    @Test
+    public void testPQF() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0)
+                .setBackend(new MemoryBackend(createIndex(), "books")).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            PreparedQuery prepared = client.preparePQF("@attr 1=4 ?");
+            assertEncodesLike(client.createRPNQueryFromPQF("@attr 1=4 linux"), prepared.bind("linux"));
+            // a quoted slot takes a term with blanks
+            prepared = client.preparePQF("@and @attr 1=4 \"?\" @attr 1=1003 ?");
+            Assert.assertEquals(2, prepared.getSlots());
+            assertEncodesLike(client.createRPNQueryFromPQF("@and @attr 1=4 \"operating systems\" @attr 1=1003 tanenbaum"),
+                    prepared.bind("operating systems", "tanenbaum"));
+            // a question mark in a bound term is taken literally
+            prepared = client.preparePQF("@attr 1=4 ?");
+            assertEncodesLike(client.createRPNQueryFromPQF("@attr 1=4 \"why?\""), prepared.bind("why?"));
+            // a question mark inside a template term is not a slot
+            prepared = client.preparePQF("@and @attr 1=4 why? @attr 1=1003 ?");
+            Assert.assertEquals(1, prepared.getSlots());
+            assertEncodesLike(client.createRPNQueryFromPQF("@and @attr 1=4 why? @attr 1=1003 tanenbaum"),
+                    prepared.bind("tanenbaum"));
+        }
+    }
+
+    @Test
+    public void testCQL() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0)
+                .setBackend(new MemoryBackend(createIndex(), "books")).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            PreparedQuery prepared = client.prepareCQL("dc.title = ?");
+            assertEncodesLike(client.createRPNQueryFromCQL("dc.title = linux"), prepared.bind("linux"));
+            prepared = client.prepareCQL("dc.title = \"?\" and dc.creator = ?");
+            Assert.assertEquals(2, prepared.getSlots());
+            assertEncodesLike(client.createRPNQueryFromCQL("dc.title = \"operating systems\" and dc.creator = tanenbaum"),
+                    prepared.bind("operating systems", "tanenbaum"));
+            prepared = client.prepareCQL("dc.title = ?");
+            assertEncodesLike(client.createRPNQueryFromCQL("dc.title = \"why?\""), prepared.bind("why?"));
+        }
+    }
+
+    @Test
+    public void testMaxQueryOperands() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0)
+                .setBackend(new MemoryBackend(createIndex(), "books")).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books").setMaxQueryOperands(2))) {
+            String direct = "@or @or @attr 1=4 linux @attr 1=4 minix @attr 1=4 operating";
+            PreparedQuery prepared = client.preparePQF("@or @or @attr 1=4 ? @attr 1=4 ? @attr 1=4 ?");
+            assertEncodesLike(client.createRPNQueryFromPQF(direct), prepared.bind("linux", "minix", "operating"));
+            List<Record> records = new ArrayList<>();
+            Assert.assertEquals(3, client.executePrepared(prepared, new String[]{"linux", "minix", "operating"},
+                    1, 10, null, records::add));
+            Assert.assertEquals(3, records.size());
+            // the same hits as the directly compiled query, which is split into sub-searches
+            Assert.assertEquals(3, client.executePQF(direct, 1, 10, null, record -> { }));
+        }
+    }
+}
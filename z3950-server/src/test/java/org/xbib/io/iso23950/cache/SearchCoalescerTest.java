@@ -0,0 +1,155 @@
+package org.xbib.io.iso23950.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Diagnostics;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.exceptions.SearchFailedException;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.server.memory.InvertedIndex;
+import org.xbib.io.iso23950.server.memory.MemoryBackend;
+import org.xbib.io.iso23950.server.memory.TestRecords;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class SearchCoalescerTest {
+
+    private static final int CALLERS = 4;
+
+    /**
+     * A memory backend counting searches, which holds every search until released.
+     */
+    private static class GatedBackend extends MemoryBackend {
+
+        private final AtomicInteger searches = new AtomicInteger();
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final boolean failing;
+
+        GatedBackend(InvertedIndex index, boolean failing) {
+            super(index, "books");
+            this.failing = failing;
+        }
+
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) throws Diagnostics {
+            searches.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5L, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new Diagnostics(114, "Unsupported Use attribute", "test");
+            }
+            return super.search(association, request);
+        }
+    }
+
+    private static InvertedIndex createIndex() throws IOException {
+        return TestRecords.index(TestRecords.marc("1", "245", "aTitle alpha"),
+                TestRecords.marc("2", "245", "aTitle alpha bravo"),
+                TestRecords.marc("3", "245", "aTitle charlie"));
+    }
+
+    /**
+     * Run identical searches on one client per caller, and release the backend when all
+     * callers are waiting.
+     */
+    private static List<Future<List<Record>>> search(ZServer server, GatedBackend backend,
+                                                     List<ZClient> clients, ExecutorService executor)
+            throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer();
+        CountDownLatch arrived = new CountDownLatch(CALLERS);
+        List<Future<List<Record>>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            clients.add(TestClients.build(TestClients.marc(server.getPort(), "books")));
+        }
+        for (ZClient client : clients) {
+            futures.add(executor.submit(() -> {
+                List<Record> records = new ArrayList<>();
+                arrived.countDown();
+                int count = coalescer.execute(client, new PQFCompiler().compile("@attr 1=4 alpha"), 1, 10,
+                        null, records::add);
+                Assert.assertEquals(2, count);
+                return records;
+            }));
+        }
+        Assert.assertTrue(backend.started.await(5L, TimeUnit.SECONDS));
+        Assert.assertTrue(arrived.await(5L, TimeUnit.SECONDS));
+        // give the callers time to join the search in flight
+        Thread.sleep(200L);
+        Assert.assertEquals(1, coalescer.inFlight());
+        backend.release.countDown();
+        return futures;
+    }
+
+    private static void close(List<ZClient> clients) throws IOException {
+        for (ZClient client : clients) {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentSearchesReachBackendOnce() throws Exception {
+        GatedBackend backend = new GatedBackend(createIndex(), false);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<ZClient> clients = new ArrayList<>();
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend)
+                .setWorkerThreads(CALLERS).build().start()) {
+            for (Future<List<Record>> future : search(server, backend, clients, executor)) {
+                List<Record> records = future.get(5L, TimeUnit.SECONDS);
+                Assert.assertEquals(2, records.size());
+            }
+            Assert.assertEquals(1, backend.searches.get());
+        } finally {
+            executor.shutdownNow();
+            close(clients);
+        }
+    }
+
+    @Test
+    public void testFailureReachesAllWaiters() throws Exception {
+        GatedBackend backend = new GatedBackend(createIndex(), true);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<ZClient> clients = new ArrayList<>();
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend)
+                .setWorkerThreads(CALLERS).build().start()) {
+            for (Future<List<Record>> future : search(server, backend, clients, executor)) {
+                try {
+                    future.get(5L, TimeUnit.SECONDS);
+                    Assert.fail();
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof SearchFailedException);
+                    Assert.assertEquals(114, ((SearchFailedException) e.getCause()).getDiagnostic());
+                }
+            }
+            Assert.assertEquals(1, backend.searches.get());
+        } finally {
+            executor.shutdownNow();
+            close(clients);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.xbib.io.iso23950.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Diagnostics;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.exceptions.SearchFailedException;
+import org.xbib.io.iso23950.exceptions.ZException;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.server.memory.InvertedIndex;
+import org.xbib.io.iso23950.server.memory.MemoryBackend;
+import org.xbib.io.iso23950.server.memory.TestRecords;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ */
+public class SearchCountCacheTest {
+
+    private static final long TTL = 60L;
+
+    private static final long NEGATIVE_TTL = 10L;
+
+    /**
+     * A memory backend counting searches, which fails searches on demand.
+     */
+    private static class FailingBackend extends MemoryBackend {
+
+        private final AtomicInteger searches = new AtomicInteger();
+
+        private volatile int diagnostic;
+
+        private volatile boolean broken;
+
+        FailingBackend(InvertedIndex index) {
+            super(index, "books");
+        }
+
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) throws Diagnostics {
+            searches.incrementAndGet();
+            if (broken) {
+                // closes the association
+                throw new IllegalStateException("backend is broken");
+            }
+            if (diagnostic > 0) {
+                throw new Diagnostics(diagnostic, "unsupported", "test");
+            }
+            return super.search(association, request);
+        }
+    }
+
+    private static InvertedIndex createIndex() throws IOException {
+        return TestRecords.index(TestRecords.marc("1", "245", "aTitle alpha"),
+                TestRecords.marc("2", "245", "aTitle bravo"));
+    }
+
+    private static RPNQuery query(String pqf) {
+        return new PQFCompiler().compile(pqf);
+    }
+
+    private static SearchCountCache createCache(AtomicLong clock) {
+        return new SearchCountCache(TTL, NEGATIVE_TTL, TimeUnit.SECONDS, 100, clock::get);
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception {
+        FailingBackend backend = new FailingBackend(createIndex());
+        AtomicLong clock = new AtomicLong();
+        SearchCountCache cache = createCache(clock);
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            SearchCount count = cache.count(client, query("@attr 1=4 alpha"));
+            Assert.assertEquals(1, count.getCount());
+            Assert.assertFalse(count.isCached());
+            Assert.assertEquals(1, backend.searches.get());
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(TTL - 1));
+            count = cache.count(client, query("@attr 1=4 alpha"));
+            Assert.assertEquals(1, count.getCount());
+            Assert.assertTrue(count.isCached());
+            Assert.assertEquals(1, cache.peek(client, query("@attr 1=4 alpha")));
+            Assert.assertEquals(1, backend.searches.get());
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            Assert.assertEquals(-1, cache.peek(client, query("@attr 1=4 alpha")));
+            count = cache.count(client, query("@attr 1=4 alpha"));
+            Assert.assertFalse(count.isCached());
+            Assert.assertEquals(2, backend.searches.get());
+        }
+    }
+
+    @Test
+    public void testNegativeTimeToLive() throws Exception {
+        FailingBackend backend = new FailingBackend(createIndex());
+        AtomicLong clock = new AtomicLong();
+        SearchCountCache cache = createCache(clock);
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            Assert.assertEquals(0, cache.count(client, query("@attr 1=4 zulu")).getCount());
+            Assert.assertTrue(cache.count(client, query("@attr 1=4 zulu")).isCached());
+            Assert.assertEquals(1, backend.searches.get());
+            // zero hits expire after the negative time-to-live
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(NEGATIVE_TTL));
+            Assert.assertFalse(cache.count(client, query("@attr 1=4 zulu")).isCached());
+            Assert.assertEquals(2, backend.searches.get());
+        }
+    }
+
+    @Test
+    public void testTargetDiagnosticIsCached() throws Exception {
+        FailingBackend backend = new FailingBackend(createIndex());
+        AtomicLong clock = new AtomicLong();
+        SearchCountCache cache = createCache(clock);
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            backend.diagnostic = 114;
+            for (int i = 0; i < 2; i++) {
+                try {
+                    cache.count(client, query("@attr 1=4 alpha"));
+                    Assert.fail();
+                } catch (SearchFailedException e) {
+                    Assert.assertEquals(114, e.getDiagnostic());
+                }
+            }
+            Assert.assertEquals(1, backend.searches.get());
+            Assert.assertEquals(-1, cache.peek(client, query("@attr 1=4 alpha")));
+            backend.diagnostic = 0;
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(NEGATIVE_TTL));
+            Assert.assertEquals(1, cache.count(client, query("@attr 1=4 alpha")).getCount());
+            Assert.assertEquals(2, backend.searches.get());
+        }
+    }
+
+    @Test
+    public void testTransportErrorIsNotCached() throws Exception {
+        FailingBackend backend = new FailingBackend(createIndex());
+        SearchCountCache cache = createCache(new AtomicLong());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start()) {
+            backend.broken = true;
+            try (ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+                cache.count(client, query("@attr 1=4 alpha"));
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertFalse(e instanceof ZException);
+            }
+            Assert.assertEquals(0, cache.size());
+            backend.broken = false;
+            try (ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+                SearchCount count = cache.count(client, query("@attr 1=4 alpha"));
+                Assert.assertEquals(1, count.getCount());
+                Assert.assertFalse(count.isCached());
+            }
+            Assert.assertEquals(2, backend.searches.get());
+        }
+    }
+}
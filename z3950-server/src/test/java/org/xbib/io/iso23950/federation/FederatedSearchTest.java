@@ -0,0 +1,105 @@
+package org.xbib.io.iso23950.federation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.async.AsyncZClient;
+import org.xbib.io.iso23950.exceptions.TargetUnavailableException;
+import org.xbib.io.iso23950.health.HealthRegistry;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InitializeResponse;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class FederatedSearchTest {
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    private final Backend backend = new Backend() {
+        @Override
+        public InitializeResponse init(Association association, InitializeRequest request) throws IOException {
+            return Responses.init(request, true, association.getPreferredMessageSize());
+        }
+
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) {
+            searches.incrementAndGet();
+            return Responses.search(42);
+        }
+
+        @Override
+        public PresentResponse present(Association association, PresentRequest request) {
+            int start = request.s_resultSetStartPoint.get();
+            NamePlusRecord[] records = new NamePlusRecord[request.s_numberOfRecordsRequested.get()];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                        Integer.toString(start + i).getBytes(StandardCharsets.UTF_8));
+            }
+            return Responses.present(start, records);
+        }
+    };
+
+    @Test
+    public void testSkipOpenCircuit() throws Exception {
+        HealthRegistry health = HealthRegistry.builder()
+                .setCircuitBreaker(1, 1L, TimeUnit.HOURS)
+                .build();
+        try (ZServer first = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZServer second = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             FederatedSearch search = FederatedSearch.builder()
+                     .setHealthRegistry(health)
+                     .addTarget("localhost", first.getPort(), client(first.getPort()))
+                     .addTarget("localhost", second.getPort(), client(second.getPort()))
+                     .build()) {
+            String firstTarget = "localhost:" + first.getPort();
+            String secondTarget = "localhost:" + second.getPort();
+            List<String> records = new CopyOnWriteArrayList<>();
+            Map<String, CompletableFuture<Integer>> results = search.executePQF("test", 1, 2,
+                    target -> record -> records.add(target));
+            Assert.assertEquals(42, results.get(firstTarget).get(5, TimeUnit.SECONDS).intValue());
+            Assert.assertEquals(42, results.get(secondTarget).get(5, TimeUnit.SECONDS).intValue());
+            Assert.assertEquals(2, searches.get());
+            Assert.assertEquals(4, records.size());
+            health.getCircuitBreaker(secondTarget).onFailure();
+            records.clear();
+            results = search.executePQF("test", 1, 2, target -> record -> records.add(target));
+            Assert.assertTrue(results.get(secondTarget).isCompletedExceptionally());
+            try {
+                results.get(secondTarget).get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TargetUnavailableException);
+            }
+            Assert.assertEquals(42, results.get(firstTarget).get(5, TimeUnit.SECONDS).intValue());
+            Assert.assertEquals(3, searches.get());
+            Assert.assertEquals(Collections.nCopies(2, firstTarget), records);
+        }
+    }
+
+    private static AsyncZClient client(int port) {
+        return AsyncZClient.builder()
+                .setFactory(() -> TestClients.connect(port))
+                .build();
+    }
+}
@@ -0,0 +1,215 @@
+package org.xbib.io.iso23950.federation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.async.AsyncZClient;
+import org.xbib.io.iso23950.health.HealthRegistry;
+import org.xbib.io.iso23950.metrics.Operation;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.trace.PDUTrace;
+import org.xbib.io.iso23950.trace.PDUTracer;
+import org.xbib.io.iso23950.v3.InitializeRequest;
+import org.xbib.io.iso23950.v3.InitializeResponse;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class TargetGroupTest {
+
+    @Test
+    public void testHedgeSlowMirror() throws Exception {
+        Mirror slow = new Mirror("slow", 3000L);
+        Mirror fast = new Mirror("fast", 0L);
+        try (ZServer slowServer = slow.start();
+             ZServer fastServer = fast.start()) {
+            AsyncZClient slowClient = client(slowServer.getPort());
+            // open the association, so the search reaches the slow mirror before the hedge
+            slowClient.submit(client -> client.getHost()).get(10, TimeUnit.SECONDS);
+            try (TargetGroup group = TargetGroup.builder()
+                    .addMirror("localhost", slowServer.getPort(), slowClient)
+                    .addMirror("localhost", fastServer.getPort(), client(fastServer.getPort()))
+                    .setInitialDelay(20, 100L, TimeUnit.MILLISECONDS)
+                    .setMaxHedgeRatio(1.0d)
+                    .build()) {
+                List<String> records = new CopyOnWriteArrayList<>();
+                long start = System.nanoTime();
+                int count = group.executePQF("test", 1, 3, record -> records.add(text(record)))
+                        .get(10, TimeUnit.SECONDS);
+                Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2L));
+                Assert.assertEquals(3, count);
+                Assert.assertEquals(3, records.size());
+                Assert.assertEquals("fast/1", records.get(0));
+                Assert.assertEquals(1L, group.getHedges());
+                Assert.assertEquals(1, slow.searches.get());
+                Assert.assertEquals(1, fast.searches.get());
+                // the aborted association of the slow mirror is opened again
+                group.submit(client -> client.getHost()).get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    public void testAbortedMirrorIsNotFailed() throws Exception {
+        Mirror slow = new Mirror("slow", 3000L);
+        Mirror fast = new Mirror("fast", 0L);
+        HealthRegistry health = HealthRegistry.builder()
+                .setCircuitBreaker(1, 1L, TimeUnit.HOURS)
+                .build();
+        AtomicInteger failures = new AtomicInteger();
+        PDUTracer tracer = new PDUTracer() {
+            @Override
+            public void sent(PDUTrace trace) {
+            }
+
+            @Override
+            public void received(PDUTrace trace) {
+            }
+
+            @Override
+            public void failed(String target, IOException e) {
+                failures.incrementAndGet();
+            }
+        };
+        try (ZServer slowServer = slow.start();
+             ZServer fastServer = fast.start()) {
+            String slowTarget = "localhost:" + slowServer.getPort();
+            AsyncZClient slowClient = AsyncZClient.builder()
+                    .setFactory(() -> TestClients.build(TestClients.builder(slowServer.getPort())
+                            .setMetricsRegistry(health).setTracer(tracer)))
+                    .build();
+            // open the association, so the search of the slow mirror is aborted while it runs
+            slowClient.submit(client -> client.getHost()).get(10, TimeUnit.SECONDS);
+            try (TargetGroup group = TargetGroup.builder()
+                    .addMirror("localhost", slowServer.getPort(), slowClient)
+                    .addMirror("localhost", fastServer.getPort(), client(fastServer.getPort()))
+                    .setInitialDelay(20, 100L, TimeUnit.MILLISECONDS)
+                    .setMaxHedgeRatio(1.0d)
+                    .setHealthRegistry(health)
+                    .build()) {
+                Assert.assertEquals(3, group.executePQF("test", 1, 1, null).get(10, TimeUnit.SECONDS).intValue());
+                Assert.assertEquals(1L, group.getHedges());
+                Assert.assertEquals(1, slow.searches.get());
+                // after the aborted search of the slow mirror
+                slowClient.submit(client -> client.getHost()).get(10, TimeUnit.SECONDS);
+                Assert.assertEquals(0L, health.get(slowTarget, Operation.SEARCH).getErrors());
+                Assert.assertEquals(0, health.getCircuitBreaker(slowTarget).getConsecutiveFailures());
+                Assert.assertTrue(health.allowRequest(slowTarget));
+                Assert.assertEquals(0, failures.get());
+            }
+        }
+    }
+
+    @Test
+    public void testNoHedgeForFastMirror() throws Exception {
+        Mirror first = new Mirror("first", 0L);
+        Mirror second = new Mirror("second", 0L);
+        try (ZServer firstServer = first.start();
+             ZServer secondServer = second.start();
+             TargetGroup group = TargetGroup.builder()
+                     .addMirror("localhost", firstServer.getPort(), client(firstServer.getPort()))
+                     .addMirror("localhost", secondServer.getPort(), client(secondServer.getPort()))
+                     .build()) {
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(3, group.executePQF("test", 1, 1, null).get(10, TimeUnit.SECONDS).intValue());
+            }
+            Assert.assertEquals(5L, group.getRequests());
+            Assert.assertEquals(0L, group.getHedges());
+            Assert.assertEquals(5, first.searches.get());
+            Assert.assertEquals(0, second.searches.get());
+            Assert.assertEquals(5L, group.getLatency().getCount());
+        }
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        int closedPort;
+        try (ZServer closed = new Mirror("closed", 0L).start()) {
+            closedPort = closed.getPort();
+        }
+        Mirror mirror = new Mirror("mirror", 0L);
+        try (ZServer server = mirror.start();
+             TargetGroup group = TargetGroup.builder()
+                     .addMirror("localhost", closedPort, client(closedPort))
+                     .addMirror("localhost", server.getPort(), client(server.getPort()))
+                     .setMaxHedgeRatio(0.0d)
+                     .build()) {
+            Assert.assertEquals(3, group.executePQF("test", 1, 1, null).get(10, TimeUnit.SECONDS).intValue());
+            Assert.assertEquals(0L, group.getHedges());
+            Assert.assertEquals(1, mirror.searches.get());
+        }
+    }
+
+    private static AsyncZClient client(int port) {
+        return AsyncZClient.builder()
+                .setFactory(() -> TestClients.connect(port))
+                .build();
+    }
+
+    private static String text(Record record) {
+        return record.toString(StandardCharsets.UTF_8);
+    }
+
+    private static class Mirror implements Backend {
+
+        private final String name;
+
+        private final long delay;
+
+        private final AtomicInteger searches = new AtomicInteger();
+
+        Mirror(String name, long delay) {
+            this.name = name;
+            this.delay = delay;
+        }
+
+        ZServer start() throws IOException {
+            return ZServer.builder().setHost("localhost").setPort(0).setBackend(this).build().start();
+        }
+
+        @Override
+        public InitializeResponse init(Association association, InitializeRequest request) throws IOException {
+            return Responses.init(request, true, association.getPreferredMessageSize());
+        }
+
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) throws IOException {
+            searches.incrementAndGet();
+            if (delay > 0L) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Responses.search(3);
+        }
+
+        @Override
+        public PresentResponse present(Association association, PresentRequest request) {
+            int start = request.s_resultSetStartPoint.get();
+            NamePlusRecord[] records = new NamePlusRecord[request.s_numberOfRecordsRequested.get()];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                        (name + "/" + (start + i)).getBytes(StandardCharsets.UTF_8));
+            }
+            return Responses.present(start, records);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.xbib.io.iso23950.operations;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ */
+public class PresentOperationTest {
+
+    private final List<Integer> requests = new ArrayList<>();
+
+    private static NamePlusRecord record(int position) {
+        return Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                ("record " + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Backend backend(boolean additionalRanges, int maxRecords) {
+        return new Backend() {
+            @Override
+            public SearchResponse search(Association association, SearchRequest request) {
+                return Responses.search(2000);
+            }
+
+            @Override
+            public PresentResponse present(Association association, PresentRequest request) {
+                requests.add(request.s_additionalRanges != null ? request.s_additionalRanges.length + 1 : 1);
+                List<NamePlusRecord> records = new ArrayList<>();
+                int start = request.s_resultSetStartPoint.get();
+                for (int i = 0; i < request.s_numberOfRecordsRequested.get(); i++) {
+                    records.add(record(start + i));
+                }
+                if (additionalRanges && request.s_additionalRanges != null) {
+                    for (int r = 0; r < request.s_additionalRanges.length; r++) {
+                        int position = request.s_additionalRanges[r].s_startingPosition.get();
+                        for (int i = 0; i < request.s_additionalRanges[r].s_numberOfRecords.get(); i++) {
+                            records.add(record(position + i));
+                        }
+                    }
+                }
+                PresentResponse response = Responses.present(start,
+                        records.subList(0, Math.min(maxRecords, records.size())).toArray(new NamePlusRecord[0]));
+                if (records.size() > maxRecords) {
+                    response.s_presentStatus.value.set(2);
+                }
+                return response;
+            }
+        };
+    }
+
+    private List<String> present(Backend backend, int[] positions, int maxRecords) throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.connect(server.getPort())) {
+            List<String> records = new ArrayList<>();
+            new PresentOperation().execute(client, "default", positions, maxRecords, null,
+                    record -> records.add(record.getNumber() + ":" + record.toString(StandardCharsets.UTF_8)));
+            return records;
+        }
+    }
+
+    @Test
+    public void testCoalesce() {
+        List<int[]> ranges = PresentOperation.coalesce(new int[]{250, 3, 17, 4, 5, 1021, 17, 251});
+        Assert.assertEquals(4, ranges.size());
+        Assert.assertArrayEquals(new int[]{3, 3}, ranges.get(0));
+        Assert.assertArrayEquals(new int[]{17, 1}, ranges.get(1));
+        Assert.assertArrayEquals(new int[]{250, 2}, ranges.get(2));
+        Assert.assertArrayEquals(new int[]{1021, 1}, ranges.get(3));
+    }
+
+    @Test
+    public void testAdditionalRanges() throws Exception {
+        List<String> records = present(backend(true, 100), new int[]{1021, 3, 250, 17}, 100);
+        Assert.assertEquals(Arrays.asList("3:record 3", "17:record 17", "250:record 250", "1021:record 1021"), records);
+        Assert.assertEquals(Collections.singletonList(4), requests);
+    }
+
+    @Test
+    public void testMaxRecordsAndMessageSize() throws Exception {
+        List<String> records = present(backend(true, 3), new int[]{1, 2, 3, 4, 5, 10, 20}, 5);
+        Assert.assertEquals(7, records.size());
+        Assert.assertEquals("20:record 20", records.get(6));
+        // 1-5 returns 1-3, then 4-5, 10 and 20 returns all but 20, then 20
+        Assert.assertEquals(Arrays.asList(1, 3, 1), requests);
+    }
+
+    @Test
+    public void testWithoutAdditionalRanges() throws Exception {
+        List<String> records = present(backend(false, 100), new int[]{3, 17, 250}, 100);
+        Assert.assertEquals(Arrays.asList("3:record 3", "17:record 17", "250:record 250"), records);
+        Assert.assertEquals(Arrays.asList(3, 1, 1), requests);
+    }
+}
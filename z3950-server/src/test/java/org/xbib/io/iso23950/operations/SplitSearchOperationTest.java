@@ -0,0 +1,160 @@
+package org.xbib.io.iso23950.operations;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Diagnostics;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.cache.PreparedQuery;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.server.memory.InvertedIndex;
+import org.xbib.io.iso23950.server.memory.MemoryBackend;
+import org.xbib.io.iso23950.server.memory.TestRecords;
+import org.xbib.io.iso23950.v3.DeleteResultSetRequest;
+import org.xbib.io.iso23950.v3.DeleteResultSetResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ */
+public class SplitSearchOperationTest {
+
+    private static final int RECORDS = 10;
+
+    /**
+     * A memory backend recording the result sets searched into and deleted.
+     */
+    private static class RecordingBackend extends MemoryBackend {
+
+        private final List<String> searches = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<String> deletes = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<String> open = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingBackend(InvertedIndex index) {
+            super(index, "books");
+        }
+
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) throws Diagnostics {
+            searches.add(request.s_resultSetName.value.get());
+            return super.search(association, request);
+        }
+
+        @Override
+        public DeleteResultSetResponse deleteResultSet(Association association, DeleteResultSetRequest request)
+                throws IOException {
+            for (int i = 0; i < request.sResultSetList.length; i++) {
+                deletes.add(request.sResultSetList[i].value.value.get());
+            }
+            DeleteResultSetResponse response = super.deleteResultSet(association, request);
+            open.clear();
+            open.addAll(association.getAttributes().keySet());
+            return response;
+        }
+    }
+
+    private static InvertedIndex createIndex() throws IOException {
+        byte[][] records = new byte[RECORDS][];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = TestRecords.marc(Integer.toString(i + 1), "245", "aTitle " + word(i));
+        }
+        return TestRecords.index(records);
+    }
+
+    private static String word(int i) {
+        return "alpha bravo charlie delta echo foxtrot golf hotel india juliet kilo lima".split(" ")[i];
+    }
+
+    /**
+     * A PQF disjunction of title words.
+     */
+    private static String or(String... words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < words.length; i++) {
+            sb.append("@or ");
+        }
+        for (String word : words) {
+            sb.append("@attr 1=4 ").append(word).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    private static String[] words(int n) {
+        String[] words = new String[n];
+        for (int i = 0; i < n; i++) {
+            words[i] = word(i);
+        }
+        return words;
+    }
+
+    @Test
+    public void testSplitAndCombine() throws Exception {
+        RecordingBackend backend = new RecordingBackend(createIndex());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            SplitSearchOperation search = new SplitSearchOperation(3);
+            Assert.assertTrue(search.execute(client, new PQFCompiler().compile(or(words(RECORDS))), "default"));
+            Assert.assertEquals(RECORDS, search.getCount());
+            // 4 sub-searches of 3, 3, 3 and 1 words, 2 combining searches of 3 and 1 result sets, and the final search
+            Assert.assertEquals(6, search.getSubSearches());
+            Assert.assertEquals(Arrays.asList("default-split-0", "default-split-1", "default-split-2",
+                    "default-split-3", "default-split-4", "default-split-5", "default"), backend.searches);
+            // the intermediate result sets are deleted, the final result set is kept
+            Assert.assertEquals(backend.searches.subList(0, 6), backend.deletes);
+            Assert.assertEquals(Collections.singletonList("default"), backend.open);
+            // the count of sub-searches is per execution
+            backend.searches.clear();
+            Assert.assertTrue(search.execute(client, new PQFCompiler().compile(or(words(5))), "default"));
+            Assert.assertEquals(5, search.getCount());
+            Assert.assertEquals(2, search.getSubSearches());
+        }
+    }
+
+    @Test
+    public void testNoHits() throws Exception {
+        RecordingBackend backend = new RecordingBackend(createIndex());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            SplitSearchOperation search = new SplitSearchOperation(2);
+            String query = or("kilo", "lima", "mike", "november", "oscar");
+            Assert.assertTrue(search.execute(client, new PQFCompiler().compile(query), "default"));
+            Assert.assertEquals(0, search.getCount());
+            Assert.assertEquals(3, search.getSubSearches());
+            // the final search falls back to the first word, into an empty result set
+            Assert.assertEquals("default", backend.searches.get(backend.searches.size() - 1));
+            Assert.assertEquals(3, backend.deletes.size());
+        }
+    }
+
+    @Test
+    public void testClient() throws Exception {
+        RecordingBackend backend = new RecordingBackend(createIndex());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books").setMaxQueryOperands(4))) {
+            List<Record> records = new ArrayList<>();
+            Assert.assertEquals(6, client.executePQF(or(words(6)), 1, 10, null, records::add));
+            Assert.assertEquals(6, records.size());
+            Assert.assertEquals(3, backend.searches.size());
+            // a bound prepared query is searched as it is
+            backend.searches.clear();
+            records.clear();
+            PreparedQuery prepared = client.preparePQF("@or @or @or @or @attr 1=4 ? @attr 1=4 ? @attr 1=4 ? " +
+                    "@attr 1=4 ? @attr 1=4 ?");
+            Assert.assertEquals(5, client.executePrepared(prepared, words(5), 1, 10, null, records::add));
+            Assert.assertEquals(5, records.size());
+            Assert.assertEquals(Collections.singletonList("default"), backend.searches);
+        }
+    }
+}
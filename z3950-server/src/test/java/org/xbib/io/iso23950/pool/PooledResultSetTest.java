@@ -0,0 +1,104 @@
+package org.xbib.io.iso23950.pool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.server.memory.InvertedIndex;
+import org.xbib.io.iso23950.server.memory.MemoryBackend;
+import org.xbib.io.iso23950.server.memory.TestRecords;
+import org.xbib.io.iso23950.v3.DeleteResultSetRequest;
+import org.xbib.io.iso23950.v3.DeleteResultSetResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class PooledResultSetTest {
+
+    /**
+     * A memory backend recording deleted result sets, which fails deletes on demand.
+     */
+    private static class DeletingBackend extends MemoryBackend {
+
+        private final List<String> deletes = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile boolean failing;
+
+        DeletingBackend(InvertedIndex index) {
+            super(index, "books");
+        }
+
+        @Override
+        public DeleteResultSetResponse deleteResultSet(Association association, DeleteResultSetRequest request)
+                throws IOException {
+            if (failing) {
+                // closes the association
+                throw new IllegalStateException("delete failed");
+            }
+            for (int i = 0; i < request.sResultSetList.length; i++) {
+                deletes.add(request.sResultSetList[i].value.value.get());
+            }
+            return super.deleteResultSet(association, request);
+        }
+    }
+
+    private static InvertedIndex createIndex() throws IOException {
+        return TestRecords.index(TestRecords.marc("1", "245", "aLinux kernel"),
+                TestRecords.marc("2", "245", "aLinux distributions"));
+    }
+
+    @Test
+    public void testCloseDeletesOnIdleHoldersOnly() throws Exception {
+        DeletingBackend backend = new DeletingBackend(createIndex());
+        AtomicInteger opened = new AtomicInteger();
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClientPool pool = new ZClientPool(() -> {
+                 opened.incrementAndGet();
+                 return TestClients.build(TestClients.marc(server.getPort(), "books"));
+             }, 2, 5L, TimeUnit.SECONDS)) {
+            PooledResultSet resultSet = new PooledResultSet(pool, new PQFCompiler().compile("@attr 1=4 linux"), "rs");
+            Assert.assertEquals(2, resultSet.open());
+            // the first holder is busy, the fetch searches on a second association
+            ZClient busy = pool.borrow();
+            List<String> records = new ArrayList<>();
+            resultSet.fetch(1, 2, record -> records.add(Integer.toString(record.getNumber())));
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals(2, opened.get());
+            // closing deletes on the idle holder, and neither waits for nor opens an association
+            long t0 = System.nanoTime();
+            resultSet.close();
+            Assert.assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(1L));
+            Assert.assertEquals(Collections.singletonList("rs"), backend.deletes);
+            Assert.assertEquals(2, opened.get());
+            Assert.assertEquals(1, pool.getIdle());
+            Assert.assertEquals(1, pool.getActive());
+            pool.release(busy, true);
+        }
+    }
+
+    @Test
+    public void testCloseAfterFailedDelete() throws Exception {
+        DeletingBackend backend = new DeletingBackend(createIndex());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClientPool pool = new ZClientPool(TestClients.marc(server.getPort(), "books"), 1, 5L, TimeUnit.SECONDS)) {
+            PooledResultSet resultSet = new PooledResultSet(pool, new PQFCompiler().compile("@attr 1=4 linux"), "rs");
+            Assert.assertEquals(2, resultSet.open());
+            Assert.assertEquals(1, pool.getIdle());
+            backend.failing = true;
+            resultSet.close();
+            // the association is in an unknown state and not given back to the idle associations
+            Assert.assertEquals(0, pool.getIdle());
+            Assert.assertEquals(0, pool.getActive());
+        }
+    }
+}
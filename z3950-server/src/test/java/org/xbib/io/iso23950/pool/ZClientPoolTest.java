@@ -0,0 +1,74 @@
+package org.xbib.io.iso23950.pool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.server.memory.MemoryBackend;
+import org.xbib.io.iso23950.server.memory.TestRecords;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ZClientPoolTest {
+
+    @Test
+    public void testPreferred() throws Exception {
+        MemoryBackend backend = new MemoryBackend(TestRecords.index(TestRecords.marc("1", "245", "aTitle")), "books");
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClientPool pool = new ZClientPool(TestClients.marc(server.getPort(), "books"), 2, 1L, TimeUnit.SECONDS)) {
+            ZClient first = pool.borrow();
+            ZClient second = pool.borrow();
+            pool.release(first, true);
+            pool.release(second, true);
+            Assert.assertSame(first, pool.borrow(first));
+            pool.release(first, true);
+            Assert.assertSame(second, pool.borrow(second));
+            pool.release(second, true);
+        }
+    }
+
+    @Test
+    public void testPreferredDisconnected() throws Exception {
+        MemoryBackend backend = new MemoryBackend(TestRecords.index(TestRecords.marc("1", "245", "aTitle")), "books");
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClientPool pool = new ZClientPool(TestClients.marc(server.getPort(), "books"), 2, 1L, TimeUnit.SECONDS)) {
+            ZClient preferred = pool.borrow();
+            pool.release(preferred, true);
+            Assert.assertEquals(1, pool.getIdle());
+            // the idle association is lost, e.g. closed by the target
+            preferred.close();
+            ZClient client = pool.borrow(preferred);
+            Assert.assertNotSame(preferred, client);
+            Assert.assertTrue(client.isConnected());
+            Assert.assertEquals(0, pool.getIdle());
+            Assert.assertEquals(1, pool.getActive());
+            pool.release(client, true);
+            Assert.assertEquals(1, pool.getIdle());
+            Assert.assertEquals(0, pool.getActive());
+        }
+    }
+
+    @Test
+    public void testTryBorrowIdle() throws Exception {
+        MemoryBackend backend = new MemoryBackend(TestRecords.index(TestRecords.marc("1", "245", "aTitle")), "books");
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClientPool pool = new ZClientPool(TestClients.marc(server.getPort(), "books"), 1, 1L, TimeUnit.SECONDS)) {
+            ZClient client = pool.borrow();
+            // busy, and no permit left
+            Assert.assertNull(pool.tryBorrowIdle(client));
+            pool.release(client, true);
+            Assert.assertSame(client, pool.tryBorrowIdle(client));
+            Assert.assertEquals(1, pool.getActive());
+            pool.release(client, true);
+            // lost while idle
+            client.close();
+            Assert.assertNull(pool.tryBorrowIdle(client));
+            Assert.assertEquals(0, pool.getIdle());
+            Assert.assertEquals(0, pool.getActive());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.xbib.io.iso23950.retrieval;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.BERConstructed;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.exceptions.ZException;
+import org.xbib.io.iso23950.operations.PresentOperation;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.CompSpec;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ */
+public class FieldSelectionTest {
+
+    private final List<String> compositions = new ArrayList<>();
+
+    /**
+     * Decode the tag paths of an eSpec-1 with simple elements.
+     */
+    private static List<String> paths(CompSpec compSpec) throws Exception {
+        BERConstructed espec = (BERConstructed) compSpec.sGeneric.s_elementSpec.c_externalEspec
+                .getSingleASN1Type().berEncode();
+        Assert.assertEquals(3, new ASN1Integer(espec.elementAt(0), false).get());
+        BERConstructed elements = (BERConstructed) espec.elementAt(1);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < elements.numberComponents(); i++) {
+            BERConstructed path = (BERConstructed) ((BERConstructed) elements.elementAt(i)).elementAt(0);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < path.numberComponents(); j++) {
+                BERConstructed specificTag = (BERConstructed) path.elementAt(j);
+                BEREncoding value = ((BERConstructed) specificTag.elementAt(1)).elementAt(0);
+                sb.append(j > 0 ? "/" : "").append(new ASN1Integer(specificTag.elementAt(0), false).get())
+                        .append(':').append(new ASN1GeneralString(value, false).get());
+            }
+            paths.add(sb.toString());
+        }
+        return paths;
+    }
+
+    private Backend backend(boolean supportsCompSpec) {
+        return backend(supportsCompSpec ? 0 : 25);
+    }
+
+    /**
+     * A backend failing presents with a CompSpec with a diagnostic condition, if not 0.
+     */
+    private Backend backend(int condition) {
+        return new Backend() {
+            @Override
+            public SearchResponse search(Association association, SearchRequest request) {
+                return Responses.search(10);
+            }
+
+            @Override
+            public PresentResponse present(Association association, PresentRequest request) {
+                String content;
+                if (request.s_recordComposition.c_complex != null) {
+                    if (condition != 0) {
+                        compositions.add("rejected");
+                        return Responses.presentFailure(condition, null);
+                    }
+                    try {
+                        content = String.join(",", paths(request.s_recordComposition.c_complex));
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                } else {
+                    content = request.s_recordComposition.c_simple.cGenericElementSetName.value.get();
+                }
+                compositions.add(content);
+                int start = request.s_resultSetStartPoint.get();
+                NamePlusRecord[] records = new NamePlusRecord[request.s_numberOfRecordsRequested.get()];
+                for (int i = 0; i < records.length; i++) {
+                    records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                            content.getBytes(StandardCharsets.UTF_8));
+                }
+                return Responses.present(start, records);
+            }
+        };
+    }
+
+    private List<String> present(Backend backend, FieldSelection selection) throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.connect(server.getPort())) {
+            List<String> records = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                new PresentOperation(selection).execute(client, 1, 1, null,
+                        record -> records.add(record.toString(StandardCharsets.UTF_8)));
+            }
+            return records;
+        }
+    }
+
+    @Test
+    public void testCompSpec() throws Exception {
+        FieldSelection selection = FieldSelection.builder().addPath("245/a").addPath("2:856").build();
+        Assert.assertEquals(Arrays.asList("3:245/3:a,2:856", "3:245/3:a,2:856"), present(backend(true), selection));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        FieldSelection selection = FieldSelection.builder().addPath("020").addPath("245")
+                .setFallbackElementSetName("B").build();
+        Assert.assertEquals(Arrays.asList("B", "B"), present(backend(false), selection));
+        Assert.assertEquals(Arrays.asList("rejected", "B", "B"), compositions);
+    }
+
+    @Test
+    public void testFallbackForCompSpecNotSupported() throws Exception {
+        FieldSelection selection = FieldSelection.builder().addPath("245").setFallbackElementSetName("B").build();
+        Assert.assertEquals(Arrays.asList("B", "B"), present(backend(244), selection));
+        Assert.assertEquals(Arrays.asList("rejected", "B", "B"), compositions);
+    }
+
+    @Test
+    public void testOtherFailureIsNotRejection() throws Exception {
+        FieldSelection selection = FieldSelection.builder().addPath("245").setFallbackElementSetName("B").build();
+        for (int condition : new int[]{Responses.PRESENT_OUT_OF_RANGE, Responses.RESULT_SET_DOES_NOT_EXIST,
+                Responses.TEMPORARY_SYSTEM_ERROR}) {
+            compositions.clear();
+            try {
+                present(backend(condition), selection);
+                Assert.fail();
+            } catch (ZException e) {
+                // the CompSpec is not taken as rejected, so there is no retry with the fallback
+                Assert.assertEquals(Collections.singletonList("rejected"), compositions);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPath() {
+        FieldSelection.builder().addPath("245//a").build();
+    }
+}
@@ -0,0 +1,108 @@
+package org.xbib.io.iso23950.retrieval;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ */
+public class TieredResultSetTest {
+
+    private final List<String> presents = new ArrayList<>();
+
+    private final Backend backend = new Backend() {
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) {
+            return Responses.search(30);
+        }
+
+        @Override
+        public PresentResponse present(Association association, PresentRequest request) {
+            String elementSetName = request.s_recordComposition.c_simple.cGenericElementSetName.value.get();
+            int start = request.s_resultSetStartPoint.get();
+            List<NamePlusRecord> records = new ArrayList<>();
+            List<int[]> ranges = new ArrayList<>();
+            ranges.add(new int[]{start, request.s_numberOfRecordsRequested.get()});
+            if (request.s_additionalRanges != null) {
+                for (int i = 0; i < request.s_additionalRanges.length; i++) {
+                    ranges.add(new int[]{request.s_additionalRanges[i].s_startingPosition.get(),
+                            request.s_additionalRanges[i].s_numberOfRecords.get()});
+                }
+            }
+            for (int[] range : ranges) {
+                for (int i = 0; i < range[1]; i++) {
+                    records.add(Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                            (elementSetName + " " + (range[0] + i)).getBytes(StandardCharsets.UTF_8)));
+                }
+                presents.add(elementSetName + range[0] + "+" + range[1]);
+            }
+            return Responses.present(start, records.toArray(new NamePlusRecord[0]));
+        }
+    };
+
+    @Test
+    public void testTiers() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.connect(server.getPort())) {
+            TieredResultSet resultSet = TieredResultSet.builder().setClient(client).build();
+            Assert.assertEquals(30, resultSet.search(new PQFCompiler().compile("@attr 1=4 linux")));
+            List<RecordHandle> page = resultSet.list(21, 20);
+            Assert.assertEquals(10, page.size());
+            Assert.assertEquals("B 21", page.get(0).getBrief().toString(StandardCharsets.UTF_8));
+            Assert.assertFalse(page.get(0).isFullCached());
+            Assert.assertEquals("F 21", page.get(0).getFull().toString(StandardCharsets.UTF_8));
+            Assert.assertTrue(page.get(0).isFullCached());
+            Assert.assertEquals("F 21", page.get(0).getFull().toString(StandardCharsets.UTF_8));
+            resultSet.fetchFull(Arrays.asList(page.get(0), page.get(3), page.get(4), page.get(9)));
+            Assert.assertEquals("F 30", page.get(9).getFull().toString(StandardCharsets.UTF_8));
+            Assert.assertEquals(Arrays.asList("B21+10", "F21+1", "F24+2", "F30+1"), presents);
+            Assert.assertEquals(2L, resultSet.getFullPresents());
+        }
+    }
+
+    @Test
+    public void testStaleHandles() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = TestClients.connect(server.getPort())) {
+            TieredResultSet resultSet = TieredResultSet.builder().setClient(client).build();
+            resultSet.search(new PQFCompiler().compile("@attr 1=4 linux"));
+            List<RecordHandle> page = resultSet.list(1, 2);
+            page.get(0).getFull();
+            Assert.assertTrue(page.get(0).isFullCached());
+            resultSet.search(new PQFCompiler().compile("@attr 1=4 unix"));
+            Assert.assertFalse(page.get(0).isFullCached());
+            try {
+                page.get(1).getFull();
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            try {
+                resultSet.fetchFull(page);
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            Assert.assertEquals(1L, resultSet.getFullPresents());
+            // handles of the new search resolve
+            Assert.assertEquals("F 2", resultSet.list(2, 1).get(0).getFull().toString(StandardCharsets.UTF_8));
+        }
+    }
+}
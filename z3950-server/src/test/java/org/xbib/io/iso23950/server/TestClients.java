@@ -0,0 +1,87 @@
+package org.xbib.io.iso23950.server;
+
+import org.xbib.io.iso23950.ZClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+
+/**
+ * Clients of the test servers on localhost.
+ */
+public final class TestClients {
+
+    /**
+     * The XML record syntax, used by the test backends.
+     */
+    public static final String XML = "1.2.840.10003.5.109.10";
+
+    /**
+     * The USMARC record syntax, used by the memory backend.
+     */
+    public static final String USMARC = "1.2.840.10003.5.10";
+
+    private TestClients() {
+    }
+
+    /**
+     * A builder for a client of database {@code test}, asking for XML records.
+     *
+     * @param port the port of the server
+     * @return the builder
+     */
+    public static ZClient.Builder builder(int port) {
+        return ZClient.builder()
+                .setHost("localhost")
+                .setPort(port)
+                .setTimeout(1000L)
+                .setPreferredRecordSyntax(XML)
+                .setResultSetName("default")
+                .setElementSetName("F")
+                .setEncoding("UTF-8")
+                .setFormat("XML")
+                .setType("Bibliographic")
+                .setDatabases(Collections.singletonList("test"))
+                .setPreferredMessageSize(65536);
+    }
+
+    /**
+     * A builder for a client of a database, asking for USMARC records.
+     *
+     * @param port the port of the server
+     * @param database the database
+     * @return the builder
+     */
+    public static ZClient.Builder marc(int port, String database) {
+        return builder(port)
+                .setPreferredRecordSyntax(USMARC)
+                .setFormat("MARC21")
+                .setDatabases(Collections.singletonList(database));
+    }
+
+    /**
+     * Connect a client of database {@code test}.
+     *
+     * @param port the port of the server
+     * @return the client
+     * @throws IOException if the client can not connect
+     */
+    public static ZClient connect(int port) throws IOException {
+        return build(builder(port));
+    }
+
+    /**
+     * Connect a client, throwing connection errors as I/O exceptions, e.g. for client factories.
+     *
+     * @param builder the builder
+     * @return the client
+     * @throws IOException if the client can not connect
+     */
+    public static ZClient build(ZClient.Builder builder) throws IOException {
+        try {
+            return builder.build();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.xbib.io.iso23950.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.ASN1Sequence;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ */
+public class ZServerTest {
+
+    @Test
+    public void testSearchAndPresent() throws Exception {
+        Backend backend = new Backend() {
+            @Override
+            public SearchResponse search(Association association, SearchRequest request) {
+                association.getAttributes().put(request.s_resultSetName.value.get(), 3);
+                return Responses.search(3);
+            }
+
+            @Override
+            public PresentResponse present(Association association, PresentRequest request) {
+                int start = request.s_resultSetStartPoint.get();
+                int n = request.s_numberOfRecordsRequested.get();
+                NamePlusRecord[] records = new NamePlusRecord[n];
+                for (int i = 0; i < n; i++) {
+                    records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                            ("record " + (start + i)).getBytes(StandardCharsets.UTF_8));
+                }
+                return Responses.present(start, records);
+            }
+        };
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start()) {
+            for (int i = 0; i < 2; i++) {
+                try (ZClient client = TestClients.connect(server.getPort())) {
+                    List<Record> records = new ArrayList<>();
+                    int count = client.executePQF("@attr 1=4 linux", 1, 10, null, records::add);
+                    Assert.assertEquals(3, count);
+                    Assert.assertEquals(3, records.size());
+                    Assert.assertEquals("record 3", records.get(2).toString(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFrames() throws Exception {
+        ASN1Sequence sequence = new ASN1Sequence(new ASN1Integer[]{new ASN1Integer(1), new ASN1Integer(300)});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sequence.berEncode().output(out);
+        byte[] definite = out.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        for (int i = 0; i < definite.length - 1; i++) {
+            buffer.put(definite[i]);
+            buffer.flip();
+            Assert.assertEquals(-1, BERFrames.length(buffer, 1024));
+            buffer.position(buffer.limit());
+            buffer.limit(buffer.capacity());
+        }
+        buffer.put(definite[definite.length - 1]);
+        buffer.flip();
+        Assert.assertEquals(definite.length, BERFrames.length(buffer, 1024));
+        // the same sequence with indefinite length
+        byte[] indefinite = new byte[definite.length + 2];
+        indefinite[0] = definite[0];
+        indefinite[1] = (byte) 0x80;
+        System.arraycopy(definite, 2, indefinite, 2, definite.length - 2);
+        Assert.assertEquals(indefinite.length, BERFrames.length(ByteBuffer.wrap(indefinite), 1024));
+        Assert.assertEquals(-1, BERFrames.length(ByteBuffer.wrap(indefinite, 0, indefinite.length - 1), 1024));
+        try {
+            BERFrames.length(ByteBuffer.wrap(definite), 4);
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertNotNull(BEREncoding.input(new ByteArrayInputStream(indefinite)));
+    }
+}
@@ -0,0 +1,66 @@
+package org.xbib.io.iso23950.server.memory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ */
+public class MemoryBackendTest {
+
+    private static InvertedIndex createIndex() throws Exception {
+        return TestRecords.index(
+                TestRecords.marc("1", "245", "aLinux in a nutshell.", "100", "aSiever, Ellen",
+                        "650", "aOperating systems"),
+                TestRecords.marc("2", "245", "aLearning the Unix operating system", "100", "aPeek, Jerry",
+                        "650", "aOperating systems"),
+                TestRecords.marc("3", "245", "aThe Linux programming interface", "100", "aKerrisk, Michael",
+                        "260", "bNo Starch Press,c2010"));
+    }
+
+    private static int[] search(InvertedIndex index, String pqf) throws Exception {
+        return index.search(new PQFCompiler().compile(pqf).s_rpn, name -> null);
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        InvertedIndex index = createIndex();
+        Assert.assertEquals(3, index.size());
+        Assert.assertArrayEquals(new int[]{0, 2}, search(index, "@attr 1=4 linux"));
+        Assert.assertArrayEquals(new int[]{0, 2}, search(index, "linux"));
+        Assert.assertArrayEquals(new int[]{2}, search(index, "@and @attr 1=4 linux @attr 1=1003 kerrisk"));
+        Assert.assertArrayEquals(new int[]{0, 1, 2}, search(index, "@or @attr 1=4 linux @attr 1=4 unix"));
+        Assert.assertArrayEquals(new int[]{0}, search(index, "@not @attr 1=4 linux @attr 1=31 2010"));
+        Assert.assertArrayEquals(new int[]{0, 1}, search(index, "@attr 1=21 @attr 4=1 \"operating systems\""));
+        Assert.assertArrayEquals(new int[]{0}, search(index, "@attr 1=4 @attr 4=1 \"linux in a nutshell\""));
+        Assert.assertArrayEquals(new int[]{2}, search(index, "@attr 1=4 @attr 5=1 program"));
+        Assert.assertArrayEquals(new int[]{1}, search(index, "@attr 1=4 @attr 5=2 nix"));
+        Assert.assertArrayEquals(new int[]{0}, search(index, "@attr 1=1003 @attr 2=1 jerry"));
+        Assert.assertArrayEquals(new int[]{1}, search(index, "@attr 1=12 2"));
+        Assert.assertArrayEquals(new int[0], search(index, "@attr 1=4 windows"));
+    }
+
+    @Test
+    public void testServer() throws Exception {
+        InvertedIndex index = createIndex();
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0)
+                .setBackend(new MemoryBackend(index, "books")).build().start();
+             ZClient client = TestClients.build(TestClients.marc(server.getPort(), "books"))) {
+            List<Record> records = new ArrayList<>();
+            int count = client.executePQF("@attr 1=4 linux", 1, 10, null, records::add);
+            Assert.assertEquals(2, count);
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals(new String(index.getRecord(2), StandardCharsets.UTF_8),
+                    records.get(1).toString(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.xbib.io.iso23950.server.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MARC records and indexes for tests.
+ */
+public final class TestRecords {
+
+    private TestRecords() {
+    }
+
+    /**
+     * Build an index of records.
+     *
+     * @param records the ISO 2709 records
+     * @return the index
+     * @throws IOException if a record can not be indexed
+     */
+    public static InvertedIndex index(byte[]... records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] record : records) {
+            out.write(record);
+        }
+        return InvertedIndex.builder().addRecords(new ByteArrayInputStream(out.toByteArray())).build();
+    }
+
+    /**
+     * Build a MARC record with control number and data fields given as tag, subfields pairs,
+     * e.g. {@code marc("1", "245", "aTitle,bSubtitle")}.
+     *
+     * @param id the control number
+     * @param fields the tags and subfields
+     * @return the ISO 2709 record
+     * @throws IOException if the record can not be written
+     */
+    public static byte[] marc(String id, String... fields) throws IOException {
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        entry(directory, data, "001", id.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < fields.length; i += 2) {
+            ByteArrayOutputStream field = new ByteArrayOutputStream();
+            field.write(new byte[]{' ', ' '});
+            for (String subfield : fields[i + 1].split(",(?=[a-z])")) {
+                field.write(Iso2709.SUBFIELD_DELIMITER);
+                field.write(subfield.getBytes(StandardCharsets.UTF_8));
+            }
+            entry(directory, data, fields[i], field.toByteArray());
+        }
+        directory.write(Iso2709.FIELD_TERMINATOR);
+        int base = 24 + directory.size();
+        int length = base + data.size() + 1;
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        record.write(String.format("%05dnam a22%05d   4500", length, base).getBytes(StandardCharsets.US_ASCII));
+        directory.writeTo(record);
+        data.writeTo(record);
+        record.write(Iso2709.RECORD_TERMINATOR);
+        return record.toByteArray();
+    }
+
+    private static void entry(ByteArrayOutputStream directory, ByteArrayOutputStream data, String tag, byte[] value)
+            throws IOException {
+        directory.write(String.format("%s%04d%05d", tag, value.length + 1, data.size())
+                .getBytes(StandardCharsets.US_ASCII));
+        data.write(value);
+        data.write(Iso2709.FIELD_TERMINATOR);
+    }
+}
@@ -0,0 +1,106 @@
+package org.xbib.io.iso23950.server.proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.pool.ZClientPool;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class ProxyBackendTest {
+
+    @Test
+    public void testProxy() throws Exception {
+        AtomicInteger searches = new AtomicInteger();
+        Backend upstream = new Backend() {
+            @Override
+            public SearchResponse search(Association association, SearchRequest request) {
+                searches.incrementAndGet();
+                association.getAttributes().put(request.s_resultSetName.value.get(), 5);
+                return Responses.search(5);
+            }
+
+            @Override
+            public PresentResponse present(Association association, PresentRequest request) {
+                if (!association.getAttributes().containsKey(request.s_resultSetId.value.value.get())) {
+                    return Responses.presentFailure(Responses.RESULT_SET_DOES_NOT_EXIST, null);
+                }
+                int start = request.s_resultSetStartPoint.get();
+                int n = request.s_numberOfRecordsRequested.get();
+                NamePlusRecord[] records = new NamePlusRecord[n];
+                for (int i = 0; i < n; i++) {
+                    records[i] = Responses.record("books", new int[]{1, 2, 840, 10003, 5, 10},
+                            ("record " + (start + i)).getBytes(StandardCharsets.UTF_8));
+                }
+                return Responses.present(start, records);
+            }
+        };
+        try (ZServer upstreamServer = ZServer.builder().setHost("localhost").setPort(0)
+                .setBackend(upstream).build().start();
+             ZClientPool pool = new ZClientPool(() -> client(upstreamServer.getPort()), 1, 10, TimeUnit.SECONDS)) {
+            ProxyBackend proxy = ProxyBackend.builder().setPool(pool).build();
+            try (ZServer proxyServer = ZServer.builder().setHost("localhost").setPort(0)
+                    .setBackend(proxy).build().start()) {
+                ExecutorService executor = Executors.newFixedThreadPool(8);
+                try {
+                    List<Future<List<Record>>> futures = new ArrayList<>();
+                    for (int i = 0; i < 16; i++) {
+                        futures.add(executor.submit(() -> search(proxyServer.getPort(), "@attr 1=4 linux")));
+                    }
+                    for (Future<List<Record>> future : futures) {
+                        List<Record> records = future.get();
+                        Assert.assertEquals(3, records.size());
+                        Assert.assertEquals("record 3", records.get(2).toString(StandardCharsets.UTF_8));
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+                Assert.assertEquals(1, searches.get());
+                Assert.assertEquals(1, pool.getIdle());
+                long presents = proxy.getUpstreamPresents();
+                Assert.assertEquals(3, proxy.getCachedRecords());
+                // served from the record cache
+                Assert.assertEquals(3, search(proxyServer.getPort(), "@attr 1=4 linux").size());
+                Assert.assertEquals(presents, proxy.getUpstreamPresents());
+                Assert.assertEquals(1, searches.get());
+                // a different query goes upstream
+                Assert.assertEquals(3, search(proxyServer.getPort(), "@attr 1=4 unix").size());
+                Assert.assertEquals(2, searches.get());
+            }
+        }
+    }
+
+    private static List<Record> search(int port, String query) throws Exception {
+        try (ZClient client = client(port)) {
+            List<Record> records = new ArrayList<>();
+            Assert.assertEquals(5, client.executePQF(query, 1, 3, (status, count, millis) -> { }, records::add));
+            return records;
+        }
+    }
+
+    private static ZClient client(int port) throws IOException {
+        return TestClients.build(TestClients.marc(port, "books"));
+    }
+}
@@ -0,0 +1,118 @@
+package org.xbib.io.iso23950.server.replay;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1Boolean;
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.capture.PDUCapture;
+import org.xbib.io.iso23950.capture.PDUCaptureReader;
+import org.xbib.io.iso23950.capture.PDUFrame;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.DatabaseName;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.Query;
+import org.xbib.io.iso23950.v3.ResultSetId;
+import org.xbib.io.iso23950.v3.SearchRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ */
+public class ReplayBackendTest {
+
+    @Test
+    public void testReplay() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PDUCapture capture = new PDUCapture(out)) {
+            int stream = capture.newStream();
+            capture.write(stream, PDUCapture.OUTGOING, encode(searchRequest()));
+            PDU searchResponse = new PDU();
+            searchResponse.c_searchResponse = Responses.search(3);
+            capture.write(stream, PDUCapture.INCOMING, encode(searchResponse));
+            PDU presentRequest = new PDU();
+            presentRequest.c_presentRequest = new PresentRequest();
+            presentRequest.c_presentRequest.s_resultSetId = new ResultSetId();
+            presentRequest.c_presentRequest.s_resultSetId.value = new InternationalString();
+            presentRequest.c_presentRequest.s_resultSetId.value.value = new ASN1GeneralString("default");
+            presentRequest.c_presentRequest.s_resultSetStartPoint = new ASN1Integer(1);
+            presentRequest.c_presentRequest.s_numberOfRecordsRequested = new ASN1Integer(3);
+            capture.write(stream, PDUCapture.OUTGOING, encode(presentRequest));
+            NamePlusRecord[] records = new NamePlusRecord[3];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 10},
+                        ("record " + (i + 1)).getBytes(StandardCharsets.UTF_8));
+            }
+            PDU presentResponse = new PDU();
+            presentResponse.c_presentResponse = Responses.present(1, records);
+            capture.write(stream, PDUCapture.INCOMING, encode(presentResponse));
+        }
+        try (PDUCaptureReader reader = new PDUCaptureReader(new ByteArrayInputStream(out.toByteArray()))) {
+            Assert.assertTrue(reader.getStartMillis() > 0L);
+            long nanos = -1L;
+            int n = 0;
+            PDUFrame frame;
+            while ((frame = reader.read()) != null) {
+                Assert.assertEquals(0, frame.getStream());
+                Assert.assertEquals(n % 2 == 0 ? PDUCapture.OUTGOING : PDUCapture.INCOMING, frame.getDirection());
+                Assert.assertTrue(frame.getNanos() >= nanos);
+                Assert.assertNotNull(frame.decode());
+                nanos = frame.getNanos();
+                n++;
+            }
+            Assert.assertEquals(4, n);
+        }
+        ReplayBackend backend;
+        try (PDUCaptureReader reader = new PDUCaptureReader(new ByteArrayInputStream(out.toByteArray()))) {
+            backend = new ReplayBackend(reader, 0.0d);
+        }
+        Assert.assertEquals(2, backend.size());
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start()) {
+            for (int i = 0; i < 2; i++) {
+                try (ZClient client = TestClients.build(TestClients.marc(server.getPort(), "test"))) {
+                    List<Record> records = new ArrayList<>();
+                    Assert.assertEquals(3, client.executePQF("@attr 1=4 linux", 1, 3, null, records::add));
+                    Assert.assertEquals(3, records.size());
+                    Assert.assertEquals("record 2", records.get(1).toString(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        // no init captured, both init requests were answered by default
+        Assert.assertEquals(2L, backend.getMisses());
+    }
+
+    private static PDU searchRequest() throws Exception {
+        SearchRequest search = new SearchRequest();
+        search.s_query = new Query();
+        search.s_query.c_type_1 = new PQFCompiler().compile("@attr 1=4 linux");
+        search.s_smallSetUpperBound = new ASN1Integer(0);
+        search.s_largeSetLowerBound = new ASN1Integer(1);
+        search.s_mediumSetPresentNumber = new ASN1Integer(0);
+        search.s_replaceIndicator = new ASN1Boolean(true);
+        search.s_resultSetName = new InternationalString();
+        search.s_resultSetName.value = new ASN1GeneralString("default");
+        search.s_databaseNames = new DatabaseName[]{new DatabaseName()};
+        search.s_databaseNames[0].value = new InternationalString();
+        search.s_databaseNames[0].value.value = new ASN1GeneralString("test");
+        PDU pdu = new PDU();
+        pdu.c_searchRequest = search;
+        return pdu;
+    }
+
+    private static byte[] encode(PDU pdu) throws Exception {
+        return pdu.berEncode().encodingGet();
+    }
+}
@@ -0,0 +1,162 @@
+package org.xbib.io.iso23950.stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.DeleteResultSetRequest;
+import org.xbib.io.iso23950.v3.DeleteResultSetResponse;
+import org.xbib.io.iso23950.v3.DeleteSetStatus;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ */
+public class RecordPublisherTest {
+
+    private final List<Integer> windows = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+
+    private final Backend backend = new Backend() {
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) {
+            return Responses.search(25);
+        }
+
+        @Override
+        public PresentResponse present(Association association, PresentRequest request) {
+            int start = request.s_resultSetStartPoint.get();
+            int n = request.s_numberOfRecordsRequested.get();
+            windows.add(n);
+            NamePlusRecord[] records = new NamePlusRecord[n];
+            for (int i = 0; i < n; i++) {
+                records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                        ("record " + (start + i)).getBytes(StandardCharsets.UTF_8));
+            }
+            return Responses.present(start, records);
+        }
+
+        @Override
+        public DeleteResultSetResponse deleteResultSet(Association association, DeleteResultSetRequest request) {
+            deleted.add(request.sResultSetList[0].value.value.get());
+            return Responses.deleteResultSet(DeleteSetStatus.E_SUCCESS);
+        }
+    };
+
+    private static ZClient client(ZServer server) throws Exception {
+        return TestClients.connect(server.getPort());
+    }
+
+    @Test
+    public void testDemandDrivesWindows() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = client(server)) {
+            RecordPublisher publisher = RecordPublisher.builder().setClient(client)
+                    .setQuery(client.createRPNQueryFromPQF("@attr 1=4 linux"))
+                    .setMaxWindow(10).setPrefetch(2).build();
+            TestSubscriber subscriber = new TestSubscriber();
+            publisher.subscribe(subscriber);
+            subscriber.subscription.request(3L);
+            Assert.assertEquals(3, subscriber.records.size());
+            Assert.assertEquals(Collections.singletonList(5), windows);
+            subscriber.subscription.request(Long.MAX_VALUE);
+            Assert.assertTrue(subscriber.completed);
+            Assert.assertEquals(25, subscriber.records.size());
+            Assert.assertEquals("record 25", subscriber.records.get(24).toString(StandardCharsets.UTF_8));
+            Assert.assertEquals(Arrays.asList(5, 10, 10), windows);
+            TestSubscriber second = new TestSubscriber();
+            publisher.subscribe(second);
+            Assert.assertTrue(second.error instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = client(server)) {
+            RecordPublisher publisher = RecordPublisher.builder().setClient(client)
+                    .setQuery(client.createRPNQueryFromPQF("@attr 1=4 linux"))
+                    .setDeleteOnCancel(true).build();
+            TestSubscriber subscriber = new TestSubscriber() {
+                @Override
+                public void onNext(Record record) {
+                    super.onNext(record);
+                    if (records.size() == 4) {
+                        subscription.cancel();
+                    }
+                }
+            };
+            publisher.subscribe(subscriber);
+            subscriber.subscription.request(2L);
+            subscriber.subscription.request(2L);
+            subscriber.subscription.request(2L);
+            Assert.assertEquals(4, subscriber.records.size());
+            Assert.assertFalse(subscriber.completed);
+            Assert.assertEquals(Arrays.asList(2, 2), windows);
+            Assert.assertEquals(Collections.singletonList("default"), deleted);
+        }
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = client(server)) {
+            RecordPublisher publisher = RecordPublisher.builder().setClient(client)
+                    .setQuery(client.createRPNQueryFromPQF("@attr 1=4 linux")).build();
+            TestSubscriber subscriber = new TestSubscriber();
+            publisher.subscribe(subscriber);
+            subscriber.subscription.request(0L);
+            Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+            Assert.assertTrue(windows.isEmpty());
+        }
+    }
+
+    private static class TestSubscriber implements Subscriber<Record> {
+
+        Subscription subscription;
+
+        final List<Record> records = new ArrayList<>();
+
+        boolean completed;
+
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Record record) {
+            records.add(record);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+}
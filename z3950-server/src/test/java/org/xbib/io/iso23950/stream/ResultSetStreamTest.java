@@ -0,0 +1,91 @@
+package org.xbib.io.iso23950.stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.pool.ZClientPool;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.server.Association;
+import org.xbib.io.iso23950.server.Backend;
+import org.xbib.io.iso23950.server.Responses;
+import org.xbib.io.iso23950.server.TestClients;
+import org.xbib.io.iso23950.server.ZServer;
+import org.xbib.io.iso23950.v3.NamePlusRecord;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ *
+ */
+public class ResultSetStreamTest {
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    private final Backend backend = new Backend() {
+        @Override
+        public SearchResponse search(Association association, SearchRequest request) {
+            searches.incrementAndGet();
+            association.getAttributes().put(request.s_resultSetName.value.get(), 500);
+            return Responses.search(500);
+        }
+
+        @Override
+        public PresentResponse present(Association association, PresentRequest request) {
+            if (!association.getAttributes().containsKey(request.s_resultSetId.value.value.get())) {
+                return Responses.presentFailure(Responses.RESULT_SET_DOES_NOT_EXIST, null);
+            }
+            int start = request.s_resultSetStartPoint.get();
+            int n = request.s_numberOfRecordsRequested.get();
+            NamePlusRecord[] records = new NamePlusRecord[n];
+            for (int i = 0; i < n; i++) {
+                records[i] = Responses.record("test", new int[]{1, 2, 840, 10003, 5, 109, 10},
+                        ("record " + (start + i)).getBytes(StandardCharsets.UTF_8));
+            }
+            return Responses.present(start, records);
+        }
+    };
+
+    private static ZClient client(ZServer server) throws IOException {
+        return TestClients.connect(server.getPort());
+    }
+
+    @Test
+    public void testClientStream() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClient client = client(server)) {
+            List<String> records = client.stream(client.createRPNQueryFromPQF("@attr 1=4 linux"), 20)
+                    .parallel()
+                    .map(record -> record.toString(StandardCharsets.UTF_8))
+                    .collect(Collectors.toList());
+            Assert.assertEquals(500, records.size());
+            Assert.assertEquals("record 500", records.get(499));
+        }
+    }
+
+    @Test
+    public void testPoolStream() throws Exception {
+        try (ZServer server = ZServer.builder().setHost("localhost").setPort(0).setBackend(backend).build().start();
+             ZClientPool pool = new ZClientPool(() -> client(server), 4, 5L, TimeUnit.SECONDS)) {
+            List<Integer> numbers;
+            try (Stream<Record> stream = pool.stream(new PQFCompiler().compile("@attr 1=4 linux"), 25)) {
+                numbers = stream.parallel().map(Record::getNumber).collect(Collectors.toList());
+            }
+            Assert.assertEquals(500, numbers.size());
+            for (int i = 0; i < numbers.size(); i++) {
+                Assert.assertEquals(i + 1, numbers.get(i).intValue());
+            }
+            Assert.assertTrue(searches.get() >= 1 && searches.get() <= 5);
+        }
+    }
+}
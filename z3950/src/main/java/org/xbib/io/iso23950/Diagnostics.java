@@ -1,6 +1,7 @@
 package org.xbib.io.iso23950;
 
 import java.io.IOException;
+import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
 /**
@@ -8,8 +9,7 @@ import java.util.ResourceBundle;
  */
 public class Diagnostics extends IOException {
 
-    private static final ResourceBundle bundle =
-            ResourceBundle.getBundle("org.xbib.io.iso23950.diagnostics");
+    private static final ResourceBundle bundle = getBundle();
 
     private static final long serialVersionUID = -899201811019819079L;
 
@@ -37,8 +37,17 @@ public class Diagnostics extends IOException {
         this.details = details;
     }
 
+    public int getDiagCode() {
+        return diagCode;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
     public String getPlainText() {
-        String[] s = bundle.getString(Integer.toString(diagCode)).split("\\|");
+        String[] s = bundle != null && bundle.containsKey(Integer.toString(diagCode)) ?
+                bundle.getString(Integer.toString(diagCode)).split("\\|") : new String[0];
         if (message == null) {
             message = s.length > 0 ? s[1] : "<undefined>";
         }
@@ -52,6 +61,14 @@ public class Diagnostics extends IOException {
         return sb.toString();
     }
 
+    private static ResourceBundle getBundle() {
+        try {
+            return ResourceBundle.getBundle("org.xbib.io.iso23950.diagnostics");
+        } catch (MissingResourceException e) {
+            return null;
+        }
+    }
+
     @Override
     public String toString() {
         return getPlainText();
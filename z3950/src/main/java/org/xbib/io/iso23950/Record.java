@@ -13,12 +13,9 @@ public class Record {
 
     private final byte[] content;
 
-    private final ByteArrayInputStream stream;
-
     public Record(int number, byte[] content) {
         this.number = number;
         this.content = content;
-        this.stream = new ByteArrayInputStream(content);
     }
 
     public int getNumber() {
@@ -26,7 +23,8 @@ public class Record {
     }
 
     public InputStream asStream() {
-        return stream;
+        // a new stream for each call, records may be shared between listeners
+        return new ByteArrayInputStream(content);
     }
 
     public String toString(Charset charset) {
@@ -4,12 +4,25 @@ import org.xbib.asn1.ASN1Exception;
 import org.xbib.asn1.ASN1Integer;
 import org.xbib.asn1.BEREncoding;
 import org.xbib.cql.CQLParser;
+import org.xbib.io.iso23950.capture.PDUCapture;
+import org.xbib.io.iso23950.cache.PreparedQuery;
+import org.xbib.io.iso23950.cache.RPNQueryCache;
 import org.xbib.io.iso23950.cql.CQLRPNGenerator;
+import org.xbib.io.iso23950.cql.ContextSetRegistry;
+import org.xbib.io.iso23950.governor.TargetGovernor;
+import org.xbib.io.iso23950.health.TimeoutPolicy;
+import org.xbib.io.iso23950.metrics.ClientMetrics;
+import org.xbib.io.iso23950.metrics.MetricsRegistry;
+import org.xbib.io.iso23950.metrics.Operation;
 import org.xbib.io.iso23950.operations.InitOperation;
 import org.xbib.io.iso23950.operations.PresentOperation;
 import org.xbib.io.iso23950.operations.SearchOperation;
-import org.xbib.io.iso23950.pqf.PQFParser;
-import org.xbib.io.iso23950.pqf.PQFRPNGenerator;
+import org.xbib.io.iso23950.operations.SplitSearchOperation;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.rpn.RPNOptimizer;
+import org.xbib.io.iso23950.stream.ResultSetSpliterator;
+import org.xbib.io.iso23950.trace.PDUTrace;
+import org.xbib.io.iso23950.trace.PDUTracer;
 import org.xbib.io.iso23950.v3.Close;
 import org.xbib.io.iso23950.v3.CloseReason;
 import org.xbib.io.iso23950.v3.PDU;
@@ -19,17 +32,20 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.MissingResourceException;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Default Z client.
@@ -38,6 +54,8 @@ public class ZClient implements AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(ZClient.class.getName());
 
+    private static final ThreadLocal<PQFCompiler> pqfCompiler = ThreadLocal.withInitial(PQFCompiler::new);
+
     private final String host;
 
     private final int port;
@@ -68,6 +86,34 @@ public class ZClient implements AutoCloseable {
 
     private final BufferedOutputStream dest;
 
+    private final RPNQueryCache queryCache;
+
+    private final RPNOptimizer queryOptimizer;
+
+    private final List<Object> queryScope;
+
+    private final int maxQueryOperands;
+
+    private final PDUCapture capture;
+
+    private final int captureStream;
+
+    private final ClientMetrics metrics;
+
+    private final PDUTracer tracer;
+
+    private final String target;
+
+    private final TargetGovernor governor;
+
+    private final TimeoutPolicy timeoutPolicy;
+
+    private final TargetGovernor.Permit association;
+
+    private TargetGovernor.Permit operation;
+
+    private volatile boolean aborted;
+
     public ZClient(String host, int port, String user, String pass, long timeout,
                    String preferredRecordSyntax,
                    String resultSetName,
@@ -78,6 +124,29 @@ public class ZClient implements AutoCloseable {
                    List<String> databases,
                    Integer preferredMessageSize,
                    InitListener initListener) throws IOException {
+        this(host, port, user, pass, timeout, preferredRecordSyntax, resultSetName, elementSetName,
+                encoding, format, type, databases, preferredMessageSize, initListener,
+                null, null, 0, null, null, null, null, null);
+    }
+
+    private ZClient(String host, int port, String user, String pass, long timeout,
+                    String preferredRecordSyntax,
+                    String resultSetName,
+                    String elementSetName,
+                    String encoding,
+                    String format,
+                    String type,
+                    List<String> databases,
+                    Integer preferredMessageSize,
+                    InitListener initListener,
+                    RPNQueryCache queryCache,
+                    RPNOptimizer queryOptimizer,
+                    int maxQueryOperands,
+                    PDUCapture capture,
+                    MetricsRegistry metricsRegistry,
+                    PDUTracer tracer,
+                    TargetGovernor governor,
+                    TimeoutPolicy timeoutPolicy) throws IOException {
         this.host = host;
         this.port = port;
         this.user = user;
@@ -90,16 +159,43 @@ public class ZClient implements AutoCloseable {
         this.format = format;
         this.type = type;
         this.databases = databases;
+        this.queryCache = queryCache;
+        this.queryOptimizer = queryOptimizer;
+        this.maxQueryOperands = maxQueryOperands;
+        // everything compiled queries depend on besides the query string
+        this.queryScope = queryCache != null ? Arrays.asList(ContextSetRegistry.getDefault(), queryOptimizer,
+                queryOptimizer != null && queryOptimizer.getSelectivity() != null ? host + ":" + port : null) : null;
+        this.capture = capture;
+        this.captureStream = capture != null ? capture.newStream() : -1;
+        this.target = host + ":" + port;
+        this.metrics = metricsRegistry != null ? new ClientMetrics(metricsRegistry, target) : null;
+        this.tracer = tracer;
+        this.governor = governor;
+        this.timeoutPolicy = timeoutPolicy;
+        this.association = governor != null ? governor.acquireAssociation(target) : TargetGovernor.Permit.NONE;
         Socket socket = new Socket();
-        socket.connect(new InetSocketAddress(host, port), (int) timeout);
-        socket.setSoTimeout((int) timeout * 1000);
-        this.socket = socket;
-        this.src = new BufferedInputStream(socket.getInputStream());
-        this.dest = new BufferedOutputStream(socket.getOutputStream());
-        // always send init operation after socket init
-        InitOperation init = new InitOperation();
-        if (init.execute(this, preferredMessageSize, initListener)) {
-            throw new IOException("could not initiatie connection");
+        try {
+            try {
+                socket.connect(new InetSocketAddress(host, port), (int) timeout);
+            } catch (IOException e) {
+                if (metrics != null) {
+                    metrics.failed(e);
+                }
+                throw e;
+            }
+            socket.setSoTimeout((int) timeout * 1000);
+            this.socket = socket;
+            this.src = new BufferedInputStream(socket.getInputStream());
+            this.dest = new BufferedOutputStream(socket.getOutputStream());
+            // always send init operation after socket init
+            InitOperation init = new InitOperation();
+            if (init.execute(this, preferredMessageSize, initListener)) {
+                throw new IOException("could not initiatie connection");
+            }
+        } catch (IOException e) {
+            association.close();
+            socket.close();
+            throw e;
         }
     }
 
@@ -155,11 +251,21 @@ public class ZClient implements AutoCloseable {
     }
 
     public boolean isConnected() {
-        return socket != null && socket.isConnected();
+        return socket != null && socket.isConnected() && !socket.isClosed();
+    }
+
+    /**
+     * Whether the association was aborted by {@link #abort(int)}.
+     *
+     * @return true if aborted
+     */
+    public boolean isAborted() {
+        return aborted;
     }
 
     @Override
     public void close() throws IOException {
+        association.close();
         if (isConnected()) {
             try {
                 sendClose(0);
@@ -210,16 +316,87 @@ public class ZClient implements AutoCloseable {
         //waitClosePDU();
     }
 
+    /**
+     * Abort the association from another thread, e.g. to cancel an operation waiting for a response.
+     * A close request is sent without waiting for the response, and the socket is closed, so that
+     * the operation in progress fails with an I/O error. Errors are ignored. The I/O error is a
+     * cancellation, and is neither recorded in the metrics nor traced as a failure.
+     *
+     * @param reason the close reason, see {@link #sendClose(int)}
+     */
+    public void abort(int reason) {
+        if (!isConnected()) {
+            return;
+        }
+        aborted = true;
+        PDU pdu = new PDU();
+        pdu.c_close = new Close();
+        pdu.c_close.sCloseReason = new CloseReason();
+        pdu.c_close.sCloseReason.value = new ASN1Integer(reason);
+        try {
+            BEREncoding ber = pdu.berEncode();
+            synchronized (dest) {
+                ber.output(dest);
+                dest.flush();
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "while attempting to abort connection: " + e.getMessage(), e);
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "while attempting to abort connection: " + e.getMessage(), e);
+        }
+    }
+
     public void writePDU(PDU pdu) throws IOException {
         if (dest == null) {
             throw new IOException("no output stream");
         }
+        if (governor != null && pdu.c_close == null) {
+            // held until the response is read
+            operation = governor.acquireOperation(target);
+        }
+        if (timeoutPolicy != null && pdu.c_close == null) {
+            long millis = timeoutPolicy.getTimeoutMillis(target, Operation.of(pdu));
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, millis));
+        }
+        if (tracer != null) {
+            tracer.beforeSend(target, pdu);
+        }
+        BEREncoding ber;
+        long encodeNanos;
         try {
-            pdu.berEncode().output(dest);
-            dest.flush();
+            long start = System.nanoTime();
+            ber = pdu.berEncode();
+            encodeNanos = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.sent(pdu, encodeNanos, ber.totalLength());
+            }
         } catch (ASN1Exception ex) {
+            releaseOperation();
             throw new IOException(ex);
         }
+        try {
+            // an abort may write from another thread
+            synchronized (dest) {
+                if (capture != null) {
+                    byte[] bytes = ber.encodingGet();
+                    capture.write(captureStream, PDUCapture.OUTGOING, bytes);
+                    dest.write(bytes);
+                } else {
+                    ber.output(dest);
+                }
+                dest.flush();
+            }
+            if (tracer != null) {
+                tracer.sent(new PDUTrace(target, PDUTrace.SENT, pdu, ber.totalLength(), encodeNanos, System.nanoTime()));
+            }
+        } catch (IOException ex) {
+            releaseOperation();
+            failed(ex);
+            throw ex;
+        }
     }
 
     public PDU readPDU() throws IOException {
@@ -231,11 +408,52 @@ public class ZClient implements AutoCloseable {
             if (ber == null) {
                 throw new IOException("read PDU error");
             }
-            return new PDU(ber, true);
+            if (capture != null) {
+                capture.write(captureStream, PDUCapture.INCOMING, ber.encodingGet());
+            }
+            long received = System.nanoTime();
+            PDU pdu = new PDU(ber, true);
+            long decodeNanos = System.nanoTime() - received;
+            if (metrics != null) {
+                metrics.received(pdu, received, decodeNanos, ber.totalLength());
+            }
+            if (tracer != null) {
+                tracer.received(new PDUTrace(target, PDUTrace.RECEIVED, pdu, ber.totalLength(), decodeNanos, received));
+            }
+            return pdu;
         } catch (ASN1Exception ex) {
+            failed(ex);
             throw new IOException(ex);
         } catch (NullPointerException ex) {
             throw new IOException("connection read PDU error", ex);
+        } catch (IOException ex) {
+            failed(ex);
+            throw ex;
+        } finally {
+            releaseOperation();
+        }
+    }
+
+    private void failed(IOException e) {
+        if (aborted) {
+            // cancelled by an abort from another thread, not a failure of the target
+            if (metrics != null) {
+                metrics.cancelled();
+            }
+            return;
+        }
+        if (metrics != null) {
+            metrics.failed(e);
+        }
+        if (tracer != null) {
+            tracer.failed(target, e);
+        }
+    }
+
+    private void releaseOperation() {
+        if (operation != null) {
+            operation.close();
+            operation = null;
         }
     }
 
@@ -245,31 +463,7 @@ public class ZClient implements AutoCloseable {
         if (query == null) {
             throw new IllegalArgumentException("no query");
         }
-        SearchOperation search = new SearchOperation();
-        boolean success = search.execute(this, createRPNQueryFromCQL(query));
-        if (!success) {
-            logger.log(Level.WARNING, MessageFormat.format("search was not a success [{0}]", query));
-        } else {
-            if (responseListener == null) {
-                responseListener = (status, recordCount, elapsedMillis) -> {
-                    logger.log(Level.INFO, MessageFormat.format("[{0}ms] [{1}] [{2}]",
-                            elapsedMillis, recordCount, query));
-                };
-            }
-            if (search.getCount() > 0) {
-                PresentOperation present = new PresentOperation();
-                if (offset < 1) {
-                    // Z39.50 present bails out when offset = 0
-                    offset = 1;
-                }
-                if (length > search.getCount()) {
-                    // avoid condition 13 "Present request out-of-range"
-                    length = search.getCount();
-                }
-                present.execute(this, offset, length, responseListener, recordListener);
-            }
-        }
-        return search.getCount();
+        return execute(compileCQL(query), query, offset, length, responseListener, recordListener);
     }
 
     public int executePQF(String query, int offset, int length,
@@ -278,8 +472,36 @@ public class ZClient implements AutoCloseable {
         if (query == null) {
             throw new IllegalArgumentException("no query");
         }
-        SearchOperation search = new SearchOperation();
-        search.execute(this, createRPNQueryFromPQF(query));
+        return execute(compilePQF(query), query, offset, length, responseListener, recordListener);
+    }
+
+    /**
+     * Execute a prepared query.
+     *
+     * @param query the prepared query
+     * @param terms the terms for the slots of the prepared query
+     * @param offset the offset of the first record to present
+     * @param length the number of records to present
+     * @param responseListener the response listener
+     * @param recordListener the record listener
+     * @return the number of hits
+     * @throws IOException if search or present fails
+     */
+    public int executePrepared(PreparedQuery query, String[] terms, int offset, int length,
+                               ResponseListener responseListener,
+                               RecordListener recordListener) throws IOException {
+        if (query == null) {
+            throw new IllegalArgumentException("no query");
+        }
+        return execute(query.bind(terms), query.getTemplate(), offset, length, responseListener, recordListener);
+    }
+
+    private int execute(RPNQuery rpnQuery, String query, int offset, int length,
+                        ResponseListener responseListener,
+                        RecordListener recordListener) throws IOException {
+        SearchOperation search = maxQueryOperands > 0 ?
+                new SplitSearchOperation(maxQueryOperands) : new SearchOperation();
+        search.execute(this, rpnQuery);
         if (!search.isSuccess()) {
             logger.log(Level.WARNING, MessageFormat.format("search was not a success [{0}]", query));
         } else {
@@ -293,7 +515,7 @@ public class ZClient implements AutoCloseable {
                 logger.log(Level.INFO, "search returned " + search.getCount());
                 PresentOperation present = new PresentOperation();
                 if (offset < 1) {
-                    // Z39.50 bails out when offset = 0
+                    // Z39.50 present bails out when offset = 0
                     offset = 1;
                 }
                 if (length > search.getCount()) {
@@ -306,6 +528,34 @@ public class ZClient implements AutoCloseable {
         return search.getCount();
     }
 
+    /**
+     * Search and stream the records of the result set, presented lazily in windows.
+     *
+     * The stream may be parallel. Its splits share this client and present one after the other,
+     * while records are processed concurrently. Use {@link org.xbib.io.iso23950.pool.ZClientPool#stream}
+     * to present on several associations. The client must not be used otherwise until the stream is consumed.
+     *
+     * @param query the RPN query
+     * @param window the number of records in one present request
+     * @return the stream of records
+     * @throws IOException if the search fails
+     */
+    public Stream<Record> stream(RPNQuery query, int window) throws IOException {
+        SearchOperation search = maxQueryOperands > 0 ?
+                new SplitSearchOperation(maxQueryOperands) : new SearchOperation();
+        search.execute(this, query);
+        if (!search.isSuccess()) {
+            throw new IOException("search was not a success");
+        }
+        String name = resultSetName;
+        ResultSetSpliterator.Fetcher fetcher = (offset, length, listener) -> {
+            synchronized (this) {
+                new PresentOperation().execute(this, name, offset, length, null, listener);
+            }
+        };
+        return StreamSupport.stream(new ResultSetSpliterator(fetcher, 1, search.getCount(), window), false);
+    }
+
     public String getHost() {
         return host;
     }
@@ -364,11 +614,47 @@ public class ZClient implements AutoCloseable {
 
 
     public RPNQuery createRPNQueryFromPQF(String query) throws IOException {
-        PQFRPNGenerator generator = new PQFRPNGenerator();
-        PQFParser parser = new PQFParser(new StringReader(query));
-        parser.parse();
-        parser.getResult().accept(generator);
-        return generator.getResult();
+        return pqfCompiler.get().compile(query);
+    }
+
+    /**
+     * Compile a CQL query template with {@code ?} slots for terms.
+     *
+     * @param template the CQL query template
+     * @return the prepared query
+     * @throws IOException if the template can not be compiled
+     */
+    public PreparedQuery prepareCQL(String template) throws IOException {
+        return PreparedQuery.prepare(template, this::createRPNQueryFromCQL);
+    }
+
+    /**
+     * Compile a PQF query template with {@code ?} slots for terms.
+     *
+     * @param template the PQF query template
+     * @return the prepared query
+     * @throws IOException if the template can not be compiled
+     */
+    public PreparedQuery preparePQF(String template) throws IOException {
+        return PreparedQuery.prepare(template, this::createRPNQueryFromPQF);
+    }
+
+    private RPNQuery compileCQL(String query) throws IOException {
+        return queryCache != null ? queryCache.get("cql", query, queryScope, this::optimizeCQL) : optimizeCQL(query);
+    }
+
+    private RPNQuery compilePQF(String query) throws IOException {
+        return queryCache != null ? queryCache.get("pqf", query, queryScope, this::optimizePQF) : optimizePQF(query);
+    }
+
+    private RPNQuery optimizeCQL(String query) throws IOException {
+        RPNQuery rpnQuery = createRPNQueryFromCQL(query);
+        return queryOptimizer != null ? queryOptimizer.optimize(rpnQuery) : rpnQuery;
+    }
+
+    private RPNQuery optimizePQF(String query) throws IOException {
+        RPNQuery rpnQuery = createRPNQueryFromPQF(query);
+        return queryOptimizer != null ? queryOptimizer.optimize(rpnQuery) : rpnQuery;
     }
 
     public static Builder builder() {
@@ -380,8 +666,7 @@ public class ZClient implements AutoCloseable {
      */
     public static class Builder {
 
-        private static final ResourceBundle recordSyntaxBundle =
-                ResourceBundle.getBundle("org.xbib.io.iso23950.recordsyntax");
+        private static final ResourceBundle recordSyntaxBundle = getRecordSyntaxBundle();
 
         private String host;
 
@@ -411,6 +696,22 @@ public class ZClient implements AutoCloseable {
 
         private InitListener initListener;
 
+        private RPNQueryCache queryCache;
+
+        private RPNOptimizer queryOptimizer;
+
+        private int maxQueryOperands;
+
+        private PDUCapture capture;
+
+        private MetricsRegistry metricsRegistry;
+
+        private PDUTracer tracer;
+
+        private TargetGovernor governor;
+
+        private TimeoutPolicy timeoutPolicy;
+
         public Builder setHost(String host) {
             this.host = host;
             return this;
@@ -438,7 +739,7 @@ public class ZClient implements AutoCloseable {
 
         public Builder setPreferredRecordSyntax(String preferredRecordSyntax) {
             this.preferredRecordSyntax = preferredRecordSyntax;
-            if (recordSyntaxBundle.containsKey(preferredRecordSyntax)) {
+            if (recordSyntaxBundle != null && recordSyntaxBundle.containsKey(preferredRecordSyntax)) {
                 this.preferredRecordSyntax = recordSyntaxBundle.getString(preferredRecordSyntax);
             }
             return this;
@@ -484,6 +785,115 @@ public class ZClient implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Set a cache for compiled queries. The cache may be shared between clients. Compiled
+         * queries are shared only between clients with the same CQL context sets and query
+         * optimizer, and, if the optimizer estimates selectivity, the same target.
+         *
+         * @param queryCache the query cache
+         * @return this builder
+         */
+        public Builder setQueryCache(RPNQueryCache queryCache) {
+            this.queryCache = queryCache;
+            return this;
+        }
+
+        /**
+         * Set an optimizer which rewrites CQL and PQF queries before they are sent.
+         *
+         * @param queryOptimizer the query optimizer
+         * @return this builder
+         */
+        public Builder setQueryOptimizer(RPNOptimizer queryOptimizer) {
+            this.queryOptimizer = queryOptimizer;
+            return this;
+        }
+
+        /**
+         * Split OR queries with more disjuncts than the given maximum into sub-searches
+         * which are combined on the target, for targets rejecting very large queries.
+         *
+         * @param maxQueryOperands the maximum number of disjuncts in one search, 0 for no limit
+         * @return this builder
+         */
+        public Builder setMaxQueryOperands(int maxQueryOperands) {
+            this.maxQueryOperands = maxQueryOperands;
+            return this;
+        }
+
+        /**
+         * Capture all PDUs sent and received to a binary log, for replay by a local target.
+         * The capture may be shared between clients, and is not closed by the client.
+         *
+         * @param capture the capture
+         * @return this builder
+         */
+        public Builder setCapture(PDUCapture capture) {
+            this.capture = capture;
+            return this;
+        }
+
+        /**
+         * Record latency, bytes, records, diagnostics and timeouts of all operations in a metrics
+         * registry, under the target {@code host:port}. The registry may be shared between clients.
+         *
+         * @param metricsRegistry the metrics registry
+         * @return this builder
+         */
+        public Builder setMetricsRegistry(MetricsRegistry metricsRegistry) {
+            this.metricsRegistry = metricsRegistry;
+            return this;
+        }
+
+        /**
+         * Call a tracer around every PDU sent and received. The tracer may be shared between clients.
+         * Use {@link PDUTracer#of(PDUTracer...)} to install more than one.
+         *
+         * @param tracer the tracer
+         * @return this builder
+         */
+        public Builder setTracer(PDUTracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Limit the associations, in-flight operations and request rate of the target by the policy of a governor.
+         * The governor is shared by all clients of the target.
+         *
+         * @param governor the governor
+         * @return this builder
+         */
+        public Builder setGovernor(TargetGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        /**
+         * Wait for each response as long as a timeout policy gives for the target and operation,
+         * instead of the fixed timeout. A {@link org.xbib.io.iso23950.health.HealthRegistry} derives
+         * the timeouts from the metrics of the target, and should also be set as metrics registry.
+         *
+         * @param timeoutPolicy the timeout policy
+         * @return this builder
+         */
+        public Builder setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+            this.timeoutPolicy = timeoutPolicy;
+            return this;
+        }
+
+        /**
+         * The record syntax names, or null if the bundle is not on the class path,
+         * in which case record syntaxes must be given as object identifiers.
+         */
+        private static ResourceBundle getRecordSyntaxBundle() {
+            try {
+                return ResourceBundle.getBundle("org.xbib.io.iso23950.recordsyntax");
+            } catch (MissingResourceException e) {
+                return null;
+            }
+        }
+
         public ZClient build() {
             try {
                 return new ZClient(host, port, user, pass, timeout,
@@ -495,7 +905,15 @@ public class ZClient implements AutoCloseable {
                         type,
                         databases,
                         preferredMessageSize,
-                        initListener);
+                        initListener,
+                        queryCache,
+                        queryOptimizer,
+                        maxQueryOperands,
+                        capture,
+                        metricsRegistry,
+                        tracer,
+                        governor,
+                        timeoutPolicy);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
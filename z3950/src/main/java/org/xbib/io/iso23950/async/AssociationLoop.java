@@ -0,0 +1,185 @@
+package org.xbib.io.iso23950.async;
+
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.pool.ZClientPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The I/O loop of one association. Operations are offered by any thread to a lock-free queue,
+ * and executed one after the other by the loop thread, which is the only thread using the client.
+ */
+class AssociationLoop implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(AssociationLoop.class.getName());
+
+    private final ZClientPool.Factory factory;
+
+    private final Queue<Task<?>> queue;
+
+    private final AtomicInteger pending;
+
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    private volatile boolean terminated;
+
+    private ZClient client;
+
+    AssociationLoop(ZClientPool.Factory factory, String name) {
+        this.factory = factory;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    <T> void offer(AsyncZClient.Operation<T> operation, CompletableFuture<T> future) {
+        Task<T> task = new Task<>(operation, future);
+        pending.incrementAndGet();
+        queue.offer(task);
+        LockSupport.unpark(thread);
+        if (terminated && queue.remove(task)) {
+            pending.decrementAndGet();
+            future.completeExceptionally(new IOException("client is closed"));
+        }
+    }
+
+    int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Stop the loop after the queued operations, and close the association.
+     *
+     * @param millis the time to wait for the loop to stop
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void close(long millis) throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(thread);
+        thread.join(millis);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Task<?> task = queue.poll();
+                if (task == null) {
+                    if (closed) {
+                        break;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+                if (task.future.isDone()) {
+                    pending.decrementAndGet();
+                } else {
+                    execute(task);
+                }
+            }
+        } finally {
+            terminate();
+        }
+    }
+
+    /**
+     * Close the association and fail the queued operations, also if the loop dies of an error,
+     * so that no future is left waiting and new operations are rejected.
+     */
+    private void terminate() {
+        terminated = true;
+        try {
+            disconnect();
+        } finally {
+            drain();
+        }
+    }
+
+    private void drain() {
+        Task<?> task;
+        while ((task = queue.poll()) != null) {
+            pending.decrementAndGet();
+            task.future.completeExceptionally(new IOException("client is closed"));
+        }
+    }
+
+    /**
+     * Execute a task. The task is pending until its future is completed, so that an operation
+     * in flight counts like a queued one when operations are spread over the associations.
+     */
+    private <T> void execute(Task<T> task) {
+        T result;
+        try {
+            if (client != null && !client.isConnected()) {
+                // aborted from another thread
+                disconnect();
+            }
+            if (client == null) {
+                client = factory.create();
+            }
+            result = task.operation.execute(client);
+        } catch (IOException e) {
+            // the association is in an unknown state
+            disconnect();
+            fail(task, e);
+            return;
+        } catch (UncheckedIOException e) {
+            fail(task, e.getCause());
+            return;
+        } catch (RuntimeException e) {
+            fail(task, e);
+            return;
+        } catch (Throwable t) {
+            // an error, e.g. of the operation, must not kill the loop with the task unfinished
+            logger.log(Level.SEVERE, "operation failed: " + t, t);
+            disconnect();
+            fail(task, t);
+            return;
+        }
+        pending.decrementAndGet();
+        task.future.complete(result);
+    }
+
+    private void fail(Task<?> task, Throwable throwable) {
+        pending.decrementAndGet();
+        task.future.completeExceptionally(throwable);
+    }
+
+    private void disconnect() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, e.getMessage(), e);
+            }
+            client = null;
+        }
+    }
+
+    private static class Task<T> {
+
+        final AsyncZClient.Operation<T> operation;
+
+        final CompletableFuture<T> future;
+
+        Task(AsyncZClient.Operation<T> operation, CompletableFuture<T> future) {
+            this.operation = operation;
+            this.future = future;
+        }
+    }
+}
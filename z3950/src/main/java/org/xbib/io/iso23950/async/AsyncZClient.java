@@ -0,0 +1,166 @@
+package org.xbib.io.iso23950.async;
+
+import org.xbib.io.iso23950.RecordListener;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.pool.ZClientPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A thread-safe facade over a few associations to one target.
+ *
+ * Each association has its own I/O thread, which executes the operations queued for it one
+ * after the other, so the PDU stream of an association is never shared. Any number of threads
+ * may submit operations without locking. An operation goes to the association with the fewest
+ * queued operations, and its result is delivered through a {@link CompletableFuture}.
+ * An operation must do all its work on the given client, e.g. search and present together,
+ * because result sets belong to one association. Record listeners are called on the I/O thread.
+ *
+ * Associations are opened on their first operation. After an I/O error, the association is
+ * closed and opened again for the next operation.
+ */
+public class AsyncZClient implements Closeable {
+
+    private final AssociationLoop[] loops;
+
+    private volatile boolean closed;
+
+    private AsyncZClient(ZClientPool.Factory factory, int associations, String name) {
+        this.loops = new AssociationLoop[associations];
+        for (int i = 0; i < associations; i++) {
+            loops[i] = new AssociationLoop(factory, name + "-" + i);
+            loops[i].start();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Submit an operation.
+     *
+     * @param operation the operation
+     * @param <T> the type of the result
+     * @return the future result
+     */
+    public <T> CompletableFuture<T> submit(Operation<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("client is closed"));
+            return future;
+        }
+        // the association with the fewest queued or executing operations
+        AssociationLoop loop = loops[0];
+        int min = loop.getPending();
+        for (int i = 1; i < loops.length; i++) {
+            int pending = loops[i].getPending();
+            if (pending < min) {
+                loop = loops[i];
+                min = pending;
+            }
+        }
+        loop.offer(operation, future);
+        return future;
+    }
+
+    public CompletableFuture<Integer> executeCQL(String query, int offset, int length, RecordListener recordListener) {
+        return submit(client -> client.executeCQL(query, offset, length, null, recordListener));
+    }
+
+    public CompletableFuture<Integer> executePQF(String query, int offset, int length, RecordListener recordListener) {
+        return submit(client -> client.executePQF(query, offset, length, null, recordListener));
+    }
+
+    /**
+     * The number of queued or executing operations of all associations.
+     *
+     * @return the number of queued or executing operations
+     */
+    public int getPending() {
+        int pending = 0;
+        for (AssociationLoop loop : loops) {
+            pending += loop.getPending();
+        }
+        return pending;
+    }
+
+    /**
+     * Close the facade. Queued operations are still executed, then the associations are closed.
+     *
+     * @throws IOException if interrupted while waiting for the I/O threads
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            for (AssociationLoop loop : loops) {
+                loop.close(60000L);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * An operation on an association.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface Operation<T> {
+
+        T execute(ZClient client) throws IOException;
+    }
+
+    /**
+     * Builder for an asynchronous client.
+     */
+    public static class Builder {
+
+        private ZClientPool.Factory factory;
+
+        private int associations = 1;
+
+        private String name = "zclient";
+
+        public Builder setClientBuilder(ZClient.Builder builder) {
+            this.factory = builder::build;
+            return this;
+        }
+
+        public Builder setFactory(ZClientPool.Factory factory) {
+            this.factory = factory;
+            return this;
+        }
+
+        public Builder setAssociations(int associations) {
+            this.associations = associations;
+            return this;
+        }
+
+        /**
+         * Set the name prefix of the I/O threads.
+         *
+         * @param name the name
+         * @return this builder
+         */
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public AsyncZClient build() {
+            if (factory == null) {
+                throw new IllegalArgumentException("no client builder or factory");
+            }
+            if (associations < 1) {
+                throw new IllegalArgumentException("at least one association is required");
+            }
+            return new AsyncZClient(factory, associations, name);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Asynchronous, thread-safe access to Z39.50 associations.
+ */
+package org.xbib.io.iso23950.async;
@@ -0,0 +1,22 @@
+package org.xbib.io.iso23950.batch;
+
+import org.xbib.io.iso23950.Record;
+
+/**
+ * Receives the records matching a requested identifier of a batch lookup.
+ */
+@FunctionalInterface
+public interface BatchListener {
+
+    void onMatch(String identifier, Record record);
+
+    /**
+     * Called for an identifier whose search returned more records than could be presented,
+     * none of the presented records matching it. By default, nothing happens.
+     *
+     * @param identifier the requested identifier
+     * @param count the number of records found for the identifier
+     */
+    default void onUndetermined(String identifier, int count) {
+    }
+}
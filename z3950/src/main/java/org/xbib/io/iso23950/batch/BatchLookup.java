@@ -0,0 +1,261 @@
+package org.xbib.io.iso23950.batch;
+
+import org.xbib.io.iso23950.ErrorRecord;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.operations.PresentOperation;
+import org.xbib.io.iso23950.operations.SearchOperation;
+import org.xbib.io.iso23950.rpn.RPNBuilder;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Looks up many identifiers with few round trips.
+ *
+ * The identifiers are grouped into batches, each batch is searched as one
+ * balanced OR tree of identifier terms, and the records of the result set
+ * are presented and matched back to the requested identifiers. A batch of
+ * fifty identifiers costs one search and a few presents instead of fifty
+ * searches and fifty presents.
+ *
+ * A batch with more hits than the maximum number of records per batch is split
+ * in halves which are searched again. A single identifier with more hits than
+ * this maximum is matched against the first records only. If it does not match
+ * them, it is reported as undetermined instead of unmatched.
+ */
+public class BatchLookup {
+
+    private static final Logger logger = Logger.getLogger(BatchLookup.class.getName());
+
+    private final ZClient client;
+
+    private final AttributeElement[] attributes;
+
+    private final int batchSize;
+
+    private final int presentSize;
+
+    private final int maxRecordsPerBatch;
+
+    private final IdentifierExtractor extractor;
+
+    private final Function<String, String> normalizer;
+
+    private BatchLookup(ZClient client, AttributeElement[] attributes, int batchSize, int presentSize,
+                        int maxRecordsPerBatch, IdentifierExtractor extractor, Function<String, String> normalizer) {
+        this.client = client;
+        this.attributes = attributes;
+        this.batchSize = batchSize;
+        this.presentSize = presentSize;
+        this.maxRecordsPerBatch = maxRecordsPerBatch;
+        this.extractor = extractor;
+        this.normalizer = normalizer;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Look up identifiers.
+     *
+     * @param identifiers the identifiers
+     * @param listener the listener for the matching records
+     * @return the identifiers without a matching record, not including undetermined identifiers
+     * @throws IOException if a search or present fails
+     */
+    public Set<String> lookup(Collection<String> identifiers, BatchListener listener) throws IOException {
+        Map<String, String> requested = new LinkedHashMap<>();
+        for (String identifier : identifiers) {
+            String key = normalizer.apply(identifier);
+            if (key != null && !key.isEmpty()) {
+                requested.putIfAbsent(key, identifier);
+            }
+        }
+        Set<String> unmatched = new LinkedHashSet<>(requested.values());
+        List<String> keys = new ArrayList<>(requested.keySet());
+        for (int i = 0; i < keys.size(); i += batchSize) {
+            List<String> batch = keys.subList(i, Math.min(keys.size(), i + batchSize));
+            lookupBatch(subMap(requested, batch), unmatched, listener);
+        }
+        return unmatched;
+    }
+
+    /**
+     * Create the query for a batch of identifiers.
+     *
+     * @param identifiers the identifiers
+     * @return the RPN query, a balanced OR tree of the identifier terms
+     */
+    public RPNQuery createQuery(Collection<String> identifiers) {
+        List<RPNStructure> terms = new ArrayList<>(identifiers.size());
+        for (String identifier : identifiers) {
+            terms.add(RPNBuilder.term(attributes, identifier));
+        }
+        return RPNBuilder.query(RPNBuilder.balanced(RPNBuilder.or(), terms));
+    }
+
+    private void lookupBatch(Map<String, String> identifiers, Set<String> unmatched,
+                             BatchListener listener) throws IOException {
+        SearchOperation search = new SearchOperation();
+        search.execute(client, createQuery(identifiers.keySet()));
+        int count = search.getCount();
+        if (!search.isSuccess() || count <= 0) {
+            return;
+        }
+        if (count > maxRecordsPerBatch) {
+            if (identifiers.size() > 1) {
+                // search the halves again, until each fits into the window or is a single identifier
+                logger.log(Level.FINE, "batch of " + identifiers.size() + " identifiers returned " + count +
+                        " records, splitting");
+                List<String> keys = new ArrayList<>(identifiers.keySet());
+                int mid = keys.size() >>> 1;
+                lookupBatch(subMap(identifiers, keys.subList(0, mid)), unmatched, listener);
+                lookupBatch(subMap(identifiers, keys.subList(mid, keys.size())), unmatched, listener);
+                return;
+            }
+            logger.log(Level.WARNING, "identifier " + identifiers.values() + " returned " + count +
+                    " records, presenting only the first " + maxRecordsPerBatch);
+        }
+        int n = Math.min(count, maxRecordsPerBatch);
+        PresentOperation present = new PresentOperation();
+        for (int offset = 1; offset <= n; offset += presentSize) {
+            int length = Math.min(presentSize, n - offset + 1);
+            present.execute(client, offset, length, null, record -> match(record, identifiers, unmatched, listener));
+        }
+        if (count > n) {
+            // a match may be among the records not presented
+            for (String identifier : identifiers.values()) {
+                if (unmatched.remove(identifier)) {
+                    listener.onUndetermined(identifier, count);
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> subMap(Map<String, String> identifiers, List<String> keys) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String key : keys) {
+            map.put(key, identifiers.get(key));
+        }
+        return map;
+    }
+
+    private void match(Record record, Map<String, String> identifiers, Set<String> unmatched,
+                       BatchListener listener) {
+        if (record instanceof ErrorRecord) {
+            return;
+        }
+        Collection<String> found = extractor.extract(record);
+        if (found == null) {
+            return;
+        }
+        for (String s : found) {
+            String identifier = identifiers.get(normalizer.apply(s));
+            if (identifier != null) {
+                unmatched.remove(identifier);
+                listener.onMatch(identifier, record);
+            }
+        }
+    }
+
+    /**
+     * Builder for a batch lookup.
+     */
+    public static class Builder {
+
+        private ZClient client;
+
+        private AttributeElement[] attributes = {RPNBuilder.attribute(1, 7)}; // ISBN
+
+        private int batchSize = 50;
+
+        private int presentSize = 50;
+
+        private int maxRecordsPerBatch = 500;
+
+        private IdentifierExtractor extractor;
+
+        private Function<String, String> normalizer = s -> s != null ? s.trim() : null;
+
+        public Builder setClient(ZClient client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder setUseAttribute(int use) {
+            this.attributes = new AttributeElement[]{RPNBuilder.attribute(1, use)};
+            return this;
+        }
+
+        public Builder setAttributes(AttributeElement... attributes) {
+            this.attributes = attributes;
+            return this;
+        }
+
+        /**
+         * Set the number of identifiers in one search, i.e. the width of the OR tree.
+         *
+         * @param batchSize the batch size
+         * @return this builder
+         */
+        public Builder setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder setPresentSize(int presentSize) {
+            this.presentSize = presentSize;
+            return this;
+        }
+
+        public Builder setMaxRecordsPerBatch(int maxRecordsPerBatch) {
+            this.maxRecordsPerBatch = maxRecordsPerBatch;
+            return this;
+        }
+
+        public Builder setExtractor(IdentifierExtractor extractor) {
+            this.extractor = extractor;
+            return this;
+        }
+
+        /**
+         * Set the normalizer applied to requested and extracted identifiers before matching,
+         * e.g. for removing hyphens from ISBNs.
+         *
+         * @param normalizer the normalizer
+         * @return this builder
+         */
+        public Builder setNormalizer(Function<String, String> normalizer) {
+            this.normalizer = normalizer;
+            return this;
+        }
+
+        public BatchLookup build() {
+            if (client == null) {
+                throw new IllegalArgumentException("no client");
+            }
+            if (extractor == null) {
+                throw new IllegalArgumentException("no identifier extractor");
+            }
+            if (batchSize < 1 || presentSize < 1) {
+                throw new IllegalArgumentException("batch size and present size must be positive");
+            }
+            return new BatchLookup(client, attributes, batchSize, presentSize, maxRecordsPerBatch,
+                    extractor, normalizer);
+        }
+    }
+}
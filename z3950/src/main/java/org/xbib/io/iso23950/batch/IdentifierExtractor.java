@@ -0,0 +1,15 @@
+package org.xbib.io.iso23950.batch;
+
+import org.xbib.io.iso23950.Record;
+
+import java.util.Collection;
+
+/**
+ * Extracts the identifiers, e.g. ISBNs or ISSNs, from a record, for matching
+ * records returned by a batch search back to the requested identifiers.
+ */
+@FunctionalInterface
+public interface IdentifierExtractor {
+
+    Collection<String> extract(Record record);
+}
@@ -0,0 +1,4 @@
+/**
+ * Batch operations for Z39.50 clients.
+ */
+package org.xbib.io.iso23950.batch;
@@ -0,0 +1,47 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.asn1.BERConstructed;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.asn1.BERPreEncoded;
+import org.xbib.io.iso23950.v3.AttributeSetId;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+/**
+ * An RPN query whose BER encoding has been computed once.
+ *
+ * Encoding the query, e.g. as part of a search request, splices the
+ * pre-encoded octets into the request without walking the RPN tree again.
+ * The attribute set and RPN structure fields are retained for inspection
+ * only, changing them does not change the encoding.
+ */
+public final class PreEncodedRPNQuery extends RPNQuery {
+
+    private final BEREncoding[] fields;
+
+    public PreEncodedRPNQuery(RPNQuery query) throws ASN1Exception {
+        this.s_attributeSet = query.s_attributeSet;
+        this.s_rpn = query.s_rpn;
+        this.fields = new BEREncoding[] {
+                BERPreEncoded.of(query.s_attributeSet.berEncode()),
+                BERPreEncoded.of(query.s_rpn.berEncode())
+        };
+    }
+
+    /**
+     * Constructor for a query whose RPN structure is already encoded, e.g. a bound prepared query.
+     * The RPN structure field is left empty.
+     */
+    PreEncodedRPNQuery(AttributeSetId attributeSet, BEREncoding attributeSetEncoding, BEREncoding rpn) {
+        this.s_attributeSet = attributeSet;
+        this.fields = new BEREncoding[] {
+                attributeSetEncoding,
+                rpn
+        };
+    }
+
+    @Override
+    public BEREncoding berEncode(int tagType, int tag) throws ASN1Exception {
+        return new BERConstructed(tagType, tag, fields);
+    }
+}
@@ -0,0 +1,206 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.asn1.BERConstructed;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.asn1.BERPreEncoded;
+import org.xbib.asn1.BERPrimitive;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A query template with parameter slots, compiled and BER encoded once.
+ *
+ * Slots are written as a single {@code ?} in place of a term, e.g.
+ * {@code @attr 1=7 ?} in PQF or {@code bib.identifierISSN = ?} in CQL.
+ * Binding terms to the slots copies the term octets into the pre-encoded
+ * template and rebuilds only the enclosing length octets, the query is
+ * neither parsed nor encoded again. Bound terms are taken literally, CQL
+ * masking characters in a term do not add truncation attributes.
+ * A prepared query is immutable and can be shared between threads.
+ */
+public final class PreparedQuery {
+
+    private static final Pattern SLOT = Pattern.compile("(?<=^|[\\s\"=])\\?(?=$|[\\s\"])");
+
+    private final String template;
+
+    private final RPNQuery templateQuery;
+
+    private final BEREncoding attributeSetEncoding;
+
+    private final Node rpn;
+
+    private final int slots;
+
+    private PreparedQuery(String template, RPNQuery templateQuery, Node rpn, int slots) throws ASN1Exception {
+        this.template = template;
+        this.templateQuery = templateQuery;
+        this.attributeSetEncoding = BERPreEncoded.of(templateQuery.s_attributeSet.berEncode());
+        this.rpn = rpn;
+        this.slots = slots;
+    }
+
+    /**
+     * Compile a query template.
+     *
+     * @param template the query template with {@code ?} slots
+     * @param compiler the compiler for the query language of the template
+     * @return the prepared query
+     * @throws IOException if the template can not be compiled
+     */
+    public static PreparedQuery prepare(String template, RPNQueryCache.Compiler compiler) throws IOException {
+        // replace slots by unique sentinel terms which survive the query parsers
+        String nonce = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+        List<String> sentinels = new ArrayList<>();
+        Matcher matcher = SLOT.matcher(template);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String sentinel = "zslot" + sentinels.size() + "x" + nonce;
+            sentinels.add(sentinel);
+            matcher.appendReplacement(sb, sentinel);
+        }
+        matcher.appendTail(sb);
+        if (sentinels.isEmpty()) {
+            throw new IllegalArgumentException("no slot in query template: " + template);
+        }
+        RPNQuery query = compiler.compile(sb.toString());
+        try {
+            boolean[] found = new boolean[sentinels.size()];
+            Node rpn = compile(query.s_rpn.berEncode(), sentinels, found);
+            for (int i = 0; i < found.length; i++) {
+                if (!found[i]) {
+                    throw new IOException("slot " + i + " is not a term in query template: " + template);
+                }
+            }
+            return new PreparedQuery(template, query, rpn, sentinels.size());
+        } catch (ASN1Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * The query compiled from the template, with sentinel terms in place of the slots.
+     *
+     * @return the template query
+     */
+    public RPNQuery getTemplateQuery() {
+        return templateQuery;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Bind terms to the slots of this query.
+     *
+     * @param terms the terms, one for each slot, in slot order
+     * @return the RPN query, ready to be sent in a search request
+     * @throws IOException if the number of terms does not match the slots
+     */
+    public RPNQuery bind(String... terms) throws IOException {
+        byte[][] octets = new byte[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            octets[i] = terms[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return bind(octets);
+    }
+
+    /**
+     * Bind term octets to the slots of this query.
+     *
+     * @param terms the term octets, one for each slot, in slot order
+     * @return the RPN query, ready to be sent in a search request
+     * @throws IOException if the number of terms does not match the slots
+     */
+    public RPNQuery bind(byte[]... terms) throws IOException {
+        if (terms.length != slots) {
+            throw new IOException("query template has " + slots + " slots, got " + terms.length + " terms");
+        }
+        try {
+            return new PreEncodedRPNQuery(templateQuery.s_attributeSet, attributeSetEncoding, rpn.bind(terms));
+        } catch (ASN1Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    private static Node compile(BEREncoding ber, List<String> sentinels, boolean[] found) throws ASN1Exception {
+        if (ber instanceof BERPrimitive) {
+            int slot = sentinels.indexOf(new ASN1OctetString(ber, false).get());
+            if (slot >= 0) {
+                found[slot] = true;
+                return new Node(ber.tagTypeGet(), ber.tagGet(), slot, null, null);
+            }
+            return new Node(ber.tagTypeGet(), ber.tagGet(), -1, BERPreEncoded.of(ber), null);
+        }
+        BERConstructed constructed = (BERConstructed) ber;
+        Node[] children = new Node[constructed.numberComponents()];
+        boolean fixed = true;
+        for (int i = 0; i < children.length; i++) {
+            children[i] = compile(constructed.elementAt(i), sentinels, found);
+            fixed = fixed && children[i].fixed != null;
+        }
+        if (fixed) {
+            return new Node(ber.tagTypeGet(), ber.tagGet(), -1, BERPreEncoded.of(ber), null);
+        }
+        return new Node(ber.tagTypeGet(), ber.tagGet(), -1, null, children);
+    }
+
+    /**
+     * A node of the encoded template: a fixed subtree, a slot, or a constructed
+     * encoding with at least one slot below it.
+     */
+    private static class Node {
+
+        private final int tagType;
+
+        private final int tag;
+
+        private final int slot;
+
+        private final BEREncoding fixed;
+
+        private final Node[] children;
+
+        Node(int tagType, int tag, int slot, BEREncoding fixed, Node[] children) {
+            this.tagType = tagType;
+            this.tag = tag;
+            this.slot = slot;
+            this.fixed = fixed;
+            this.children = children;
+        }
+
+        BEREncoding bind(byte[][] terms) throws ASN1Exception {
+            if (fixed != null) {
+                return fixed;
+            }
+            if (slot >= 0) {
+                return new BERPreEncoded(tagType, false, tag, terms[slot]);
+            }
+            BEREncoding[] elements = new BEREncoding[children.length];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = children[i].bind(terms);
+            }
+            // lengths of the enclosing encodings are computed from the elements
+            return new BERConstructed(tagType, tag, elements);
+        }
+    }
+}
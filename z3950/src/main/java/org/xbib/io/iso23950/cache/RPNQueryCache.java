@@ -0,0 +1,137 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded cache from query strings to compiled and pre-encoded RPN queries.
+ *
+ * Parsing CQL or PQF and BER encoding the resulting RPN tree happens once per
+ * distinct query string and compiler scope. The scope identifies everything besides
+ * the query string the compiled query depends on, e.g. the CQL context sets, the
+ * query optimizer and, if the optimizer estimates selectivity, the target. Clients
+ * sharing a cache share compiled queries only if their scopes are equal. The cached
+ * queries are shared between threads and must not be modified. When the cache is
+ * full, the oldest entries are evicted.
+ */
+public class RPNQueryCache {
+
+    private final int maxSize;
+
+    private final ConcurrentMap<Key, PreEncodedRPNQuery> queries = new ConcurrentHashMap<>();
+
+    private final Queue<Key> order = new ConcurrentLinkedQueue<>();
+
+    public RPNQueryCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a compiled query from the cache, or compile and cache it, in the default scope.
+     *
+     * @param language the query language, e.g. "cql" or "pqf"
+     * @param query the query string
+     * @param compiler the compiler for the query language
+     * @return the pre-encoded RPN query
+     * @throws IOException if the query can not be compiled
+     */
+    public RPNQuery get(String language, String query, Compiler compiler) throws IOException {
+        return get(language, query, null, compiler);
+    }
+
+    /**
+     * Get a compiled query from the cache, or compile and cache it.
+     *
+     * @param language the query language, e.g. "cql" or "pqf"
+     * @param query the query string
+     * @param scope the compiler scope, compared by equals, or null for the default scope
+     * @param compiler the compiler for the query language
+     * @return the pre-encoded RPN query
+     * @throws IOException if the query can not be compiled
+     */
+    public RPNQuery get(String language, String query, Object scope, Compiler compiler) throws IOException {
+        Key key = new Key(language, query, scope);
+        PreEncodedRPNQuery rpnQuery = queries.get(key);
+        if (rpnQuery != null) {
+            return rpnQuery;
+        }
+        try {
+            rpnQuery = new PreEncodedRPNQuery(compiler.compile(query));
+        } catch (ASN1Exception e) {
+            throw new IOException(e);
+        }
+        if (queries.putIfAbsent(key, rpnQuery) == null) {
+            order.add(key);
+            while (queries.size() > maxSize) {
+                Key eldest = order.poll();
+                if (eldest == null) {
+                    break;
+                }
+                queries.remove(eldest);
+            }
+        }
+        return rpnQuery;
+    }
+
+    public void clear() {
+        queries.clear();
+        order.clear();
+    }
+
+    public int size() {
+        return queries.size();
+    }
+
+    private static final class Key {
+
+        private final String language;
+
+        private final String query;
+
+        private final Object scope;
+
+        private final int hashCode;
+
+        Key(String language, String query, Object scope) {
+            this.language = language;
+            this.query = query;
+            this.scope = scope;
+            this.hashCode = 31 * (31 * language.hashCode() + query.hashCode()) + (scope != null ? scope.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode &&
+                    language.equals(other.language) &&
+                    query.equals(other.query) &&
+                    (scope != null ? scope.equals(other.scope) : other.scope == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Compiles a query string to an RPN query.
+     */
+    @FunctionalInterface
+    public interface Compiler {
+
+        RPNQuery compile(String query) throws IOException;
+    }
+}
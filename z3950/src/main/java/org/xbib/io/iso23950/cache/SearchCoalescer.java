@@ -0,0 +1,140 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.RecordListener;
+import org.xbib.io.iso23950.ResponseListener;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.operations.PresentOperation;
+import org.xbib.io.iso23950.operations.SearchOperation;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces identical concurrent searches.
+ *
+ * Searches are identical if they go to the same target and databases with the same
+ * normalised RPN query, record syntax, element set name and present window. The first
+ * caller executes the search and the present on its own client, every caller arriving
+ * while this is in flight waits for the outcome, and the presented records are fanned
+ * out to the record listeners of all callers.
+ */
+public class SearchCoalescer {
+
+    private static final Logger logger = Logger.getLogger(SearchCoalescer.class.getName());
+
+    private final SingleFlight<SearchKey, SharedSearch> singleFlight = new SingleFlight<>();
+
+    public int execute(ZClient client, RPNQuery query, int offset, int length,
+                       ResponseListener responseListener,
+                       RecordListener recordListener) throws IOException {
+        if (offset < 1) {
+            // Z39.50 present bails out when offset = 0
+            offset = 1;
+        }
+        String qualifier = client.getPreferredRecordSyntax() + "|" + client.getElementSetName() +
+                "|" + offset + "|" + length;
+        SearchKey key = SearchKey.of(client, query, qualifier);
+        SearchTask task = new SearchTask(client, query, offset, length, responseListener, recordListener);
+        SharedSearch shared = singleFlight.execute(key, task);
+        if (!task.executed) {
+            // we waited for someone else's search, replay the shared outcome
+            logger.log(Level.FINE, "coalesced search " + key);
+            shared.replay(responseListener, recordListener);
+        }
+        return shared.count;
+    }
+
+    public int inFlight() {
+        return singleFlight.size();
+    }
+
+    private static class SearchTask implements SingleFlight.Loader<SharedSearch> {
+
+        private final ZClient client;
+
+        private final RPNQuery query;
+
+        private final int offset;
+
+        private final int length;
+
+        private final ResponseListener responseListener;
+
+        private final RecordListener recordListener;
+
+        private boolean executed;
+
+        SearchTask(ZClient client, RPNQuery query, int offset, int length,
+                   ResponseListener responseListener, RecordListener recordListener) {
+            this.client = client;
+            this.query = query;
+            this.offset = offset;
+            this.length = length;
+            this.responseListener = responseListener;
+            this.recordListener = recordListener;
+        }
+
+        @Override
+        public SharedSearch load() throws IOException {
+            executed = true;
+            SharedSearch shared = new SharedSearch();
+            SearchOperation search = new SearchOperation();
+            search.execute(client, query);
+            shared.count = search.getCount();
+            if (search.isSuccess() && search.getCount() > 0) {
+                List<Record> records = new ArrayList<>();
+                PresentOperation present = new PresentOperation();
+                // avoid condition 13 "Present request out-of-range"
+                int n = Math.min(length, search.getCount());
+                present.execute(client, offset, n, (status, recordCount, elapsedMillis) -> {
+                    shared.responded = true;
+                    shared.status = status;
+                    shared.recordCount = recordCount;
+                    shared.elapsedMillis = elapsedMillis;
+                    if (responseListener != null) {
+                        responseListener.onResponse(status, recordCount, elapsedMillis);
+                    }
+                }, record -> {
+                    records.add(record);
+                    if (recordListener != null) {
+                        recordListener.onRecord(record);
+                    }
+                });
+                shared.records = Collections.unmodifiableList(records);
+            }
+            return shared;
+        }
+    }
+
+    private static class SharedSearch {
+
+        private int count;
+
+        private boolean responded;
+
+        private int status;
+
+        private int recordCount;
+
+        private long elapsedMillis;
+
+        private List<Record> records = Collections.emptyList();
+
+        void replay(ResponseListener responseListener, RecordListener recordListener) throws IOException {
+            if (responded && responseListener != null) {
+                responseListener.onResponse(status, recordCount, elapsedMillis);
+            }
+            if (recordListener != null) {
+                for (Record record : records) {
+                    recordListener.onRecord(record);
+                }
+            }
+        }
+    }
+}
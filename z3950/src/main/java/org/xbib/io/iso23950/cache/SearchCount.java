@@ -0,0 +1,66 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.asn1.ASN1Any;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The hit count of a search, as returned by a cached or a live search operation.
+ */
+public final class SearchCount {
+
+    private final int count;
+
+    private final Map<ASN1Any, Integer> results;
+
+    private final boolean cached;
+
+    public SearchCount(int count, Map<ASN1Any, Integer> results) {
+        this(count, results != null ? Collections.unmodifiableMap(new LinkedHashMap<>(results)) :
+                Collections.emptyMap(), false);
+    }
+
+    private SearchCount(int count, Map<ASN1Any, Integer> results, boolean cached) {
+        this.count = count;
+        this.results = results;
+        this.cached = cached;
+    }
+
+    SearchCount asCached() {
+        return cached ? this : new SearchCount(count, results, true);
+    }
+
+    /**
+     * The total hit count.
+     *
+     * @return the hit count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The per-database hit counts, if the target reported them in the additional search info.
+     *
+     * @return the per-database hit counts, never null
+     */
+    public Map<ASN1Any, Integer> getResults() {
+        return results;
+    }
+
+    /**
+     * Whether this count was served from the cache.
+     *
+     * @return true if cached
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    @Override
+    public String toString() {
+        return "[SearchCount: count=" + count + " results=" + results + " cached=" + cached + "]";
+    }
+}
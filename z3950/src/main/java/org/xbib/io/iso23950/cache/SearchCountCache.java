@@ -0,0 +1,164 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.exceptions.SearchFailedException;
+import org.xbib.io.iso23950.operations.SearchOperation;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A time-to-live cache for search hit counts.
+ *
+ * Entries are keyed by target, database list and normalised RPN query.
+ * Zero-hit results and search failures reported by the target, i.e. a failed search
+ * status or a non-surrogate diagnostic, are cached negatively with their own, usually
+ * shorter, time-to-live. Transport errors and timeouts are rethrown and never cached.
+ * Concurrent lookups of the same key share one search operation.
+ */
+public class SearchCountCache {
+
+    private final long ttlNanos;
+
+    private final long negativeTtlNanos;
+
+    private final int maxSize;
+
+    private final LongSupplier clock;
+
+    private final ConcurrentMap<SearchKey, Entry> entries = new ConcurrentHashMap<>();
+
+    private final SingleFlight<SearchKey, SearchCount> singleFlight = new SingleFlight<>();
+
+    public SearchCountCache(long ttl, long negativeTtl, TimeUnit unit, int maxSize) {
+        this(ttl, negativeTtl, unit, maxSize, System::nanoTime);
+    }
+
+    SearchCountCache(long ttl, long negativeTtl, TimeUnit unit, int maxSize, LongSupplier clock) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the hit count of a query, from the cache or by executing a search on the client.
+     * Note that a search executed by this method replaces the client's current result set.
+     *
+     * @param client the client
+     * @param query the RPN query
+     * @return the search count
+     * @throws SearchFailedException if the target reported a search failure, now or recently
+     * @throws IOException if the search fails
+     */
+    public SearchCount count(ZClient client, RPNQuery query) throws IOException {
+        SearchKey key = SearchKey.of(client, query);
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return entry.get();
+        }
+        return singleFlight.execute(key, () -> {
+            Entry e = lookup(key);
+            if (e != null) {
+                return e.get();
+            }
+            SearchOperation search = new SearchOperation();
+            try {
+                search.execute(client, query);
+            } catch (SearchFailedException ex) {
+                put(key, new Entry(null, ex, clock.getAsLong() + negativeTtlNanos));
+                throw ex;
+            }
+            SearchCount searchCount = new SearchCount(search.getCount(), search.getResults());
+            long ttl = searchCount.getCount() > 0 ? ttlNanos : negativeTtlNanos;
+            put(key, new Entry(searchCount.asCached(), null, clock.getAsLong() + ttl));
+            return searchCount;
+        });
+    }
+
+    /**
+     * Get the cached hit count of a query without searching, e.g. as a selectivity estimate.
+     *
+     * @param client the client
+     * @param query the RPN query
+     * @return the cached hit count, or -1 if the count is not cached
+     * @throws IOException if the query can not be encoded
+     */
+    public int peek(ZClient client, RPNQuery query) throws IOException {
+        Entry entry = lookup(SearchKey.of(client, query));
+        return entry != null && entry.searchCount != null ? entry.searchCount.getCount() : -1;
+    }
+
+    public void invalidate(SearchKey key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry lookup(SearchKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(clock.getAsLong())) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private void put(SearchKey key, Entry entry) {
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, entry);
+    }
+
+    private void evict() {
+        long now = clock.getAsLong();
+        entries.values().removeIf(e -> e.isExpired(now));
+        Iterator<Map.Entry<SearchKey, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static class Entry {
+
+        private final SearchCount searchCount;
+
+        private final SearchFailedException failure;
+
+        private final long expires;
+
+        Entry(SearchCount searchCount, SearchFailedException failure, long expires) {
+            this.searchCount = searchCount;
+            this.failure = failure;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return now - expires >= 0;
+        }
+
+        SearchCount get() throws IOException {
+            if (searchCount == null) {
+                throw new SearchFailedException(failure.getMessage(), failure.getDiagnostic());
+            }
+            return searchCount;
+        }
+    }
+}
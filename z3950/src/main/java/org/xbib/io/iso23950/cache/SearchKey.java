@@ -0,0 +1,104 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A key identifying a search by target, database list and RPN query.
+ *
+ * The RPN query is normalised to its BER encoding, so two queries built
+ * in different ways, e.g. from CQL and from PQF, share the same key if
+ * they encode to the same octets.
+ */
+public final class SearchKey {
+
+    private final String host;
+
+    private final int port;
+
+    private final List<String> databases;
+
+    private final byte[] rpn;
+
+    private final String qualifier;
+
+    private final int hashCode;
+
+    public SearchKey(String host, int port, List<String> databases, byte[] rpn, String qualifier) {
+        this.host = host;
+        this.port = port;
+        this.databases = databases != null ?
+                Collections.unmodifiableList(databases) : Collections.emptyList();
+        this.rpn = rpn;
+        this.qualifier = qualifier;
+        int h = host != null ? host.hashCode() : 0;
+        h = 31 * h + port;
+        h = 31 * h + this.databases.hashCode();
+        h = 31 * h + Arrays.hashCode(rpn);
+        h = 31 * h + (qualifier != null ? qualifier.hashCode() : 0);
+        this.hashCode = h;
+    }
+
+    public static SearchKey of(ZClient client, RPNQuery query) throws IOException {
+        return of(client, query, null);
+    }
+
+    public static SearchKey of(ZClient client, RPNQuery query, String qualifier) throws IOException {
+        try {
+            return new SearchKey(client.getHost(), client.getPort(), client.getDatabases(),
+                    query.berEncode().encodingGet(), qualifier);
+        } catch (ASN1Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public List<String> getDatabases() {
+        return databases;
+    }
+
+    public String getQualifier() {
+        return qualifier;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchKey)) {
+            return false;
+        }
+        SearchKey other = (SearchKey) o;
+        return hashCode == other.hashCode &&
+                port == other.port &&
+                (host != null ? host.equals(other.host) : other.host == null) &&
+                databases.equals(other.databases) &&
+                Arrays.equals(rpn, other.rpn) &&
+                (qualifier != null ? qualifier.equals(other.qualifier) : other.qualifier == null);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "[SearchKey: host=" + host + " port=" + port + " databases=" + databases +
+                " rpn=" + rpn.length + " bytes" + (qualifier != null ? " qualifier=" + qualifier : "") + "]";
+    }
+}
@@ -0,0 +1,86 @@
+package org.xbib.io.iso23950.cache;
+
+import org.xbib.io.iso23950.exceptions.SearchFailedException;
+import org.xbib.io.iso23950.exceptions.ZException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collapses concurrent executions for the same key into a single execution.
+ *
+ * The first caller for a key runs the loader, all callers arriving while it
+ * is still running wait for and share its outcome, including a failure. A failure
+ * reported by the target reaches the waiters as {@link ZException} again, a failed search as
+ * {@link SearchFailedException} with its diagnostic.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public V execute(K key, Loader<V> loader) throws IOException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            V value = loader.load();
+            future.complete(value);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for in-flight execution");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SearchFailedException) {
+                throw new SearchFailedException(cause.getMessage(), cause,
+                        ((SearchFailedException) cause).getDiagnostic());
+            }
+            if (cause instanceof ZException) {
+                ZException z = (ZException) cause;
+                throw new ZException(z.getMessage(), z, z.getStatus(), z.getNumber());
+            }
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Loads a value for a key.
+     *
+     * @param <V> the value type
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+
+        V load() throws IOException;
+    }
+}
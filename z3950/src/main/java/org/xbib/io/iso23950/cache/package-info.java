@@ -0,0 +1,4 @@
+/**
+ * Caching and sharing of Z39.50 search results.
+ */
+package org.xbib.io.iso23950.cache;
@@ -0,0 +1,103 @@
+package org.xbib.io.iso23950.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the PDUs of one or more associations to a binary log.
+ *
+ * The log starts with the magic bytes {@code ZPDU}, a version byte and the capture start
+ * time in epoch milliseconds as a long. Each frame holds the stream number of the association,
+ * a direction byte, the nanoseconds since the previous frame, the length of the BER encoding
+ * and the BER encoding itself. Stream number, time and length are unsigned variable length
+ * integers, seven bits per byte, least significant group first.
+ *
+ * A capture may be shared by many associations, each writing under its own stream number.
+ */
+public class PDUCapture implements Closeable {
+
+    /**
+     * A PDU sent by the capturing side.
+     */
+    public static final int OUTGOING = 0;
+
+    /**
+     * A PDU received by the capturing side.
+     */
+    public static final int INCOMING = 1;
+
+    static final byte[] MAGIC = {'Z', 'P', 'D', 'U'};
+
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+
+    private final AtomicInteger streams;
+
+    private long last;
+
+    public PDUCapture(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out);
+        this.streams = new AtomicInteger();
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+        long millis = System.currentTimeMillis();
+        for (int i = 56; i >= 0; i -= 8) {
+            this.out.write((int) (millis >>> i));
+        }
+        this.last = System.nanoTime();
+    }
+
+    public static PDUCapture open(Path path) throws IOException {
+        return new PDUCapture(Files.newOutputStream(path));
+    }
+
+    /**
+     * Allocate a stream number for a new association.
+     *
+     * @return the stream number
+     */
+    public int newStream() {
+        return streams.getAndIncrement();
+    }
+
+    /**
+     * Write a frame.
+     *
+     * @param stream the stream number
+     * @param direction {@link #OUTGOING} or {@link #INCOMING}
+     * @param ber the BER encoding of the PDU
+     * @throws IOException if the frame can not be written
+     */
+    public synchronized void write(int stream, int direction, byte[] ber) throws IOException {
+        long now = System.nanoTime();
+        writeVarint(stream);
+        out.write(direction);
+        writeVarint(Math.max(0L, now - last));
+        writeVarint(ber.length);
+        out.write(ber);
+        last = now;
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
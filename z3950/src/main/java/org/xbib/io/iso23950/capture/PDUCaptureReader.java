@@ -0,0 +1,116 @@
+package org.xbib.io.iso23950.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads the frames of a binary log written by {@link PDUCapture}.
+ */
+public class PDUCaptureReader implements Closeable {
+
+    private final InputStream in;
+
+    private final long startMillis;
+
+    private long nanos;
+
+    public PDUCaptureReader(InputStream in) throws IOException {
+        this.in = new BufferedInputStream(in);
+        byte[] magic = new byte[PDUCapture.MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = (byte) readByte();
+        }
+        if (!Arrays.equals(PDUCapture.MAGIC, magic)) {
+            throw new IOException("not a PDU capture");
+        }
+        int version = readByte();
+        if (version != PDUCapture.VERSION) {
+            throw new IOException("unsupported PDU capture version " + version);
+        }
+        long millis = 0L;
+        for (int i = 0; i < 8; i++) {
+            millis = (millis << 8) | readByte();
+        }
+        this.startMillis = millis;
+    }
+
+    public static PDUCaptureReader open(Path path) throws IOException {
+        return new PDUCaptureReader(Files.newInputStream(path));
+    }
+
+    /**
+     * The start time of the capture.
+     *
+     * @return the epoch milliseconds
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Read the next frame.
+     *
+     * @return the frame, or null at the end of the log
+     * @throws IOException if the log is truncated or malformed
+     */
+    public PDUFrame read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            return null;
+        }
+        int stream = (int) readVarint(b);
+        int direction = readByte();
+        if (direction != PDUCapture.OUTGOING && direction != PDUCapture.INCOMING) {
+            throw new IOException("bad direction " + direction);
+        }
+        nanos += readVarint(readByte());
+        long length = readVarint(readByte());
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("bad frame length " + length);
+        }
+        byte[] ber = new byte[(int) length];
+        int n = 0;
+        while (n < ber.length) {
+            int r = in.read(ber, n, ber.length - n);
+            if (r < 0) {
+                throw new EOFException("truncated frame");
+            }
+            n += r;
+        }
+        return new PDUFrame(stream, direction, nanos, ber);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("truncated PDU capture");
+        }
+        return b;
+    }
+
+    private long readVarint(int first) throws IOException {
+        long value = first & 0x7f;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("bad variable length integer");
+            }
+            b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,53 @@
+package org.xbib.io.iso23950.capture;
+
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.v3.PDU;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * A captured PDU.
+ */
+public final class PDUFrame {
+
+    private final int stream;
+
+    private final int direction;
+
+    private final long nanos;
+
+    private final byte[] ber;
+
+    PDUFrame(int stream, int direction, long nanos, byte[] ber) {
+        this.stream = stream;
+        this.direction = direction;
+        this.nanos = nanos;
+        this.ber = ber;
+    }
+
+    public int getStream() {
+        return stream;
+    }
+
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * The time of the frame.
+     *
+     * @return the nanoseconds since the start of the capture
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    public byte[] getBytes() {
+        return ber;
+    }
+
+    public PDU decode() throws IOException {
+        return new PDU(BEREncoding.input(new ByteArrayInputStream(ber)), true);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Capture of Z39.50 PDUs to a compact binary log, for offline replay.
+ */
+package org.xbib.io.iso23950.capture;
@@ -1,9 +1,6 @@
 package org.xbib.io.iso23950.cql;
 
 import org.xbib.asn1.ASN1Any;
-import org.xbib.asn1.ASN1Integer;
-import org.xbib.asn1.ASN1Null;
-import org.xbib.asn1.ASN1ObjectIdentifier;
 import org.xbib.asn1.ASN1OctetString;
 import org.xbib.cql.BooleanGroup;
 import org.xbib.cql.BooleanOperator;
@@ -22,21 +19,15 @@ import org.xbib.cql.SortSpec;
 import org.xbib.cql.SortedQuery;
 import org.xbib.cql.Term;
 import org.xbib.cql.Visitor;
+import org.xbib.io.iso23950.rpn.RPNBuilder;
 import org.xbib.io.iso23950.v3.AttributeElement;
-import org.xbib.io.iso23950.v3.AttributeElementAttributeValue;
 import org.xbib.io.iso23950.v3.AttributeList;
-import org.xbib.io.iso23950.v3.AttributeSetId;
 import org.xbib.io.iso23950.v3.AttributesPlusTerm;
 import org.xbib.io.iso23950.v3.Operand;
 import org.xbib.io.iso23950.v3.Operator;
 import org.xbib.io.iso23950.v3.RPNQuery;
 import org.xbib.io.iso23950.v3.RPNStructure;
-import org.xbib.io.iso23950.v3.RPNStructureRpnRpnOp;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.MissingResourceException;
-import java.util.ResourceBundle;
 import java.util.Stack;
 
 /**
@@ -47,32 +38,19 @@ import java.util.Stack;
 public final class CQLRPNGenerator implements Visitor {
 
     /**
-     * BIB-1 Use attributes resource bundle.
+     * Context sets.
      */
-    private static final ResourceBundle bib =
-            ResourceBundle.getBundle("org.xbib.io.iso23950.cql.bib-1");
+    private final ContextSetRegistry contexts;
 
-    /**
-     * Dublin Core Use attributes resource bundle.
-     */
-    private static final ResourceBundle dc =
-            ResourceBundle.getBundle("org.xbib.io.iso23950.cql.dc");
-
-    /**
-     * Context map.
-     */
-    private final Map<String, ResourceBundle> contexts = new HashMap<String, ResourceBundle>() {
-        private static final long serialVersionUID = 8199395368653216950L;
-
-        {
-            put("bib", bib);
-            put("dc", dc);
-        }
-    };
     private Stack<ASN1Any> result;
     private RPNQuery rpnQuery;
 
     public CQLRPNGenerator() {
+        this(ContextSetRegistry.getDefault());
+    }
+
+    public CQLRPNGenerator(ContextSetRegistry contexts) {
+        this.contexts = contexts;
         this.result = new Stack<>();
     }
 
@@ -89,11 +67,7 @@ public final class CQLRPNGenerator implements Visitor {
             node.getQuery().accept(this);
         }
         if (!result.isEmpty()) {
-            this.rpnQuery = new RPNQuery();
-            rpnQuery.s_rpn = (RPNStructure) result.pop();
-            // Z39.50 BIB-1: urn:oid:1.2.840.10003.3.1
-            rpnQuery.s_attributeSet = new AttributeSetId();
-            rpnQuery.s_attributeSet.value = new ASN1ObjectIdentifier(new int[]{1, 2, 840, 10003, 3, 1});
+            this.rpnQuery = RPNBuilder.query((RPNStructure) result.pop());
         } else {
             throw new SyntaxException("unable to generate RPN from CQL");
         }
@@ -148,26 +122,25 @@ public final class CQLRPNGenerator implements Visitor {
         node.getSearchClause().accept(this);
         if (node.getBooleanGroup() != null) {
             node.getBooleanGroup().accept(this);
-            RPNStructure rpn = new RPNStructure();
-            rpn.c_rpnRpnOp = new RPNStructureRpnRpnOp();
-            rpn.c_rpnRpnOp.s_op = new Operator();
+            Operator operator;
             BooleanOperator op = node.getBooleanGroup().getOperator();
             switch (op) {
                 case AND:
-                    rpn.c_rpnRpnOp.s_op.c_and = new ASN1Null();
+                    operator = RPNBuilder.and();
                     break;
                 case OR:
-                    rpn.c_rpnRpnOp.s_op.c_or = new ASN1Null();
+                    operator = RPNBuilder.or();
                     break;
                 case NOT:
-                    rpn.c_rpnRpnOp.s_op.c_and_not = new ASN1Null();
+                    operator = RPNBuilder.andNot();
                     break;
                 default:
+                    operator = new Operator();
                     break;
             }
-            rpn.c_rpnRpnOp.s_rpn1 = (RPNStructure) result.pop();
-            rpn.c_rpnRpnOp.s_rpn2 = (RPNStructure) result.pop();
-            result.push(rpn);
+            RPNStructure rpn1 = (RPNStructure) result.pop();
+            RPNStructure rpn2 = (RPNStructure) result.pop();
+            result.push(RPNBuilder.op(operator, rpn1, rpn2));
         }
     }
 
@@ -247,11 +220,7 @@ public final class CQLRPNGenerator implements Visitor {
                 break;
         }
         if (n != 3) {
-            AttributeElement ae = new AttributeElement();
-            ae.sAttributeType = new ASN1Integer(t);
-            ae.attributeValue = new AttributeElementAttributeValue();
-            ae.attributeValue.cNumeric = new ASN1Integer(n);
-            result.push(ae);
+            result.push(RPNBuilder.attribute(t, n));
         }
     }
 
@@ -288,11 +257,7 @@ public final class CQLRPNGenerator implements Visitor {
             n = 2;
         }
         if (n != 100) {
-            AttributeElement ae = new AttributeElement();
-            ae.sAttributeType = new ASN1Integer(t);
-            ae.attributeValue = new AttributeElementAttributeValue();
-            ae.attributeValue.cNumeric = new ASN1Integer(n);
-            result.push(ae);
+            result.push(RPNBuilder.attribute(t, n));
             v = v.replaceAll("\\*", "");
         }
         ASN1OctetString s = new ASN1OctetString(v);
@@ -315,20 +280,12 @@ public final class CQLRPNGenerator implements Visitor {
         if (context == null) {
             context = "dc"; // default context
         }
-        int t = 1;
-        int n = getUseAttr(context, node.getName());
-        AttributeElement ae = new AttributeElement();
-        ae.sAttributeType = new ASN1Integer(t);
-        ae.attributeValue = new AttributeElementAttributeValue();
-        ae.attributeValue.cNumeric = new ASN1Integer(n);
-        result.push(ae);
-    }
-
-    private int getUseAttr(String context, String attrName) {
-        try {
-            return Integer.parseInt(contexts.get(context).getString(attrName));
-        } catch (MissingResourceException e) {
-            throw new SyntaxException("unknown use attribute '" + attrName + "' for context " + context, e);
+        AttributeElement[] attributes = contexts.lookup(context, node.getName());
+        if (attributes == null) {
+            throw new SyntaxException("unknown use attribute '" + node.getName() + "' for context " + context);
+        }
+        for (AttributeElement ae : attributes) {
+            result.push(ae);
         }
     }
 }
@@ -0,0 +1,146 @@
+package org.xbib.io.iso23950.cql;
+
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.AttributeElementAttributeValue;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of CQL context sets, mapping the indexes of a context set to Type-1 attributes.
+ *
+ * A mapping is either a BIB-1 use attribute value, e.g. {@code 4}, or a list of
+ * attribute type and value pairs, e.g. {@code 1=4 4=1}. Mappings are compiled
+ * once, when a context set is registered, into shared, pre-encoded attribute
+ * elements, so translating an index is a hash lookup. The attribute elements
+ * returned by {@link #lookup(String, String)} must not be modified.
+ *
+ * Context sets can be registered at any time. Queries compiled before, e.g. those
+ * in a {@link org.xbib.io.iso23950.cache.RPNQueryCache}, keep the old mapping.
+ */
+public final class ContextSetRegistry {
+
+    private static final Logger logger = Logger.getLogger(ContextSetRegistry.class.getName());
+
+    private final Map<String, Map<String, AttributeElement[]>> contexts;
+
+    public ContextSetRegistry() {
+        this.contexts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The registry with the BIB-1 ({@code bib}) and Dublin Core ({@code dc}) context sets,
+     * as used by {@link CQLRPNGenerator} by default.
+     *
+     * @return the default registry
+     */
+    public static ContextSetRegistry getDefault() {
+        return DefaultHolder.registry;
+    }
+
+    /**
+     * Register a context set from a resource bundle, replacing a context set of the same name.
+     *
+     * @param context the context set name
+     * @param bundle the resource bundle with index names as keys and mappings as values
+     * @throws IllegalArgumentException if a mapping is not valid
+     */
+    public void register(String context, ResourceBundle bundle) {
+        Map<String, String> mappings = new HashMap<>();
+        Enumeration<String> keys = bundle.getKeys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            mappings.put(key, bundle.getString(key));
+        }
+        register(context, mappings);
+    }
+
+    /**
+     * Register a context set, replacing a context set of the same name.
+     *
+     * @param context the context set name
+     * @param mappings the mappings by index name
+     * @throws IllegalArgumentException if a mapping is not valid
+     */
+    public void register(String context, Map<String, String> mappings) {
+        Map<String, AttributeElement[]> indexes = new HashMap<>();
+        for (Map.Entry<String, String> entry : mappings.entrySet()) {
+            indexes.put(entry.getKey(), compile(entry.getKey(), entry.getValue()));
+        }
+        contexts.put(context, indexes);
+    }
+
+    /**
+     * Remove a context set.
+     *
+     * @param context the context set name
+     */
+    public void unregister(String context) {
+        contexts.remove(context);
+    }
+
+    public boolean contains(String context) {
+        return contexts.containsKey(context);
+    }
+
+    /**
+     * Look up the attributes of an index.
+     *
+     * @param context the context set name
+     * @param index the index name
+     * @return the shared attribute elements, or null if the context set or index is unknown
+     */
+    public AttributeElement[] lookup(String context, String index) {
+        Map<String, AttributeElement[]> indexes = contexts.get(context);
+        return indexes != null ? indexes.get(index) : null;
+    }
+
+    private static AttributeElement[] compile(String index, String mapping) {
+        String[] pairs = mapping.trim().split("\\s+");
+        AttributeElement[] attributes = new AttributeElement[pairs.length];
+        try {
+            for (int i = 0; i < pairs.length; i++) {
+                int pos = pairs[i].indexOf('=');
+                int type = pos < 0 ? 1 : Integer.parseInt(pairs[i].substring(0, pos));
+                int value = Integer.parseInt(pairs[i].substring(pos + 1));
+                AttributeElement ae = new AttributeElement();
+                ae.sAttributeType = new ASN1Integer(type);
+                ae.attributeValue = new AttributeElementAttributeValue();
+                ae.attributeValue.cNumeric = new ASN1Integer(value);
+                attributes[i] = new PreEncodedAttributeElement(ae);
+            }
+        } catch (NumberFormatException | ASN1Exception e) {
+            throw new IllegalArgumentException("invalid mapping '" + mapping + "' for index " + index, e);
+        }
+        return attributes;
+    }
+
+    /**
+     * Loads the default context sets on first use.
+     */
+    private static final class DefaultHolder {
+
+        private static final ContextSetRegistry registry = new ContextSetRegistry();
+
+        static {
+            register("bib", "org.xbib.io.iso23950.cql.bib-1");
+            register("dc", "org.xbib.io.iso23950.cql.dc");
+        }
+
+        private static void register(String context, String bundleName) {
+            try {
+                registry.register(context, ResourceBundle.getBundle(bundleName));
+            } catch (MissingResourceException e) {
+                logger.log(Level.WARNING, "context set " + context + " not available: " + e.getMessage());
+            }
+        }
+    }
+}
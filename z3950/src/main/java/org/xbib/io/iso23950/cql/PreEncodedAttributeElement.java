@@ -0,0 +1,32 @@
+package org.xbib.io.iso23950.cql;
+
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.asn1.BERConstructed;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.asn1.BERPreEncoded;
+import org.xbib.io.iso23950.v3.AttributeElement;
+
+/**
+ * An attribute element whose BER encoding has been computed once, for sharing
+ * between queries. Changing the fields does not change the encoding.
+ */
+final class PreEncodedAttributeElement extends AttributeElement {
+
+    private final BEREncoding[] fields;
+
+    PreEncodedAttributeElement(AttributeElement ae) throws ASN1Exception {
+        this.attributeSetId = ae.attributeSetId;
+        this.sAttributeType = ae.sAttributeType;
+        this.attributeValue = ae.attributeValue;
+        BEREncoding type = BERPreEncoded.of(ae.sAttributeType.berEncode(BEREncoding.CONTEXT_SPECIFIC_TAG, 120));
+        BEREncoding value = BERPreEncoded.of(ae.attributeValue.berEncode());
+        this.fields = ae.attributeSetId == null ? new BEREncoding[] {type, value} : new BEREncoding[] {
+                BERPreEncoded.of(ae.attributeSetId.berEncode(BEREncoding.CONTEXT_SPECIFIC_TAG, 1)), type, value
+        };
+    }
+
+    @Override
+    public BEREncoding berEncode(int tagType, int tag) throws ASN1Exception {
+        return new BERConstructed(tagType, tag, fields);
+    }
+}
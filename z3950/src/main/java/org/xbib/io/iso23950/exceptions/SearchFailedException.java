@@ -0,0 +1,30 @@
+package org.xbib.io.iso23950.exceptions;
+
+/**
+ * Thrown when a target answers a search with a failure, usually with a non-surrogate diagnostic.
+ */
+public class SearchFailedException extends ZException {
+
+    private static final long serialVersionUID = -4711358203366702317L;
+
+    private final int diagnostic;
+
+    public SearchFailedException(String message, int diagnostic) {
+        super(message);
+        this.diagnostic = diagnostic;
+    }
+
+    public SearchFailedException(String message, Throwable throwable, int diagnostic) {
+        super(message, throwable);
+        this.diagnostic = diagnostic;
+    }
+
+    /**
+     * The condition of the diagnostic of the target.
+     *
+     * @return the diagnostic condition, or -1 if the target gave no diagnostic
+     */
+    public int getDiagnostic() {
+        return diagnostic;
+    }
+}
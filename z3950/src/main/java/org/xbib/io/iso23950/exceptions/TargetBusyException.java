@@ -0,0 +1,23 @@
+package org.xbib.io.iso23950.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request to a target is rejected locally, because the target is at the limit of its policy.
+ * Nothing has been sent to the target.
+ */
+public class TargetBusyException extends IOException {
+
+    private static final long serialVersionUID = -3021907263315485113L;
+
+    private final String target;
+
+    public TargetBusyException(String target, String message) {
+        super(target + ": " + message);
+        this.target = target;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,22 @@
+package org.xbib.io.iso23950.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a target is skipped because its circuit breaker is open. Nothing has been sent to the target.
+ */
+public class TargetUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 4420960713925473201L;
+
+    private final String target;
+
+    public TargetUnavailableException(String target, String message) {
+        super(target + ": " + message);
+        this.target = target;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+}
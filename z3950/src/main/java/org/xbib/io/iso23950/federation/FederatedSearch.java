@@ -0,0 +1,175 @@
+package org.xbib.io.iso23950.federation;
+
+import org.xbib.io.iso23950.RecordListener;
+import org.xbib.io.iso23950.async.AsyncZClient;
+import org.xbib.io.iso23950.exceptions.TargetUnavailableException;
+import org.xbib.io.iso23950.health.HealthRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Sends the same operation to several targets at once, each through its own asynchronous client.
+ *
+ * Targets whose circuit breaker in the health registry is open are skipped, and their result fails
+ * with a {@link TargetUnavailableException} at once, so a federated search waits only for healthy
+ * targets. The clients of the targets should use the health registry as metrics registry and timeout
+ * policy, so that slow and failing targets are detected.
+ */
+public class FederatedSearch implements Closeable {
+
+    private final Map<String, AsyncZClient> clients;
+
+    private final HealthRegistry health;
+
+    private FederatedSearch(Map<String, AsyncZClient> clients, HealthRegistry health) {
+        this.clients = clients;
+        this.health = health;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The targets, as host and port, in the order they were added.
+     *
+     * @return the targets
+     */
+    public Set<String> getTargets() {
+        return clients.keySet();
+    }
+
+    /**
+     * Submit an operation to all available targets.
+     *
+     * @param operation the operation
+     * @param <T> the type of the result
+     * @return the future results by target, in the order the targets were added
+     */
+    public <T> Map<String, CompletableFuture<T>> submit(AsyncZClient.Operation<T> operation) {
+        return submitEach(target -> operation);
+    }
+
+    /**
+     * Submit an operation for each target to all available targets.
+     *
+     * @param operations the operation of a target, as host and port
+     * @param <T> the type of the result
+     * @return the future results by target, in the order the targets were added
+     */
+    public <T> Map<String, CompletableFuture<T>> submitEach(Function<String, AsyncZClient.Operation<T>> operations) {
+        Map<String, CompletableFuture<T>> results = new LinkedHashMap<>();
+        for (Map.Entry<String, AsyncZClient> entry : clients.entrySet()) {
+            String target = entry.getKey();
+            if (health != null && !health.allowRequest(target)) {
+                CompletableFuture<T> future = new CompletableFuture<>();
+                future.completeExceptionally(new TargetUnavailableException(target, "circuit open"));
+                results.put(target, future);
+            } else {
+                results.put(target, entry.getValue().submit(operations.apply(target)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Search all available targets with a PQF query, and present records.
+     *
+     * @param query the query
+     * @param offset the offset of the first record to present
+     * @param length the number of records to present from each target
+     * @param recordListeners the record listener of a target, called on the I/O thread of the target
+     * @return the future hit counts by target
+     */
+    public Map<String, CompletableFuture<Integer>> executePQF(String query, int offset, int length,
+                                                              Function<String, RecordListener> recordListeners) {
+        return submitEach(target -> {
+            RecordListener recordListener = recordListeners.apply(target);
+            return client -> client.executePQF(query, offset, length, null, recordListener);
+        });
+    }
+
+    /**
+     * Search all available targets with a CQL query, and present records.
+     *
+     * @param query the query
+     * @param offset the offset of the first record to present
+     * @param length the number of records to present from each target
+     * @param recordListeners the record listener of a target, called on the I/O thread of the target
+     * @return the future hit counts by target
+     */
+    public Map<String, CompletableFuture<Integer>> executeCQL(String query, int offset, int length,
+                                                              Function<String, RecordListener> recordListeners) {
+        return submitEach(target -> {
+            RecordListener recordListener = recordListeners.apply(target);
+            return client -> client.executeCQL(query, offset, length, null, recordListener);
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (AsyncZClient client : clients.values()) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Builder for a federated search.
+     */
+    public static class Builder {
+
+        private final Map<String, AsyncZClient> clients = new LinkedHashMap<>();
+
+        private HealthRegistry health;
+
+        /**
+         * Add a target. The client is closed with the federated search.
+         *
+         * @param host the host of the target
+         * @param port the port of the target
+         * @param client the client of the target
+         * @return this builder
+         */
+        public Builder addTarget(String host, int port, AsyncZClient client) {
+            this.clients.put(host + ":" + port, client);
+            return this;
+        }
+
+        /**
+         * Skip targets whose circuit breaker in a health registry is open.
+         *
+         * @param health the health registry
+         * @return this builder
+         */
+        public Builder setHealthRegistry(HealthRegistry health) {
+            this.health = health;
+            return this;
+        }
+
+        public FederatedSearch build() {
+            if (clients.isEmpty()) {
+                throw new IllegalArgumentException("no targets");
+            }
+            return new FederatedSearch(Collections.unmodifiableMap(new LinkedHashMap<>(clients)), health);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package org.xbib.io.iso23950.federation;
+
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.RecordListener;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.async.AsyncZClient;
+import org.xbib.io.iso23950.exceptions.TargetUnavailableException;
+import org.xbib.io.iso23950.health.HealthRegistry;
+import org.xbib.io.iso23950.metrics.LatencyHistogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A group of mirrors of one database, each with its own asynchronous client, sending hedged requests.
+ *
+ * An operation is sent to the first available mirror. If it has not completed after a percentile
+ * of the observed operation latency, it is also sent to the next mirror, and the first result wins.
+ * The association of the losing mirror is aborted with a close request, and opened again for its
+ * next operation. A failed operation is sent to the next mirror at once. Hedging is limited to a
+ * ratio of the operations, so that a slow group does not double its load.
+ *
+ * Result sets belong to one association, so an operation must search and present together, as
+ * {@link #executePQF(String, int, int, RecordListener)} does.
+ */
+public class TargetGroup implements Closeable {
+
+    /**
+     * The close reason of aborted associations.
+     */
+    private static final int CLOSE_FINISHED = 0;
+
+    private final List<String> targets;
+
+    private final List<AsyncZClient> clients;
+
+    private final HealthRegistry health;
+
+    private final double percentile;
+
+    private final int minSamples;
+
+    private final long initialDelayNanos;
+
+    private final double maxHedgeRatio;
+
+    private final LatencyHistogram latency;
+
+    private final LongAdder requests;
+
+    private final LongAdder hedges;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private TargetGroup(List<String> targets, List<AsyncZClient> clients, HealthRegistry health, double percentile,
+                        int minSamples, long initialDelayNanos, double maxHedgeRatio) {
+        this.targets = targets;
+        this.clients = clients;
+        this.health = health;
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.initialDelayNanos = initialDelayNanos;
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.latency = new LatencyHistogram();
+        this.requests = new LongAdder();
+        this.hedges = new LongAdder();
+        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "target-group-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The mirrors, as host and port, in order of preference.
+     *
+     * @return the mirrors
+     */
+    public List<String> getTargets() {
+        return targets;
+    }
+
+    /**
+     * The time after which an operation is also sent to the next mirror.
+     *
+     * @return the delay in nanoseconds
+     */
+    public long getHedgeDelayNanos() {
+        return latency.getCount() < minSamples ? initialDelayNanos : latency.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * The latency of completed operations, from sending to a mirror until its result.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * The number of operations sent to another mirror because they were slow.
+     *
+     * @return the number of hedged operations
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * Submit an operation to the group.
+     *
+     * @param operation the operation
+     * @param <T> the type of the result
+     * @return the result of the first mirror completing the operation
+     */
+    public <T> CompletableFuture<T> submit(AsyncZClient.Operation<T> operation) {
+        requests.increment();
+        Hedge<T> hedge = new Hedge<>(operation);
+        if (!hedge.next()) {
+            hedge.result.completeExceptionally(new TargetUnavailableException(targets.get(0), "no mirror available"));
+            return hedge.result;
+        }
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (!hedge.result.isDone() && hedges.sum() < maxHedgeRatio * requests.sum() && hedge.next()) {
+                hedges.increment();
+            }
+        }, getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        hedge.result.whenComplete((result, e) -> timer.cancel(false));
+        return hedge.result;
+    }
+
+    /**
+     * Search with a PQF query, and present records. Only the records of the winning mirror are
+     * passed to the record listener, after the operation completed.
+     *
+     * @param query the query
+     * @param offset the offset of the first record to present
+     * @param length the number of records to present
+     * @param recordListener the record listener
+     * @return the future hit count
+     */
+    public CompletableFuture<Integer> executePQF(String query, int offset, int length, RecordListener recordListener) {
+        return execute(client -> {
+            Buffer buffer = new Buffer();
+            buffer.count = client.executePQF(query, offset, length, null, buffer.records::add);
+            return buffer;
+        }, recordListener);
+    }
+
+    /**
+     * Search with a CQL query, and present records. Only the records of the winning mirror are
+     * passed to the record listener, after the operation completed.
+     *
+     * @param query the query
+     * @param offset the offset of the first record to present
+     * @param length the number of records to present
+     * @param recordListener the record listener
+     * @return the future hit count
+     */
+    public CompletableFuture<Integer> executeCQL(String query, int offset, int length, RecordListener recordListener) {
+        return execute(client -> {
+            Buffer buffer = new Buffer();
+            buffer.count = client.executeCQL(query, offset, length, null, buffer.records::add);
+            return buffer;
+        }, recordListener);
+    }
+
+    private CompletableFuture<Integer> execute(AsyncZClient.Operation<Buffer> operation, RecordListener recordListener) {
+        return submit(operation).thenApply(buffer -> {
+            if (recordListener != null) {
+                for (Record record : buffer.records) {
+                    recordListener.onRecord(record);
+                }
+            }
+            return buffer.count;
+        });
+    }
+
+    /**
+     * Close the clients of all mirrors.
+     *
+     * @throws IOException if a client fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        IOException exception = null;
+        for (AsyncZClient client : clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * The records of a search, buffered until it is known which mirror wins.
+     */
+    private static class Buffer {
+
+        private final List<Record> records = new ArrayList<>();
+
+        private int count;
+    }
+
+    /**
+     * An operation sent to one or more mirrors.
+     */
+    private class Hedge<T> {
+
+        private final AsyncZClient.Operation<T> operation;
+
+        private final CompletableFuture<T> result;
+
+        private final List<Attempt> attempts;
+
+        private int mirror;
+
+        private int running;
+
+        Hedge(AsyncZClient.Operation<T> operation) {
+            this.operation = operation;
+            this.result = new CompletableFuture<>();
+            this.attempts = new ArrayList<>();
+        }
+
+        /**
+         * Send the operation to the next available mirror.
+         *
+         * @return false if no mirror is left
+         */
+        synchronized boolean next() {
+            while (mirror < clients.size()) {
+                int i = mirror++;
+                if (health != null && !health.allowRequest(targets.get(i))) {
+                    continue;
+                }
+                Attempt attempt = new Attempt();
+                attempts.add(attempt);
+                running++;
+                long start = System.nanoTime();
+                CompletableFuture<T> future = clients.get(i).submit(client -> {
+                    attempt.start(client);
+                    try {
+                        return operation.execute(client);
+                    } finally {
+                        attempt.finish();
+                    }
+                });
+                attempt.submitted(future);
+                future.whenComplete((value, e) -> {
+                    if (e == null) {
+                        latency.record(System.nanoTime() - start);
+                        won(attempt, value);
+                    } else {
+                        failed(e);
+                    }
+                });
+                return true;
+            }
+            return false;
+        }
+
+        private void won(Attempt winner, T value) {
+            if (result.complete(value)) {
+                List<Attempt> losers;
+                synchronized (this) {
+                    losers = new ArrayList<>(attempts);
+                }
+                for (Attempt attempt : losers) {
+                    if (attempt != winner) {
+                        attempt.cancel(scheduler);
+                    }
+                }
+            }
+        }
+
+        private void failed(Throwable e) {
+            synchronized (this) {
+                running--;
+                if (result.isDone() || running > 0 || next()) {
+                    return;
+                }
+            }
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * The execution of an operation on the association of one mirror.
+     */
+    private static class Attempt {
+
+        private CompletableFuture<?> future;
+
+        private ZClient client;
+
+        private boolean cancelled;
+
+        private boolean aborting;
+
+        void submitted(CompletableFuture<?> future) {
+            boolean cancel;
+            synchronized (this) {
+                this.future = future;
+                cancel = cancelled;
+            }
+            if (cancel) {
+                future.cancel(false);
+            }
+        }
+
+        synchronized void start(ZClient client) {
+            if (cancelled) {
+                // not an I/O error, the association stays open
+                throw new CancellationException();
+            }
+            this.client = client;
+        }
+
+        synchronized void finish() {
+            // an abort in progress must not hit the next operation of the association
+            boolean interrupted = false;
+            while (aborting) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            this.client = null;
+        }
+
+        /**
+         * Cancel the attempt. A running operation is aborted by the executor, not by the calling thread,
+         * which is the I/O thread of the winning mirror, as the abort may block on a stalled association.
+         *
+         * @param executor the executor aborting a running operation
+         */
+        void cancel(Executor executor) {
+            CompletableFuture<?> queued;
+            ZClient running;
+            synchronized (this) {
+                cancelled = true;
+                running = client;
+                aborting = running != null;
+                queued = future;
+            }
+            if (running != null) {
+                try {
+                    executor.execute(() -> abort(running));
+                } catch (RejectedExecutionException e) {
+                    // the group is closed
+                    abort(running);
+                }
+                return;
+            }
+            // still queued, the association skips it. Completes outside the lock, as it calls back the hedge.
+            if (queued != null) {
+                queued.cancel(false);
+            }
+        }
+
+        private void abort(ZClient running) {
+            try {
+                running.abort(CLOSE_FINISHED);
+            } finally {
+                synchronized (this) {
+                    aborting = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder for a target group.
+     */
+    public static class Builder {
+
+        private final List<String> targets = new ArrayList<>();
+
+        private final List<AsyncZClient> clients = new ArrayList<>();
+
+        private HealthRegistry health;
+
+        private double percentile = 95.0d;
+
+        private int minSamples = 20;
+
+        private long initialDelayNanos = TimeUnit.SECONDS.toNanos(1L);
+
+        private double maxHedgeRatio = 0.1d;
+
+        /**
+         * Add a mirror. Mirrors are tried in the order they were added. The client is closed with the group.
+         *
+         * @param host the host of the mirror
+         * @param port the port of the mirror
+         * @param client the client of the mirror
+         * @return this builder
+         */
+        public Builder addMirror(String host, int port, AsyncZClient client) {
+            this.targets.add(host + ":" + port);
+            this.clients.add(client);
+            return this;
+        }
+
+        /**
+         * Skip mirrors whose circuit breaker in a health registry is open.
+         *
+         * @param health the health registry
+         * @return this builder
+         */
+        public Builder setHealthRegistry(HealthRegistry health) {
+            this.health = health;
+            return this;
+        }
+
+        /**
+         * Set the percentile of the operation latency after which an operation is hedged. The default is 95.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return this builder
+         */
+        public Builder setPercentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Set the hedge delay until the latency of enough operations is known. The default is one second
+         * until 20 operations completed.
+         *
+         * @param minSamples the number of operations
+         * @param delay the delay
+         * @param unit the time unit
+         * @return this builder
+         */
+        public Builder setInitialDelay(int minSamples, long delay, TimeUnit unit) {
+            this.minSamples = minSamples;
+            this.initialDelayNanos = unit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Set the maximum ratio of hedged operations to all operations. The default is 0.1.
+         *
+         * @param maxHedgeRatio the ratio
+         * @return this builder
+         */
+        public Builder setMaxHedgeRatio(double maxHedgeRatio) {
+            this.maxHedgeRatio = maxHedgeRatio;
+            return this;
+        }
+
+        public TargetGroup build() {
+            if (clients.isEmpty()) {
+                throw new IllegalArgumentException("no mirrors");
+            }
+            return new TargetGroup(Collections.unmodifiableList(new ArrayList<>(targets)),
+                    Collections.unmodifiableList(new ArrayList<>(clients)), health, percentile, minSamples,
+                    initialDelayNanos, maxHedgeRatio);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Searching several targets at once.
+ */
+package org.xbib.io.iso23950.federation;
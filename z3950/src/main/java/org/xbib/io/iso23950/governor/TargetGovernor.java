@@ -0,0 +1,237 @@
+package org.xbib.io.iso23950.governor;
+
+import org.xbib.io.iso23950.exceptions.TargetBusyException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enforces the policies of targets, identified by host and port, for all clients sharing the governor.
+ *
+ * Clients take a permit for each association when connecting, and for each request expecting
+ * a response, which is held until the response is read. Calls over a limit wait as the policy
+ * of the target allows, and are then rejected with a {@link TargetBusyException} before anything
+ * is sent to the target.
+ */
+public class TargetGovernor {
+
+    private final TargetPolicy defaultPolicy;
+
+    private final Map<String, TargetPolicy> policies;
+
+    private final Map<String, Limits> limits;
+
+    private TargetGovernor(TargetPolicy defaultPolicy, Map<String, TargetPolicy> policies) {
+        this.defaultPolicy = defaultPolicy;
+        this.policies = policies;
+        this.limits = new ConcurrentHashMap<>();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public TargetPolicy getPolicy(String target) {
+        return policies.getOrDefault(target, defaultPolicy);
+    }
+
+    /**
+     * Take a permit for a new association with a target.
+     *
+     * @param target the target, as host and port
+     * @return the permit, to be closed when the association is closed
+     * @throws TargetBusyException if the target is at its limit of associations
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public Permit acquireAssociation(String target) throws IOException {
+        Limits l = limitsOf(target);
+        if (l.associations == null) {
+            return Permit.NONE;
+        }
+        acquire(target, l, l.associations, l.policy.getMaxWaitNanos(), "associations");
+        return new SemaphorePermit(l.associations);
+    }
+
+    /**
+     * Take a permit for a request to a target, expecting a response.
+     *
+     * @param target the target, as host and port
+     * @return the permit, to be closed when the response is received
+     * @throws TargetBusyException if the target is at its limit of in-flight operations or request rate
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public Permit acquireOperation(String target) throws IOException {
+        Limits l = limitsOf(target);
+        long deadline = System.nanoTime() + l.policy.getMaxWaitNanos();
+        if (l.inFlight != null) {
+            acquire(target, l, l.inFlight, l.policy.getMaxWaitNanos(), "in-flight operations");
+        }
+        if (l.rate != null) {
+            boolean acquired;
+            try {
+                acquired = l.rate.acquire(Math.max(0L, deadline - System.nanoTime()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                if (l.inFlight != null) {
+                    l.inFlight.release();
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException(target + ": interrupted while waiting for request rate");
+                }
+                l.rejected.increment();
+                throw new TargetBusyException(target, "request rate exceeded");
+            }
+        }
+        return l.inFlight != null ? new SemaphorePermit(l.inFlight) : Permit.NONE;
+    }
+
+    /**
+     * The number of associations open with a target.
+     *
+     * @param target the target, as host and port
+     * @return the number of associations, or 0 if the target has no association limit
+     */
+    public int getAssociations(String target) {
+        Limits l = limitsOf(target);
+        return l.associations != null ? l.policy.getMaxAssociations() - l.associations.availablePermits() : 0;
+    }
+
+    /**
+     * The number of operations waiting for a response from a target.
+     *
+     * @param target the target, as host and port
+     * @return the number of operations, or 0 if the target has no in-flight limit
+     */
+    public int getInFlight(String target) {
+        Limits l = limitsOf(target);
+        return l.inFlight != null ? l.policy.getMaxInFlight() - l.inFlight.availablePermits() : 0;
+    }
+
+    /**
+     * The number of calls rejected because a target was at a limit.
+     *
+     * @param target the target, as host and port
+     * @return the number of rejected calls
+     */
+    public long getRejected(String target) {
+        return limitsOf(target).rejected.sum();
+    }
+
+    private Limits limitsOf(String target) {
+        return limits.computeIfAbsent(target, t -> new Limits(getPolicy(t)));
+    }
+
+    private static void acquire(String target, Limits l, Semaphore semaphore, long maxWaitNanos, String limit)
+            throws IOException {
+        boolean acquired;
+        try {
+            // tryAcquire() without timeout would barge ahead of waiting callers of a fair semaphore
+            acquired = semaphore.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(target + ": interrupted while waiting for " + limit);
+        }
+        if (!acquired) {
+            l.rejected.increment();
+            throw new TargetBusyException(target, "too many " + limit);
+        }
+    }
+
+    /**
+     * A permit, released by closing it. Closing a permit more than once has no effect.
+     */
+    public interface Permit extends AutoCloseable {
+
+        /**
+         * A permit of a target without limit.
+         */
+        Permit NONE = () -> {
+        };
+
+        @Override
+        void close();
+    }
+
+    private static class SemaphorePermit implements Permit {
+
+        private final Semaphore semaphore;
+
+        private final AtomicBoolean closed;
+
+        SemaphorePermit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+            this.closed = new AtomicBoolean();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+
+    private static class Limits {
+
+        private final TargetPolicy policy;
+
+        private final Semaphore associations;
+
+        private final Semaphore inFlight;
+
+        private final TokenBucket rate;
+
+        private final LongAdder rejected;
+
+        Limits(TargetPolicy policy) {
+            this.policy = policy;
+            this.associations = policy.getMaxAssociations() > 0 ?
+                    new Semaphore(policy.getMaxAssociations(), policy.isFair()) : null;
+            this.inFlight = policy.getMaxInFlight() > 0 ?
+                    new Semaphore(policy.getMaxInFlight(), policy.isFair()) : null;
+            this.rate = policy.getRequestsPerSecond() > 0 ?
+                    new TokenBucket(policy.getRequestsPerSecond(), policy.getBurst()) : null;
+            this.rejected = new LongAdder();
+        }
+    }
+
+    /**
+     * Builder for a target governor.
+     */
+    public static class Builder {
+
+        private TargetPolicy defaultPolicy = TargetPolicy.UNLIMITED;
+
+        private final Map<String, TargetPolicy> policies = new HashMap<>();
+
+        /**
+         * Set the policy of targets without a policy of their own. The default is no limits.
+         *
+         * @param defaultPolicy the policy
+         * @return this builder
+         */
+        public Builder setDefaultPolicy(TargetPolicy defaultPolicy) {
+            this.defaultPolicy = defaultPolicy;
+            return this;
+        }
+
+        public Builder setPolicy(String host, int port, TargetPolicy policy) {
+            this.policies.put(host + ":" + port, policy);
+            return this;
+        }
+
+        public TargetGovernor build() {
+            return new TargetGovernor(defaultPolicy, new HashMap<>(policies));
+        }
+    }
+}
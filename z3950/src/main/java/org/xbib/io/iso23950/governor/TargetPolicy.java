@@ -0,0 +1,155 @@
+package org.xbib.io.iso23950.governor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits of a target: concurrent associations, in-flight operations, and a request rate
+ * with a burst. Calls over a limit wait up to the maximum wait, in arrival order if the policy
+ * is fair, and are rejected after it. With a maximum wait of zero, calls over a limit are
+ * rejected at once. A limit of zero means no limit.
+ */
+public final class TargetPolicy {
+
+    /**
+     * A policy without limits.
+     */
+    public static final TargetPolicy UNLIMITED = builder().build();
+
+    private final int maxAssociations;
+
+    private final int maxInFlight;
+
+    private final double requestsPerSecond;
+
+    private final int burst;
+
+    private final long maxWaitNanos;
+
+    private final boolean fair;
+
+    private TargetPolicy(int maxAssociations, int maxInFlight, double requestsPerSecond, int burst,
+                         long maxWaitNanos, boolean fair) {
+        this.maxAssociations = maxAssociations;
+        this.maxInFlight = maxInFlight;
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.maxWaitNanos = maxWaitNanos;
+        this.fair = fair;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getMaxAssociations() {
+        return maxAssociations;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public boolean isFair() {
+        return fair;
+    }
+
+    @Override
+    public String toString() {
+        return "[maxAssociations=" + maxAssociations + " maxInFlight=" + maxInFlight +
+                " requestsPerSecond=" + requestsPerSecond + " burst=" + burst +
+                " maxWaitNanos=" + maxWaitNanos + " fair=" + fair + "]";
+    }
+
+    /**
+     * Builder for a target policy.
+     */
+    public static class Builder {
+
+        private int maxAssociations;
+
+        private int maxInFlight;
+
+        private double requestsPerSecond;
+
+        private int burst = 1;
+
+        private long maxWaitNanos;
+
+        private boolean fair = true;
+
+        public Builder setMaxAssociations(int maxAssociations) {
+            this.maxAssociations = maxAssociations;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of operations waiting for a response from the target, over all associations.
+         *
+         * @param maxInFlight the maximum number of operations, 0 for no limit
+         * @return this builder
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Set the sustained rate of requests, with the number of requests which may be sent at once
+         * after an idle period.
+         *
+         * @param requestsPerSecond the requests per second, 0 for no limit
+         * @param burst the burst, at least 1
+         * @return this builder
+         */
+        public Builder setRequestRate(double requestsPerSecond, int burst) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Set how long a call over a limit waits before it is rejected. The default is to reject at once.
+         *
+         * @param maxWait the maximum wait
+         * @param unit the time unit
+         * @return this builder
+         */
+        public Builder setMaxWait(long maxWait, TimeUnit unit) {
+            this.maxWaitNanos = unit.toNanos(maxWait);
+            return this;
+        }
+
+        /**
+         * Set whether waiting calls are served in arrival order. The default is true.
+         *
+         * @param fair true for arrival order
+         * @return this builder
+         */
+        public Builder setFair(boolean fair) {
+            this.fair = fair;
+            return this;
+        }
+
+        public TargetPolicy build() {
+            if (maxAssociations < 0 || maxInFlight < 0 || requestsPerSecond < 0 || maxWaitNanos < 0) {
+                throw new IllegalArgumentException("negative limit");
+            }
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be at least 1");
+            }
+            return new TargetPolicy(maxAssociations, maxInFlight, requestsPerSecond, burst, maxWaitNanos, fair);
+        }
+    }
+}
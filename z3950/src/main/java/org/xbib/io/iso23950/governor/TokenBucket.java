@@ -0,0 +1,79 @@
+package org.xbib.io.iso23950.governor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket refilled at a constant rate, holding at most a burst of tokens.
+ *
+ * A caller finding the bucket empty reserves the next token to be refilled and sleeps until then,
+ * so waiting callers are served in arrival order, and the bucket never owes more tokens than
+ * can be refilled within the maximum wait.
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+
+    private final int burst;
+
+    private double tokens;
+
+    private long refilled;
+
+    public TokenBucket(double tokensPerSecond, int burst) {
+        if (tokensPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate must be positive and burst at least 1");
+        }
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilled = System.nanoTime();
+    }
+
+    /**
+     * Take a token, waiting for it to be refilled if the bucket is empty.
+     *
+     * @param maxWaitNanos the maximum wait
+     * @return true if a token was taken, false if it would have taken longer than the maximum wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(long maxWaitNanos) throws InterruptedException {
+        long wait = reserve(System.nanoTime(), maxWaitNanos);
+        if (wait < 0) {
+            return false;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return true;
+    }
+
+    /**
+     * Reserve a token.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @param maxWaitNanos the maximum wait
+     * @return the nanoseconds until the reserved token is available, or -1 if no token was reserved
+     */
+    synchronized long reserve(long now, long maxWaitNanos) {
+        if (now > refilled) {
+            tokens = Math.min(burst, tokens + (now - refilled) * tokensPerNano);
+            refilled = now;
+        }
+        // tokens below zero are reserved by waiting callers
+        long wait = tokens >= 1 ? 0L : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        if (wait > maxWaitNanos) {
+            return -1L;
+        }
+        tokens -= 1;
+        return wait;
+    }
+
+    /**
+     * The tokens in the bucket at the last refill. Negative if tokens are reserved.
+     *
+     * @return the tokens
+     */
+    public synchronized double getTokens() {
+        return tokens;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Per-target limits of associations, in-flight operations and request rate.
+ */
+package org.xbib.io.iso23950.governor;
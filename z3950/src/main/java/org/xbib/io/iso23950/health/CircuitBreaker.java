@@ -0,0 +1,93 @@
+package org.xbib.io.iso23950.health;
+
+/**
+ * A circuit breaker of one target.
+ *
+ * The circuit opens after a number of consecutive failures, and requests are not allowed while it
+ * is open. After the open time, the circuit is half-open, and one probe request is allowed per open
+ * time. A successful probe closes the circuit, a failed probe opens it again.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of a circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private State state;
+
+    private int failures;
+
+    private long nextProbe;
+
+    public CircuitBreaker(int failureThreshold, long openNanos) {
+        if (failureThreshold < 1 || openNanos < 0L) {
+            throw new IllegalArgumentException("failure threshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Whether a request may be sent to the target. Takes the probe of a half-open circuit.
+     *
+     * @return true if a request may be sent
+     */
+    public boolean allowRequest() {
+        return allowRequest(System.nanoTime());
+    }
+
+    synchronized boolean allowRequest(long now) {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (now - nextProbe < 0L) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        nextProbe = now + openNanos;
+        return true;
+    }
+
+    /**
+     * A request succeeded. Closes a half-open circuit. Responses arriving while the circuit is open are ignored.
+     */
+    public synchronized void onSuccess() {
+        if (state != State.OPEN) {
+            state = State.CLOSED;
+            failures = 0;
+        }
+    }
+
+    public void onFailure() {
+        onFailure(System.nanoTime());
+    }
+
+    synchronized void onFailure(long now) {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            state = State.OPEN;
+            nextProbe = now + openNanos;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return failures;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "[" + state + " failures=" + failures + "]";
+    }
+}
@@ -0,0 +1,392 @@
+package org.xbib.io.iso23950.health;
+
+import org.xbib.io.iso23950.metrics.DefaultMetricsRegistry;
+import org.xbib.io.iso23950.metrics.LatencyHistogram;
+import org.xbib.io.iso23950.metrics.MetricsRegistry;
+import org.xbib.io.iso23950.metrics.Operation;
+import org.xbib.io.iso23950.metrics.OperationMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A metrics registry deriving timeouts and circuit breakers of targets from the observed operations.
+ *
+ * The timeout of an operation at a target follows the time waiting for its responses, as the
+ * larger of the smoothed wait plus four times its mean deviation, as for TCP retransmissions,
+ * and a percentile of all waits. Each consecutive timeout doubles it, up to eight times. Until
+ * enough responses were seen, the default timeout applies. Timeouts, errors and diagnostics
+ * count as failures of the circuit breaker of the target, other responses as successes.
+ *
+ * The registry wraps another metrics registry, which keeps the measurements, so that health
+ * can be combined with any registry, e.g. one exporting the metrics. Install the registry on
+ * clients as both metrics registry and timeout policy.
+ */
+public class HealthRegistry implements MetricsRegistry, TimeoutPolicy {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private static final int MAX_BACKOFF = 3;
+
+    private final MetricsRegistry delegate;
+
+    private final long defaultTimeoutNanos;
+
+    private final long minTimeoutNanos;
+
+    private final long maxTimeoutNanos;
+
+    private final double percentile;
+
+    private final int minSamples;
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers;
+
+    private final ConcurrentMap<String, HealthMetrics[]> targets;
+
+    private HealthRegistry(MetricsRegistry delegate, long defaultTimeoutNanos, long minTimeoutNanos,
+                           long maxTimeoutNanos, double percentile, int minSamples, int failureThreshold,
+                           long openNanos) {
+        this.delegate = delegate;
+        this.defaultTimeoutNanos = defaultTimeoutNanos;
+        this.minTimeoutNanos = minTimeoutNanos;
+        this.maxTimeoutNanos = maxTimeoutNanos;
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+        this.breakers = new ConcurrentHashMap<>();
+        this.targets = new ConcurrentHashMap<>();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public HealthMetrics get(String target, Operation operation) {
+        HealthMetrics[] metrics = targets.get(target);
+        if (metrics == null) {
+            metrics = targets.computeIfAbsent(target, t -> {
+                HealthMetrics[] m = new HealthMetrics[OPERATIONS.length];
+                for (Operation op : OPERATIONS) {
+                    // a close has no response, and tells nothing about the health of the target
+                    m[op.ordinal()] = new HealthMetrics(delegate.get(t, op),
+                            op != Operation.CLOSE ? getCircuitBreaker(t) : null);
+                }
+                return m;
+            });
+        }
+        return metrics[operation.ordinal()];
+    }
+
+    /**
+     * The registry keeping the measurements.
+     *
+     * @return the metrics registry
+     */
+    public MetricsRegistry getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public long getTimeoutMillis(String target, Operation operation) {
+        return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(get(target, operation).getTimeoutNanos()));
+    }
+
+    public CircuitBreaker getCircuitBreaker(String target) {
+        return breakers.computeIfAbsent(target, t -> new CircuitBreaker(failureThreshold, openNanos));
+    }
+
+    /**
+     * Whether a request may be sent to a target, by its circuit breaker.
+     *
+     * @param target the target, as host and port
+     * @return true if a request may be sent
+     */
+    public boolean allowRequest(String target) {
+        return getCircuitBreaker(target).allowRequest();
+    }
+
+    /**
+     * Metrics of an operation at a target, with the smoothed wait and the circuit breaker of the target.
+     * The measurements are forwarded to the metrics of the delegate registry.
+     */
+    public class HealthMetrics implements OperationMetrics {
+
+        private final OperationMetrics metrics;
+
+        private final CircuitBreaker breaker;
+
+        private long samples;
+
+        private double smoothedNanos;
+
+        private double deviationNanos;
+
+        private int backoff;
+
+        protected HealthMetrics(OperationMetrics metrics, CircuitBreaker breaker) {
+            this.metrics = metrics;
+            this.breaker = breaker;
+        }
+
+        @Override
+        public String getTarget() {
+            return metrics.getTarget();
+        }
+
+        @Override
+        public Operation getOperation() {
+            return metrics.getOperation();
+        }
+
+        @Override
+        public void record(long encodeNanos, long waitNanos, long decodeNanos, long sent, long received,
+                           int recordCount, boolean diagnostic) {
+            metrics.record(encodeNanos, waitNanos, decodeNanos, sent, received, recordCount, diagnostic);
+            synchronized (this) {
+                if (samples++ == 0L) {
+                    smoothedNanos = waitNanos;
+                    deviationNanos = waitNanos / 2.0d;
+                } else {
+                    deviationNanos += (Math.abs(smoothedNanos - waitNanos) - deviationNanos) / 4.0d;
+                    smoothedNanos += (waitNanos - smoothedNanos) / 8.0d;
+                }
+                backoff = 0;
+            }
+            if (breaker != null) {
+                if (diagnostic) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+            }
+        }
+
+        @Override
+        public void timeout() {
+            metrics.timeout();
+            synchronized (this) {
+                backoff = Math.min(MAX_BACKOFF, backoff + 1);
+            }
+            if (breaker != null) {
+                breaker.onFailure();
+            }
+        }
+
+        @Override
+        public void error() {
+            metrics.error();
+            if (breaker != null) {
+                breaker.onFailure();
+            }
+        }
+
+        @Override
+        public LatencyHistogram getTotal() {
+            return metrics.getTotal();
+        }
+
+        @Override
+        public LatencyHistogram getEncode() {
+            return metrics.getEncode();
+        }
+
+        @Override
+        public LatencyHistogram getWait() {
+            return metrics.getWait();
+        }
+
+        @Override
+        public LatencyHistogram getDecode() {
+            return metrics.getDecode();
+        }
+
+        @Override
+        public long getCount() {
+            return metrics.getCount();
+        }
+
+        @Override
+        public long getBytesSent() {
+            return metrics.getBytesSent();
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return metrics.getBytesReceived();
+        }
+
+        @Override
+        public long getRecords() {
+            return metrics.getRecords();
+        }
+
+        @Override
+        public double getRecordsPerSecond() {
+            return metrics.getRecordsPerSecond();
+        }
+
+        @Override
+        public long getDiagnostics() {
+            return metrics.getDiagnostics();
+        }
+
+        @Override
+        public long getTimeouts() {
+            return metrics.getTimeouts();
+        }
+
+        @Override
+        public long getErrors() {
+            return metrics.getErrors();
+        }
+
+        @Override
+        public String toString() {
+            return metrics.toString();
+        }
+
+        public synchronized double getSmoothedNanos() {
+            return smoothedNanos;
+        }
+
+        public synchronized double getDeviationNanos() {
+            return deviationNanos;
+        }
+
+        /**
+         * The timeout of the next request.
+         *
+         * @return the timeout in nanoseconds
+         */
+        public long getTimeoutNanos() {
+            long nanos;
+            int shift;
+            synchronized (this) {
+                if (samples < minSamples) {
+                    return defaultTimeoutNanos;
+                }
+                nanos = (long) (smoothedNanos + 4.0d * deviationNanos);
+                shift = backoff;
+            }
+            nanos = Math.max(nanos, getWait().getValueAtPercentile(percentile));
+            return Math.max(minTimeoutNanos, Math.min(maxTimeoutNanos, nanos << shift));
+        }
+    }
+
+    /**
+     * Builder for a health registry.
+     */
+    public static class Builder {
+
+        private MetricsRegistry delegate;
+
+        private long defaultTimeoutNanos = TimeUnit.SECONDS.toNanos(30L);
+
+        private long minTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(100L);
+
+        private long maxTimeoutNanos = TimeUnit.SECONDS.toNanos(60L);
+
+        private double percentile = 99.0d;
+
+        private int minSamples = 20;
+
+        private int failureThreshold = 5;
+
+        private long openNanos = TimeUnit.SECONDS.toNanos(30L);
+
+        /**
+         * Set the registry keeping the measurements, e.g. a registry exporting them. The default is a
+         * {@link DefaultMetricsRegistry}.
+         *
+         * @param delegate the metrics registry
+         * @return this builder
+         */
+        public Builder setDelegate(MetricsRegistry delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Set the timeout of operations with too few responses to derive a timeout from. The default is 30 seconds.
+         *
+         * @param timeout the timeout
+         * @param unit the time unit
+         * @return this builder
+         */
+        public Builder setDefaultTimeout(long timeout, TimeUnit unit) {
+            this.defaultTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Set the bounds of derived timeouts. The defaults are 100 milliseconds and 60 seconds.
+         *
+         * @param min the minimum timeout
+         * @param max the maximum timeout
+         * @param unit the time unit
+         * @return this builder
+         */
+        public Builder setTimeoutBounds(long min, long max, TimeUnit unit) {
+            this.minTimeoutNanos = unit.toNanos(min);
+            this.maxTimeoutNanos = unit.toNanos(max);
+            return this;
+        }
+
+        /**
+         * Set the percentile of waits below the timeout. The default is 99.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return this builder
+         */
+        public Builder setPercentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Set the number of responses needed before the timeout is derived from them. The default is 20.
+         *
+         * @param minSamples the number of responses
+         * @return this builder
+         */
+        public Builder setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive failures opening a circuit, and the time until a probe request
+         * is allowed. The defaults are 5 failures and 30 seconds.
+         *
+         * @param failureThreshold the number of consecutive failures
+         * @param openTime the open time
+         * @param unit the time unit
+         * @return this builder
+         */
+        public Builder setCircuitBreaker(int failureThreshold, long openTime, TimeUnit unit) {
+            this.failureThreshold = failureThreshold;
+            this.openNanos = unit.toNanos(openTime);
+            return this;
+        }
+
+        public HealthRegistry build() {
+            if (minTimeoutNanos <= 0L || maxTimeoutNanos < minTimeoutNanos || defaultTimeoutNanos <= 0L) {
+                throw new IllegalArgumentException("invalid timeouts");
+            }
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("failure threshold must be positive");
+            }
+            return new HealthRegistry(delegate != null ? delegate : new DefaultMetricsRegistry(),
+                    defaultTimeoutNanos, minTimeoutNanos, maxTimeoutNanos, percentile, minSamples,
+                    failureThreshold, openNanos);
+        }
+    }
+}
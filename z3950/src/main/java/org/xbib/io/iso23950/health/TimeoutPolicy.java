@@ -0,0 +1,20 @@
+package org.xbib.io.iso23950.health;
+
+import org.xbib.io.iso23950.metrics.Operation;
+
+/**
+ * Provides the time to wait for the response to a request, by target and operation.
+ * Implementations must be thread safe.
+ */
+@FunctionalInterface
+public interface TimeoutPolicy {
+
+    /**
+     * Get the timeout of an operation at a target.
+     *
+     * @param target the target, as host and port
+     * @param operation the operation
+     * @return the timeout in milliseconds, at least 1
+     */
+    long getTimeoutMillis(String target, Operation operation);
+}
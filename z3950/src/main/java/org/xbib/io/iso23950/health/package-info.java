@@ -0,0 +1,4 @@
+/**
+ * Target health: adaptive timeouts from observed latency, and circuit breakers.
+ */
+package org.xbib.io.iso23950.health;
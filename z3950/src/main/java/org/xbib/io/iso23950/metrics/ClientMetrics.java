@@ -0,0 +1,138 @@
+package org.xbib.io.iso23950.metrics;
+
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.PresentStatus;
+import org.xbib.io.iso23950.v3.Records;
+import org.xbib.io.iso23950.v3.ScanResponse;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Records the operations of one association into a {@link MetricsRegistry}.
+ *
+ * A request is timed from the start of its encoding, a response until the end of its decoding.
+ * As Z39.50 operations of an association do not overlap, one pending request is tracked.
+ * Not thread safe, to be used by the thread owning the association.
+ */
+public final class ClientMetrics {
+
+    private final MetricsRegistry registry;
+
+    private final String target;
+
+    private Operation pending;
+
+    private long encodeNanos;
+
+    private long sentNanos;
+
+    private long bytesSent;
+
+    public ClientMetrics(MetricsRegistry registry, String target) {
+        this.registry = registry;
+        this.target = target;
+    }
+
+    /**
+     * A request was sent. A close request is recorded right away, as it has no response.
+     *
+     * @param pdu the request
+     * @param encodeNanos the time to encode the request
+     * @param bytes the number of bytes sent
+     */
+    public void sent(PDU pdu, long encodeNanos, long bytes) {
+        Operation operation = Operation.of(pdu);
+        if (operation == Operation.CLOSE) {
+            registry.get(target, operation).record(encodeNanos, 0L, 0L, bytes, 0L, 0, false);
+            pending = null;
+            return;
+        }
+        this.pending = operation;
+        this.encodeNanos = encodeNanos;
+        this.sentNanos = System.nanoTime();
+        this.bytesSent = bytes;
+    }
+
+    /**
+     * A response was received.
+     *
+     * @param pdu the response
+     * @param receivedNanos the time when the response was read from the network
+     * @param decodeNanos the time to decode the response
+     * @param bytes the number of bytes received
+     */
+    public void received(PDU pdu, long receivedNanos, long decodeNanos, long bytes) {
+        Operation operation = pending != null ? pending : Operation.of(pdu);
+        OperationMetrics metrics = registry.get(target, operation);
+        if (pdu.c_close != null && operation != Operation.CLOSE) {
+            // the target aborted the operation
+            metrics.error();
+        } else {
+            long waitNanos = pending != null ? receivedNanos - sentNanos : 0L;
+            metrics.record(encodeNanos, waitNanos, decodeNanos, bytesSent, bytes, records(pdu), isDiagnostic(pdu));
+        }
+        pending = null;
+        encodeNanos = 0L;
+        bytesSent = 0L;
+    }
+
+    /**
+     * The pending operation failed.
+     *
+     * @param e the exception
+     */
+    public void failed(IOException e) {
+        OperationMetrics metrics = registry.get(target, pending != null ? pending : Operation.OTHER);
+        if (e instanceof SocketTimeoutException || e.getCause() instanceof SocketTimeoutException) {
+            metrics.timeout();
+        } else {
+            metrics.error();
+        }
+        pending = null;
+    }
+
+    /**
+     * The pending operation was cancelled, and is not recorded.
+     */
+    public void cancelled() {
+        pending = null;
+        encodeNanos = 0L;
+        bytesSent = 0L;
+    }
+
+    private static int records(PDU pdu) {
+        if (pdu.c_presentResponse != null && pdu.c_presentResponse.s_numberOfRecordsReturned != null) {
+            return pdu.c_presentResponse.s_numberOfRecordsReturned.get();
+        }
+        if (pdu.c_searchResponse != null && pdu.c_searchResponse.s_numberOfRecordsReturned != null) {
+            return pdu.c_searchResponse.s_numberOfRecordsReturned.get();
+        }
+        return 0;
+    }
+
+    private static boolean isDiagnostic(PDU pdu) {
+        if (pdu.c_searchResponse != null) {
+            return pdu.c_searchResponse.s_searchStatus == null || !pdu.c_searchResponse.s_searchStatus.get() ||
+                    isDiagnostic(pdu.c_searchResponse.s_records);
+        }
+        if (pdu.c_presentResponse != null) {
+            PresentStatus status = pdu.c_presentResponse.s_presentStatus;
+            return (status != null && status.value != null && status.value.get() == PresentStatus.E_failure) ||
+                    isDiagnostic(pdu.c_presentResponse.s_records);
+        }
+        if (pdu.c_scanResponse != null) {
+            return pdu.c_scanResponse.s_scanStatus != null &&
+                    pdu.c_scanResponse.s_scanStatus.get() == ScanResponse.E_failure;
+        }
+        if (pdu.c_initResponse != null) {
+            return pdu.c_initResponse.s_result == null || !pdu.c_initResponse.s_result.get();
+        }
+        return false;
+    }
+
+    private static boolean isDiagnostic(Records records) {
+        return records != null &&
+                (records.c_nonSurrogateDiagnostic != null || records.c_multipleNonSurDiagnostics != null);
+    }
+}
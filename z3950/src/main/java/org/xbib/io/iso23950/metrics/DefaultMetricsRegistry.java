@@ -0,0 +1,63 @@
+package org.xbib.io.iso23950.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry keeping the metrics in memory.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final ConcurrentMap<String, OperationMetrics[]> targets = new ConcurrentHashMap<>();
+
+    @Override
+    public OperationMetrics get(String target, Operation operation) {
+        OperationMetrics[] metrics = targets.get(target);
+        if (metrics == null) {
+            metrics = targets.computeIfAbsent(target, t -> {
+                OperationMetrics[] m = new OperationMetrics[OPERATIONS.length];
+                for (Operation op : OPERATIONS) {
+                    m[op.ordinal()] = create(t, op);
+                }
+                return m;
+            });
+        }
+        return metrics[operation.ordinal()];
+    }
+
+    public Set<String> getTargets() {
+        return targets.keySet();
+    }
+
+    /**
+     * All metrics of all targets.
+     *
+     * @return the metrics
+     */
+    public Collection<OperationMetrics> getAll() {
+        List<OperationMetrics> list = new ArrayList<>();
+        for (OperationMetrics[] metrics : targets.values()) {
+            for (OperationMetrics m : metrics) {
+                list.add(m);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Create the metrics of an operation at a target, called once per target and operation.
+     *
+     * @param target the target
+     * @param operation the operation
+     * @return the metrics
+     */
+    protected OperationMetrics create(String target, Operation operation) {
+        return new DefaultOperationMetrics(target, operation);
+    }
+}
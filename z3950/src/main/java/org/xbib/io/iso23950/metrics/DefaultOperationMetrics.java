@@ -0,0 +1,143 @@
+package org.xbib.io.iso23950.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one operation type at one target, kept in memory.
+ */
+public class DefaultOperationMetrics implements OperationMetrics {
+
+    private final String target;
+
+    private final Operation operation;
+
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final LatencyHistogram encode = new LatencyHistogram();
+
+    private final LatencyHistogram wait = new LatencyHistogram();
+
+    private final LatencyHistogram decode = new LatencyHistogram();
+
+    private final LongAdder bytesSent = new LongAdder();
+
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private final LongAdder records = new LongAdder();
+
+    private final LongAdder diagnostics = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    public DefaultOperationMetrics(String target, Operation operation) {
+        this.target = target;
+        this.operation = operation;
+    }
+
+    @Override
+    public String getTarget() {
+        return target;
+    }
+
+    @Override
+    public Operation getOperation() {
+        return operation;
+    }
+
+    @Override
+    public void record(long encodeNanos, long waitNanos, long decodeNanos, long sent, long received,
+                       int recordCount, boolean diagnostic) {
+        total.record(encodeNanos + waitNanos + decodeNanos);
+        encode.record(encodeNanos);
+        wait.record(waitNanos);
+        decode.record(decodeNanos);
+        bytesSent.add(sent);
+        bytesReceived.add(received);
+        records.add(recordCount);
+        if (diagnostic) {
+            diagnostics.increment();
+        }
+    }
+
+    @Override
+    public void timeout() {
+        timeouts.increment();
+    }
+
+    @Override
+    public void error() {
+        errors.increment();
+    }
+
+    @Override
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    @Override
+    public LatencyHistogram getEncode() {
+        return encode;
+    }
+
+    @Override
+    public LatencyHistogram getWait() {
+        return wait;
+    }
+
+    @Override
+    public LatencyHistogram getDecode() {
+        return decode;
+    }
+
+    @Override
+    public long getCount() {
+        return total.getCount();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getRecords() {
+        return records.sum();
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        long nanos = total.getSum();
+        return nanos > 0L ? records.sum() * 1.0e9d / nanos : 0.0d;
+    }
+
+    @Override
+    public long getDiagnostics() {
+        return diagnostics.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "[" + target + " " + operation + " count=" + getCount() +
+                " p50=" + total.getValueAtPercentile(50.0d) + "ns p99=" + total.getValueAtPercentile(99.0d) +
+                "ns bytesSent=" + getBytesSent() + " bytesReceived=" + getBytesReceived() +
+                " records=" + getRecords() + " diagnostics=" + getDiagnostics() +
+                " timeouts=" + getTimeouts() + " errors=" + getErrors() + "]";
+    }
+}
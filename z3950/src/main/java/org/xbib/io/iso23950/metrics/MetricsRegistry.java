@@ -0,0 +1,20 @@
+package org.xbib.io.iso23950.metrics;
+
+/**
+ * Provides the metrics of operations by target, to be shared by all clients of a target.
+ *
+ * Implementations must be thread safe and should return the same metrics for the same
+ * target and operation.
+ */
+@FunctionalInterface
+public interface MetricsRegistry {
+
+    /**
+     * Get the metrics of an operation at a target.
+     *
+     * @param target the target, as host and port
+     * @param operation the operation
+     * @return the metrics
+     */
+    OperationMetrics get(String target, Operation operation);
+}
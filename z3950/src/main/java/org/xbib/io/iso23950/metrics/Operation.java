@@ -0,0 +1,39 @@
+package org.xbib.io.iso23950.metrics;
+
+import org.xbib.io.iso23950.v3.PDU;
+
+/**
+ * The Z39.50 operation types with metrics.
+ */
+public enum Operation {
+
+    INIT, SEARCH, PRESENT, SCAN, DELETE_RESULT_SET, CLOSE, OTHER;
+
+    /**
+     * The operation of a request or response PDU.
+     *
+     * @param pdu the PDU
+     * @return the operation
+     */
+    public static Operation of(PDU pdu) {
+        if (pdu.c_searchRequest != null || pdu.c_searchResponse != null) {
+            return SEARCH;
+        }
+        if (pdu.c_presentRequest != null || pdu.c_presentResponse != null) {
+            return PRESENT;
+        }
+        if (pdu.c_initRequest != null || pdu.c_initResponse != null) {
+            return INIT;
+        }
+        if (pdu.c_scanRequest != null || pdu.c_scanResponse != null) {
+            return SCAN;
+        }
+        if (pdu.c_deleteResultSetRequest != null || pdu.c_deleteResultSetResponse != null) {
+            return DELETE_RESULT_SET;
+        }
+        if (pdu.c_close != null) {
+            return CLOSE;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,62 @@
+package org.xbib.io.iso23950.metrics;
+
+/**
+ * Metrics of one operation type at one target.
+ *
+ * The latency of an operation is split into encoding the request, waiting for the
+ * response on the network, which includes the time the target takes, and decoding
+ * the response. Implementations may forward the measurements to another metrics system.
+ */
+public interface OperationMetrics {
+
+    String getTarget();
+
+    Operation getOperation();
+
+    /**
+     * Record a completed operation.
+     *
+     * @param encodeNanos the time to encode the request
+     * @param waitNanos the time from sending the request to receiving the response
+     * @param decodeNanos the time to decode the response
+     * @param sent the number of bytes sent
+     * @param received the number of bytes received
+     * @param recordCount the number of records received
+     * @param diagnostic true if the target answered with a diagnostic
+     */
+    void record(long encodeNanos, long waitNanos, long decodeNanos, long sent, long received,
+                int recordCount, boolean diagnostic);
+
+    void timeout();
+
+    void error();
+
+    LatencyHistogram getTotal();
+
+    LatencyHistogram getEncode();
+
+    LatencyHistogram getWait();
+
+    LatencyHistogram getDecode();
+
+    long getCount();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    long getRecords();
+
+    /**
+     * The records received per second of operation time.
+     *
+     * @return the records per second
+     */
+    double getRecordsPerSecond();
+
+    long getDiagnostics();
+
+    long getTimeouts();
+
+    long getErrors();
+}
@@ -0,0 +1,4 @@
+/**
+ * Metrics of Z39.50 client operations.
+ */
+package org.xbib.io.iso23950.metrics;
@@ -0,0 +1,57 @@
+package org.xbib.io.iso23950.operations;
+
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.v3.DeleteResultSetRequest;
+import org.xbib.io.iso23950.v3.DeleteResultSetResponse;
+import org.xbib.io.iso23950.v3.DeleteSetStatus;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.ResultSetId;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Delete result set operation for Z39.50.
+ */
+public class DeleteResultSetOperation {
+
+    private int status = -1;
+
+    /**
+     * Delete named result sets.
+     *
+     * @param client the client
+     * @param resultSetNames the names of the result sets to delete
+     * @return true if all result sets were deleted
+     * @throws IOException if the operation fails
+     */
+    public boolean execute(ZClient client, List<String> resultSetNames) throws IOException {
+        DeleteResultSetRequest request = new DeleteResultSetRequest();
+        request.sDeleteFunction = new ASN1Integer(DeleteResultSetRequest.E_LIST);
+        ResultSetId[] ids = new ResultSetId[resultSetNames.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = new ResultSetId();
+            ids[i].value = new InternationalString();
+            ids[i].value.value = new ASN1GeneralString(resultSetNames.get(i));
+        }
+        request.sResultSetList = ids;
+        PDU pdu = new PDU();
+        pdu.c_deleteResultSetRequest = request;
+        client.writePDU(pdu);
+        pdu = client.readPDU();
+        DeleteResultSetResponse response = pdu.c_deleteResultSetResponse;
+        if (response == null) {
+            throw new IOException(client.getHost() + ": unexpected response to delete result set request");
+        }
+        status = response.sDeleteOperationStatus != null && response.sDeleteOperationStatus.value != null ?
+                response.sDeleteOperationStatus.value.get() : -1;
+        return status == DeleteSetStatus.E_SUCCESS;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
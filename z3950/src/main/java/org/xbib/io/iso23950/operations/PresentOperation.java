@@ -15,6 +15,8 @@ import org.xbib.io.iso23950.exceptions.NoRecordsReturnedException;
 import org.xbib.io.iso23950.exceptions.RequestTerminatedByAccessControlException;
 import org.xbib.io.iso23950.exceptions.RequestTerminatedException;
 import org.xbib.io.iso23950.exceptions.ZException;
+import org.xbib.io.iso23950.retrieval.FieldSelection;
+import org.xbib.io.iso23950.v3.DefaultDiagFormat;
 import org.xbib.io.iso23950.v3.ElementSetNames;
 import org.xbib.io.iso23950.v3.InternationalString;
 import org.xbib.io.iso23950.v3.NamePlusRecord;
@@ -23,20 +25,211 @@ import org.xbib.io.iso23950.v3.PresentRequest;
 import org.xbib.io.iso23950.v3.PresentRequestRecordComposition;
 import org.xbib.io.iso23950.v3.PresentResponse;
 import org.xbib.io.iso23950.v3.PresentStatus;
+import org.xbib.io.iso23950.v3.Range;
 import org.xbib.io.iso23950.v3.ResultSetId;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Present operation for Z39.50.
  */
 public class PresentOperation {
 
+    private static final Logger logger = Logger.getLogger(PresentOperation.class.getName());
+
+    private final String elementSetName;
+
+    private final FieldSelection fieldSelection;
+
+    public PresentOperation() {
+        this((String) null);
+    }
+
+    /**
+     * Create a present operation for an element set other than the one of the client,
+     * e.g. "B" for brief records.
+     *
+     * @param elementSetName the element set name, or null for the element set of the client
+     */
+    public PresentOperation(String elementSetName) {
+        this.elementSetName = elementSetName;
+        this.fieldSelection = null;
+    }
+
+    /**
+     * Create a present operation asking for selected fields with a CompSpec. If the target rejects
+     * the CompSpec, the present is repeated with the fallback element set name of the selection,
+     * and the target is not asked with the CompSpec again.
+     *
+     * @param fieldSelection the field selection
+     */
+    public PresentOperation(FieldSelection fieldSelection) {
+        this.elementSetName = fieldSelection.getFallbackElementSetName();
+        this.fieldSelection = fieldSelection;
+    }
+
     public void execute(ZClient client, int offset, int length,
                         ResponseListener responseListener, RecordListener recordListener) throws IOException {
-        String resultSetName = client.getResultSetName();
-        String elementSetName = client.getElementSetName();
-        String preferredRecordSyntax = client.getPreferredRecordSyntax();
+        execute(client, client.getResultSetName(), offset, length, responseListener, recordListener);
+    }
+
+    /**
+     * Present records of a named result set.
+     *
+     * @param client the client
+     * @param resultSetName the name of the result set
+     * @param offset the position of the first record, counting from 1
+     * @param length the number of records
+     * @param responseListener the response listener, or null
+     * @param recordListener the record listener, or null
+     * @throws IOException if the present fails
+     */
+    public void execute(ZClient client, String resultSetName, int offset, int length,
+                        ResponseListener responseListener, RecordListener recordListener) throws IOException {
+        PresentRequest pr = createRequest(client, resultSetName, offset, length);
+        long millis = System.currentTimeMillis();
+        PresentResponse response = exchange(client, pr);
+        int nReturned = response.s_numberOfRecordsReturned != null ? response.s_numberOfRecordsReturned.get() : 0;
+        int status = response.s_presentStatus.value != null ? response.s_presentStatus.value.get() : 0;
+        if (responseListener != null) {
+            responseListener.onResponse(status, nReturned,  System.currentTimeMillis() - millis);
+        }
+        if (status == PresentStatus.E_success) {
+            for (int n = 0; n < nReturned; n++) {
+                Record record = createRecord(response.s_records.c_responseRecords[n], offset + n);
+                if (record != null && recordListener != null) {
+                    recordListener.onRecord(record);
+                }
+            }
+        } else {
+            throw createZExceptionFrom(status, nReturned, response);
+        }
+    }
+
+    /**
+     * Present the records at arbitrary positions of a named result set, in ascending order.
+     *
+     * Consecutive positions are coalesced into ranges, and the ranges are sent as start range
+     * and additional ranges of as few present requests as possible, each asking for at most
+     * {@code maxRecords} records. If the target returns only the start range, the additional
+     * ranges are presented by one request each. Positions not returned because of the message
+     * size are requested again.
+     *
+     * @param client the client
+     * @param resultSetName the name of the result set
+     * @param positions the record positions, counting from 1, in any order
+     * @param maxRecords the maximum number of records in one present request
+     * @param responseListener the response listener, or null
+     * @param recordListener the record listener, or null
+     * @throws IOException if the present fails
+     */
+    public void execute(ZClient client, String resultSetName, int[] positions, int maxRecords,
+                        ResponseListener responseListener, RecordListener recordListener) throws IOException {
+        if (maxRecords < 1) {
+            throw new IllegalArgumentException("max records must be positive");
+        }
+        ArrayDeque<int[]> ranges = new ArrayDeque<>(coalesce(positions));
+        boolean additionalRanges = true;
+        while (!ranges.isEmpty()) {
+            List<int[]> batch = new ArrayList<>();
+            int requested = 0;
+            while (!ranges.isEmpty() && requested < maxRecords && (additionalRanges || batch.isEmpty())) {
+                int[] range = ranges.poll();
+                if (requested + range[1] > maxRecords) {
+                    int n = maxRecords - requested;
+                    ranges.push(new int[]{range[0] + n, range[1] - n});
+                    range = new int[]{range[0], n};
+                }
+                batch.add(range);
+                requested += range[1];
+            }
+            PresentRequest pr = createRequest(client, resultSetName, batch.get(0)[0], batch.get(0)[1]);
+            if (batch.size() > 1) {
+                pr.s_additionalRanges = new Range[batch.size() - 1];
+                for (int i = 1; i < batch.size(); i++) {
+                    pr.s_additionalRanges[i - 1] = new Range();
+                    pr.s_additionalRanges[i - 1].s_startingPosition = new ASN1Integer(batch.get(i)[0]);
+                    pr.s_additionalRanges[i - 1].s_numberOfRecords = new ASN1Integer(batch.get(i)[1]);
+                }
+            }
+            long millis = System.currentTimeMillis();
+            PresentResponse response = exchange(client, pr);
+            int nReturned = response.s_numberOfRecordsReturned != null ? response.s_numberOfRecordsReturned.get() : 0;
+            int status = response.s_presentStatus.value != null ? response.s_presentStatus.value.get() : 0;
+            if (responseListener != null) {
+                responseListener.onResponse(status, nReturned,  System.currentTimeMillis() - millis);
+            }
+            if (nReturned == 0 || (status != PresentStatus.E_success && status != PresentStatus.E_partial_2)) {
+                throw createZExceptionFrom(status, nReturned, response);
+            }
+            if (status == PresentStatus.E_success && batch.size() > 1 && nReturned == batch.get(0)[1]) {
+                // the target ignored the additional ranges
+                additionalRanges = false;
+            }
+            int n = 0;
+            for (int[] range : batch) {
+                for (int i = 0; i < range[1] && n < nReturned; i++, n++) {
+                    Record record = createRecord(response.s_records.c_responseRecords[n], range[0] + i);
+                    if (record != null && recordListener != null) {
+                        recordListener.onRecord(record);
+                    }
+                }
+            }
+            // request the positions not returned again
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                int[] range = batch.get(i);
+                int before = returnedBefore(batch, i);
+                if (nReturned <= before) {
+                    ranges.push(range);
+                } else if (nReturned < before + range[1]) {
+                    int returned = nReturned - before;
+                    ranges.push(new int[]{range[0] + returned, range[1] - returned});
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort and deduplicate record positions, and coalesce consecutive positions into ranges.
+     *
+     * @param positions the record positions
+     * @return the ranges as pairs of starting position and number of records
+     */
+    public static List<int[]> coalesce(int[] positions) {
+        int[] sorted = positions.clone();
+        Arrays.sort(sorted);
+        List<int[]> ranges = new ArrayList<>();
+        int[] range = null;
+        for (int position : sorted) {
+            if (position < 1) {
+                throw new IllegalArgumentException("record positions start at 1");
+            }
+            if (range != null && position <= range[0] + range[1]) {
+                range[1] = position - range[0] + 1;
+            } else {
+                range = new int[]{position, 1};
+                ranges.add(range);
+            }
+        }
+        return ranges;
+    }
+
+    private static int returnedBefore(List<int[]> batch, int index) {
+        int n = 0;
+        for (int i = 0; i < index; i++) {
+            n += batch.get(i)[1];
+        }
+        return n;
+    }
+
+    private PresentRequest createRequest(ZClient client, String resultSetName, int offset, int length)
+            throws IOException {
         PresentRequest pr = new PresentRequest();
         pr.s_resultSetId = new ResultSetId();
         pr.s_resultSetId.value = new InternationalString();
@@ -44,45 +237,93 @@ public class PresentOperation {
         pr.s_resultSetStartPoint = new ASN1Integer(offset);
         pr.s_numberOfRecordsRequested = new ASN1Integer(length);
         pr.s_recordComposition = new PresentRequestRecordComposition();
-        pr.s_recordComposition.c_simple = new ElementSetNames();
-        pr.s_recordComposition.c_simple.cGenericElementSetName = new InternationalString();
-        pr.s_recordComposition.c_simple.cGenericElementSetName.value = new ASN1GeneralString(elementSetName);
-        pr.s_preferredRecordSyntax = new ASN1ObjectIdentifier(makeOID(preferredRecordSyntax));
+        if (fieldSelection != null && !fieldSelection.isRejectedBy(target(client))) {
+            try {
+                pr.s_recordComposition.c_complex = fieldSelection.toCompSpec();
+            } catch (ASN1Exception e) {
+                throw new IOException(e);
+            }
+        } else {
+            pr.s_recordComposition.c_simple = createElementSetNames(client);
+        }
+        pr.s_preferredRecordSyntax = new ASN1ObjectIdentifier(makeOID(client.getPreferredRecordSyntax()));
+        return pr;
+    }
+
+    private ElementSetNames createElementSetNames(ZClient client) {
+        ElementSetNames elementSetNames = new ElementSetNames();
+        elementSetNames.cGenericElementSetName = new InternationalString();
+        elementSetNames.cGenericElementSetName.value =
+                new ASN1GeneralString(elementSetName != null ? elementSetName : client.getElementSetName());
+        return elementSetNames;
+    }
+
+    private PresentResponse exchange(ZClient client, PresentRequest pr) throws IOException {
+        PresentResponse response = send(client, pr);
+        if (pr.s_recordComposition.c_complex != null && isRejected(response)) {
+            logger.log(Level.FINE, "CompSpec rejected by " + target(client) + ", falling back to element set name");
+            fieldSelection.rejectedBy(target(client));
+            pr.s_recordComposition = new PresentRequestRecordComposition();
+            pr.s_recordComposition.c_simple = createElementSetNames(client);
+            response = send(client, pr);
+        }
+        return response;
+    }
+
+    private PresentResponse send(ZClient client, PresentRequest pr) throws IOException {
         PDU pdu = new PDU();
         pdu.c_presentRequest = pr;
-        long millis = System.currentTimeMillis();
         client.writePDU(pdu);
         pdu = client.readPDU();
-        PresentResponse response = pdu.c_presentResponse;
+        return pdu.c_presentResponse;
+    }
+
+    /**
+     * A present with a CompSpec is rejected if it failed without records with a diagnostic about
+     * the record composition: 25 "Specified element set name not valid for specified database",
+     * 26 "Element set name not supported" or 244 "Present: comp-spec parameter not supported".
+     * Any other failure, e.g. 13 "Present request out-of-range" or 30 "Specified result set does
+     * not exist", is not a rejection of the CompSpec.
+     */
+    private static boolean isRejected(PresentResponse response) {
         int nReturned = response.s_numberOfRecordsReturned != null ? response.s_numberOfRecordsReturned.get() : 0;
         int status = response.s_presentStatus.value != null ? response.s_presentStatus.value.get() : 0;
-        if (responseListener != null) {
-            responseListener.onResponse(status, nReturned,  System.currentTimeMillis() - millis);
+        if (nReturned != 0 || status != PresentStatus.E_failure) {
+            return false;
         }
-        if (status == PresentStatus.E_success) {
-            for (int n = 0; n < nReturned; n++) {
-                NamePlusRecord nr = response.s_records.c_responseRecords[n];
-                try {
-                    if (nr.s_record.c_retrievalRecord != null) {
-                        ASN1External asn1External = new ASN1External(nr.s_record.c_retrievalRecord.berEncode(), true);
-                        Record record = new Record(offset + n, asn1External.getcOctetAligned().getBytes());
-                        if (recordListener != null) {
-                            recordListener.onRecord(record);
-                        }
-                    } else if (nr.s_record.c_surrogateDiagnostic != null) {
-                        ASN1External asn1External =
-                                new ASN1External(nr.s_record.c_surrogateDiagnostic.cDefaultFormat.berEncode(), true);
-                        ErrorRecord record = new ErrorRecord(offset + n, asn1External.getcOctetAligned().getBytes());
-                        if (recordListener != null) {
-                            recordListener.onRecord(record);
-                        }
-                    }
-                } catch (ASN1Exception e) {
-                    throw new IOException("Present error: " + e.getMessage());
-                }
+        int condition = getCondition(response);
+        return condition == 25 || condition == 26 || condition == 244;
+    }
+
+    private static int getCondition(PresentResponse response) {
+        if (response.s_records == null) {
+            return -1;
+        }
+        DefaultDiagFormat diagnostic = response.s_records.c_nonSurrogateDiagnostic;
+        if (diagnostic == null && response.s_records.c_multipleNonSurDiagnostics != null &&
+                response.s_records.c_multipleNonSurDiagnostics.length > 0) {
+            diagnostic = response.s_records.c_multipleNonSurDiagnostics[0].cDefaultFormat;
+        }
+        return diagnostic != null && diagnostic.sCondition != null ? diagnostic.sCondition.get() : -1;
+    }
+
+    private static String target(ZClient client) {
+        return client.getHost() + ":" + client.getPort();
+    }
+
+    private Record createRecord(NamePlusRecord nr, int number) throws IOException {
+        try {
+            if (nr.s_record.c_retrievalRecord != null) {
+                ASN1External asn1External = new ASN1External(nr.s_record.c_retrievalRecord.berEncode(), true);
+                return new Record(number, asn1External.getcOctetAligned().getBytes());
+            } else if (nr.s_record.c_surrogateDiagnostic != null) {
+                ASN1External asn1External =
+                        new ASN1External(nr.s_record.c_surrogateDiagnostic.cDefaultFormat.berEncode(), true);
+                return new ErrorRecord(number, asn1External.getcOctetAligned().getBytes());
             }
-        } else {
-            throw createZExceptionFrom(status, nReturned, response);
+            return null;
+        } catch (ASN1Exception e) {
+            throw new IOException("Present error: " + e.getMessage());
         }
     }
 
@@ -7,6 +7,7 @@ import org.xbib.asn1.ASN1GeneralString;
 import org.xbib.asn1.ASN1Integer;
 import org.xbib.asn1.ASN1Sequence;
 import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.exceptions.SearchFailedException;
 import org.xbib.io.iso23950.v3.DatabaseName;
 import org.xbib.io.iso23950.v3.InternationalString;
 import org.xbib.io.iso23950.v3.OtherInformation1;
@@ -25,6 +26,9 @@ import java.util.Map;
 
 /**
  * Base class for Z39.50 Search operation.
+ *
+ * A search the target reports as failed throws a {@link SearchFailedException} with the condition
+ * of the non-surrogate diagnostic, if any. Transport errors are plain I/O exceptions.
  */
 public class SearchOperation {
 
@@ -35,6 +39,19 @@ public class SearchOperation {
     private Map<ASN1Any, Integer> results = new HashMap<>();
 
     public boolean execute(ZClient client, RPNQuery rpn) throws IOException {
+        return execute(client, rpn, client.getResultSetName());
+    }
+
+    /**
+     * Execute a search into a named result set.
+     *
+     * @param client the client
+     * @param rpn the RPN query
+     * @param resultSetName the name of the result set
+     * @return true if the search was successful
+     * @throws IOException if the search fails
+     */
+    public boolean execute(ZClient client, RPNQuery rpn, String resultSetName) throws IOException {
         try {
             SearchRequest search = new SearchRequest();
             search.s_query = new Query();
@@ -44,7 +61,7 @@ public class SearchOperation {
             search.s_mediumSetPresentNumber = new ASN1Integer(0);
             search.s_replaceIndicator = new ASN1Boolean(true);
             search.s_resultSetName = new InternationalString();
-            search.s_resultSetName.value = new ASN1GeneralString(client.getResultSetName());
+            search.s_resultSetName.value = new ASN1GeneralString(resultSetName);
             List<String> databases = client.getDatabases();
             DatabaseName dbs[] = new DatabaseName[databases.size()];
             for (int n = 0; n < databases.size(); n++) {
@@ -58,6 +75,10 @@ public class SearchOperation {
             client.writePDU(pduRequest);
             PDU pduResponse = client.readPDU();
             SearchResponse response = pduResponse.c_searchResponse;
+            if (response == null) {
+                throw new IOException(client.getHost() + ": no search response" +
+                        (pduResponse.c_close != null ? ", association closed by target" : ""));
+            }
             count = response.s_resultCount.get();
             ASN1Boolean b = response.s_searchStatus;
             status = b != null && b.get();
@@ -71,11 +92,11 @@ public class SearchOperation {
                         //
                     }
                 }
-                throw new IOException(client.getHost() + ": " + message);
+                throw new SearchFailedException(client.getHost() + ": " + message, getCondition(response));
             }
             PresentStatus presentStatus = response.s_presentStatus;
             if (presentStatus != null && presentStatus.value != null && presentStatus.value.get() == 5) {
-                throw new IOException("present status is failure");
+                throw new SearchFailedException("present status is failure", getCondition(response));
             }
             if (response.s_additionalSearchInfo != null && response.s_additionalSearchInfo.value[0] != null) {
                 OtherInformation1 info = response.s_additionalSearchInfo.value[0];
@@ -106,6 +127,20 @@ public class SearchOperation {
         return status;
     }
 
+    /**
+     * The condition of the non-surrogate diagnostic of a search response.
+     *
+     * @param response the search response
+     * @return the diagnostic condition, or -1 if the response has no diagnostic
+     */
+    private static int getCondition(SearchResponse response) {
+        if (response.s_records != null && response.s_records.c_nonSurrogateDiagnostic != null &&
+                response.s_records.c_nonSurrogateDiagnostic.sCondition != null) {
+            return response.s_records.c_nonSurrogateDiagnostic.sCondition.get();
+        }
+        return -1;
+    }
+
     public int getCount() {
         return count;
     }
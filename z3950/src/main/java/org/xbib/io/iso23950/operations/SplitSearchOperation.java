@@ -0,0 +1,125 @@
+package org.xbib.io.iso23950.operations;
+
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.rpn.RPNBuilder;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Search operation which splits an oversized OR query into sub-searches.
+ *
+ * Each sub-search ORs at most a given number of the disjuncts into its own
+ * named result set, and a final search ORs the result sets together with
+ * result set operands into the requested result set, where it can be presented
+ * as usual. Named result sets belong to one association, so the sub-searches
+ * run one after the other on the client's association. The intermediate result
+ * sets are deleted afterwards. Queries which are small enough, are not a
+ * disjunction at the top level, or have no RPN tree, such as bound prepared
+ * queries, are searched as they are.
+ */
+public class SplitSearchOperation extends SearchOperation {
+
+    private static final Logger logger = Logger.getLogger(SplitSearchOperation.class.getName());
+
+    private final int maxOperands;
+
+    private int subSearches;
+
+    /**
+     * Create a split search operation.
+     *
+     * @param maxOperands the maximum number of disjuncts, or result sets, in one search
+     */
+    public SplitSearchOperation(int maxOperands) {
+        if (maxOperands < 2) {
+            throw new IllegalArgumentException("at least two operands per search are required");
+        }
+        this.maxOperands = maxOperands;
+    }
+
+    @Override
+    public boolean execute(ZClient client, RPNQuery rpn, String resultSetName) throws IOException {
+        subSearches = 0;
+        // bound prepared queries are only available as BER encoding, and are searched as they are
+        List<RPNStructure> operands = rpn.s_rpn != null && rpn.s_rpn.c_rpnRpnOp != null &&
+                rpn.s_rpn.c_rpnRpnOp.s_op.c_or != null ? RPNBuilder.operands(rpn.s_rpn) : null;
+        if (operands == null || operands.size() <= maxOperands) {
+            return super.execute(client, rpn, resultSetName);
+        }
+        List<String> created = new ArrayList<>();
+        try {
+            List<RPNStructure> sets = new ArrayList<>();
+            for (int i = 0; i < operands.size(); i += maxOperands) {
+                List<RPNStructure> chunk = operands.subList(i, Math.min(operands.size(), i + maxOperands));
+                String name = resultSetName + "-split-" + created.size();
+                if (search(client, rpn, chunk, name, created)) {
+                    sets.add(RPNBuilder.resultSet(name));
+                }
+            }
+            // combine level by level if there are more result sets than operands per search
+            while (sets.size() > maxOperands) {
+                List<RPNStructure> combined = new ArrayList<>();
+                for (int i = 0; i < sets.size(); i += maxOperands) {
+                    String name = resultSetName + "-split-" + created.size();
+                    if (search(client, rpn, sets.subList(i, Math.min(sets.size(), i + maxOperands)), name, created)) {
+                        combined.add(RPNBuilder.resultSet(name));
+                    }
+                }
+                sets = combined;
+            }
+            if (sets.isEmpty()) {
+                // no sub-search had hits, search the first chunk for an empty result set
+                sets.add(operands.get(0));
+            }
+            RPNQuery combined = new RPNQuery();
+            combined.s_attributeSet = rpn.s_attributeSet;
+            combined.s_rpn = RPNBuilder.balanced(RPNBuilder.or(), sets);
+            return super.execute(client, combined, resultSetName);
+        } finally {
+            delete(client, created);
+        }
+    }
+
+    /**
+     * The number of sub-searches of the last execution.
+     *
+     * @return the number of sub-searches
+     */
+    public int getSubSearches() {
+        return subSearches;
+    }
+
+    private boolean search(ZClient client, RPNQuery rpn, List<RPNStructure> operands, String name,
+                           List<String> created) throws IOException {
+        RPNQuery query = new RPNQuery();
+        query.s_attributeSet = rpn.s_attributeSet;
+        query.s_rpn = RPNBuilder.balanced(RPNBuilder.or(), operands);
+        SearchOperation search = new SearchOperation();
+        created.add(name);
+        subSearches++;
+        if (!search.execute(client, query, name)) {
+            throw new IOException(client.getHost() + ": sub-search into result set " + name + " failed");
+        }
+        return search.getCount() > 0;
+    }
+
+    private void delete(ZClient client, List<String> resultSetNames) {
+        if (resultSetNames.isEmpty()) {
+            return;
+        }
+        try {
+            DeleteResultSetOperation delete = new DeleteResultSetOperation();
+            if (!delete.execute(client, resultSetNames)) {
+                logger.log(Level.FINE, "intermediate result sets not deleted, status " + delete.getStatus());
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "while deleting intermediate result sets: " + e.getMessage());
+        }
+    }
+}
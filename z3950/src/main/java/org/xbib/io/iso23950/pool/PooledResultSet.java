@@ -0,0 +1,116 @@
+package org.xbib.io.iso23950.pool;
+
+import org.xbib.io.iso23950.RecordListener;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.exceptions.ZException;
+import org.xbib.io.iso23950.operations.DeleteResultSetOperation;
+import org.xbib.io.iso23950.operations.PresentOperation;
+import org.xbib.io.iso23950.operations.SearchOperation;
+import org.xbib.io.iso23950.stream.ResultSetSpliterator;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A named result set, searched on every pooled association presenting from it.
+ */
+class PooledResultSet implements ResultSetSpliterator.Fetcher {
+
+    private static final Logger logger = Logger.getLogger(PooledResultSet.class.getName());
+
+    private final ZClientPool pool;
+
+    private final RPNQuery query;
+
+    private final String name;
+
+    private final Set<ZClient> holders;
+
+    PooledResultSet(ZClientPool pool, RPNQuery query, String name) {
+        this.pool = pool;
+        this.query = query;
+        this.name = name;
+        this.holders = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Search on one association.
+     *
+     * @return the number of records in the result set
+     * @throws IOException if the search fails
+     */
+    int open() throws IOException {
+        ZClient client = pool.borrow();
+        boolean reusable = false;
+        try {
+            int count = search(client);
+            reusable = true;
+            return count;
+        } finally {
+            pool.release(client, reusable);
+        }
+    }
+
+    @Override
+    public void fetch(int offset, int length, RecordListener listener) throws IOException {
+        ZClient client = pool.borrow();
+        boolean reusable = false;
+        try {
+            if (!holders.contains(client)) {
+                search(client);
+            }
+            try {
+                new PresentOperation().execute(client, name, offset, length, null, listener);
+            } catch (ZException e) {
+                // the target may have discarded the result set
+                logger.log(Level.FINE, "present failed, searching again: " + e.getMessage());
+                search(client);
+                new PresentOperation().execute(client, name, offset, length, null, listener);
+            }
+            reusable = true;
+        } finally {
+            if (!reusable) {
+                holders.remove(client);
+            }
+            pool.release(client, reusable);
+        }
+    }
+
+    /**
+     * Delete the result set on the associations holding it which are idle now.
+     * Closing neither waits for busy associations nor opens new ones.
+     */
+    void close() {
+        for (ZClient holder : holders) {
+            ZClient client = pool.tryBorrowIdle(holder);
+            if (client == null) {
+                continue;
+            }
+            boolean reusable = false;
+            try {
+                new DeleteResultSetOperation().execute(client, Collections.singletonList(name));
+                reusable = true;
+            } catch (IOException e) {
+                logger.log(Level.FINE, "can not delete result set " + name, e);
+            } finally {
+                pool.release(client, reusable);
+            }
+        }
+        holders.clear();
+    }
+
+    private int search(ZClient client) throws IOException {
+        SearchOperation search = new SearchOperation();
+        search.execute(client, query, name);
+        if (!search.isSuccess()) {
+            throw new IOException("search was not a success");
+        }
+        holders.add(client);
+        return search.getCount();
+    }
+}
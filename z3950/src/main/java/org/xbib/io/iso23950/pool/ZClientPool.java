@@ -0,0 +1,225 @@
+package org.xbib.io.iso23950.pool;
+
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.stream.ResultSetSpliterator;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A bounded pool of client associations to one target.
+ *
+ * At most {@code maxSize} associations are open at any time. Associations are opened
+ * on demand and kept open while idle. A caller asking for a specific idle association,
+ * e.g. the one holding a result set, gets it if it is idle, and any association otherwise.
+ */
+public class ZClientPool implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ZClientPool.class.getName());
+
+    private final Factory factory;
+
+    private final int maxSize;
+
+    private final long timeoutNanos;
+
+    private final Semaphore permits;
+
+    private final LinkedBlockingDeque<ZClient> idle;
+
+    private final AtomicLong resultSets;
+
+    private volatile boolean closed;
+
+    /**
+     * Create a pool.
+     *
+     * @param builder the builder for new associations
+     * @param maxSize the maximum number of associations
+     * @param timeout the maximum time to wait for an association
+     * @param unit the time unit of the timeout
+     */
+    public ZClientPool(ZClient.Builder builder, int maxSize, long timeout, TimeUnit unit) {
+        this(builder::build, maxSize, timeout, unit);
+    }
+
+    /**
+     * Create a pool.
+     *
+     * @param factory the factory for new associations
+     * @param maxSize the maximum number of associations
+     * @param timeout the maximum time to wait for an association
+     * @param unit the time unit of the timeout
+     */
+    public ZClientPool(Factory factory, int maxSize, long timeout, TimeUnit unit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("pool size must be at least 1");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new LinkedBlockingDeque<>();
+        this.resultSets = new AtomicLong();
+    }
+
+    public ZClient borrow() throws IOException {
+        return borrow(null);
+    }
+
+    /**
+     * Borrow an association. It must be given back by {@link #release(ZClient, boolean)}.
+     *
+     * @param preferred the association to prefer if it is idle, or null
+     * @return the association
+     * @throws IOException if no association is available in time or a new association can not be opened
+     */
+    public ZClient borrow(ZClient preferred) throws IOException {
+        if (closed) {
+            throw new IOException("pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new IOException("no association available within " +
+                        TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for an association");
+        }
+        try {
+            if (preferred != null && idle.remove(preferred)) {
+                if (preferred.isConnected()) {
+                    return preferred;
+                }
+                closeQuietly(preferred);
+            }
+            ZClient client;
+            while ((client = idle.pollFirst()) != null) {
+                if (client.isConnected()) {
+                    return client;
+                }
+                closeQuietly(client);
+            }
+            return factory.create();
+        } catch (UncheckedIOException e) {
+            permits.release();
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Borrow an association only if it is idle now, without waiting and without opening
+     * a new association. It must be given back by {@link #release(ZClient, boolean)}.
+     *
+     * @param client the association
+     * @return the association, or null if it is not idle, not connected or the pool is exhausted
+     */
+    public ZClient tryBorrowIdle(ZClient client) {
+        if (closed || !permits.tryAcquire()) {
+            return null;
+        }
+        if (idle.remove(client)) {
+            if (client.isConnected()) {
+                return client;
+            }
+            closeQuietly(client);
+        }
+        permits.release();
+        return null;
+    }
+
+    /**
+     * Give back a borrowed association.
+     *
+     * @param client the association
+     * @param reusable false if the association is in an unknown state, e.g. after an I/O error, and must be closed
+     */
+    public void release(ZClient client, boolean reusable) {
+        try {
+            if (reusable && !closed && client.isConnected()) {
+                idle.offerFirst(client);
+                if (closed && idle.remove(client)) {
+                    closeQuietly(client);
+                }
+            } else {
+                closeQuietly(client);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Search and stream the records of the result set, presented lazily in windows.
+     *
+     * The splits of a parallel stream present on different associations. Each association
+     * presenting from the result set searches it first, under a result set name unique to the stream,
+     * so the target must support named result sets. Closing the stream deletes the result set
+     * on the idle associations holding it.
+     *
+     * @param query the RPN query
+     * @param window the number of records in one present request
+     * @return the stream of records
+     * @throws IOException if the search fails
+     */
+    public Stream<Record> stream(RPNQuery query, int window) throws IOException {
+        PooledResultSet resultSet = new PooledResultSet(this, query, "stream" + resultSets.incrementAndGet());
+        int count = resultSet.open();
+        return StreamSupport.stream(new ResultSetSpliterator(resultSet, 1, count, window), false)
+                .onClose(resultSet::close);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ZClient client;
+        while ((client = idle.pollFirst()) != null) {
+            closeQuietly(client);
+        }
+    }
+
+    private static void closeQuietly(ZClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens new associations.
+     */
+    @FunctionalInterface
+    public interface Factory {
+
+        ZClient create() throws IOException;
+    }
+}
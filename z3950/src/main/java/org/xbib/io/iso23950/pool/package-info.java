@@ -0,0 +1,4 @@
+/**
+ * Pooling of Z39.50 client associations.
+ */
+package org.xbib.io.iso23950.pool;
@@ -0,0 +1,438 @@
+package org.xbib.io.iso23950.pqf;
+
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.ASN1Null;
+import org.xbib.asn1.ASN1ObjectIdentifier;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.io.iso23950.rpn.RPNBuilder;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.AttributeElementAttributeValue;
+import org.xbib.io.iso23950.v3.AttributeElementAttributeValueComplex;
+import org.xbib.io.iso23950.v3.AttributeList;
+import org.xbib.io.iso23950.v3.AttributeSetId;
+import org.xbib.io.iso23950.v3.AttributesPlusTerm;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.Operand;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+import org.xbib.io.iso23950.v3.StringOrNumeric;
+import org.xbib.io.iso23950.v3.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiler of Prefix Query Format (PQF) queries into RPN queries.
+ *
+ * The compiler scans the query in place and builds the RPN structure while
+ * scanning, without a lexer, a syntax tree, or intermediate token strings. It
+ * keeps its scratch state between calls, so one instance should be reused, but
+ * it is not thread safe and must be confined to one thread.
+ *
+ * Attributes given by {@code @attr} apply to every term of the following query
+ * structure, in the order they are written. Boolean operators nest without
+ * recursion, so long operator chains do not exhaust the stack.
+ */
+public final class PQFCompiler {
+
+    private static final int[] BIB1 = {1, 2, 840, 10003, 3, 1};
+
+    private static final String[] ATTRIBUTE_SET_NAMES = {
+            "bib1", "exp1", "ext1", "ccl1", "gils", "stas", "collections1", "cimi1", "geo1",
+            "zbig", "util", "xd1", "zthes", "fin1", "dan1", "holdings", "marc", "bib2", "zeerex"
+    };
+
+    private static final int AND = 0;
+
+    private static final int OR = 1;
+
+    private static final int AND_NOT = 2;
+
+    private static final int ATTR = -1;
+
+    private final List<AttributeElement> attributes;
+
+    private final StringBuilder sb;
+
+    private int[] frames;
+
+    private RPNStructure[] left;
+
+    private int depth;
+
+    private CharSequence input;
+
+    private int pos;
+
+    private int end;
+
+    public PQFCompiler() {
+        this.attributes = new ArrayList<>();
+        this.sb = new StringBuilder();
+        this.frames = new int[16];
+        this.left = new RPNStructure[16];
+    }
+
+    /**
+     * Compile a PQF query.
+     *
+     * @param pqf the PQF query
+     * @return the RPN query
+     * @throws SyntaxException if the query is not valid PQF
+     */
+    public RPNQuery compile(CharSequence pqf) {
+        this.input = pqf;
+        this.pos = 0;
+        this.end = pqf.length();
+        try {
+            RPNQuery rpnQuery = new RPNQuery();
+            rpnQuery.s_attributeSet = new AttributeSetId();
+            skipWhitespace();
+            if (keyword("@attrset")) {
+                rpnQuery.s_attributeSet.value = attributeSet();
+            } else {
+                rpnQuery.s_attributeSet.value = new ASN1ObjectIdentifier(BIB1);
+            }
+            rpnQuery.s_rpn = queryStruct();
+            skipWhitespace();
+            if (pos < end) {
+                throw error("unexpected input after query");
+            }
+            return rpnQuery;
+        } finally {
+            Arrays.fill(left, 0, depth, null);
+            depth = 0;
+            attributes.clear();
+            input = null;
+        }
+    }
+
+    private RPNStructure queryStruct() {
+        while (true) {
+            skipWhitespace();
+            if (pos >= end) {
+                throw error("unexpected end of query");
+            }
+            RPNStructure rpn;
+            if (input.charAt(pos) != '@') {
+                rpn = term(general(string()));
+            } else if (keyword("@and")) {
+                push(AND);
+                continue;
+            } else if (keyword("@or")) {
+                push(OR);
+                continue;
+            } else if (keyword("@not")) {
+                push(AND_NOT);
+                continue;
+            } else if (keyword("@attr")) {
+                attributes.add(attribute());
+                push(ATTR);
+                continue;
+            } else if (keyword("@set")) {
+                rpn = RPNBuilder.resultSet(string());
+            } else if (keyword("@term")) {
+                rpn = term(typedTerm());
+            } else {
+                throw error("unknown or unsupported operator");
+            }
+            // reduce: hand the operand up until an operator is waiting for its second operand
+            while (true) {
+                if (depth == 0) {
+                    return rpn;
+                }
+                int frame = frames[depth - 1];
+                if (frame == ATTR) {
+                    attributes.remove(attributes.size() - 1);
+                    depth--;
+                } else if (left[depth - 1] == null) {
+                    left[depth - 1] = rpn;
+                    break;
+                } else {
+                    rpn = operation(frame, left[depth - 1], rpn);
+                    left[depth - 1] = null;
+                    depth--;
+                }
+            }
+        }
+    }
+
+    private void push(int frame) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            left = Arrays.copyOf(left, depth * 2);
+        }
+        frames[depth++] = frame;
+    }
+
+    private RPNStructure operation(int op, RPNStructure rpn1, RPNStructure rpn2) {
+        switch (op) {
+            case AND:
+                return RPNBuilder.op(RPNBuilder.and(), rpn1, rpn2);
+            case OR:
+                return RPNBuilder.op(RPNBuilder.or(), rpn1, rpn2);
+            default:
+                return RPNBuilder.op(RPNBuilder.andNot(), rpn1, rpn2);
+        }
+    }
+
+    private RPNStructure term(Term term) {
+        Operand operand = new Operand();
+        operand.c_attrTerm = new AttributesPlusTerm();
+        operand.c_attrTerm.sTerm = term;
+        operand.c_attrTerm.sAttributes = new AttributeList();
+        operand.c_attrTerm.sAttributes.value = attributes.toArray(new AttributeElement[attributes.size()]);
+        RPNStructure rpn = new RPNStructure();
+        rpn.c_op = operand;
+        return rpn;
+    }
+
+    private Term general(String value) {
+        Term term = new Term();
+        term.c_general = new ASN1OctetString(value);
+        return term;
+    }
+
+    private Term typedTerm() {
+        skipWhitespace();
+        Term term = new Term();
+        if (keyword("general")) {
+            term.c_general = new ASN1OctetString(string());
+        } else if (keyword("numeric")) {
+            skipWhitespace();
+            term.c_numeric = new ASN1Integer(integer(pos, tokenEnd()));
+        } else if (keyword("string")) {
+            term.c_characterString = internationalString(string());
+        } else if (keyword("oid")) {
+            skipWhitespace();
+            term.c_oid = new ASN1ObjectIdentifier(oid(pos, tokenEnd()));
+        } else if (keyword("null")) {
+            string();
+            term.c_null = new ASN1Null();
+        } else {
+            throw error("unknown or unsupported term type");
+        }
+        return term;
+    }
+
+    private AttributeElement attribute() {
+        skipWhitespace();
+        int tokenEnd = tokenEnd();
+        int eq = indexOf('=', pos, tokenEnd);
+        AttributeElement ae = new AttributeElement();
+        if (eq < 0) {
+            // attribute set name before the attribute
+            ae.attributeSetId = new AttributeSetId();
+            ae.attributeSetId.value = attributeSet();
+            skipWhitespace();
+            tokenEnd = tokenEnd();
+            eq = indexOf('=', pos, tokenEnd);
+            if (eq < 0) {
+                throw error("attribute type and value expected");
+            }
+        }
+        ae.sAttributeType = new ASN1Integer(integer(pos, eq));
+        ae.attributeValue = new AttributeElementAttributeValue();
+        if (isInteger(eq + 1, tokenEnd)) {
+            ae.attributeValue.cNumeric = new ASN1Integer(integer(eq + 1, tokenEnd));
+        } else {
+            StringOrNumeric value = new StringOrNumeric();
+            value.c_string = internationalString(input.subSequence(eq + 1, tokenEnd).toString());
+            ae.attributeValue.attributeValueComplex = new AttributeElementAttributeValueComplex();
+            ae.attributeValue.attributeValueComplex.sList = new StringOrNumeric[]{value};
+        }
+        pos = tokenEnd;
+        return ae;
+    }
+
+    private ASN1ObjectIdentifier attributeSet() {
+        skipWhitespace();
+        int tokenEnd = tokenEnd();
+        if (pos == tokenEnd) {
+            throw error("attribute set expected");
+        }
+        int[] oid = null;
+        if (Character.isDigit(input.charAt(pos))) {
+            oid = oid(pos, tokenEnd);
+        } else {
+            for (int i = 0; i < ATTRIBUTE_SET_NAMES.length; i++) {
+                if (nameMatches(ATTRIBUTE_SET_NAMES[i], pos, tokenEnd)) {
+                    oid = new int[]{1, 2, 840, 10003, 3, i + 1};
+                    break;
+                }
+            }
+            if (oid == null) {
+                throw error("unknown attribute set");
+            }
+        }
+        pos = tokenEnd;
+        return new ASN1ObjectIdentifier(oid);
+    }
+
+    /**
+     * Read a term or name, either up to the next white space, or as a quoted string
+     * where a backslash escapes a quote.
+     */
+    private String string() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw error("unexpected end of query");
+        }
+        if (input.charAt(pos) != '"') {
+            int start = pos;
+            pos = tokenEnd();
+            return input.subSequence(start, pos).toString();
+        }
+        int start = ++pos;
+        boolean escaped = false;
+        while (pos < end) {
+            char ch = input.charAt(pos);
+            if (ch == '"') {
+                break;
+            }
+            if (ch == '\\' && pos + 1 < end && input.charAt(pos + 1) == '"') {
+                escaped = true;
+                pos++;
+            }
+            pos++;
+        }
+        if (pos >= end) {
+            throw error("unterminated quoted string");
+        }
+        String s;
+        if (escaped) {
+            sb.setLength(0);
+            for (int i = start; i < pos; i++) {
+                char ch = input.charAt(i);
+                if (ch == '\\' && input.charAt(i + 1) == '"') {
+                    ch = '"';
+                    i++;
+                }
+                sb.append(ch);
+            }
+            s = sb.toString();
+        } else {
+            s = input.subSequence(start, pos).toString();
+        }
+        pos++;
+        return s;
+    }
+
+    private boolean keyword(String keyword) {
+        int len = keyword.length();
+        if (pos + len > end || (pos + len < end && !isWhitespace(input.charAt(pos + len)))) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (input.charAt(pos + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        pos += len;
+        return true;
+    }
+
+    private boolean nameMatches(String name, int from, int to) {
+        int j = 0;
+        for (int i = from; i < to; i++) {
+            char ch = input.charAt(i);
+            if (ch == '-') {
+                continue;
+            }
+            if (j >= name.length() || Character.toLowerCase(ch) != name.charAt(j++)) {
+                return false;
+            }
+        }
+        return j == name.length();
+    }
+
+    private int[] oid(int from, int to) {
+        int n = 1;
+        for (int i = from; i < to; i++) {
+            if (input.charAt(i) == '.') {
+                n++;
+            }
+        }
+        int[] oid = new int[n];
+        int start = from;
+        int k = 0;
+        for (int i = from; i <= to; i++) {
+            if (i == to || input.charAt(i) == '.') {
+                oid[k++] = integer(start, i);
+                start = i + 1;
+            }
+        }
+        pos = to;
+        return oid;
+    }
+
+    private boolean isInteger(int from, int to) {
+        int i = from < to && input.charAt(from) == '-' ? from + 1 : from;
+        if (i >= to) {
+            return false;
+        }
+        for (; i < to; i++) {
+            if (input.charAt(i) < '0' || input.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int integer(int from, int to) {
+        if (!isInteger(from, to)) {
+            pos = from;
+            throw error("integer expected");
+        }
+        boolean negative = input.charAt(from) == '-';
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            value = value * 10 + (input.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                pos = from;
+                throw error("integer out of range");
+            }
+        }
+        pos = to;
+        return (int) (negative ? -value : value);
+    }
+
+    private int indexOf(char ch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (input.charAt(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int tokenEnd() {
+        int i = pos;
+        while (i < end && !isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+    }
+
+    private static InternationalString internationalString(String value) {
+        InternationalString s = new InternationalString();
+        s.value = new ASN1GeneralString(value);
+        return s;
+    }
+
+    private SyntaxException error(String message) {
+        return new SyntaxException("PQF error at position " + pos + ": " + message);
+    }
+}
@@ -2,19 +2,16 @@ package org.xbib.io.iso23950.pqf;
 
 import org.xbib.asn1.ASN1Any;
 import org.xbib.asn1.ASN1Integer;
-import org.xbib.asn1.ASN1Null;
-import org.xbib.asn1.ASN1ObjectIdentifier;
 import org.xbib.asn1.ASN1OctetString;
+import org.xbib.io.iso23950.rpn.RPNBuilder;
 import org.xbib.io.iso23950.v3.AttributeElement;
 import org.xbib.io.iso23950.v3.AttributeElementAttributeValue;
 import org.xbib.io.iso23950.v3.AttributeList;
-import org.xbib.io.iso23950.v3.AttributeSetId;
 import org.xbib.io.iso23950.v3.AttributesPlusTerm;
 import org.xbib.io.iso23950.v3.Operand;
 import org.xbib.io.iso23950.v3.Operator;
 import org.xbib.io.iso23950.v3.RPNQuery;
 import org.xbib.io.iso23950.v3.RPNStructure;
-import org.xbib.io.iso23950.v3.RPNStructureRpnRpnOp;
 
 import java.util.Stack;
 
@@ -38,12 +35,12 @@ public class PQFRPNGenerator implements Visitor {
     @Override
     public void visit(PQF pqf) {
         if (!result.isEmpty()) {
-            this.rpnQuery = new RPNQuery();
-            rpnQuery.s_rpn = (RPNStructure) result.pop();
+            RPNStructure rpn = (RPNStructure) result.pop();
             if (pqf.getAttrSet() == null) {
-                // Z39.50 BIB-1: urn:oid:1.2.840.10003.3.1
-                rpnQuery.s_attributeSet = new AttributeSetId();
-                rpnQuery.s_attributeSet.value = new ASN1ObjectIdentifier(new int[]{1, 2, 840, 10003, 3, 1});
+                this.rpnQuery = RPNBuilder.query(rpn);
+            } else {
+                this.rpnQuery = new RPNQuery();
+                rpnQuery.s_rpn = rpn;
             }
         } else {
             throw new SyntaxException("no valid PQF found");
@@ -74,21 +71,19 @@ public class PQFRPNGenerator implements Visitor {
     @Override
     public void visit(Expression expr) {
         String op = expr.getOperator();
-        RPNStructure rpn = new RPNStructure();
-        rpn.c_rpnRpnOp = new RPNStructureRpnRpnOp();
-        rpn.c_rpnRpnOp.s_op = new Operator();
+        Operator operator;
         if ("@and".equals(op)) {
-            rpn.c_rpnRpnOp.s_op.c_and = new ASN1Null();
-        }
-        if ("@or".equals(op)) {
-            rpn.c_rpnRpnOp.s_op.c_or = new ASN1Null();
-        }
-        if ("@not".equals(op)) {
-            rpn.c_rpnRpnOp.s_op.c_and_not = new ASN1Null();
+            operator = RPNBuilder.and();
+        } else if ("@or".equals(op)) {
+            operator = RPNBuilder.or();
+        } else if ("@not".equals(op)) {
+            operator = RPNBuilder.andNot();
+        } else {
+            operator = new Operator();
         }
-        rpn.c_rpnRpnOp.s_rpn1 = (RPNStructure) result.pop();
-        rpn.c_rpnRpnOp.s_rpn2 = (RPNStructure) result.pop();
-        result.push(rpn);
+        RPNStructure rpn1 = (RPNStructure) result.pop();
+        RPNStructure rpn2 = (RPNStructure) result.pop();
+        result.push(RPNBuilder.op(operator, rpn1, rpn2));
     }
 
     @Override
@@ -0,0 +1,250 @@
+package org.xbib.io.iso23950.retrieval;
+
+import org.xbib.asn1.ASN1Any;
+import org.xbib.asn1.ASN1Boolean;
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.asn1.ASN1External;
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.ASN1ObjectIdentifier;
+import org.xbib.asn1.BERConstructed;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.v3.CompSpec;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.Specification;
+import org.xbib.io.iso23950.v3.SpecificationElementSpec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A selection of record elements, presented with a {@link CompSpec} instead of an element set name.
+ *
+ * Elements are given as tag paths, with path segments separated by {@code /}, e.g. {@code 245}
+ * or {@code 245/a}. A segment is a string tag value of the default tag type, or a tag type and
+ * value separated by a colon, e.g. {@code 3:245}. The paths are sent as simple elements of an
+ * eSpec-1 element specification. Without paths, the selection names an element set, optionally
+ * under a schema.
+ *
+ * Targets rejecting the CompSpec are remembered, and are asked for the fallback element set name.
+ * A field selection is immutable apart from the rejecting targets, and may be shared.
+ */
+public class FieldSelection {
+
+    /**
+     * The object identifier of eSpec-1.
+     */
+    public static final int[] ESPEC_1 = {1, 2, 840, 10003, 11, 1};
+
+    private final int[] schema;
+
+    private final String elementSetName;
+
+    private final int defaultTagType;
+
+    private final List<String> paths;
+
+    private final String fallbackElementSetName;
+
+    private final Set<String> rejectingTargets;
+
+    private FieldSelection(int[] schema, String elementSetName, int defaultTagType, List<String> paths,
+                           String fallbackElementSetName) {
+        this.schema = schema;
+        this.elementSetName = elementSetName;
+        this.defaultTagType = defaultTagType;
+        this.paths = paths;
+        this.fallbackElementSetName = fallbackElementSetName;
+        this.rejectingTargets = ConcurrentHashMap.newKeySet();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A selection of MARC fields, e.g. {@code marc("020", "245", "856")}, falling back to full records.
+     *
+     * @param tags the MARC tags
+     * @return the field selection
+     */
+    public static FieldSelection marc(String... tags) {
+        Builder builder = builder();
+        for (String tag : tags) {
+            builder.addPath(tag);
+        }
+        return builder.build();
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * The element set name to use for targets rejecting the CompSpec.
+     *
+     * @return the element set name, or null for the element set of the client
+     */
+    public String getFallbackElementSetName() {
+        return fallbackElementSetName;
+    }
+
+    /**
+     * Whether a target rejected the CompSpec before.
+     *
+     * @param target the target, as host and port
+     * @return true if the target rejected the CompSpec
+     */
+    public boolean isRejectedBy(String target) {
+        return rejectingTargets.contains(target);
+    }
+
+    public void rejectedBy(String target) {
+        rejectingTargets.add(target);
+    }
+
+    /**
+     * Create the CompSpec for the record composition of a present request.
+     *
+     * @return the CompSpec
+     * @throws ASN1Exception if the element specification can not be encoded
+     */
+    public CompSpec toCompSpec() throws ASN1Exception {
+        CompSpec compSpec = new CompSpec();
+        compSpec.sSelectAlternativeSyntax = new ASN1Boolean(false);
+        compSpec.sGeneric = new Specification();
+        if (schema != null) {
+            compSpec.sGeneric.s_schema = new ASN1ObjectIdentifier(schema);
+        }
+        compSpec.sGeneric.s_elementSpec = new SpecificationElementSpec();
+        if (paths.isEmpty()) {
+            compSpec.sGeneric.s_elementSpec.c_elementSetName = new InternationalString();
+            compSpec.sGeneric.s_elementSpec.c_elementSetName.value = new ASN1GeneralString(elementSetName);
+        } else {
+            ASN1External external = new ASN1External();
+            external.setDirectReference(new ASN1ObjectIdentifier(ESPEC_1));
+            external.setSingleASN1Type(new ASN1Any(encodeESpec(), true));
+            compSpec.sGeneric.s_elementSpec.c_externalEspec = external;
+        }
+        return compSpec;
+    }
+
+    /**
+     * Encode an eSpec-1 with the default tag type and a simple element for each path.
+     */
+    private BEREncoding encodeESpec() throws ASN1Exception {
+        BEREncoding[] elements = new BEREncoding[paths.size()];
+        for (int i = 0; i < elements.length; i++) {
+            String[] segments = paths.get(i).split("/");
+            BEREncoding[] tagPath = new BEREncoding[segments.length];
+            for (int j = 0; j < segments.length; j++) {
+                int colon = segments[j].indexOf(':');
+                int tagType = colon > 0 ? Integer.parseInt(segments[j].substring(0, colon)) : defaultTagType;
+                String tagValue = segments[j].substring(colon + 1);
+                // specificTag [1] IMPLICIT SEQUENCE { tagType [1] INTEGER, tagValue [2] StringOrNumeric }
+                tagPath[j] = new BERConstructed(BEREncoding.CONTEXT_SPECIFIC_TAG, 1, new BEREncoding[]{
+                        new ASN1Integer(tagType).berEncode(BEREncoding.CONTEXT_SPECIFIC_TAG, 1),
+                        new BERConstructed(BEREncoding.CONTEXT_SPECIFIC_TAG, 2, new BEREncoding[]{
+                                new ASN1GeneralString(tagValue).berEncode(BEREncoding.CONTEXT_SPECIFIC_TAG, 1)
+                        })
+                });
+            }
+            // simpleElement [1] IMPLICIT SEQUENCE { path [1] IMPLICIT TagPath }
+            elements[i] = new BERConstructed(BEREncoding.CONTEXT_SPECIFIC_TAG, 1, new BEREncoding[]{
+                    new BERConstructed(BEREncoding.CONTEXT_SPECIFIC_TAG, 1, tagPath)
+            });
+        }
+        // Espec-1 ::= SEQUENCE { defaultTagType [4] IMPLICIT INTEGER, elements [5] IMPLICIT SEQUENCE OF ElementRequest }
+        return new BERConstructed(BEREncoding.UNIVERSAL_TAG, 0x10, new BEREncoding[]{
+                new ASN1Integer(defaultTagType).berEncode(BEREncoding.CONTEXT_SPECIFIC_TAG, 4),
+                new BERConstructed(BEREncoding.CONTEXT_SPECIFIC_TAG, 5, elements)
+        });
+    }
+
+    /**
+     * Builder for a field selection.
+     */
+    public static class Builder {
+
+        private int[] schema;
+
+        private String elementSetName;
+
+        private int defaultTagType = 3;
+
+        private final List<String> paths = new ArrayList<>();
+
+        private String fallbackElementSetName;
+
+        /**
+         * Set the schema of the selection, e.g. {@code 1.2.840.10003.13.1000.81.1} for MARC 21.
+         *
+         * @param schema the object identifier of the schema
+         * @return this builder
+         */
+        public Builder setSchema(String schema) {
+            String[] s = schema.split("\\.");
+            this.schema = new int[s.length];
+            for (int i = 0; i < s.length; i++) {
+                this.schema[i] = Integer.parseInt(s[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Select an element set by name instead of paths, e.g. to combine it with a schema.
+         *
+         * @param elementSetName the element set name
+         * @return this builder
+         */
+        public Builder setElementSetName(String elementSetName) {
+            this.elementSetName = elementSetName;
+            return this;
+        }
+
+        /**
+         * Set the tag type of path segments without tag type. The default is 3, the tag type of
+         * locally defined string tags such as MARC tags.
+         *
+         * @param defaultTagType the tag type
+         * @return this builder
+         */
+        public Builder setDefaultTagType(int defaultTagType) {
+            this.defaultTagType = defaultTagType;
+            return this;
+        }
+
+        public Builder addPath(String path) {
+            this.paths.add(path);
+            return this;
+        }
+
+        /**
+         * Set the element set name for targets rejecting the CompSpec.
+         * By default, the element set of the client is used.
+         *
+         * @param fallbackElementSetName the element set name
+         * @return this builder
+         */
+        public Builder setFallbackElementSetName(String fallbackElementSetName) {
+            this.fallbackElementSetName = fallbackElementSetName;
+            return this;
+        }
+
+        public FieldSelection build() {
+            if (paths.isEmpty() && elementSetName == null) {
+                throw new IllegalArgumentException("no paths and no element set name");
+            }
+            for (String path : paths) {
+                if (path.isEmpty() || path.startsWith("/") || path.endsWith("/") || path.contains("//")) {
+                    throw new IllegalArgumentException("invalid path: " + path);
+                }
+            }
+            return new FieldSelection(schema, elementSetName, defaultTagType,
+                    Collections.unmodifiableList(new ArrayList<>(paths)), fallbackElementSetName);
+        }
+    }
+}
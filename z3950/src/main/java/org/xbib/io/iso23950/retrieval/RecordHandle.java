@@ -0,0 +1,55 @@
+package org.xbib.io.iso23950.retrieval;
+
+import org.xbib.io.iso23950.Record;
+
+import java.io.IOException;
+
+/**
+ * A record of a result list, holding the brief record and fetching the full record on first access.
+ */
+public class RecordHandle {
+
+    private final TieredResultSet resultSet;
+
+    private final long generation;
+
+    private final Record brief;
+
+    RecordHandle(TieredResultSet resultSet, long generation, Record brief) {
+        this.resultSet = resultSet;
+        this.generation = generation;
+        this.brief = brief;
+    }
+
+    /**
+     * The position of the record in the result set.
+     *
+     * @return the position, counting from 1
+     */
+    public int getNumber() {
+        return brief.getNumber();
+    }
+
+    public Record getBrief() {
+        return brief;
+    }
+
+    /**
+     * The full record, presented on first access and cached by the result set.
+     *
+     * @return the full record
+     * @throws IOException if the full record can not be presented
+     * @throws IllegalStateException if the result set was replaced by a later search
+     */
+    public Record getFull() throws IOException {
+        return resultSet.getFull(generation, brief.getNumber());
+    }
+
+    public boolean isFullCached() {
+        return resultSet.isCached(generation, brief.getNumber());
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+}
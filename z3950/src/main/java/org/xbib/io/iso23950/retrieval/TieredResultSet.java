@@ -0,0 +1,277 @@
+package org.xbib.io.iso23950.retrieval;
+
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.operations.PresentOperation;
+import org.xbib.io.iso23950.operations.SearchOperation;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A result set retrieved in two tiers.
+ *
+ * Result list pages are presented in a brief element set, which targets answer with
+ * a few fields instead of the full record, or with a {@link FieldSelection} of the fields
+ * to list, and returned as {@link RecordHandle}s.
+ * The full record of a handle is presented in the full element set on first access and
+ * cached. Full records of many handles, e.g. of a page to export, are presented together
+ * by a sparse multi-range present. When the cache is full, the oldest records are evicted.
+ *
+ * A tiered result set uses the result set of its client, and is invalidated by other
+ * searches on the client. Each search starts a new generation; handles of an earlier
+ * generation can no longer be resolved. Methods are synchronized, so handles may be
+ * resolved from any thread.
+ */
+public class TieredResultSet {
+
+    private final ZClient client;
+
+    private final String briefElementSetName;
+
+    private final FieldSelection briefSelection;
+
+    private final String fullElementSetName;
+
+    private final int cacheSize;
+
+    private final int maxRecords;
+
+    private final Map<Integer, Record> cache;
+
+    private final Queue<Integer> order;
+
+    private int count = -1;
+
+    private long generation;
+
+    private long fullPresents;
+
+    private TieredResultSet(ZClient client, String briefElementSetName, FieldSelection briefSelection,
+                            String fullElementSetName, int cacheSize, int maxRecords) {
+        this.client = client;
+        this.briefElementSetName = briefElementSetName;
+        this.briefSelection = briefSelection;
+        this.fullElementSetName = fullElementSetName;
+        this.cacheSize = cacheSize;
+        this.maxRecords = maxRecords;
+        this.cache = new HashMap<>();
+        this.order = new ArrayDeque<>();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Search, replacing the result set and clearing the cache of full records.
+     *
+     * @param query the RPN query
+     * @return the number of records in the result set
+     * @throws IOException if the search fails
+     */
+    public synchronized int search(RPNQuery query) throws IOException {
+        cache.clear();
+        order.clear();
+        count = -1;
+        generation++;
+        SearchOperation search = new SearchOperation();
+        search.execute(client, query);
+        if (!search.isSuccess()) {
+            throw new IOException("search was not a success");
+        }
+        count = search.getCount();
+        return count;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Present a page of brief records.
+     *
+     * @param offset the position of the first record, counting from 1
+     * @param length the number of records
+     * @return the record handles
+     * @throws IOException if the present fails
+     */
+    public synchronized List<RecordHandle> list(int offset, int length) throws IOException {
+        if (count < 0) {
+            throw new IllegalStateException("no search");
+        }
+        List<RecordHandle> handles = new ArrayList<>();
+        if (offset > count || length < 1) {
+            return handles;
+        }
+        // avoid condition 13 "Present request out-of-range"
+        length = Math.min(length, count - offset + 1);
+        PresentOperation present = briefSelection != null ?
+                new PresentOperation(briefSelection) : new PresentOperation(briefElementSetName);
+        present.execute(client, client.getResultSetName(), offset, length,
+                null, record -> handles.add(new RecordHandle(this, generation, record)));
+        return handles;
+    }
+
+    /**
+     * Present the full records of handles not in the cache, with as few present requests as possible.
+     *
+     * @param handles the record handles
+     * @throws IOException if the present fails
+     * @throws IllegalStateException if a handle is from an earlier search
+     */
+    public synchronized void fetchFull(Collection<RecordHandle> handles) throws IOException {
+        for (RecordHandle handle : handles) {
+            checkGeneration(handle.getGeneration());
+        }
+        int[] positions = handles.stream()
+                .mapToInt(RecordHandle::getNumber)
+                .filter(position -> !cache.containsKey(position))
+                .distinct()
+                .toArray();
+        if (positions.length > 0) {
+            fullPresents++;
+            new PresentOperation(fullElementSetName).execute(client, client.getResultSetName(), positions,
+                    maxRecords, null, this::put);
+        }
+    }
+
+    synchronized Record getFull(long generation, int position) throws IOException {
+        checkGeneration(generation);
+        Record record = cache.get(position);
+        if (record == null) {
+            fullPresents++;
+            Record[] full = new Record[1];
+            new PresentOperation(fullElementSetName).execute(client, client.getResultSetName(), position, 1,
+                    null, r -> full[0] = r);
+            if (full[0] == null) {
+                throw new IOException("no record at position " + position);
+            }
+            record = full[0];
+            put(record);
+        }
+        return record;
+    }
+
+    synchronized boolean isCached(long generation, int position) {
+        return generation == this.generation && cache.containsKey(position);
+    }
+
+    /**
+     * The number of present requests for full records so far.
+     *
+     * @return the number of full record presents
+     */
+    public synchronized long getFullPresents() {
+        return fullPresents;
+    }
+
+    private void checkGeneration(long generation) {
+        if (generation != this.generation) {
+            throw new IllegalStateException("record handle of an earlier search, the result set was replaced");
+        }
+    }
+
+    private void put(Record record) {
+        if (cache.put(record.getNumber(), record) == null) {
+            order.add(record.getNumber());
+            while (cache.size() > cacheSize) {
+                cache.remove(order.poll());
+            }
+        }
+    }
+
+    /**
+     * Builder for a tiered result set.
+     */
+    public static class Builder {
+
+        private ZClient client;
+
+        private String briefElementSetName = "B";
+
+        private FieldSelection briefSelection;
+
+        private String fullElementSetName;
+
+        private int cacheSize = 1000;
+
+        private int maxRecords = 100;
+
+        public Builder setClient(ZClient client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder setBriefElementSetName(String briefElementSetName) {
+            this.briefElementSetName = briefElementSetName;
+            return this;
+        }
+
+        /**
+         * Present result list pages with a field selection instead of the brief element set name.
+         * The fallback element set name of the selection should be a brief element set.
+         *
+         * @param briefSelection the field selection
+         * @return this builder
+         */
+        public Builder setBriefSelection(FieldSelection briefSelection) {
+            this.briefSelection = briefSelection;
+            return this;
+        }
+
+        /**
+         * Set the element set of full records. By default, the element set of the client is used.
+         *
+         * @param fullElementSetName the element set name
+         * @return this builder
+         */
+        public Builder setFullElementSetName(String fullElementSetName) {
+            this.fullElementSetName = fullElementSetName;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of cached full records.
+         *
+         * @param cacheSize the cache size
+         * @return this builder
+         */
+        public Builder setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of full records in one present request.
+         *
+         * @param maxRecords the maximum number of records
+         * @return this builder
+         */
+        public Builder setMaxRecords(int maxRecords) {
+            this.maxRecords = maxRecords;
+            return this;
+        }
+
+        public TieredResultSet build() {
+            if (client == null) {
+                throw new IllegalArgumentException("no client");
+            }
+            if (briefElementSetName == null) {
+                throw new IllegalArgumentException("no brief element set name");
+            }
+            if (cacheSize < 1 || maxRecords < 1) {
+                throw new IllegalArgumentException("cache size and max records must be positive");
+            }
+            return new TieredResultSet(client, briefElementSetName, briefSelection, fullElementSetName,
+                    cacheSize, maxRecords);
+        }
+    }
+}
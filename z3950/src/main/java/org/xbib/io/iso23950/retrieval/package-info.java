@@ -0,0 +1,4 @@
+/**
+ * Two-tier retrieval of brief records for listing and full records on demand.
+ */
+package org.xbib.io.iso23950.retrieval;
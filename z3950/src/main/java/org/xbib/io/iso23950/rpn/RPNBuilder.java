@@ -0,0 +1,185 @@
+package org.xbib.io.iso23950.rpn;
+
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.ASN1Null;
+import org.xbib.asn1.ASN1ObjectIdentifier;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.AttributeElementAttributeValue;
+import org.xbib.io.iso23950.v3.AttributeList;
+import org.xbib.io.iso23950.v3.AttributeSetId;
+import org.xbib.io.iso23950.v3.AttributesPlusTerm;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.Operand;
+import org.xbib.io.iso23950.v3.Operator;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+import org.xbib.io.iso23950.v3.RPNStructureRpnRpnOp;
+import org.xbib.io.iso23950.v3.ResultSetId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Factory methods for RPN structures.
+ */
+public final class RPNBuilder {
+
+    /**
+     * Z39.50 BIB-1: urn:oid:1.2.840.10003.3.1
+     */
+    private static final int[] BIB1 = {1, 2, 840, 10003, 3, 1};
+
+    private RPNBuilder() {
+    }
+
+    /**
+     * Create an RPN query in the BIB-1 attribute set.
+     *
+     * @param rpn the RPN structure
+     * @return the RPN query
+     */
+    public static RPNQuery query(RPNStructure rpn) {
+        RPNQuery rpnQuery = new RPNQuery();
+        rpnQuery.s_attributeSet = new AttributeSetId();
+        rpnQuery.s_attributeSet.value = new ASN1ObjectIdentifier(BIB1);
+        rpnQuery.s_rpn = rpn;
+        return rpnQuery;
+    }
+
+    /**
+     * Create a term operand with a use attribute.
+     *
+     * @param use the BIB-1 use attribute (type 1) value
+     * @param term the term
+     * @return the RPN structure
+     */
+    public static RPNStructure term(int use, String term) {
+        return term(new AttributeElement[]{attribute(1, use)}, term);
+    }
+
+    /**
+     * Create a term operand.
+     *
+     * @param attributes the attributes of the term
+     * @param term the term
+     * @return the RPN structure
+     */
+    public static RPNStructure term(AttributeElement[] attributes, String term) {
+        Operand operand = new Operand();
+        operand.c_attrTerm = new AttributesPlusTerm();
+        operand.c_attrTerm.sAttributes = new AttributeList();
+        operand.c_attrTerm.sAttributes.value = attributes;
+        operand.c_attrTerm.sTerm = new org.xbib.io.iso23950.v3.Term();
+        operand.c_attrTerm.sTerm.c_general = new ASN1OctetString(term);
+        RPNStructure rpn = new RPNStructure();
+        rpn.c_op = operand;
+        return rpn;
+    }
+
+    /**
+     * Create a result set operand.
+     *
+     * @param resultSetName the name of the result set
+     * @return the RPN structure
+     */
+    public static RPNStructure resultSet(String resultSetName) {
+        Operand operand = new Operand();
+        operand.c_resultSet = new ResultSetId();
+        operand.c_resultSet.value = new InternationalString();
+        operand.c_resultSet.value.value = new ASN1GeneralString(resultSetName);
+        RPNStructure rpn = new RPNStructure();
+        rpn.c_op = operand;
+        return rpn;
+    }
+
+    public static AttributeElement attribute(int type, int value) {
+        AttributeElement ae = new AttributeElement();
+        ae.sAttributeType = new ASN1Integer(type);
+        ae.attributeValue = new AttributeElementAttributeValue();
+        ae.attributeValue.cNumeric = new ASN1Integer(value);
+        return ae;
+    }
+
+    public static Operator and() {
+        Operator op = new Operator();
+        op.c_and = new ASN1Null();
+        return op;
+    }
+
+    public static Operator or() {
+        Operator op = new Operator();
+        op.c_or = new ASN1Null();
+        return op;
+    }
+
+    public static Operator andNot() {
+        Operator op = new Operator();
+        op.c_and_not = new ASN1Null();
+        return op;
+    }
+
+    public static RPNStructure op(Operator op, RPNStructure rpn1, RPNStructure rpn2) {
+        RPNStructure rpn = new RPNStructure();
+        rpn.c_rpnRpnOp = new RPNStructureRpnRpnOp();
+        rpn.c_rpnRpnOp.s_op = op;
+        rpn.c_rpnRpnOp.s_rpn1 = rpn1;
+        rpn.c_rpnRpnOp.s_rpn2 = rpn2;
+        return rpn;
+    }
+
+    /**
+     * Get the operands of a chain of an associative operator, e.g. all disjuncts of
+     * a (possibly nested) OR. A structure which is not such a chain is its only operand.
+     *
+     * @param rpn the RPN structure
+     * @return the operands, from left to right
+     */
+    public static List<RPNStructure> operands(RPNStructure rpn) {
+        List<RPNStructure> operands = new ArrayList<>();
+        if (rpn.c_rpnRpnOp == null || (rpn.c_rpnRpnOp.s_op.c_and == null && rpn.c_rpnRpnOp.s_op.c_or == null)) {
+            operands.add(rpn);
+            return operands;
+        }
+        boolean and = rpn.c_rpnRpnOp.s_op.c_and != null;
+        Deque<RPNStructure> stack = new ArrayDeque<>();
+        stack.push(rpn);
+        while (!stack.isEmpty()) {
+            RPNStructure r = stack.pop();
+            if (r.c_rpnRpnOp != null && (and ? r.c_rpnRpnOp.s_op.c_and : r.c_rpnRpnOp.s_op.c_or) != null) {
+                stack.push(r.c_rpnRpnOp.s_rpn2);
+                stack.push(r.c_rpnRpnOp.s_rpn1);
+            } else {
+                operands.add(r);
+            }
+        }
+        return operands;
+    }
+
+    /**
+     * Combine operands with an associative operator into a balanced tree,
+     * keeping the nesting depth, and so the BER nesting, logarithmic in
+     * the number of operands.
+     *
+     * @param op the operator, AND or OR
+     * @param operands the operands, at least one
+     * @return the RPN structure
+     */
+    public static RPNStructure balanced(Operator op, List<RPNStructure> operands) {
+        if (operands.isEmpty()) {
+            throw new IllegalArgumentException("no operands");
+        }
+        return balanced(op, operands, 0, operands.size());
+    }
+
+    private static RPNStructure balanced(Operator op, List<RPNStructure> operands, int from, int to) {
+        if (to - from == 1) {
+            return operands.get(from);
+        }
+        int mid = (from + to) >>> 1;
+        return op(op, balanced(op, operands, from, mid), balanced(op, operands, mid, to));
+    }
+}
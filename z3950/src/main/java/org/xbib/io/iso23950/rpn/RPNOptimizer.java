@@ -0,0 +1,128 @@
+package org.xbib.io.iso23950.rpn;
+
+import org.xbib.asn1.ASN1Exception;
+import org.xbib.io.iso23950.v3.Operator;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites RPN queries into equivalent, smaller and flatter queries.
+ *
+ * Chains of the associative AND and OR operators are flattened, identical
+ * operands of such a chain are removed, and the chain is rebuilt either as a
+ * balanced tree or in its original left-deep form. If a selectivity estimate is
+ * given, AND operands are ordered from the most to the least selective. AND-NOT
+ * and proximity operators are kept as they are, but their operands are
+ * rewritten. The input query is not modified.
+ */
+public class RPNOptimizer {
+
+    private final boolean balance;
+
+    private final Selectivity selectivity;
+
+    public RPNOptimizer() {
+        this(true, null);
+    }
+
+    /**
+     * Create an optimizer.
+     *
+     * @param balance true if flattened chains should be rebuilt as balanced trees
+     * @param selectivity the selectivity estimate for ordering AND operands, or null
+     */
+    public RPNOptimizer(boolean balance, Selectivity selectivity) {
+        this.balance = balance;
+        this.selectivity = selectivity;
+    }
+
+    public Selectivity getSelectivity() {
+        return selectivity;
+    }
+
+    public RPNQuery optimize(RPNQuery query) {
+        RPNQuery rpnQuery = new RPNQuery();
+        rpnQuery.s_attributeSet = query.s_attributeSet;
+        rpnQuery.s_rpn = optimize(query.s_rpn);
+        return rpnQuery;
+    }
+
+    public RPNStructure optimize(RPNStructure rpn) {
+        if (rpn.c_rpnRpnOp == null) {
+            return rpn;
+        }
+        Operator op = rpn.c_rpnRpnOp.s_op;
+        if (!isAssociative(op)) {
+            return RPNBuilder.op(op, optimize(rpn.c_rpnRpnOp.s_rpn1), optimize(rpn.c_rpnRpnOp.s_rpn2));
+        }
+        List<RPNStructure> operands = new ArrayList<>();
+        flatten(rpn, op.c_and != null, operands);
+        List<RPNStructure> distinct = distinct(operands);
+        if (op.c_and != null && selectivity != null) {
+            distinct.sort(Comparator.comparingLong(this::estimate));
+        }
+        if (balance) {
+            return RPNBuilder.balanced(op, distinct);
+        }
+        RPNStructure result = distinct.get(0);
+        for (int i = 1; i < distinct.size(); i++) {
+            result = RPNBuilder.op(op, result, distinct.get(i));
+        }
+        return result;
+    }
+
+    private void flatten(RPNStructure rpn, boolean and, List<RPNStructure> operands) {
+        // iterative, machine-generated chains can be deeper than the stack
+        Deque<RPNStructure> stack = new ArrayDeque<>();
+        stack.push(rpn);
+        while (!stack.isEmpty()) {
+            RPNStructure r = stack.pop();
+            if (r.c_rpnRpnOp != null && isAssociative(r.c_rpnRpnOp.s_op) &&
+                    (r.c_rpnRpnOp.s_op.c_and != null) == and) {
+                stack.push(r.c_rpnRpnOp.s_rpn2);
+                stack.push(r.c_rpnRpnOp.s_rpn1);
+            } else {
+                operands.add(optimize(r));
+            }
+        }
+    }
+
+    private long estimate(RPNStructure rpn) {
+        long n = selectivity.estimate(rpn);
+        // unknown estimates go last
+        return n < 0 ? Long.MAX_VALUE : n;
+    }
+
+    private static boolean isAssociative(Operator op) {
+        return op.c_and != null || op.c_or != null;
+    }
+
+    private static List<RPNStructure> distinct(List<RPNStructure> operands) {
+        List<RPNStructure> distinct = new ArrayList<>(operands.size());
+        Set<ByteBuffer> encodings = new HashSet<>();
+        for (RPNStructure operand : operands) {
+            byte[] encoding = encode(operand);
+            if (encoding == null || encodings.add(ByteBuffer.wrap(encoding))) {
+                distinct.add(operand);
+            }
+        }
+        return distinct;
+    }
+
+    private static byte[] encode(RPNStructure rpn) {
+        try {
+            return rpn.berEncode().encodingGet();
+        } catch (ASN1Exception e) {
+            return null;
+        }
+    }
+}
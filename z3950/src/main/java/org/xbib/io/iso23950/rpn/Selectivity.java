@@ -0,0 +1,19 @@
+package org.xbib.io.iso23950.rpn;
+
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+/**
+ * Estimates the number of hits of an RPN operand, for ordering AND operands
+ * from the most to the least selective.
+ */
+@FunctionalInterface
+public interface Selectivity {
+
+    /**
+     * Estimate the hits of an operand.
+     *
+     * @param rpn the operand
+     * @return the estimated number of hits, or a negative number if unknown
+     */
+    long estimate(RPNStructure rpn);
+}
@@ -0,0 +1,4 @@
+/**
+ * Building and rewriting of RPN (type-1) queries.
+ */
+package org.xbib.io.iso23950.rpn;
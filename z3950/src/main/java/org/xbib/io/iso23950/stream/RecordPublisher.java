@@ -0,0 +1,350 @@
+package org.xbib.io.iso23950.stream;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.ZClient;
+import org.xbib.io.iso23950.operations.DeleteResultSetOperation;
+import org.xbib.io.iso23950.operations.PresentOperation;
+import org.xbib.io.iso23950.operations.SearchOperation;
+import org.xbib.io.iso23950.v3.RPNQuery;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A Reactive Streams publisher of the records of a search, with backpressure.
+ *
+ * The search is executed on the first request of the subscriber. Records are presented
+ * only as the subscriber asks for them: a present fetches the outstanding demand plus the
+ * prefetch depth, at most {@code maxWindow} records, so at most demand plus prefetch records
+ * are buffered. Cancelling stops presenting and, if configured, deletes the result set.
+ *
+ * The publisher accepts one subscriber, and uses the client exclusively until the stream
+ * completes, fails or is cancelled. The client is not closed. By default, searches and presents
+ * run on the thread calling {@link Subscription#request(long)}; set an executor to run them
+ * elsewhere. On Java 9 or later, {@code org.reactivestreams.FlowAdapters} adapts the publisher
+ * to {@code java.util.concurrent.Flow}.
+ */
+public class RecordPublisher implements Publisher<Record> {
+
+    private static final Logger logger = Logger.getLogger(RecordPublisher.class.getName());
+
+    private final ZClient client;
+
+    private final RPNQuery query;
+
+    private final int offset;
+
+    private final int limit;
+
+    private final int maxWindow;
+
+    private final int prefetch;
+
+    private final boolean deleteOnCancel;
+
+    private final Executor executor;
+
+    private final AtomicBoolean subscribed;
+
+    private RecordPublisher(ZClient client, RPNQuery query, int offset, int limit, int maxWindow, int prefetch,
+                            boolean deleteOnCancel, Executor executor) {
+        this.client = client;
+        this.query = query;
+        this.offset = offset;
+        this.limit = limit;
+        this.maxWindow = maxWindow;
+        this.prefetch = prefetch;
+        this.deleteOnCancel = deleteOnCancel;
+        this.executor = executor;
+        this.subscribed = new AtomicBoolean();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Record> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("a record publisher accepts only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new RecordSubscription(subscriber));
+    }
+
+    /**
+     * The subscription. All searches, presents and signals happen in {@link #run()}, which
+     * never runs concurrently with itself, so the state below the atomics is confined to it.
+     */
+    private class RecordSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super Record> subscriber;
+
+        private final AtomicLong requested;
+
+        private final AtomicInteger wip;
+
+        private volatile boolean cancelled;
+
+        private volatile IllegalArgumentException invalidRequest;
+
+        private final ArrayDeque<Record> buffer;
+
+        private boolean done;
+
+        private int next;
+
+        private int last = -1;
+
+        RecordSubscription(Subscriber<? super Record> subscriber) {
+            this.subscriber = subscriber;
+            this.requested = new AtomicLong();
+            this.wip = new AtomicInteger();
+            this.buffer = new ArrayDeque<>();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                invalidRequest = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                requested.accumulateAndGet(n, (a, b) -> a + b < 0L ? Long.MAX_VALUE : a + b);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    done = true;
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    try {
+                        drain();
+                    } catch (IOException | RuntimeException e) {
+                        done = true;
+                        buffer.clear();
+                        subscriber.onError(e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() throws IOException {
+            while (true) {
+                if (cancelled) {
+                    done = true;
+                    buffer.clear();
+                    if (deleteOnCancel && last >= 0) {
+                        deleteResultSet();
+                    }
+                    return;
+                }
+                if (invalidRequest != null) {
+                    cancelled = true;
+                    done = true;
+                    buffer.clear();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                if (last < 0) {
+                    if (requested.get() == 0L) {
+                        return;
+                    }
+                    search();
+                    continue;
+                }
+                long demand = requested.get();
+                if (demand > 0L && !buffer.isEmpty()) {
+                    if (demand != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    subscriber.onNext(buffer.poll());
+                    continue;
+                }
+                if (buffer.isEmpty() && next > last) {
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                long wanted = Math.min(demand, Integer.MAX_VALUE) + prefetch - buffer.size();
+                if (wanted <= 0L || next > last) {
+                    return;
+                }
+                present((int) Math.min(Math.min(wanted, maxWindow), last - next + 1L));
+            }
+        }
+
+        private void search() throws IOException {
+            SearchOperation search = new SearchOperation();
+            search.execute(client, query);
+            if (!search.isSuccess()) {
+                throw new IOException("search was not a success");
+            }
+            next = offset;
+            last = (int) Math.min(search.getCount(), offset + (long) limit - 1L);
+        }
+
+        private void present(int window) throws IOException {
+            int before = buffer.size();
+            new PresentOperation().execute(client, next, window, null, buffer::add);
+            int received = buffer.size() - before;
+            if (received == 0) {
+                throw new IOException("present of " + window + " records at " + next + " returned no records");
+            }
+            next += received;
+        }
+
+        private void deleteResultSet() {
+            try {
+                new DeleteResultSetOperation().execute(client, Collections.singletonList(client.getResultSetName()));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "can not delete result set " + client.getResultSetName(), e);
+            }
+        }
+    }
+
+    /**
+     * Builder for a record publisher.
+     */
+    public static class Builder {
+
+        private ZClient client;
+
+        private RPNQuery query;
+
+        private int offset = 1;
+
+        private int limit = Integer.MAX_VALUE;
+
+        private int maxWindow = 50;
+
+        private int prefetch = 0;
+
+        private boolean deleteOnCancel;
+
+        private Executor executor = Runnable::run;
+
+        public Builder setClient(ZClient client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder setQuery(RPNQuery query) {
+            this.query = query;
+            return this;
+        }
+
+        /**
+         * Set the position of the first record, counting from 1.
+         *
+         * @param offset the offset
+         * @return this builder
+         */
+        public Builder setOffset(int offset) {
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of records to publish.
+         *
+         * @param limit the limit
+         * @return this builder
+         */
+        public Builder setLimit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of records in one present request.
+         *
+         * @param maxWindow the maximum window
+         * @return this builder
+         */
+        public Builder setMaxWindow(int maxWindow) {
+            this.maxWindow = maxWindow;
+            return this;
+        }
+
+        /**
+         * Set the number of records to present ahead of the demand of the subscriber.
+         *
+         * @param prefetch the prefetch depth
+         * @return this builder
+         */
+        public Builder setPrefetch(int prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        public Builder setDeleteOnCancel(boolean deleteOnCancel) {
+            this.deleteOnCancel = deleteOnCancel;
+            return this;
+        }
+
+        /**
+         * Set the executor running searches, presents and signals to the subscriber.
+         *
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public RecordPublisher build() {
+            if (client == null) {
+                throw new IllegalArgumentException("no client");
+            }
+            if (query == null) {
+                throw new IllegalArgumentException("no query");
+            }
+            if (offset < 1 || limit < 1 || maxWindow < 1 || prefetch < 0) {
+                throw new IllegalArgumentException("offset, limit and window must be positive, prefetch must not be negative");
+            }
+            return new RecordPublisher(client, query, offset, limit, maxWindow, prefetch, deleteOnCancel, executor);
+        }
+    }
+}
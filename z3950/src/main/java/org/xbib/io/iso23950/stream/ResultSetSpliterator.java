@@ -0,0 +1,131 @@
+package org.xbib.io.iso23950.stream;
+
+import org.xbib.io.iso23950.Record;
+import org.xbib.io.iso23950.RecordListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over a range of record positions of a remote result set.
+ *
+ * Records are fetched lazily, one present window at a time. Splitting divides the not yet
+ * fetched positions into two ranges of whole windows, so a parallel stream fetches disjoint
+ * windows, e.g. on several pooled associations, while the records are processed across cores.
+ * I/O errors are thrown as {@link UncheckedIOException}.
+ */
+public class ResultSetSpliterator implements Spliterator<Record> {
+
+    private final Fetcher fetcher;
+
+    private final int window;
+
+    private final ArrayDeque<Record> buffer;
+
+    private int next;
+
+    private final int last;
+
+    /**
+     * Create a spliterator.
+     *
+     * @param fetcher the fetcher of records
+     * @param first the position of the first record, counting from 1
+     * @param last the position of the last record
+     * @param window the number of records fetched at once
+     */
+    public ResultSetSpliterator(Fetcher fetcher, int first, int last, int window) {
+        if (first < 1 || window < 1) {
+            throw new IllegalArgumentException("first position and window must be positive");
+        }
+        this.fetcher = fetcher;
+        this.window = window;
+        this.buffer = new ArrayDeque<>();
+        this.next = first;
+        this.last = last;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Record> action) {
+        if (buffer.isEmpty() && !fetch()) {
+            return false;
+        }
+        action.accept(buffer.poll());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Record> action) {
+        do {
+            Record record;
+            while ((record = buffer.poll()) != null) {
+                action.accept(record);
+            }
+        } while (fetch());
+    }
+
+    @Override
+    public Spliterator<Record> trySplit() {
+        int windows = (last - next + 1) / window;
+        if (windows < 2) {
+            return null;
+        }
+        int mid = next + (windows / 2) * window;
+        ResultSetSpliterator prefix = new ResultSetSpliterator(fetcher, next, mid - 1, window);
+        // records already fetched by this spliterator come first
+        prefix.buffer.addAll(buffer);
+        buffer.clear();
+        next = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return buffer.size() + Math.max(0L, last - next + 1L);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    private boolean fetch() {
+        if (next > last) {
+            return false;
+        }
+        int length = Math.min(window, last - next + 1);
+        int before = buffer.size();
+        try {
+            fetcher.fetch(next, length, buffer::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int received = buffer.size() - before;
+        if (received == 0) {
+            throw new UncheckedIOException(new IOException("present of " + length + " records at " +
+                    next + " returned no records"));
+        }
+        next += received;
+        return true;
+    }
+
+    /**
+     * Fetches records of a result set.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+
+        /**
+         * Fetch records. May be called concurrently by the splits of a spliterator.
+         *
+         * @param offset the position of the first record, counting from 1
+         * @param length the number of records
+         * @param listener the listener receiving the records in order
+         * @throws IOException if the records can not be fetched
+         */
+        void fetch(int offset, int length, RecordListener listener) throws IOException;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Reactive streams of Z39.50 records.
+ */
+package org.xbib.io.iso23950.stream;
@@ -0,0 +1,32 @@
+package org.xbib.io.iso23950.trace;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A tracer logging every PDU at level FINE, and failures at level WARNING.
+ */
+public class LoggingTracer implements PDUTracer {
+
+    private static final Logger logger = Logger.getLogger(LoggingTracer.class.getName());
+
+    @Override
+    public void sent(PDUTrace trace) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, trace.toString());
+        }
+    }
+
+    @Override
+    public void received(PDUTrace trace) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, trace.toString());
+        }
+    }
+
+    @Override
+    public void failed(String target, IOException e) {
+        logger.log(Level.WARNING, target + ": " + e.getMessage(), e);
+    }
+}
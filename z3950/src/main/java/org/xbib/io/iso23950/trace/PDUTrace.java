@@ -0,0 +1,184 @@
+package org.xbib.io.iso23950.trace;
+
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.ReferenceId;
+
+/**
+ * A PDU sent or received by a client.
+ */
+public final class PDUTrace {
+
+    public static final int SENT = 0;
+
+    public static final int RECEIVED = 1;
+
+    private final String target;
+
+    private final int direction;
+
+    private final PDU pdu;
+
+    private final long bytes;
+
+    private final long codecNanos;
+
+    private final long nanoTime;
+
+    public PDUTrace(String target, int direction, PDU pdu, long bytes, long codecNanos, long nanoTime) {
+        this.target = target;
+        this.direction = direction;
+        this.pdu = pdu;
+        this.bytes = bytes;
+        this.codecNanos = codecNanos;
+        this.nanoTime = nanoTime;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * The direction.
+     *
+     * @return {@link #SENT} or {@link #RECEIVED}
+     */
+    public int getDirection() {
+        return direction;
+    }
+
+    public PDU getPDU() {
+        return pdu;
+    }
+
+    /**
+     * The PDU type, as named in the Z39.50 ASN.1 module, e.g. {@code searchRequest}.
+     *
+     * @return the PDU type
+     */
+    public String getType() {
+        return typeOf(pdu);
+    }
+
+    /**
+     * The reference id of the PDU.
+     *
+     * @return the reference id, or null if the PDU has none
+     */
+    public byte[] getReferenceId() {
+        ReferenceId referenceId = referenceIdOf(pdu);
+        return referenceId != null && referenceId.value != null ? referenceId.value.getBytes() : null;
+    }
+
+    /**
+     * The size of the BER encoding.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * The time to encode a sent PDU, or to decode a received PDU.
+     *
+     * @return the nanoseconds
+     */
+    public long getCodecNanos() {
+        return codecNanos;
+    }
+
+    /**
+     * The time the PDU was written to or read from the network.
+     *
+     * @return the {@link System#nanoTime()}
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + target + " " + (direction == SENT ? "sent " : "received ") + getType() +
+                " bytes=" + bytes + " codecNanos=" + codecNanos + "]";
+    }
+
+    public static String typeOf(PDU pdu) {
+        if (pdu.c_initRequest != null) {
+            return "initRequest";
+        }
+        if (pdu.c_initResponse != null) {
+            return "initResponse";
+        }
+        if (pdu.c_searchRequest != null) {
+            return "searchRequest";
+        }
+        if (pdu.c_searchResponse != null) {
+            return "searchResponse";
+        }
+        if (pdu.c_presentRequest != null) {
+            return "presentRequest";
+        }
+        if (pdu.c_presentResponse != null) {
+            return "presentResponse";
+        }
+        if (pdu.c_deleteResultSetRequest != null) {
+            return "deleteResultSetRequest";
+        }
+        if (pdu.c_deleteResultSetResponse != null) {
+            return "deleteResultSetResponse";
+        }
+        if (pdu.c_scanRequest != null) {
+            return "scanRequest";
+        }
+        if (pdu.c_scanResponse != null) {
+            return "scanResponse";
+        }
+        if (pdu.c_sortRequest != null) {
+            return "sortRequest";
+        }
+        if (pdu.c_sortResponse != null) {
+            return "sortResponse";
+        }
+        if (pdu.c_close != null) {
+            return "close";
+        }
+        return "other";
+    }
+
+    public static ReferenceId referenceIdOf(PDU pdu) {
+        if (pdu.c_initRequest != null) {
+            return pdu.c_initRequest.s_referenceId;
+        }
+        if (pdu.c_initResponse != null) {
+            return pdu.c_initResponse.s_referenceId;
+        }
+        if (pdu.c_searchRequest != null) {
+            return pdu.c_searchRequest.s_referenceId;
+        }
+        if (pdu.c_searchResponse != null) {
+            return pdu.c_searchResponse.s_referenceId;
+        }
+        if (pdu.c_presentRequest != null) {
+            return pdu.c_presentRequest.s_referenceId;
+        }
+        if (pdu.c_presentResponse != null) {
+            return pdu.c_presentResponse.s_referenceId;
+        }
+        if (pdu.c_deleteResultSetRequest != null) {
+            return pdu.c_deleteResultSetRequest.referenceId;
+        }
+        if (pdu.c_deleteResultSetResponse != null) {
+            return pdu.c_deleteResultSetResponse.sReferenceId;
+        }
+        if (pdu.c_scanRequest != null) {
+            return pdu.c_scanRequest.s_referenceId;
+        }
+        if (pdu.c_scanResponse != null) {
+            return pdu.c_scanResponse.s_referenceId;
+        }
+        if (pdu.c_close != null) {
+            return pdu.c_close.sReferenceId;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package org.xbib.io.iso23950.trace;
+
+import org.xbib.io.iso23950.v3.PDU;
+
+import java.io.IOException;
+
+/**
+ * Receives every PDU a client sends and receives.
+ *
+ * A tracer is called on the thread doing the I/O, so it must be fast and must not throw.
+ * One tracer may be shared by many clients and must be thread safe. Tracers which
+ * correlate requests and responses, e.g. into spans, can set a reference id on
+ * requests in {@link #beforeSend(String, PDU)}, which the target echoes in the response.
+ */
+public interface PDUTracer {
+
+    /**
+     * Called before a PDU is encoded. The PDU may be modified.
+     *
+     * @param target the target, as host and port
+     * @param pdu the PDU
+     */
+    default void beforeSend(String target, PDU pdu) {
+    }
+
+    void sent(PDUTrace trace);
+
+    void received(PDUTrace trace);
+
+    /**
+     * Called when sending or receiving a PDU failed.
+     *
+     * @param target the target, as host and port
+     * @param e the exception
+     */
+    default void failed(String target, IOException e) {
+    }
+
+    /**
+     * Combine tracers into one, calling them in the given order.
+     *
+     * @param tracers the tracers
+     * @return the combined tracer
+     */
+    static PDUTracer of(PDUTracer... tracers) {
+        if (tracers.length == 1) {
+            return tracers[0];
+        }
+        PDUTracer[] copy = tracers.clone();
+        return new PDUTracer() {
+            @Override
+            public void beforeSend(String target, PDU pdu) {
+                for (PDUTracer tracer : copy) {
+                    tracer.beforeSend(target, pdu);
+                }
+            }
+
+            @Override
+            public void sent(PDUTrace trace) {
+                for (PDUTracer tracer : copy) {
+                    tracer.sent(trace);
+                }
+            }
+
+            @Override
+            public void received(PDUTrace trace) {
+                for (PDUTracer tracer : copy) {
+                    tracer.received(trace);
+                }
+            }
+
+            @Override
+            public void failed(String target, IOException e) {
+                for (PDUTracer tracer : copy) {
+                    tracer.failed(target, e);
+                }
+            }
+        };
+    }
+}
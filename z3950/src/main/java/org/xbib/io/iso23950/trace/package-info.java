@@ -0,0 +1,4 @@
+/**
+ * Tracing of Z39.50 PDU exchanges.
+ */
+package org.xbib.io.iso23950.trace;
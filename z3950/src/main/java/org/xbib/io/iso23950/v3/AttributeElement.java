@@ -19,7 +19,7 @@ import org.xbib.asn1.BEREncoding;
  * }
  * </pre>
  */
-public final class AttributeElement extends ASN1Any {
+public class AttributeElement extends ASN1Any {
 
     public AttributeSetId attributeSetId; // optional
 
@@ -23,6 +23,12 @@ public final class AttributeElementAttributeValueComplex extends ASN1Any {
     public StringOrNumeric[] sList;
     public ASN1Integer[] sSemanticAction; // optional
 
+    /**
+     * Default constructor for a AttributeElementAttributeValueComplex.
+     */
+    public AttributeElementAttributeValueComplex() {
+    }
+
     /**
      * Constructor for a AttributeElement_attributeValue_complex from a BER encoding.
      *
@@ -26,6 +26,12 @@ public final class DefaultDiagFormat extends ASN1Any {
     public ASN1Integer sCondition;
     public DefaultDiagFormatAddinfo sAddinfo;
 
+    /**
+     * Default constructor for a DefaultDiagFormat.
+     */
+    public DefaultDiagFormat() {
+    }
+
     /**
      * Constructor for a DefaultDiagFormat from a BER encoding.
      *
@@ -21,6 +21,12 @@ public final class DefaultDiagFormatAddinfo extends ASN1Any {
     public ASN1VisibleString cV2Addinfo;
     public InternationalString cV3Addinfo;
 
+    /**
+     * Default constructor for a DefaultDiagFormatAddinfo.
+     */
+    public DefaultDiagFormatAddinfo() {
+    }
+
     /**
      * Constructor for a DefaultDiagFormat_addinfo from a BER encoding.
      *
@@ -31,6 +31,12 @@ public final class DeleteResultSetRequest extends ASN1Any {
     public ResultSetId[] sResultSetList; // optional
     public OtherInformation sOtherInfo; // optional
 
+    /**
+     * Default constructor for a DeleteResultSetRequest.
+     */
+    public DeleteResultSetRequest() {
+    }
+
     /**
      * Constructor for a DeleteResultSetRequest from a BER encoding.
      *
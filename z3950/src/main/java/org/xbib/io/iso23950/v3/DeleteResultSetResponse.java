@@ -34,6 +34,12 @@ public final class DeleteResultSetResponse extends ASN1Any {
     public InternationalString sDeleteMessage; // optional
     public OtherInformation sOtherInfo; // optional
 
+    /**
+     * Default constructor for a DeleteResultSetResponse.
+     */
+    public DeleteResultSetResponse() {
+    }
+
     /**
      * Constructor for a DeleteResultSetResponse from a BER encoding.
      *
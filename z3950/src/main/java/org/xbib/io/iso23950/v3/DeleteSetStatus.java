@@ -28,6 +28,13 @@ public final class DeleteSetStatus extends ASN1Any {
     public static final int E_NOT_ALL_REQUESTED_RESULT_SETS_DELETED = 9;
     public static final int E_RESULT_SET_IN_USE = 10;
     public ASN1Integer value;
+
+    /**
+     * Default constructor for a DeleteSetStatus.
+     */
+    public DeleteSetStatus() {
+    }
+
     /**
      * Constructor for a DeleteSetStatus from a BER encoding.
      *
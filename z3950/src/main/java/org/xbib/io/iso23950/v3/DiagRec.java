@@ -22,6 +22,12 @@ public final class DiagRec extends ASN1Any {
     public DefaultDiagFormat cDefaultFormat;
     public ASN1External cExternallyDefined;
 
+    /**
+     * Default constructor for a DiagRec.
+     */
+    public DiagRec() {
+    }
+
     /**
      * Constructor for a DiagRec from a BER encoding.
      *
@@ -21,6 +21,12 @@ public final class Entry extends ASN1Any {
     public TermInfo cTermInfo;
     public DiagRec cSurrogateDiagnostic;
 
+    /**
+     * Default constructor for a Entry.
+     */
+    public Entry() {
+    }
+
     /**
      * Constructor for a Entry from a BER encoding.
      *
@@ -43,6 +43,13 @@ public final class InitializeResponse extends ASN1Any {
     public InternationalString s_implementationVersion; // optional
     public ASN1External s_userInformationField; // optional
     public OtherInformation s_otherInfo; // optional
+
+    /**
+     * Default constructor for a InitializeResponse.
+     */
+    public InitializeResponse() {
+    }
+
     /**
      * Constructor for a InitializeResponse from a BER encoding.
      *
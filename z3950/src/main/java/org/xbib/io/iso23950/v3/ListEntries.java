@@ -23,6 +23,11 @@ public final class ListEntries extends ASN1Any {
     public Entry s_entries[]; // optional
     public DiagRec s_nonsurrogateDiagnostics[]; // optional
 
+    /**
+     * Default constructor for a ListEntries.
+     */
+    public ListEntries() {
+    }
 
     /**
      * Constructor for a ListEntries from a BER encoding.
@@ -28,6 +28,12 @@ public final class NamePlusRecordRecord extends ASN1Any {
     public FragmentSyntax c_intermediateFragment;
     public FragmentSyntax c_finalFragment;
 
+    /**
+     * Default constructor for a NamePlusRecordRecord.
+     */
+    public NamePlusRecordRecord() {
+    }
+
     /**
      * Constructor for a NamePlusRecord_record from a BER encoding.
      *
@@ -31,6 +31,13 @@ public final class PresentResponse extends ASN1Any {
     public PresentStatus s_presentStatus;
     public Records s_records; // optional
     public OtherInformation s_otherInfo; // optional
+
+    /**
+     * Default constructor for a PresentResponse.
+     */
+    public PresentResponse() {
+    }
+
     /**
      * Constructor for a PresentResponse from a BER encoding.
      *
@@ -30,6 +30,13 @@ public final class PresentStatus extends ASN1Any {
     public static final int E_partial_4 = 4;
     public static final int E_failure = 5;
     public ASN1Integer value;
+
+    /**
+     * Default constructor for a PresentStatus.
+     */
+    public PresentStatus() {
+    }
+
     /**
      * Constructor for a PresentStatus from a BER encoding.
      *
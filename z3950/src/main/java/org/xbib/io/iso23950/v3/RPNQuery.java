@@ -17,7 +17,7 @@ import org.xbib.asn1.BEREncoding;
  * }
  * </pre>
  */
-public final class RPNQuery extends ASN1Any {
+public class RPNQuery extends ASN1Any {
     public AttributeSetId s_attributeSet;
     public RPNStructure s_rpn;
 
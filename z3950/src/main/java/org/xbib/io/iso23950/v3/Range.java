@@ -23,6 +23,11 @@ public final class Range extends ASN1Any {
     public ASN1Integer s_startingPosition;
     public ASN1Integer s_numberOfRecords;
 
+    /**
+     * Default constructor for a Range.
+     */
+    public Range() {
+    }
 
     /**
      * Constructor for a Range from a BER encoding.
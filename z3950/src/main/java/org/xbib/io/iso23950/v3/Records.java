@@ -23,6 +23,11 @@ public final class Records extends ASN1Any {
     public DefaultDiagFormat c_nonSurrogateDiagnostic;
     public DiagRec c_multipleNonSurDiagnostics[];
 
+    /**
+     * Default constructor for a Records.
+     */
+    public Records() {
+    }
 
     /**
      * Constructor for a Records from a BER encoding.
@@ -34,6 +34,13 @@ public final class ScanRequest extends ASN1Any {
     public ASN1Integer s_numberOfTermsRequested;
     public ASN1Integer s_preferredPositionInResponse; // optional
     public OtherInformation s_otherInfo; // optional
+
+    /**
+     * Default constructor for a ScanRequest.
+     */
+    public ScanRequest() {
+    }
+
     /**
      * Constructor for a ScanRequest from a BER encoding.
      *
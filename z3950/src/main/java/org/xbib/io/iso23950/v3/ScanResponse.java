@@ -43,6 +43,13 @@ public final class ScanResponse extends ASN1Any {
     public ListEntries s_entries; // optional
     public AttributeSetId s_attributeSet; // optional
     public OtherInformation s_otherInfo; // optional
+
+    /**
+     * Default constructor for a ScanResponse.
+     */
+    public ScanResponse() {
+    }
+
     /**
      * Constructor for a ScanResponse from a BER encoding.
      *
@@ -43,6 +43,13 @@ public final class SearchResponse extends ASN1Any {
     public Records s_records; // optional
     public OtherInformation s_additionalSearchInfo; // optional
     public OtherInformation s_otherInfo; // optional
+
+    /**
+     * Default constructor for a SearchResponse.
+     */
+    public SearchResponse() {
+    }
+
     /**
      * Constructor for a SearchResponse from a BER encoding.
      *
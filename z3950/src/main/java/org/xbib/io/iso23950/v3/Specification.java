@@ -24,6 +24,11 @@ public final class Specification extends ASN1Any {
     public ASN1ObjectIdentifier s_schema; // optional
     public SpecificationElementSpec s_elementSpec; // optional
 
+    /**
+     * Default constructor for a Specification.
+     */
+    public Specification() {
+    }
 
     /**
      * Constructor for a Specification from a BER encoding.
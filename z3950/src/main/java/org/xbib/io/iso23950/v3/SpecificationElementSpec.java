@@ -21,6 +21,11 @@ public final class SpecificationElementSpec extends ASN1Any {
     public InternationalString c_elementSetName;
     public ASN1External c_externalEspec;
 
+    /**
+     * Default constructor for a SpecificationElementSpec.
+     */
+    public SpecificationElementSpec() {
+    }
 
     /**
      * Constructor for a Specification_elementSpec from a BER encoding.
@@ -21,6 +21,11 @@ public final class StringOrNumeric extends ASN1Any {
     public InternationalString c_string;
     public ASN1Integer c_numeric;
 
+    /**
+     * Default constructor for a StringOrNumeric.
+     */
+    public StringOrNumeric() {
+    }
 
     /**
      * Constructor for a StringOrNumeric from a BER encoding.
@@ -0,0 +1,76 @@
+package org.xbib.io.iso23950.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1Null;
+import org.xbib.asn1.ASN1ObjectIdentifier;
+import org.xbib.io.iso23950.v3.AttributeSetId;
+import org.xbib.io.iso23950.v3.Operator;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+import org.xbib.io.iso23950.v3.RPNStructureRpnRpnOp;
+
+import java.io.IOException;
+
+/**
+ *
+ */
+public class PreparedQueryTest {
+
+    @Test
+    public void testBindSingleSlot() throws Exception {
+        PreparedQuery prepared = PreparedQuery.prepare("@attr 1=7 ?", q -> query(term(q)));
+        Assert.assertEquals(1, prepared.getSlots());
+        for (String isbn : new String[]{"3161484100", "978-3-16-148410-0", "", longTerm()}) {
+            Assert.assertArrayEquals(query(term(isbn)).berEncode().encodingGet(),
+                    prepared.bind(isbn).berEncode().encodingGet());
+        }
+    }
+
+    @Test
+    public void testBindTwoSlots() throws Exception {
+        PreparedQuery prepared = PreparedQuery.prepare("@and ? \"?\"", q -> {
+            String[] s = q.split(" ");
+            return query(and(term(s[1]), term(s[2].replace("\"", ""))));
+        });
+        Assert.assertEquals(2, prepared.getSlots());
+        Assert.assertArrayEquals(query(and(term("linux"), term("torvalds"))).berEncode().encodingGet(),
+                prepared.bind("linux", "torvalds").berEncode().encodingGet());
+    }
+
+    @Test(expected = IOException.class)
+    public void testBindWrongNumberOfTerms() throws Exception {
+        PreparedQuery.prepare("@attr 1=7 ?", q -> query(term(q))).bind("a", "b");
+    }
+
+    private static String longTerm() {
+        // long enough to need a multi-octet length in every enclosing encoding
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            sb.append('x');
+        }
+        return sb.toString();
+    }
+
+    private static RPNStructure term(String s) {
+        return RPNQueryCacheTest.createTerm(7, s.startsWith("@attr 1=7 ") ? s.substring(10) : s);
+    }
+
+    private static RPNStructure and(RPNStructure rpn1, RPNStructure rpn2) {
+        RPNStructure rpn = new RPNStructure();
+        rpn.c_rpnRpnOp = new RPNStructureRpnRpnOp();
+        rpn.c_rpnRpnOp.s_op = new Operator();
+        rpn.c_rpnRpnOp.s_op.c_and = new ASN1Null();
+        rpn.c_rpnRpnOp.s_rpn1 = rpn1;
+        rpn.c_rpnRpnOp.s_rpn2 = rpn2;
+        return rpn;
+    }
+
+    private static RPNQuery query(RPNStructure rpn) {
+        RPNQuery query = new RPNQuery();
+        query.s_attributeSet = new AttributeSetId();
+        query.s_attributeSet.value = new ASN1ObjectIdentifier(new int[]{1, 2, 840, 10003, 3, 1});
+        query.s_rpn = rpn;
+        return query;
+    }
+}
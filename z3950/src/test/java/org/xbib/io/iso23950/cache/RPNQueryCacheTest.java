@@ -0,0 +1,144 @@
+package org.xbib.io.iso23950.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1Boolean;
+import org.xbib.asn1.ASN1GeneralString;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.asn1.ASN1Null;
+import org.xbib.asn1.ASN1ObjectIdentifier;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.asn1.BEREncoding;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.AttributeElementAttributeValue;
+import org.xbib.io.iso23950.v3.AttributeList;
+import org.xbib.io.iso23950.v3.AttributeSetId;
+import org.xbib.io.iso23950.v3.AttributesPlusTerm;
+import org.xbib.io.iso23950.v3.DatabaseName;
+import org.xbib.io.iso23950.v3.InternationalString;
+import org.xbib.io.iso23950.v3.Operand;
+import org.xbib.io.iso23950.v3.Operator;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.Query;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+import org.xbib.io.iso23950.v3.RPNStructureRpnRpnOp;
+import org.xbib.io.iso23950.v3.SearchRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class RPNQueryCacheTest {
+
+    @Test
+    public void testPreEncodedQueryEncodesLikeOriginal() throws Exception {
+        RPNQuery query = createQuery();
+        PreEncodedRPNQuery preEncoded = new PreEncodedRPNQuery(query);
+        Assert.assertArrayEquals(query.berEncode().encodingGet(), preEncoded.berEncode().encodingGet());
+        Assert.assertArrayEquals(encode(createSearchRequest(query)), encode(createSearchRequest(preEncoded)));
+        // the spliced encoding must decode to the same query
+        byte[] bytes = preEncoded.berEncode().encodingGet();
+        RPNQuery decoded = new RPNQuery(BEREncoding.input(new ByteArrayInputStream(bytes)), true);
+        Assert.assertEquals(query.toString(), decoded.toString());
+    }
+
+    @Test
+    public void testCompileOnce() throws Exception {
+        RPNQueryCache cache = new RPNQueryCache(2);
+        AtomicInteger compiled = new AtomicInteger();
+        RPNQueryCache.Compiler compiler = q -> {
+            compiled.incrementAndGet();
+            return createQuery();
+        };
+        RPNQuery q1 = cache.get("pqf", "a", compiler);
+        RPNQuery q2 = cache.get("pqf", "a", compiler);
+        Assert.assertSame(q1, q2);
+        Assert.assertEquals(1, compiled.get());
+        cache.get("cql", "a", compiler);
+        cache.get("pqf", "b", compiler);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(3, compiled.get());
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        RPNQueryCache cache = new RPNQueryCache(10);
+        AtomicInteger compiled = new AtomicInteger();
+        RPNQueryCache.Compiler compiler = q -> {
+            compiled.incrementAndGet();
+            return createQuery();
+        };
+        Object optimizer = new Object();
+        RPNQuery q1 = cache.get("pqf", "a", Arrays.asList(optimizer, "host1:210"), compiler);
+        RPNQuery q2 = cache.get("pqf", "a", Arrays.asList(optimizer, "host1:210"), compiler);
+        Assert.assertSame(q1, q2);
+        Assert.assertEquals(1, compiled.get());
+        // another optimizer, another target, or the default scope compile again
+        Assert.assertNotSame(q1, cache.get("pqf", "a", Arrays.asList(new Object(), "host1:210"), compiler));
+        Assert.assertNotSame(q1, cache.get("pqf", "a", Arrays.asList(optimizer, "host2:210"), compiler));
+        Assert.assertNotSame(q1, cache.get("pqf", "a", compiler));
+        Assert.assertEquals(4, compiled.get());
+        Assert.assertEquals(4, cache.size());
+    }
+
+    static RPNQuery createQuery() {
+        RPNStructure rpn = new RPNStructure();
+        rpn.c_rpnRpnOp = new RPNStructureRpnRpnOp();
+        rpn.c_rpnRpnOp.s_op = new Operator();
+        rpn.c_rpnRpnOp.s_op.c_and = new ASN1Null();
+        rpn.c_rpnRpnOp.s_rpn1 = createTerm(4, "linux");
+        rpn.c_rpnRpnOp.s_rpn2 = createTerm(1003, "torvalds");
+        RPNQuery query = new RPNQuery();
+        query.s_attributeSet = new AttributeSetId();
+        query.s_attributeSet.value = new ASN1ObjectIdentifier(new int[]{1, 2, 840, 10003, 3, 1});
+        query.s_rpn = rpn;
+        return query;
+    }
+
+    static RPNStructure createTerm(int use, String term) {
+        AttributeElement ae = new AttributeElement();
+        ae.sAttributeType = new ASN1Integer(1);
+        ae.attributeValue = new AttributeElementAttributeValue();
+        ae.attributeValue.cNumeric = new ASN1Integer(use);
+        RPNStructure rpn = new RPNStructure();
+        rpn.c_op = new Operand();
+        rpn.c_op.c_attrTerm = new AttributesPlusTerm();
+        rpn.c_op.c_attrTerm.sAttributes = new AttributeList();
+        rpn.c_op.c_attrTerm.sAttributes.value = new AttributeElement[]{ae};
+        rpn.c_op.c_attrTerm.sTerm = new org.xbib.io.iso23950.v3.Term();
+        rpn.c_op.c_attrTerm.sTerm.c_general = new ASN1OctetString(term);
+        return rpn;
+    }
+
+    private static PDU createSearchRequest(RPNQuery rpn) {
+        SearchRequest search = new SearchRequest();
+        search.s_query = new Query();
+        search.s_query.c_type_1 = rpn;
+        search.s_smallSetUpperBound = new ASN1Integer(0);
+        search.s_largeSetLowerBound = new ASN1Integer(1);
+        search.s_mediumSetPresentNumber = new ASN1Integer(0);
+        search.s_replaceIndicator = new ASN1Boolean(true);
+        search.s_resultSetName = new InternationalString();
+        search.s_resultSetName.value = new ASN1GeneralString("default");
+        DatabaseName db = new DatabaseName();
+        db.value = new InternationalString();
+        db.value.value = new ASN1GeneralString("test");
+        search.s_databaseNames = new DatabaseName[]{db};
+        PDU pdu = new PDU();
+        pdu.c_searchRequest = search;
+        return pdu;
+    }
+
+    private static byte[] encode(PDU pdu) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pdu.berEncode().output(out);
+        byte[] bytes = out.toByteArray();
+        Assert.assertArrayEquals(bytes, pdu.berEncode().encodingGet());
+        return bytes;
+    }
+}
@@ -0,0 +1,55 @@
+package org.xbib.io.iso23950.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1Integer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ *
+ */
+public class SearchKeyTest {
+
+    /**
+     * Stands in for the encoding of a query, a key only compares the bytes.
+     */
+    private static byte[] encode(String query) {
+        return query.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEqualEncodingsShareKey() {
+        SearchKey k1 = new SearchKey("localhost", 210, Arrays.asList("a", "b"), encode("@attr 1=4 test"), null);
+        SearchKey k2 = new SearchKey("localhost", 210, Arrays.asList("a", "b"), encode("@attr 1=4 test"), null);
+        Assert.assertEquals(k1, k2);
+        Assert.assertEquals(k1.hashCode(), k2.hashCode());
+    }
+
+    @Test
+    public void testKeyComponents() {
+        byte[] rpn = encode("@attr 1=4 test");
+        SearchKey key = new SearchKey("localhost", 210, Collections.singletonList("a"), rpn, null);
+        Assert.assertNotEquals(key, new SearchKey("localhost", 210, Collections.singletonList("a"),
+                encode("@attr 1=4 other"), null));
+        Assert.assertNotEquals(key, new SearchKey("otherhost", 210, Collections.singletonList("a"), rpn, null));
+        Assert.assertNotEquals(key, new SearchKey("localhost", 211, Collections.singletonList("a"), rpn, null));
+        Assert.assertNotEquals(key, new SearchKey("localhost", 210, Arrays.asList("a", "b"), rpn, null));
+        Assert.assertNotEquals(key, new SearchKey("localhost", 210, Collections.singletonList("a"), rpn, "q"));
+        Assert.assertEquals(Collections.emptyList(), new SearchKey("localhost", 210, null, rpn, null).getDatabases());
+    }
+
+    @Test
+    public void testSearchCount() {
+        SearchCount count = new SearchCount(3, Collections.singletonMap(new ASN1Integer(1), 3));
+        Assert.assertFalse(count.isCached());
+        SearchCount cached = count.asCached();
+        Assert.assertTrue(cached.isCached());
+        Assert.assertSame(cached, cached.asCached());
+        Assert.assertEquals(3, cached.getCount());
+        Assert.assertEquals(count.getResults(), cached.getResults());
+        Assert.assertEquals(Collections.emptyMap(), new SearchCount(0, null).getResults());
+    }
+}
@@ -0,0 +1,117 @@
+package org.xbib.io.iso23950.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.exceptions.SearchFailedException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ */
+public class SingleFlightTest {
+
+    private static final int CALLERS = 4;
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute("a", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return 42;
+                })));
+            }
+            // wait until the first caller runs the loader, give the others time to arrive
+            while (loads.get() == 0) {
+                Thread.sleep(1L);
+            }
+            Thread.sleep(100L);
+            release.countDown();
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(42, (int) future.get(5L, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, loads.get());
+            Assert.assertEquals(0, singleFlight.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureReachesWaiters() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute("a", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    throw new SearchFailedException("unsupported attribute", 114);
+                })));
+            }
+            while (loads.get() == 0) {
+                Thread.sleep(1L);
+            }
+            Thread.sleep(100L);
+            release.countDown();
+            for (Future<Integer> future : futures) {
+                try {
+                    future.get(5L, TimeUnit.SECONDS);
+                    Assert.fail();
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof SearchFailedException);
+                    Assert.assertEquals(114, ((SearchFailedException) e.getCause()).getDiagnostic());
+                }
+            }
+            Assert.assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialCallsLoadAgain() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertEquals(1, (int) singleFlight.execute("a", loads::incrementAndGet));
+        Assert.assertEquals(2, (int) singleFlight.execute("a", loads::incrementAndGet));
+        try {
+            singleFlight.execute("a", () -> {
+                throw new IOException("connection reset");
+            });
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("connection reset", e.getMessage());
+        }
+        Assert.assertEquals(3, (int) singleFlight.execute("a", loads::incrementAndGet));
+        Assert.assertEquals(0, singleFlight.size());
+    }
+}
@@ -0,0 +1,46 @@
+package org.xbib.io.iso23950.cql;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.rpn.RPNBuilder;
+import org.xbib.io.iso23950.v3.AttributeElement;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ */
+public class ContextSetRegistryTest {
+
+    @Test
+    public void testRegister() throws Exception {
+        ContextSetRegistry registry = new ContextSetRegistry();
+        Map<String, String> mappings = new HashMap<>();
+        mappings.put("title", "4");
+        mappings.put("phrase", "1=4 4=1");
+        registry.register("local", mappings);
+        Assert.assertTrue(registry.contains("local"));
+        AttributeElement[] title = registry.lookup("local", "title");
+        Assert.assertEquals(1, title.length);
+        Assert.assertArrayEquals(RPNBuilder.attribute(1, 4).berEncode().encodingGet(),
+                title[0].berEncode().encodingGet());
+        AttributeElement[] phrase = registry.lookup("local", "phrase");
+        Assert.assertEquals(2, phrase.length);
+        Assert.assertArrayEquals(RPNBuilder.attribute(4, 1).berEncode().encodingGet(),
+                phrase[1].berEncode().encodingGet());
+        // compiled once and shared
+        Assert.assertSame(title, registry.lookup("local", "title"));
+        Assert.assertNull(registry.lookup("local", "creator"));
+        Assert.assertNull(registry.lookup("other", "title"));
+        registry.register("local", Collections.singletonMap("creator", "1003"));
+        Assert.assertNull(registry.lookup("local", "title"));
+        Assert.assertNotNull(registry.lookup("local", "creator"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMapping() {
+        new ContextSetRegistry().register("local", Collections.singletonMap("title", "1=x"));
+    }
+}
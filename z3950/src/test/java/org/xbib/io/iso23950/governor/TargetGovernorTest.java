@@ -0,0 +1,94 @@
+package org.xbib.io.iso23950.governor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.exceptions.TargetBusyException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class TargetGovernorTest {
+
+    @Test
+    public void testRejectFast() throws IOException {
+        TargetGovernor governor = TargetGovernor.builder()
+                .setPolicy("z3950.example.org", 210, TargetPolicy.builder()
+                        .setMaxAssociations(2)
+                        .setMaxInFlight(1)
+                        .build())
+                .build();
+        String target = "z3950.example.org:210";
+        TargetGovernor.Permit a1 = governor.acquireAssociation(target);
+        TargetGovernor.Permit a2 = governor.acquireAssociation(target);
+        Assert.assertEquals(2, governor.getAssociations(target));
+        try {
+            governor.acquireAssociation(target);
+            Assert.fail();
+        } catch (TargetBusyException e) {
+            Assert.assertEquals(target, e.getTarget());
+        }
+        a1.close();
+        a1.close();
+        Assert.assertEquals(1, governor.getAssociations(target));
+        try (TargetGovernor.Permit op = governor.acquireOperation(target)) {
+            Assert.assertEquals(1, governor.getInFlight(target));
+            try {
+                governor.acquireOperation(target);
+                Assert.fail();
+            } catch (TargetBusyException e) {
+                Assert.assertEquals(2L, governor.getRejected(target));
+            }
+        }
+        Assert.assertEquals(0, governor.getInFlight(target));
+        a2.close();
+        // other targets are not limited
+        for (int i = 0; i < 10; i++) {
+            governor.acquireAssociation("localhost:210");
+        }
+        Assert.assertEquals(0L, governor.getRejected("localhost:210"));
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        TargetGovernor governor = TargetGovernor.builder()
+                .setDefaultPolicy(TargetPolicy.builder()
+                        .setMaxInFlight(1)
+                        .setMaxWait(5, TimeUnit.SECONDS)
+                        .build())
+                .build();
+        TargetGovernor.Permit first = governor.acquireOperation("localhost:210");
+        CompletableFuture<TargetGovernor.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return governor.acquireOperation("localhost:210");
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50L);
+        Assert.assertFalse(second.isDone());
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        Assert.assertEquals(0L, governor.getRejected("localhost:210"));
+    }
+
+    @Test
+    public void testRequestRate() throws IOException {
+        TargetGovernor governor = TargetGovernor.builder()
+                .setDefaultPolicy(TargetPolicy.builder()
+                        .setRequestRate(1.0, 2)
+                        .build())
+                .build();
+        governor.acquireOperation("localhost:210").close();
+        governor.acquireOperation("localhost:210").close();
+        try {
+            governor.acquireOperation("localhost:210");
+            Assert.fail();
+        } catch (TargetBusyException e) {
+            Assert.assertEquals(1L, governor.getRejected("localhost:210"));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.xbib.io.iso23950.governor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstAndRefill() {
+        TokenBucket bucket = new TokenBucket(10.0, 3);
+        long now = System.nanoTime() + SECOND;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0L, bucket.reserve(now, 0L));
+        }
+        Assert.assertEquals(-1L, bucket.reserve(now, 0L));
+        // one token every 100 milliseconds
+        Assert.assertEquals(0L, bucket.reserve(now + SECOND / 10, 0L));
+        Assert.assertEquals(-1L, bucket.reserve(now + SECOND / 10, 0L));
+        // refill is capped by the burst
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0L, bucket.reserve(now + 10 * SECOND, 0L));
+        }
+        Assert.assertEquals(-1L, bucket.reserve(now + 10 * SECOND, 0L));
+    }
+
+    @Test
+    public void testReservationsQueue() {
+        TokenBucket bucket = new TokenBucket(10.0, 1);
+        long now = System.nanoTime() + SECOND;
+        Assert.assertEquals(0L, bucket.reserve(now, SECOND));
+        long first = bucket.reserve(now, SECOND);
+        long second = bucket.reserve(now, SECOND);
+        Assert.assertEquals(SECOND / 10, first, 1000L);
+        Assert.assertEquals(2 * SECOND / 10, second, 1000L);
+        // the next token is owed beyond the maximum wait
+        Assert.assertEquals(-1L, bucket.reserve(now, SECOND / 4));
+        Assert.assertEquals(-2.0, bucket.getTokens(), 0.001);
+    }
+
+    @Test
+    public void testAcquireWaits() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(50.0, 1);
+        Assert.assertTrue(bucket.acquire(0L));
+        long start = System.nanoTime();
+        Assert.assertTrue(bucket.acquire(SECOND));
+        Assert.assertTrue(System.nanoTime() - start >= SECOND / 100);
+    }
+}
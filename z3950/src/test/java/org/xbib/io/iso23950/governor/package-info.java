@@ -0,0 +1,4 @@
+/**
+ *
+ */
+package org.xbib.io.iso23950.governor;
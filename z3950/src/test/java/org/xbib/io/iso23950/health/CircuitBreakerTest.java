@@ -0,0 +1,41 @@
+package org.xbib.io.iso23950.health;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpenAndProbe() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000L);
+        long now = System.nanoTime();
+        breaker.onFailure(now);
+        breaker.onFailure(now);
+        breaker.onSuccess();
+        Assert.assertEquals(0, breaker.getConsecutiveFailures());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(breaker.allowRequest(now));
+            breaker.onFailure(now);
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest(now + 999L));
+        // late responses do not close an open circuit
+        breaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // one probe per open time
+        Assert.assertTrue(breaker.allowRequest(now + 1000L));
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest(now + 1500L));
+        // a failed probe opens the circuit again
+        breaker.onFailure(now + 1500L);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest(now + 2000L));
+        Assert.assertTrue(breaker.allowRequest(now + 2500L));
+        breaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest(now + 2500L));
+    }
+}
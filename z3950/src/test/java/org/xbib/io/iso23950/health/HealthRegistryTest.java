@@ -0,0 +1,101 @@
+package org.xbib.io.iso23950.health;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.metrics.DefaultMetricsRegistry;
+import org.xbib.io.iso23950.metrics.Operation;
+import org.xbib.io.iso23950.metrics.OperationMetrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class HealthRegistryTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    @Test
+    public void testAdaptiveTimeout() {
+        HealthRegistry health = HealthRegistry.builder()
+                .setDefaultTimeout(10L, TimeUnit.SECONDS)
+                .setTimeoutBounds(50L, 5000L, TimeUnit.MILLISECONDS)
+                .setMinSamples(10)
+                .build();
+        OperationMetrics fast = health.get("fast:210", Operation.SEARCH);
+        OperationMetrics slow = health.get("slow:210", Operation.SEARCH);
+        Assert.assertEquals(10000L, health.getTimeoutMillis("fast:210", Operation.SEARCH));
+        for (int i = 0; i < 20; i++) {
+            fast.record(0L, 10 * MILLIS + i * MILLIS / 10, 0L, 100L, 100L, 0, false);
+            slow.record(0L, 800 * MILLIS + i * 10 * MILLIS, 0L, 100L, 100L, 0, false);
+        }
+        long fastTimeout = health.getTimeoutMillis("fast:210", Operation.SEARCH);
+        long slowTimeout = health.getTimeoutMillis("slow:210", Operation.SEARCH);
+        // the lower bound
+        Assert.assertEquals(50L, fastTimeout);
+        Assert.assertTrue(slowTimeout > 990L && slowTimeout < 2000L);
+        // other operations keep the default
+        Assert.assertEquals(10000L, health.getTimeoutMillis("slow:210", Operation.PRESENT));
+        // timeouts back off
+        slow.timeout();
+        Assert.assertEquals(2 * slowTimeout, health.getTimeoutMillis("slow:210", Operation.SEARCH), 1L);
+        slow.timeout();
+        slow.timeout();
+        slow.timeout();
+        Assert.assertEquals(5000L, health.getTimeoutMillis("slow:210", Operation.SEARCH));
+        slow.record(0L, 990 * MILLIS, 0L, 100L, 100L, 0, false);
+        Assert.assertTrue(health.getTimeoutMillis("slow:210", Operation.SEARCH) < 2000L);
+    }
+
+    @Test
+    public void testCircuitBreaker() {
+        HealthRegistry health = HealthRegistry.builder()
+                .setCircuitBreaker(2, 1L, TimeUnit.HOURS)
+                .build();
+        OperationMetrics search = health.get("localhost:210", Operation.SEARCH);
+        search.record(0L, MILLIS, 0L, 100L, 100L, 0, true);
+        search.timeout();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, health.getCircuitBreaker("localhost:210").getState());
+        Assert.assertFalse(health.allowRequest("localhost:210"));
+        Assert.assertTrue(health.allowRequest("localhost:211"));
+        // a close tells nothing
+        health.get("localhost:211", Operation.SEARCH).error();
+        health.get("localhost:211", Operation.CLOSE).record(0L, 0L, 0L, 10L, 0L, 0, false);
+        Assert.assertEquals(1, health.getCircuitBreaker("localhost:211").getConsecutiveFailures());
+    }
+
+    @Test
+    public void testDelegate() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        HealthRegistry health = HealthRegistry.builder().setDelegate(registry).build();
+        OperationMetrics search = health.get("localhost:210", Operation.SEARCH);
+        Assert.assertSame(search, health.get("localhost:210", Operation.SEARCH));
+        search.record(0L, MILLIS, 0L, 100L, 200L, 3, false);
+        search.timeout();
+        OperationMetrics metrics = registry.get("localhost:210", Operation.SEARCH);
+        Assert.assertEquals(1L, metrics.getCount());
+        Assert.assertEquals(3L, metrics.getRecords());
+        Assert.assertEquals(1L, metrics.getTimeouts());
+        Assert.assertEquals(metrics.getBytesReceived(), search.getBytesReceived());
+        Assert.assertSame(metrics.getWait(), search.getWait());
+    }
+
+    @Test
+    public void testAccessors() throws Exception {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        HealthRegistry health = HealthRegistry.builder().setDelegate(registry).build();
+        OperationMetrics search = health.get("localhost:210", Operation.SEARCH);
+        search.record(1000L, 2 * MILLIS, 3000L, 100L, 200L, 3, true);
+        search.timeout();
+        search.error();
+        OperationMetrics metrics = registry.get("localhost:210", Operation.SEARCH);
+        // every accessor reads the metrics of the delegate
+        for (Method method : OperationMetrics.class.getMethods()) {
+            if (method.getParameterCount() == 0) {
+                Assert.assertEquals(method.getName(), method.invoke(metrics), method.invoke(search));
+            }
+        }
+        Assert.assertEquals(metrics.toString(), search.toString());
+    }
+}
@@ -0,0 +1,82 @@
+package org.xbib.io.iso23950.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1Boolean;
+import org.xbib.asn1.ASN1Integer;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.PresentRequest;
+import org.xbib.io.iso23950.v3.PresentResponse;
+import org.xbib.io.iso23950.v3.SearchRequest;
+import org.xbib.io.iso23950.v3.SearchResponse;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ *
+ */
+public class MetricsTest {
+
+    @Test
+    public void testBuckets() {
+        for (long v = 0L; v < 100000L; v++) {
+            int index = LatencyHistogram.index(v);
+            Assert.assertTrue(v <= LatencyHistogram.upperBound(index));
+            Assert.assertTrue(index == 0 || v > LatencyHistogram.upperBound(index - 1));
+        }
+        Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(99.0d));
+        for (long v = 1L; v <= 1000L; v++) {
+            histogram.record(v * 1000L);
+        }
+        Assert.assertEquals(1000L, histogram.getCount());
+        Assert.assertEquals(1000000L, histogram.getMax());
+        Assert.assertEquals(500500.0d, histogram.getMean(), 0.001d);
+        long p50 = histogram.getValueAtPercentile(50.0d);
+        Assert.assertTrue(p50 >= 500000L && p50 <= 500000L * 1.125d);
+        long p99 = histogram.getValueAtPercentile(99.0d);
+        Assert.assertTrue(p99 >= 990000L && p99 <= 1000000L);
+        Assert.assertEquals(1000000L, histogram.getValueAtPercentile(100.0d));
+    }
+
+    @Test
+    public void testClientMetrics() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        ClientMetrics metrics = new ClientMetrics(registry, "localhost:210");
+        PDU search = new PDU();
+        search.c_searchRequest = new SearchRequest();
+        metrics.sent(search, 100L, 50L);
+        PDU searchResponse = new PDU();
+        searchResponse.c_searchResponse = new SearchResponse();
+        searchResponse.c_searchResponse.s_searchStatus = new ASN1Boolean(false);
+        metrics.received(searchResponse, System.nanoTime(), 10L, 30L);
+        PDU present = new PDU();
+        present.c_presentRequest = new PresentRequest();
+        metrics.sent(present, 100L, 40L);
+        PDU presentResponse = new PDU();
+        presentResponse.c_presentResponse = new PresentResponse();
+        presentResponse.c_presentResponse.s_numberOfRecordsReturned = new ASN1Integer(10);
+        metrics.received(presentResponse, System.nanoTime(), 10L, 5000L);
+        metrics.sent(present, 100L, 40L);
+        metrics.failed(new IOException(new SocketTimeoutException()));
+        OperationMetrics searchMetrics = registry.get("localhost:210", Operation.SEARCH);
+        Assert.assertEquals(1L, searchMetrics.getCount());
+        Assert.assertEquals(1L, searchMetrics.getDiagnostics());
+        Assert.assertEquals(50L, searchMetrics.getBytesSent());
+        Assert.assertEquals(30L, searchMetrics.getBytesReceived());
+        OperationMetrics presentMetrics = registry.get("localhost:210", Operation.PRESENT);
+        Assert.assertEquals(1L, presentMetrics.getCount());
+        Assert.assertEquals(10L, presentMetrics.getRecords());
+        Assert.assertEquals(0L, presentMetrics.getDiagnostics());
+        Assert.assertEquals(1L, presentMetrics.getTimeouts());
+        Assert.assertEquals(100L, presentMetrics.getEncode().getMax());
+        Assert.assertTrue(presentMetrics.getRecordsPerSecond() > 0.0d);
+        Assert.assertEquals(Operation.values().length, registry.getAll().size());
+    }
+}
@@ -0,0 +1,90 @@
+package org.xbib.io.iso23950.pqf;
+
+import org.junit.Test;
+import org.xbib.io.iso23950.ParserTest;
+import org.xbib.io.iso23950.rpn.RPNBuilder;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+import java.io.IOException;
+
+/**
+ *
+ */
+public class PQFCompilerTest extends ParserTest {
+
+    @Test
+    public void testSucceed() throws IOException {
+        PQFCompiler compiler = new PQFCompiler();
+        int ok = 0;
+        for (String q : readFromResource("org/xbib/io/iso23950/pqf/pqf-must-succeed")) {
+            RPNQuery rpnQuery = compiler.compile(q);
+            assertNotNull(q, rpnQuery.berEncode());
+            ok++;
+        }
+        assertEquals(17, ok);
+    }
+
+    @Test
+    public void testSameAsBuilder() throws Exception {
+        PQFCompiler compiler = new PQFCompiler();
+        RPNQuery expected = RPNBuilder.query(RPNBuilder.op(RPNBuilder.and(),
+                RPNBuilder.term(new AttributeElement[]{RPNBuilder.attribute(1, 4), RPNBuilder.attribute(4, 1)},
+                        "bob \"the\" dylan"),
+                RPNBuilder.term(new AttributeElement[]{RPNBuilder.attribute(1, 4)}, "zimmerman")));
+        RPNQuery rpnQuery = compiler.compile("@attr 1=4 @and @attr 4=1 \"bob \\\"the\\\" dylan\" zimmerman");
+        assertArrayEquals(expected.berEncode().encodingGet(), rpnQuery.berEncode().encodingGet());
+        // the compiler is reusable
+        rpnQuery = compiler.compile("@attr 1=4 @and @attr 4=1 \"bob \\\"the\\\" dylan\" zimmerman");
+        assertArrayEquals(expected.berEncode().encodingGet(), rpnQuery.berEncode().encodingGet());
+    }
+
+    @Test
+    public void testAttributeSets() {
+        PQFCompiler compiler = new PQFCompiler();
+        RPNQuery rpnQuery = compiler.compile("@attrset exp-1 @attr gils 1=2008 Copenhagen");
+        assertArrayEquals(new int[]{1, 2, 840, 10003, 3, 2}, rpnQuery.s_attributeSet.value.get());
+        AttributeElement ae = rpnQuery.s_rpn.c_op.c_attrTerm.sAttributes.value[0];
+        assertArrayEquals(new int[]{1, 2, 840, 10003, 3, 5}, ae.attributeSetId.value.get());
+        ae = compiler.compile("@attr 1=/book/title computer").s_rpn.c_op.c_attrTerm.sAttributes.value[0];
+        assertEquals("/book/title", ae.attributeValue.attributeValueComplex.sList[0].c_string.value.get());
+    }
+
+    @Test
+    public void testLongOperatorChain() {
+        StringBuilder sb = new StringBuilder();
+        int n = 100000;
+        for (int i = 1; i < n; i++) {
+            sb.append("@or ");
+        }
+        for (int i = 0; i < n; i++) {
+            sb.append("t").append(i).append(' ');
+        }
+        RPNQuery rpnQuery = new PQFCompiler().compile(sb);
+        RPNStructure rpn = rpnQuery.s_rpn;
+        int depth = 0;
+        while (rpn.c_rpnRpnOp != null) {
+            rpn = rpn.c_rpnRpnOp.s_rpn1;
+            depth++;
+        }
+        assertEquals(n - 1, depth);
+        assertEquals("t0", rpn.c_op.c_attrTerm.sTerm.c_general.get());
+    }
+
+    @Test
+    public void testFail() {
+        PQFCompiler compiler = new PQFCompiler();
+        for (String q : new String[]{"", "@and a", "a b", "@attr 1=4", "@attr x=4 a", "\"open", "@prox a b",
+                "@attrset nonexisting a"}) {
+            try {
+                compiler.compile(q);
+                fail("must fail: " + q);
+            } catch (SyntaxException e) {
+                // expected
+            }
+        }
+        // the compiler recovers from errors
+        assertNotNull(compiler.compile("@and a b"));
+    }
+}
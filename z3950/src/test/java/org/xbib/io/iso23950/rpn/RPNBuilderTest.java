@@ -0,0 +1,84 @@
+package org.xbib.io.iso23950.rpn;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.pqf.PQFCompiler;
+import org.xbib.io.iso23950.v3.AttributeElement;
+import org.xbib.io.iso23950.v3.RPNQuery;
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ */
+public class RPNBuilderTest {
+
+    private static void assertEncodesLike(String pqf, RPNQuery query) throws Exception {
+        Assert.assertArrayEquals(new PQFCompiler().compile(pqf).berEncode().encodingGet(),
+                query.berEncode().encodingGet());
+    }
+
+    @Test
+    public void testEncodesLikePQF() throws Exception {
+        assertEncodesLike("@attr 1=4 linux", RPNBuilder.query(RPNBuilder.term(4, "linux")));
+        assertEncodesLike("@attr 1=4 @attr 5=1 linux", RPNBuilder.query(RPNBuilder.term(
+                new AttributeElement[]{RPNBuilder.attribute(1, 4), RPNBuilder.attribute(5, 1)}, "linux")));
+        assertEncodesLike("@and @attr 1=4 linux @attr 1=1003 torvalds", RPNBuilder.query(RPNBuilder.op(
+                RPNBuilder.and(), RPNBuilder.term(4, "linux"), RPNBuilder.term(1003, "torvalds"))));
+        assertEncodesLike("@or @attr 1=4 linux @set default", RPNBuilder.query(RPNBuilder.op(
+                RPNBuilder.or(), RPNBuilder.term(4, "linux"), RPNBuilder.resultSet("default"))));
+        assertEncodesLike("@not @attr 1=4 linux @attr 1=4 minix", RPNBuilder.query(RPNBuilder.op(
+                RPNBuilder.andNot(), RPNBuilder.term(4, "linux"), RPNBuilder.term(4, "minix"))));
+    }
+
+    @Test
+    public void testBalanced() throws Exception {
+        List<RPNStructure> terms = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            terms.add(RPNBuilder.term(7, "t" + i));
+        }
+        assertEncodesLike("@or @or @attr 1=7 t0 @attr 1=7 t1 @or @attr 1=7 t2 @attr 1=7 t3",
+                RPNBuilder.query(RPNBuilder.balanced(RPNBuilder.or(), terms)));
+        Assert.assertSame(terms.get(0), RPNBuilder.balanced(RPNBuilder.or(), terms.subList(0, 1)));
+        for (int n = 1; n <= 100; n++) {
+            terms.clear();
+            for (int i = 0; i < n; i++) {
+                terms.add(RPNBuilder.term(7, "t" + i));
+            }
+            RPNStructure rpn = RPNBuilder.balanced(RPNBuilder.or(), terms);
+            Assert.assertEquals(terms, RPNBuilder.operands(rpn));
+            Assert.assertEquals(32 - Integer.numberOfLeadingZeros(n - 1), depth(rpn));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBalancedWithoutOperands() {
+        RPNBuilder.balanced(RPNBuilder.or(), Collections.emptyList());
+    }
+
+    @Test
+    public void testOperands() {
+        RPNStructure a = RPNBuilder.term(4, "a");
+        RPNStructure b = RPNBuilder.term(4, "b");
+        RPNStructure c = RPNBuilder.term(4, "c");
+        // an OR chain below an AND is one operand of the AND chain
+        RPNStructure or = RPNBuilder.op(RPNBuilder.or(), b, c);
+        RPNStructure and = RPNBuilder.op(RPNBuilder.and(), RPNBuilder.op(RPNBuilder.and(), a, or), a);
+        Assert.assertEquals(Arrays.asList(a, or, a), RPNBuilder.operands(and));
+        Assert.assertEquals(Arrays.asList(b, c), RPNBuilder.operands(or));
+        Assert.assertEquals(Collections.singletonList(a), RPNBuilder.operands(a));
+        RPNStructure andNot = RPNBuilder.op(RPNBuilder.andNot(), a, b);
+        Assert.assertEquals(Collections.singletonList(andNot), RPNBuilder.operands(andNot));
+    }
+
+    private static int depth(RPNStructure rpn) {
+        if (rpn.c_rpnRpnOp == null) {
+            return 0;
+        }
+        return 1 + Math.max(depth(rpn.c_rpnRpnOp.s_rpn1), depth(rpn.c_rpnRpnOp.s_rpn2));
+    }
+}
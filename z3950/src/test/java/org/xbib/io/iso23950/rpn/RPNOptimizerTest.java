@@ -0,0 +1,81 @@
+package org.xbib.io.iso23950.rpn;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.v3.RPNStructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ */
+public class RPNOptimizerTest {
+
+    @Test
+    public void testFlattenDeduplicateBalance() {
+        // (((((a or b) or a) or c) or d) or b) ... left-deep with duplicates
+        RPNStructure rpn = RPNBuilder.term(4, "t0");
+        for (int i = 1; i < 64; i++) {
+            rpn = RPNBuilder.op(RPNBuilder.or(), rpn, RPNBuilder.term(4, "t" + (i % 16)));
+        }
+        Assert.assertEquals(64, depth(rpn));
+        RPNStructure optimized = new RPNOptimizer().optimize(rpn);
+        List<String> terms = new ArrayList<>();
+        collect(optimized, terms);
+        Assert.assertEquals(16, terms.size());
+        Assert.assertEquals("t0", terms.get(0));
+        Assert.assertEquals("t15", terms.get(15));
+        Assert.assertEquals(5, depth(optimized));
+    }
+
+    @Test
+    public void testAndNotIsKept() {
+        RPNStructure left = RPNBuilder.op(RPNBuilder.and(),
+                RPNBuilder.op(RPNBuilder.and(), RPNBuilder.term(4, "a"), RPNBuilder.term(4, "a")),
+                RPNBuilder.term(4, "b"));
+        RPNStructure rpn = RPNBuilder.op(RPNBuilder.andNot(), left, RPNBuilder.term(4, "c"));
+        RPNStructure optimized = new RPNOptimizer(false, null).optimize(rpn);
+        Assert.assertNotNull(optimized.c_rpnRpnOp.s_op.c_and_not);
+        List<String> terms = new ArrayList<>();
+        collect(optimized, terms);
+        Assert.assertEquals("[a, b, c]", terms.toString());
+    }
+
+    @Test
+    public void testOrderBySelectivity() {
+        RPNStructure rpn = RPNBuilder.op(RPNBuilder.and(),
+                RPNBuilder.op(RPNBuilder.and(), RPNBuilder.term(4, "common"), RPNBuilder.term(4, "unknown")),
+                RPNBuilder.term(4, "rare"));
+        Selectivity selectivity = r -> {
+            switch (r.c_op.c_attrTerm.sTerm.c_general.get()) {
+                case "common":
+                    return 100000;
+                case "rare":
+                    return 3;
+                default:
+                    return -1;
+            }
+        };
+        RPNStructure optimized = new RPNOptimizer(false, selectivity).optimize(rpn);
+        List<String> terms = new ArrayList<>();
+        collect(optimized, terms);
+        Assert.assertEquals("[rare, common, unknown]", terms.toString());
+    }
+
+    private static int depth(RPNStructure rpn) {
+        if (rpn.c_rpnRpnOp == null) {
+            return 1;
+        }
+        return 1 + Math.max(depth(rpn.c_rpnRpnOp.s_rpn1), depth(rpn.c_rpnRpnOp.s_rpn2));
+    }
+
+    private static void collect(RPNStructure rpn, List<String> terms) {
+        if (rpn.c_rpnRpnOp == null) {
+            terms.add(rpn.c_op.c_attrTerm.sTerm.c_general.get());
+        } else {
+            collect(rpn.c_rpnRpnOp.s_rpn1, terms);
+            collect(rpn.c_rpnRpnOp.s_rpn2, terms);
+        }
+    }
+}
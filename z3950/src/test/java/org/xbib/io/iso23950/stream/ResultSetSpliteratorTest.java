@@ -0,0 +1,54 @@
+package org.xbib.io.iso23950.stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.io.iso23950.Record;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ *
+ */
+public class ResultSetSpliteratorTest {
+
+    private final Queue<String> fetches = new ConcurrentLinkedQueue<>();
+
+    private final ResultSetSpliterator.Fetcher fetcher = (offset, length, listener) -> {
+        fetches.add(offset + "+" + length);
+        for (int i = 0; i < length; i++) {
+            listener.onRecord(new Record(offset + i, ("record " + (offset + i)).getBytes(StandardCharsets.UTF_8)));
+        }
+    };
+
+    @Test
+    public void testSplit() {
+        ResultSetSpliterator spliterator = new ResultSetSpliterator(fetcher, 1, 95, 10);
+        Assert.assertEquals(95L, spliterator.estimateSize());
+        Spliterator<Record> prefix = spliterator.trySplit();
+        Assert.assertEquals(40L, prefix.estimateSize());
+        Assert.assertEquals(55L, spliterator.estimateSize());
+        Assert.assertTrue(fetches.isEmpty());
+        Assert.assertTrue(prefix.tryAdvance(record -> Assert.assertEquals(1, record.getNumber())));
+        Assert.assertEquals("1+10", fetches.poll());
+        Spliterator<Record> small = new ResultSetSpliterator(fetcher, 1, 15, 10);
+        Assert.assertNull(small.trySplit());
+    }
+
+    @Test
+    public void testParallel() {
+        List<Integer> numbers = StreamSupport.stream(new ResultSetSpliterator(fetcher, 1, 1000, 25), true)
+                .map(Record::getNumber)
+                .collect(Collectors.toList());
+        Assert.assertEquals(1000, numbers.size());
+        for (int i = 0; i < numbers.size(); i++) {
+            Assert.assertEquals(i + 1, numbers.get(i).intValue());
+        }
+        Assert.assertEquals(40, fetches.size());
+    }
+}
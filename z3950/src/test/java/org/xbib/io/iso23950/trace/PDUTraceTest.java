@@ -0,0 +1,76 @@
+package org.xbib.io.iso23950.trace;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.asn1.ASN1OctetString;
+import org.xbib.io.iso23950.v3.DeleteResultSetRequest;
+import org.xbib.io.iso23950.v3.PDU;
+import org.xbib.io.iso23950.v3.ReferenceId;
+import org.xbib.io.iso23950.v3.SearchRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ */
+public class PDUTraceTest {
+
+    @Test
+    public void testTypeAndReferenceId() {
+        PDU search = new PDU();
+        search.c_searchRequest = new SearchRequest();
+        search.c_searchRequest.s_referenceId = new ReferenceId();
+        search.c_searchRequest.s_referenceId.value = new ASN1OctetString("span-1");
+        PDUTrace trace = new PDUTrace("localhost:210", PDUTrace.SENT, search, 42L, 1000L, System.nanoTime());
+        Assert.assertEquals("searchRequest", trace.getType());
+        Assert.assertEquals("span-1", new String(trace.getReferenceId(), StandardCharsets.ISO_8859_1));
+        PDU delete = new PDU();
+        delete.c_deleteResultSetRequest = new DeleteResultSetRequest();
+        trace = new PDUTrace("localhost:210", PDUTrace.SENT, delete, 10L, 1000L, System.nanoTime());
+        Assert.assertEquals("deleteResultSetRequest", trace.getType());
+        Assert.assertNull(trace.getReferenceId());
+        Assert.assertEquals("other", PDUTrace.typeOf(new PDU()));
+    }
+
+    @Test
+    public void testComposite() {
+        List<String> calls = new ArrayList<>();
+        PDUTracer first = new PDUTracer() {
+            @Override
+            public void beforeSend(String target, PDU pdu) {
+                calls.add("first before");
+            }
+
+            @Override
+            public void sent(PDUTrace trace) {
+                calls.add("first sent");
+            }
+
+            @Override
+            public void received(PDUTrace trace) {
+                calls.add("first received");
+            }
+        };
+        PDUTracer second = new PDUTracer() {
+            @Override
+            public void sent(PDUTrace trace) {
+                calls.add("second sent");
+            }
+
+            @Override
+            public void received(PDUTrace trace) {
+                calls.add("second received");
+            }
+        };
+        PDUTracer tracer = PDUTracer.of(first, second, new LoggingTracer());
+        PDU pdu = new PDU();
+        pdu.c_searchRequest = new SearchRequest();
+        tracer.beforeSend("localhost:210", pdu);
+        tracer.sent(new PDUTrace("localhost:210", PDUTrace.SENT, pdu, 1L, 1L, 0L));
+        tracer.received(new PDUTrace("localhost:210", PDUTrace.RECEIVED, pdu, 1L, 1L, 0L));
+        Assert.assertEquals("[first before, first sent, second sent, first received, second received]",
+                calls.toString());
+    }
+}